@@ -3,9 +3,11 @@ package com.vueones;
 import org.mybatis.spring.annotation.MapperScan;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
 @MapperScan("com.vueones.mapper")
+@EnableScheduling
 public class VuedemoApplication {
 
     public static void main(String[] args) {
@@ -0,0 +1,133 @@
+package com.vueones.cache;
+
+import org.springframework.cache.Cache;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+/**
+ * 支持批量读写与失效的缓存
+ * 缓存链上的每一层都实现批量方法并向内层传递，最终在Redis上以MGET、管道化SET和分批UNLINK执行，
+ * N个key只需要少量往返；不支持批量的缓存使用默认实现逐个处理
+ */
+public interface BatchCache extends Cache {
+
+    /**
+     * 批量读取
+     * @param keys 键
+     * @return 命中的 键 -> 值，按传入顺序排列，未命中的键不出现
+     */
+    default Map<Object, Object> getAll(Collection<?> keys) {
+        Map<Object, Object> result = new LinkedHashMap<>();
+        for (Object key : keys) {
+            ValueWrapper wrapper = get(key);
+            if (wrapper != null && wrapper.get() != null) {
+                result.put(key, wrapper.get());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 批量写入，值为null的条目被跳过
+     * @param entries 键 -> 值
+     */
+    default void putAll(Map<?, ?> entries) {
+        entries.forEach((key, value) -> {
+            if (value != null) {
+                put(key, value);
+            }
+        });
+    }
+
+    /**
+     * 批量失效
+     * @param keys 键
+     */
+    default void evictAll(Collection<?> keys) {
+        for (Object key : keys) {
+            evict(key);
+        }
+    }
+
+    /**
+     * 取得缓存的批量视图
+     * @param cache 缓存，可为null
+     * @return 本身支持批量时原样返回，否则包装为逐个处理的批量缓存；cache为null时返回null
+     */
+    static BatchCache of(Cache cache) {
+        if (cache == null || cache instanceof BatchCache) {
+            return (BatchCache) cache;
+        }
+        return new Adapter(cache);
+    }
+
+    /**
+     * 不支持批量的缓存的适配，批量方法使用默认的逐个实现
+     */
+    final class Adapter implements BatchCache {
+
+        private final Cache delegate;
+
+        private Adapter(Cache delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public String getName() {
+            return delegate.getName();
+        }
+
+        @Override
+        public Object getNativeCache() {
+            return delegate.getNativeCache();
+        }
+
+        @Override
+        public ValueWrapper get(Object key) {
+            return delegate.get(key);
+        }
+
+        @Override
+        public <T> T get(Object key, Class<T> type) {
+            return delegate.get(key, type);
+        }
+
+        @Override
+        public <T> T get(Object key, Callable<T> valueLoader) {
+            return delegate.get(key, valueLoader);
+        }
+
+        @Override
+        public void put(Object key, Object value) {
+            delegate.put(key, value);
+        }
+
+        @Override
+        public ValueWrapper putIfAbsent(Object key, Object value) {
+            return delegate.putIfAbsent(key, value);
+        }
+
+        @Override
+        public void evict(Object key) {
+            delegate.evict(key);
+        }
+
+        @Override
+        public boolean evictIfPresent(Object key) {
+            return delegate.evictIfPresent(key);
+        }
+
+        @Override
+        public void clear() {
+            delegate.clear();
+        }
+
+        @Override
+        public boolean invalidate() {
+            return delegate.invalidate();
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.vueones.cache;
+
+import org.springframework.data.redis.cache.RedisCache;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 支持批量操作的Redis缓存
+ * key与值的序列化与单条操作完全一致，批量读写与逐条读写的条目可以互相读到
+ */
+public class BatchRedisCache extends RedisCache implements BatchCache {
+
+    private final BudgetedRedisCacheWriter writer;
+
+    protected BatchRedisCache(String name, BudgetedRedisCacheWriter writer, RedisCacheConfiguration configuration) {
+        super(name, writer, configuration);
+        this.writer = writer;
+    }
+
+    @Override
+    public Map<Object, Object> getAll(Collection<?> keys) {
+        List<Object> keyList = new ArrayList<>(keys);
+        List<byte[]> values = writer.getAll(getName(), serializeKeys(keyList));
+        Map<Object, Object> result = new LinkedHashMap<>();
+        for (int i = 0; i < keyList.size(); i++) {
+            byte[] value = values.get(i);
+            Object deserialized = value == null ? null : fromStoreValue(deserializeCacheValue(value));
+            if (deserialized != null) {
+                result.put(keyList.get(i), deserialized);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void putAll(Map<?, ?> entries) {
+        List<byte[]> keys = new ArrayList<>(entries.size());
+        List<byte[]> values = new ArrayList<>(entries.size());
+        entries.forEach((key, value) -> {
+            Object cacheValue = preProcessCacheValue(value);
+            if (cacheValue == null) {
+                return;
+            }
+            keys.add(serializeCacheKey(createCacheKey(key)));
+            values.add(serializeCacheValue(cacheValue));
+        });
+        if (!keys.isEmpty()) {
+            writer.putAll(getName(), keys, values, getCacheConfiguration().getTtl());
+        }
+    }
+
+    @Override
+    public void evictAll(Collection<?> keys) {
+        writer.removeAll(getName(), serializeKeys(keys));
+    }
+
+    private List<byte[]> serializeKeys(Collection<?> keys) {
+        List<byte[]> serialized = new ArrayList<>(keys.size());
+        for (Object key : keys) {
+            serialized.add(serializeCacheKey(createCacheKey(key)));
+        }
+        return serialized;
+    }
+}
@@ -0,0 +1,31 @@
+package com.vueones.cache;
+
+import org.springframework.data.redis.cache.RedisCache;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.cache.RedisCacheManager;
+
+import java.util.Map;
+
+/**
+ * 创建BatchRedisCache的Redis缓存管理器
+ */
+public class BatchRedisCacheManager extends RedisCacheManager {
+
+    private final BudgetedRedisCacheWriter writer;
+
+    /**
+     * @param writer 缓存writer
+     * @param defaultConfiguration 默认配置
+     * @param initialConfigurations 缓存名 -> 配置
+     */
+    public BatchRedisCacheManager(BudgetedRedisCacheWriter writer, RedisCacheConfiguration defaultConfiguration,
+            Map<String, RedisCacheConfiguration> initialConfigurations) {
+        super(writer, defaultConfiguration, initialConfigurations);
+        this.writer = writer;
+    }
+
+    @Override
+    protected RedisCache createRedisCache(String name, RedisCacheConfiguration cacheConfig) {
+        return new BatchRedisCache(name, writer, cacheConfig != null ? cacheConfig : getDefaultCacheConfiguration());
+    }
+}
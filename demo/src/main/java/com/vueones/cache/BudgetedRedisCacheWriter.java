@@ -0,0 +1,179 @@
+package com.vueones.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.cache.CacheStatistics;
+import org.springframework.data.redis.cache.CacheStatisticsCollector;
+import org.springframework.data.redis.cache.RedisCacheWriter;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisStringCommands.SetOption;
+import org.springframework.data.redis.core.types.Expiration;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 限制单条缓存大小的RedisCacheWriter
+ * 序列化后超过所属缓存预算的值不写入Redis（同时删除该key上可能存在的旧值），避免大列表占满内存。
+ * 另提供批量读写与删除：每批key以一条MGET/UNLINK或一个管道执行，N个key只需 N/BATCH_SIZE 次往返。
+ * 每次写入的值大小与key记入CacheMetrics
+ */
+public class BudgetedRedisCacheWriter implements RedisCacheWriter {
+
+    private static final Logger log = LoggerFactory.getLogger(BudgetedRedisCacheWriter.class);
+
+    /** 每条MGET/UNLINK或每个管道携带的key数量上限，避免单条命令长时间占用Redis */
+    private static final int BATCH_SIZE = 500;
+
+    private final RedisCacheWriter delegate;
+    private final RedisConnectionFactory connectionFactory;
+    private final Map<String, Integer> maxEntryBytes;
+    private final int defaultMaxEntryBytes;
+    private final CacheMetrics metrics;
+
+    /**
+     * @param delegate 实际写入Redis的writer
+     * @param connectionFactory 批量操作使用的连接工厂，与delegate使用同一个
+     * @param maxEntryBytes 缓存名 -> 单条最大字节数
+     * @param defaultMaxEntryBytes 未单独配置的缓存使用的单条最大字节数
+     * @param metrics 写入大小与key基数的统计
+     */
+    public BudgetedRedisCacheWriter(RedisCacheWriter delegate, RedisConnectionFactory connectionFactory,
+                                    Map<String, Integer> maxEntryBytes, int defaultMaxEntryBytes, CacheMetrics metrics) {
+        this.delegate = delegate;
+        this.connectionFactory = connectionFactory;
+        this.maxEntryBytes = maxEntryBytes;
+        this.defaultMaxEntryBytes = defaultMaxEntryBytes;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void put(String name, byte[] key, byte[] value, Duration ttl) {
+        if (overBudget(name, key, value)) {
+            delegate.remove(name, key);
+            return;
+        }
+        delegate.put(name, key, value, ttl);
+    }
+
+    @Override
+    public byte[] get(String name, byte[] key) {
+        return delegate.get(name, key);
+    }
+
+    @Override
+    public byte[] putIfAbsent(String name, byte[] key, byte[] value, Duration ttl) {
+        if (overBudget(name, key, value)) {
+            return null;
+        }
+        return delegate.putIfAbsent(name, key, value, ttl);
+    }
+
+    @Override
+    public void remove(String name, byte[] key) {
+        delegate.remove(name, key);
+    }
+
+    @Override
+    public void clean(String name, byte[] pattern) {
+        delegate.clean(name, pattern);
+    }
+
+    @Override
+    public void clearStatistics(String name) {
+        delegate.clearStatistics(name);
+    }
+
+    @Override
+    public RedisCacheWriter withStatisticsCollector(CacheStatisticsCollector cacheStatisticsCollector) {
+        return new BudgetedRedisCacheWriter(delegate.withStatisticsCollector(cacheStatisticsCollector),
+                connectionFactory, maxEntryBytes, defaultMaxEntryBytes, metrics);
+    }
+
+    @Override
+    public CacheStatistics getCacheStatistics(String cacheName) {
+        return delegate.getCacheStatistics(cacheName);
+    }
+
+    /**
+     * 批量读取，每批key一条MGET
+     * @param name 缓存名
+     * @param keys 完整的key
+     * @return 与keys顺序一致的值，不存在的key对应null
+     */
+    public List<byte[]> getAll(String name, List<byte[]> keys) {
+        List<byte[]> values = new ArrayList<>(keys.size());
+        try (RedisConnection connection = connectionFactory.getConnection()) {
+            for (int from = 0; from < keys.size(); from += BATCH_SIZE) {
+                List<byte[]> batch = keys.subList(from, Math.min(keys.size(), from + BATCH_SIZE));
+                List<byte[]> result = connection.stringCommands().mGet(batch.toArray(new byte[0][]));
+                values.addAll(result != null ? result : Collections.nCopies(batch.size(), null));
+            }
+        }
+        return values;
+    }
+
+    /**
+     * 批量写入，每批key一个管道（SET ... EX），超出预算的值不写入并删除旧值
+     * @param name 缓存名
+     * @param keys 完整的key
+     * @param values 与keys一一对应的值
+     * @param ttl 过期时间，null或非正数表示不过期
+     */
+    public void putAll(String name, List<byte[]> keys, List<byte[]> values, Duration ttl) {
+        Expiration expiration = ttl == null || ttl.isZero() || ttl.isNegative()
+                ? Expiration.persistent() : Expiration.from(ttl);
+        List<byte[]> rejected = new ArrayList<>();
+        try (RedisConnection connection = connectionFactory.getConnection()) {
+            for (int from = 0; from < keys.size(); from += BATCH_SIZE) {
+                connection.openPipeline();
+                try {
+                    for (int i = from; i < Math.min(keys.size(), from + BATCH_SIZE); i++) {
+                        if (overBudget(name, keys.get(i), values.get(i))) {
+                            rejected.add(keys.get(i));
+                        } else {
+                            connection.stringCommands().set(keys.get(i), values.get(i), expiration, SetOption.upsert());
+                        }
+                    }
+                } finally {
+                    connection.closePipeline();
+                }
+            }
+        }
+        removeAll(name, rejected);
+    }
+
+    /**
+     * 批量删除，每批key一条UNLINK（内存由Redis后台线程回收）
+     * @param name 缓存名
+     * @param keys 完整的key
+     */
+    public void removeAll(String name, List<byte[]> keys) {
+        if (keys.isEmpty()) {
+            return;
+        }
+        try (RedisConnection connection = connectionFactory.getConnection()) {
+            for (int from = 0; from < keys.size(); from += BATCH_SIZE) {
+                List<byte[]> batch = keys.subList(from, Math.min(keys.size(), from + BATCH_SIZE));
+                connection.keyCommands().unlink(batch.toArray(new byte[0][]));
+            }
+        }
+    }
+
+    private boolean overBudget(String name, byte[] key, byte[] value) {
+        int budget = maxEntryBytes.getOrDefault(name, defaultMaxEntryBytes);
+        if (budget <= 0 || value.length <= budget) {
+            metrics.recordWrite(name, key, value.length);
+            return false;
+        }
+        metrics.recordOversized(name, value.length);
+        log.warn("缓存值超出单条大小预算，不写入: cache={}, key={}, bytes={}, budget={}",
+                name, new String(key, StandardCharsets.UTF_8), value.length, budget);
+        return true;
+    }
+}
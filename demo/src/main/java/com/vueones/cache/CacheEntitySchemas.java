@@ -0,0 +1,124 @@
+package com.vueones.cache;
+
+import com.vueones.entity.Chemical;
+import com.vueones.entity.Inventory;
+import com.vueones.entity.Man;
+import com.vueones.entity.StorageRecord;
+import com.vueones.entity.UsageRecord;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 缓存中出现的实体的紧凑编码结构
+ * 类型编号与字段顺序都写入了缓存值：新增字段只能追加在末尾，类型编号不可复用；
+ * 与JSON序列化保持一致，不写入标注了@JsonIgnore的字段（反向引用、密码）
+ */
+public final class CacheEntitySchemas {
+
+    public static final EntitySchema<Chemical> CHEMICAL = EntitySchema.builder(1, Chemical.class, Chemical::new)
+            .field(Integer.class, Chemical::getId, Chemical::setId)
+            .field(String.class, Chemical::getName, Chemical::setName)
+            .field(String.class, Chemical::getCategory, Chemical::setCategory)
+            .field(String.class, Chemical::getDangerLevel, Chemical::setDangerLevel)
+            .field(String.class, Chemical::getStorageCondition, Chemical::setStorageCondition)
+            .field(Double.class, Chemical::getWarningThreshold, Chemical::setWarningThreshold)
+            .field(String.class, Chemical::getDescription, Chemical::setDescription)
+            .build();
+
+    public static final EntitySchema<Inventory> INVENTORY = EntitySchema.builder(2, Inventory.class, Inventory::new)
+            .field(Integer.class, Inventory::getId, Inventory::setId)
+            .field(Integer.class, Inventory::getChemicalId, Inventory::setChemicalId)
+            .field(String.class, Inventory::getLocation, Inventory::setLocation)
+            .field(Double.class, Inventory::getCurrentAmount, Inventory::setCurrentAmount)
+            .field(String.class, Inventory::getUnit, Inventory::setUnit)
+            .field(Date.class, Inventory::getLastCheckTime, Inventory::setLastCheckTime)
+            .field(Date.class, Inventory::getCreateTime, Inventory::setCreateTime)
+            .field(Date.class, Inventory::getUpdateTime, Inventory::setUpdateTime)
+            .field(String.class, Inventory::getStockStatus, Inventory::setStockStatus)
+            .field(Chemical.class, Inventory::getChemical, Inventory::setChemical)
+            .build();
+
+    public static final EntitySchema<Man> MAN = EntitySchema.builder(3, Man.class, Man::new)
+            .field(Integer.class, Man::getId, Man::setId)
+            .field(String.class, Man::getName, Man::setName)
+            .field(String.class, Man::getGender, Man::setGender)
+            .field(String.class, Man::getPhone, Man::setPhone)
+            .field(String.class, Man::getEmail, Man::setEmail)
+            .field(String.class, Man::getDepartment, Man::setDepartment)
+            .field(String.class, Man::getPosition, Man::setPosition)
+            .field(Integer.class, Man::getUserType, Man::setUserType)
+            .field(Integer.class, Man::getStatus, Man::setStatus)
+            .field(Date.class, Man::getLastLoginTime, Man::setLastLoginTime)
+            .field(Date.class, Man::getCreateTime, Man::setCreateTime)
+            .build();
+
+    public static final EntitySchema<StorageRecord> STORAGE_RECORD = EntitySchema
+            .builder(4, StorageRecord.class, StorageRecord::new)
+            .field(Integer.class, StorageRecord::getId, StorageRecord::setId)
+            .field(Integer.class, StorageRecord::getChemicalId, StorageRecord::setChemicalId)
+            .field(String.class, StorageRecord::getChemicalName, StorageRecord::setChemicalName)
+            .field(Integer.class, StorageRecord::getInventoryId, StorageRecord::setInventoryId)
+            .field(Double.class, StorageRecord::getAmount, StorageRecord::setAmount)
+            .field(String.class, StorageRecord::getUnit, StorageRecord::setUnit)
+            .field(String.class, StorageRecord::getBatchNo, StorageRecord::setBatchNo)
+            .field(Date.class, StorageRecord::getStorageTime, StorageRecord::setStorageTime)
+            .field(Date.class, StorageRecord::getExpiryDate, StorageRecord::setExpiryDate)
+            .field(Integer.class, StorageRecord::getOperatorId, StorageRecord::setOperatorId)
+            .field(String.class, StorageRecord::getSupplier, StorageRecord::setSupplier)
+            .field(String.class, StorageRecord::getNotes, StorageRecord::setNotes)
+            .field(Date.class, StorageRecord::getCreateTime, StorageRecord::setCreateTime)
+            .field(Chemical.class, StorageRecord::getChemical, StorageRecord::setChemical)
+            .field(Inventory.class, StorageRecord::getInventory, StorageRecord::setInventory)
+            .field(Man.class, StorageRecord::getOperator, StorageRecord::setOperator)
+            .build();
+
+    public static final EntitySchema<UsageRecord> USAGE_RECORD = EntitySchema
+            .builder(5, UsageRecord.class, UsageRecord::new)
+            .field(Integer.class, UsageRecord::getId, UsageRecord::setId)
+            .field(Integer.class, UsageRecord::getChemicalId, UsageRecord::setChemicalId)
+            .field(Integer.class, UsageRecord::getUserId, UsageRecord::setUserId)
+            .field(String.class, UsageRecord::getChemicalName, UsageRecord::setChemicalName)
+            .field(String.class, UsageRecord::getUserName, UsageRecord::setUserName)
+            .field(Double.class, UsageRecord::getAmount, UsageRecord::setAmount)
+            .field(String.class, UsageRecord::getUnit, UsageRecord::setUnit)
+            .field(Date.class, UsageRecord::getUsageTime, UsageRecord::setUsageTime)
+            .field(String.class, UsageRecord::getUsagePurpose, UsageRecord::setUsagePurpose)
+            .field(String.class, UsageRecord::getNotes, UsageRecord::setNotes)
+            .field(Date.class, UsageRecord::getCreateTime, UsageRecord::setCreateTime)
+            .field(Chemical.class, UsageRecord::getChemical, CacheEntitySchemas::restoreChemical)
+            .field(Man.class, UsageRecord::getUser, CacheEntitySchemas::restoreUser)
+            .build();
+
+    public static final EntitySchema<RefreshableValue> REFRESHABLE_VALUE = EntitySchema
+            .builder(6, RefreshableValue.class, RefreshableValue::new)
+            .field(Object.class, RefreshableValue::getValue, RefreshableValue::setValue)
+            .field(Long.class, RefreshableValue::getComputeMillis, RefreshableValue::setComputeMillis)
+            .field(Long.class, RefreshableValue::getExpiresAt, RefreshableValue::setExpiresAt)
+            .build();
+
+    public static final List<EntitySchema<?>> ALL = Arrays.asList(
+            CHEMICAL, INVENTORY, MAN, STORAGE_RECORD, USAGE_RECORD, REFRESHABLE_VALUE);
+
+    private CacheEntitySchemas() {
+    }
+
+    /**
+     * setChemical会用关联实体的名称覆盖chemicalName，解码时保留已按原值解出的chemicalName
+     */
+    private static void restoreChemical(UsageRecord record, Chemical chemical) {
+        String chemicalName = record.getChemicalName();
+        record.setChemical(chemical);
+        record.setChemicalName(chemicalName);
+    }
+
+    /**
+     * setUser会用关联用户的姓名覆盖userName，解码时保留已按原值解出的userName
+     */
+    private static void restoreUser(UsageRecord record, Man user) {
+        String userName = record.getUserName();
+        record.setUser(user);
+        record.setUserName(userName);
+    }
+}
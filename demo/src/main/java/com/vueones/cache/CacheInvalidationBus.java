@@ -0,0 +1,22 @@
+package com.vueones.cache;
+
+import java.util.function.Consumer;
+
+/**
+ * 缓存失效通知通道
+ * 一个节点修改数据后广播失效消息，所有节点（包括自身）的订阅者都会收到
+ */
+public interface CacheInvalidationBus {
+
+    /**
+     * 广播失效消息
+     * @param message 消息内容
+     */
+    void publish(String message);
+
+    /**
+     * 订阅失效消息
+     * @param listener 消息处理器
+     */
+    void subscribe(Consumer<String> listener);
+}
@@ -0,0 +1,148 @@
+package com.vueones.cache;
+
+import com.vueones.util.Histogram;
+import com.vueones.util.HyperLogLog;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 缓存存储层指标
+ * 按缓存名记录写入值的序列化大小分布、超出预算被拒绝的次数、写入过的不同key数（HyperLogLog估计）与容量淘汰次数，
+ * 按操作名记录键值存储（RedisUtil或进程内存储）的调用次数、涉及key数、读取命中与耗时。
+ * 命中率与读取、加载耗时由缓存链最外层的InstrumentedCache记录，两者合并后见ManagedCacheManager的统计与导出
+ */
+@Component
+public class CacheMetrics {
+
+    /** 序列化大小分桶上界（字节） */
+    static final long[] PAYLOAD_BOUNDS = {64, 256, 1024, 4096, 16384, 65536, 262144, 1048576, 4194304};
+    /** 耗时分桶上界（微秒） */
+    static final long[] LATENCY_BOUNDS = {1, 5, 10, 50, 100, 250, 500, 1000, 2500, 5000, 10000, 50000, 250000, 1000000};
+    /** key基数估计的寄存器数为2^12，每个缓存约16KB，误差约1.6% */
+    private static final int KEY_SKETCH_PRECISION = 12;
+
+    private final ConcurrentMap<String, StoreStats> caches = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, OperationStats> operations = new ConcurrentHashMap<>();
+
+    /**
+     * 记录一次写入
+     * @param cache 缓存名
+     * @param key 完整的key
+     * @param bytes 值的序列化大小
+     */
+    public void recordWrite(String cache, byte[] key, int bytes) {
+        StoreStats stats = store(cache);
+        stats.payloadBytes.record(bytes);
+        stats.keys.add(key);
+    }
+
+    /**
+     * 记录一次因超出单条大小预算而未写入的值
+     * @param cache 缓存名
+     * @param bytes 值的序列化大小
+     */
+    public void recordOversized(String cache, int bytes) {
+        StoreStats stats = store(cache);
+        stats.payloadBytes.record(bytes);
+        stats.oversized.increment();
+    }
+
+    /**
+     * 记录进程内存储的一次容量淘汰
+     * @param storeKey 存储中的key，缓存条目为 缓存名::key，其他为键值存储的普通key
+     */
+    public void recordCapacityEviction(String storeKey) {
+        int separator = storeKey.indexOf("::");
+        store(separator > 0 ? storeKey.substring(0, separator) : "(keyValueStore)").capacityEvictions.increment();
+    }
+
+    /**
+     * 记录一次键值存储操作
+     * @param operation 操作名
+     * @param keys 涉及的key数
+     * @param found 读取操作中命中的key数，非读取操作为-1
+     * @param nanos 耗时（纳秒）
+     */
+    public void recordOperation(String operation, int keys, int found, long nanos) {
+        OperationStats stats = operations.computeIfAbsent(operation, key -> new OperationStats());
+        stats.calls.increment();
+        stats.keys.add(keys);
+        if (found >= 0) {
+            stats.hits.add(found);
+            stats.misses.add(keys - found);
+        }
+        stats.latencyMicros.record(TimeUnit.NANOSECONDS.toMicros(nanos));
+    }
+
+    /**
+     * 各缓存的存储层统计，按缓存名排序
+     */
+    public Map<String, StoreStats> getCaches() {
+        return new TreeMap<>(caches);
+    }
+
+    /**
+     * 各键值存储操作的统计，按操作名排序
+     */
+    public Map<String, OperationStats> getOperations() {
+        return new TreeMap<>(operations);
+    }
+
+    private StoreStats store(String cache) {
+        return caches.computeIfAbsent(cache, key -> new StoreStats());
+    }
+
+    /**
+     * 单个缓存的存储层统计
+     */
+    public static final class StoreStats {
+        final Histogram payloadBytes = new Histogram(PAYLOAD_BOUNDS);
+        final LongAdder oversized = new LongAdder();
+        final LongAdder capacityEvictions = new LongAdder();
+        final HyperLogLog keys = new HyperLogLog(KEY_SKETCH_PRECISION);
+
+        /**
+         * @return payloadBytes、oversized、capacityEvictions、distinctKeys（启动以来写入过的不同key数估计，
+         *         含已过期与已失效的key，是实际驻留key数的上界）
+         */
+        public Map<String, Object> snapshot() {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("payloadBytes", payloadBytes.snapshot());
+            stats.put("oversized", oversized.sum());
+            stats.put("capacityEvictions", capacityEvictions.sum());
+            stats.put("distinctKeys", keys.estimate());
+            return stats;
+        }
+    }
+
+    /**
+     * 单个键值存储操作的统计
+     */
+    public static final class OperationStats {
+        final LongAdder calls = new LongAdder();
+        final LongAdder keys = new LongAdder();
+        final LongAdder hits = new LongAdder();
+        final LongAdder misses = new LongAdder();
+        final Histogram latencyMicros = new Histogram(LATENCY_BOUNDS);
+
+        /**
+         * @return calls、keys、hits、misses（仅读取操作）、latencyMicros
+         */
+        public Map<String, Object> snapshot() {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("calls", calls.sum());
+            stats.put("keys", keys.sum());
+            stats.put("hits", hits.sum());
+            stats.put("misses", misses.sum());
+            stats.put("latencyMicros", latencyMicros.snapshot());
+            return stats;
+        }
+    }
+}
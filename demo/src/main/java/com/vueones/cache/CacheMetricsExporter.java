@@ -0,0 +1,214 @@
+package com.vueones.cache;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 缓存指标导出
+ * 把ManagedCacheManager的统计整理为两种视图：Prometheus文本格式（供监控系统抓取），
+ * 以及每个缓存一行关键数字的精简视图（供管理页面与人工调整TTL、下线无效缓存时查看）
+ */
+@Component
+public class CacheMetricsExporter {
+
+    @Autowired
+    private ManagedCacheManager cacheManager;
+
+    /**
+     * Prometheus文本格式（0.0.4）
+     * 计数器为启动以来的累计值；distinctKeys为启动以来写入过的不同key数估计
+     * @return 指标文本
+     */
+    @SuppressWarnings("unchecked")
+    public String prometheus() {
+        Map<String, Object> statistics = cacheManager.getStatistics();
+        Map<String, Map<String, Object>> caches = (Map<String, Map<String, Object>>) statistics.get("caches");
+        Map<String, Map<String, Object>> store = (Map<String, Map<String, Object>>) statistics.get("store");
+        Map<String, Map<String, Object>> operations = (Map<String, Map<String, Object>>) statistics.get("keyValueStore");
+        Map<String, Map<String, Object>> singleFlight = (Map<String, Map<String, Object>>) statistics.get("singleFlight");
+        Map<String, Object> local = (Map<String, Object>) statistics.get("local");
+
+        StringBuilder out = new StringBuilder();
+        header(out, "app_cache_requests_total", "counter", "缓存读取次数，按是否命中");
+        caches.forEach((name, stats) -> {
+            sample(out, "app_cache_requests_total", labels("cache", name, "result", "hit"), stats.get("hits"));
+            sample(out, "app_cache_requests_total", labels("cache", name, "result", "miss"), stats.get("misses"));
+        });
+        header(out, "app_cache_puts_total", "counter", "缓存写入次数");
+        caches.forEach((name, stats) -> sample(out, "app_cache_puts_total", labels("cache", name), stats.get("puts")));
+        header(out, "app_cache_evictions_total", "counter", "显式失效次数（evict、clear）");
+        caches.forEach((name, stats) ->
+                sample(out, "app_cache_evictions_total", labels("cache", name), stats.get("evictions")));
+        header(out, "app_cache_get_latency_microseconds", "histogram", "缓存读取耗时");
+        caches.forEach((name, stats) -> histogram(out, "app_cache_get_latency_microseconds", labels("cache", name),
+                (Map<String, Object>) stats.get("getLatencyMicros")));
+        header(out, "app_cache_load_duration_microseconds", "histogram", "未命中时的加载耗时");
+        caches.forEach((name, stats) -> histogram(out, "app_cache_load_duration_microseconds", labels("cache", name),
+                (Map<String, Object>) stats.get("loadMicros")));
+
+        header(out, "app_cache_payload_bytes", "histogram", "写入值的序列化大小");
+        store.forEach((name, stats) -> histogram(out, "app_cache_payload_bytes", labels("cache", name),
+                (Map<String, Object>) stats.get("payloadBytes")));
+        header(out, "app_cache_oversized_total", "counter", "超出单条大小预算而未写入的次数");
+        store.forEach((name, stats) ->
+                sample(out, "app_cache_oversized_total", labels("cache", name), stats.get("oversized")));
+        header(out, "app_cache_capacity_evictions_total", "counter", "进程内后端因内存预算淘汰的条目数");
+        store.forEach((name, stats) ->
+                sample(out, "app_cache_capacity_evictions_total", labels("cache", name), stats.get("capacityEvictions")));
+        header(out, "app_cache_keys_estimated", "gauge", "启动以来写入过的不同key数估计");
+        store.forEach((name, stats) ->
+                sample(out, "app_cache_keys_estimated", labels("cache", name), stats.get("distinctKeys")));
+
+        header(out, "app_cache_single_flight_total", "counter", "单飞加载各事件次数");
+        singleFlight.forEach((name, stats) -> stats.forEach((event, value) -> {
+            if (!"inFlight".equals(event)) {
+                sample(out, "app_cache_single_flight_total", labels("cache", name, "event", event), value);
+            }
+        }));
+        header(out, "app_cache_single_flight_in_flight", "gauge", "进行中的单飞加载数");
+        singleFlight.forEach((name, stats) ->
+                sample(out, "app_cache_single_flight_in_flight", labels("cache", name), stats.get("inFlight")));
+
+        header(out, "app_kv_operations_total", "counter", "键值存储调用次数");
+        operations.forEach((name, stats) ->
+                sample(out, "app_kv_operations_total", labels("operation", name), stats.get("calls")));
+        header(out, "app_kv_keys_total", "counter", "键值存储调用涉及的key数，读取操作按是否命中");
+        operations.forEach((name, stats) -> {
+            long hits = ((Number) stats.get("hits")).longValue();
+            long misses = ((Number) stats.get("misses")).longValue();
+            if (hits + misses > 0) {
+                sample(out, "app_kv_keys_total", labels("operation", name, "result", "hit"), hits);
+                sample(out, "app_kv_keys_total", labels("operation", name, "result", "miss"), misses);
+            } else {
+                sample(out, "app_kv_keys_total", labels("operation", name, "result", "none"), stats.get("keys"));
+            }
+        });
+        header(out, "app_kv_latency_microseconds", "histogram", "键值存储调用耗时");
+        operations.forEach((name, stats) -> histogram(out, "app_kv_latency_microseconds", labels("operation", name),
+                (Map<String, Object>) stats.get("latencyMicros")));
+
+        if (local != null) {
+            header(out, "app_cache_local_bytes", "gauge", "进程内后端已用字节数");
+            sample(out, "app_cache_local_bytes", "", local.get("bytes"));
+            header(out, "app_cache_local_max_bytes", "gauge", "进程内后端内存预算");
+            sample(out, "app_cache_local_max_bytes", "", local.get("maxBytes"));
+            header(out, "app_cache_local_entries", "gauge", "进程内后端条目数");
+            sample(out, "app_cache_local_entries", "", local.get("entries"));
+        }
+        return out.toString();
+    }
+
+    /**
+     * 精简视图：每个缓存的命中率、读取次数、p99读取与加载耗时、值大小、key数与失效次数，
+     * 以及键值存储各操作的调用次数与p99耗时
+     * @return 精简统计
+     */
+    @SuppressWarnings("unchecked")
+    public Map<String, Object> summary() {
+        Map<String, Object> statistics = cacheManager.getStatistics();
+        Map<String, Map<String, Object>> caches = (Map<String, Map<String, Object>>) statistics.get("caches");
+        Map<String, Map<String, Object>> store = (Map<String, Map<String, Object>>) statistics.get("store");
+        Map<String, Map<String, Object>> operations = (Map<String, Map<String, Object>>) statistics.get("keyValueStore");
+
+        Map<String, Object> cacheRows = new TreeMap<>();
+        List<String> names = new ArrayList<>(caches.keySet());
+        store.keySet().stream().filter(name -> !caches.containsKey(name)).forEach(names::add);
+        for (String name : names) {
+            Map<String, Object> stats = caches.get(name);
+            Map<String, Object> stored = store.get(name);
+            Map<String, Object> row = new LinkedHashMap<>();
+            if (stats != null) {
+                long hits = ((Number) stats.get("hits")).longValue();
+                long misses = ((Number) stats.get("misses")).longValue();
+                Map<String, Object> latency = (Map<String, Object>) stats.get("getLatencyMicros");
+                Map<String, Object> load = (Map<String, Object>) stats.get("loadMicros");
+                row.put("hitRate", round(hits + misses == 0 ? 0D : (double) hits / (hits + misses)));
+                row.put("gets", hits + misses);
+                row.put("puts", stats.get("puts"));
+                row.put("evictions", stats.get("evictions"));
+                row.put("getP99Micros", latency.get("p99"));
+                row.put("loads", load.get("count"));
+                row.put("loadP50Micros", load.get("p50"));
+                row.put("loadP99Micros", load.get("p99"));
+            }
+            if (stored != null) {
+                Map<String, Object> payload = (Map<String, Object>) stored.get("payloadBytes");
+                row.put("payloadP50Bytes", payload.get("p50"));
+                row.put("payloadP99Bytes", payload.get("p99"));
+                row.put("payloadMaxBytes", payload.get("max"));
+                row.put("oversized", stored.get("oversized"));
+                row.put("capacityEvictions", stored.get("capacityEvictions"));
+                row.put("distinctKeys", stored.get("distinctKeys"));
+            }
+            cacheRows.put(name, row);
+        }
+
+        Map<String, Object> operationRows = new LinkedHashMap<>();
+        operations.forEach((name, stats) -> {
+            Map<String, Object> latency = (Map<String, Object>) stats.get("latencyMicros");
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("calls", stats.get("calls"));
+            row.put("keys", stats.get("keys"));
+            row.put("p50Micros", latency.get("p50"));
+            row.put("p99Micros", latency.get("p99"));
+            operationRows.put(name, row);
+        });
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("caches", cacheRows);
+        result.put("keyValueStore", operationRows);
+        return result;
+    }
+
+    private static void header(StringBuilder out, String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void sample(StringBuilder out, String name, String labels, Object value) {
+        out.append(name);
+        if (!labels.isEmpty()) {
+            out.append('{').append(labels).append('}');
+        }
+        out.append(' ').append(value == null ? "NaN" : value).append('\n');
+    }
+
+    /**
+     * 输出直方图的累积分桶、_sum与_count
+     */
+    @SuppressWarnings("unchecked")
+    private static void histogram(StringBuilder out, String name, String labels, Map<String, Object> snapshot) {
+        long cumulative = 0;
+        for (Map<String, Object> bucket : (List<Map<String, Object>>) snapshot.get("buckets")) {
+            cumulative += ((Number) bucket.get("count")).longValue();
+            sample(out, name + "_bucket", labels + ",le=\"" + bucket.get("le") + "\"", cumulative);
+        }
+        sample(out, name + "_sum", labels, snapshot.get("sum"));
+        sample(out, name + "_count", labels, snapshot.get("count"));
+    }
+
+    private static String labels(String... pairs) {
+        StringBuilder labels = new StringBuilder();
+        for (int i = 0; i < pairs.length; i += 2) {
+            if (i > 0) {
+                labels.append(',');
+            }
+            labels.append(pairs[i]).append("=\"").append(escape(pairs[i + 1])).append('"');
+        }
+        return labels.toString();
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 10000) / 10000D;
+    }
+}
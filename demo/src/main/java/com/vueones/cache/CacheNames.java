@@ -0,0 +1,49 @@
+package com.vueones.cache;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 缓存名
+ * 注解与缓存配置统一引用这里的常量，Redis中的key为 缓存名::规范化key
+ */
+public final class CacheNames {
+
+    public static final String CHEMICAL = "chemical";
+    public static final String CHEMICAL_LIST = "chemicalList";
+    public static final String CHEMICAL_COUNT = "chemicalCount";
+    public static final String INVENTORY = "inventory";
+    public static final String STORAGE_RECORD = "storageRecord";
+    public static final String STORAGE_RECORD_LIST = "storageRecordList";
+    public static final String STORAGE_RECORD_COUNT = "storageRecordCount";
+    public static final String STORAGE_RECORD_SUM = "storageRecordSum";
+    public static final String USAGE_RECORD = "usageRecord";
+    public static final String USAGE_RECORD_LIST = "usageRecordList";
+    public static final String USAGE_RECORD_SUM = "usageRecordSum";
+    /** 今日/本月使用次数等使用记录统计，key为方法名 */
+    public static final String USAGE_STATISTICS = "usageStatistics";
+    /** 入库/出库的本月与当日统计，key带日期与按化学品、月份的标签版本 */
+    public static final String RECORD_STATISTICS = "recordStatistics";
+    public static final String WARNING_UNHANDLED_COUNT = "warningUnhandledCount";
+    /** 按ID查询确认不存在的否定缓存，key为 实体缓存名:ID，值为true，TTL应较短（见ExistenceGuard） */
+    public static final String ENTITY_MISSING = "entityMissing";
+
+    public static final List<String> ALL = List.of(
+            CHEMICAL, CHEMICAL_LIST, CHEMICAL_COUNT, INVENTORY,
+            STORAGE_RECORD, STORAGE_RECORD_LIST, STORAGE_RECORD_COUNT, STORAGE_RECORD_SUM,
+            USAGE_RECORD, USAGE_RECORD_LIST, USAGE_RECORD_SUM, USAGE_STATISTICS, RECORD_STATISTICS,
+            WARNING_UNHANDLED_COUNT, ENTITY_MISSING);
+
+    /**
+     * 查询结果缓存：整体清空通过递增命名空间版本完成，耗时与条目数无关；
+     * 入库记录的列表、数量、总量缓存与入库/出库统计写入时不整体清空，而是按化学品与月份标签选择性失效（见QueryTags）
+     */
+    public static final Set<String> VERSIONED = Set.of(
+            CHEMICAL_LIST, CHEMICAL_COUNT,
+            STORAGE_RECORD_LIST, STORAGE_RECORD_COUNT, STORAGE_RECORD_SUM,
+            USAGE_RECORD_LIST, USAGE_RECORD_SUM, USAGE_STATISTICS, RECORD_STATISTICS,
+            WARNING_UNHANDLED_COUNT);
+
+    private CacheNames() {
+    }
+}
@@ -0,0 +1,225 @@
+package com.vueones.cache;
+
+import com.vueones.entity.Chemical;
+import com.vueones.entity.Inventory;
+import com.vueones.mapper.RecordRollupMapper;
+import com.vueones.service.IChemicalService;
+import com.vueones.service.IInventoryService;
+import com.vueones.service.IRecordStatisticsService;
+import com.vueones.service.IUsageRecordService;
+import com.vueones.service.IWarningRecordService;
+import com.vueones.util.KeyValueStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * 启动预热
+ * 启动时在有界线程池上并行预取化学品目录、当前库存、未处理预警数、今日使用统计与入库/出库统计，写入缓存（逐条实体以管道批量写入）；
+ * 全部完成（或超时）前 isReady() 为false，由就绪拦截器拒绝业务请求。
+ * 每个预热项以Redis租约互斥，多个节点同时启动时同一项只由一个节点查询数据库，其余节点跳过
+ */
+@Component
+public class CacheWarmer {
+
+    private static final Logger log = LoggerFactory.getLogger(CacheWarmer.class);
+
+    private static final String LEASE_PREFIX = "warmup:";
+
+    @Value("${app.warmup.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.warmup.threads:4}")
+    private int threads;
+
+    @Value("${app.warmup.timeout-ms:30000}")
+    private long timeoutMillis;
+
+    @Autowired
+    private IChemicalService chemicalService;
+
+    @Autowired
+    private IInventoryService inventoryService;
+
+    @Autowired
+    private IWarningRecordService warningRecordService;
+
+    @Autowired
+    private IUsageRecordService usageRecordService;
+
+    @Autowired
+    private IRecordStatisticsService recordStatisticsService;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private KeyValueStore keyValueStore;
+
+    private final String owner = UUID.randomUUID().toString();
+    private final AtomicBoolean started = new AtomicBoolean();
+    private volatile boolean ready;
+    private volatile Map<String, Object> report = Collections.emptyMap();
+
+    /**
+     * 是否已完成预热，可以接收业务请求
+     * @return true已就绪
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * 预热报告
+     * @return ready、totalMillis，以及每个预热项的status（ok/skipped/failed/timeout）、millis、entries
+     */
+    public Map<String, Object> getReport() {
+        Map<String, Object> result = new LinkedHashMap<>(report);
+        result.put("ready", ready);
+        return result;
+    }
+
+    /**
+     * 在后台开始预热，只执行一次；未开启预热时直接就绪
+     */
+    public void start() {
+        if (!started.compareAndSet(false, true)) {
+            return;
+        }
+        if (!enabled) {
+            ready = true;
+            return;
+        }
+        Map<String, Supplier<Integer>> items = items();
+        AtomicInteger threadIndex = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(items.size()), r -> {
+                    Thread thread = new Thread(r, "cache-warmup-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+
+        long start = System.nanoTime();
+        Map<String, CompletableFuture<Map<String, Object>>> futures = new LinkedHashMap<>();
+        items.forEach((name, item) -> futures.put(name, CompletableFuture.supplyAsync(() -> run(name, item), executor)));
+        CompletableFuture.allOf(futures.values().toArray(new CompletableFuture<?>[0]))
+                .completeOnTimeout(null, timeoutMillis, TimeUnit.MILLISECONDS)
+                .whenComplete((result, e) -> {
+                    finish(start, futures);
+                    executor.shutdownNow();
+                });
+    }
+
+    /**
+     * 预热项，返回写入缓存的条目数
+     */
+    private Map<String, Supplier<Integer>> items() {
+        Map<String, Supplier<Integer>> items = new LinkedHashMap<>();
+        items.put("chemicalCatalog", () -> {
+            List<Chemical> chemicals = chemicalService.listChemical();
+            Map<Object, Object> entries = new LinkedHashMap<>();
+            for (Chemical chemical : chemicals) {
+                entries.put(CanonicalKeyGenerator.canonical(chemical.getId()), chemical);
+            }
+            BatchCache.of(cacheManager.getCache(CacheNames.CHEMICAL)).putAll(entries);
+            // 目录列表一条，加上每个化学品一条
+            return chemicals.size() + 1;
+        });
+        items.put("inventorySnapshot", () -> {
+            List<Inventory> inventories = inventoryService.getInventoryList(null, null, null, null);
+            Map<Object, Object> entries = new LinkedHashMap<>();
+            for (Inventory inventory : inventories) {
+                entries.put(CanonicalKeyGenerator.canonical(inventory.getId()), inventory);
+            }
+            BatchCache.of(cacheManager.getCache(CacheNames.INVENTORY)).putAll(entries);
+            return inventories.size();
+        });
+        items.put("unhandledWarnings", () -> {
+            warningRecordService.getUnhandledWarningCount();
+            return 1;
+        });
+        items.put("todayStatistics", () -> {
+            usageRecordService.getTodayUsageCount();
+            usageRecordService.getMonthUsageCount();
+            usageRecordService.getActiveUsageCount();
+            usageRecordService.getDistinctUserCount();
+            return 4;
+        });
+        items.put("recordStatistics", () -> {
+            // 与入库、出库列表页的统计请求参数一致（不带筛选条件），预热的缓存key才能被命中
+            recordStatisticsService.getStatistics(RecordRollupMapper.TYPE_STORAGE, null, null, false);
+            recordStatisticsService.getStatistics(RecordRollupMapper.TYPE_OUTBOUND, null, null, true);
+            return 2;
+        });
+        return items;
+    }
+
+    private Map<String, Object> run(String name, Supplier<Integer> item) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        long start = System.nanoTime();
+        boolean leased;
+        try {
+            leased = keyValueStore.tryLease(LEASE_PREFIX + name, owner, timeoutMillis);
+        } catch (RuntimeException e) {
+            // 租约不可用时共享缓存多半也不可用，不做预热
+            result.put("status", "failed");
+            result.put("error", e.getMessage());
+            result.put("millis", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            return result;
+        }
+        if (!leased) {
+            // 其他节点正在预热该项，结果会写入共享的Redis缓存
+            result.put("status", "skipped");
+            result.put("millis", 0L);
+            return result;
+        }
+        try {
+            int entries = item.get();
+            result.put("status", "ok");
+            result.put("entries", entries);
+        } catch (RuntimeException e) {
+            log.warn("缓存预热失败: item={}", name, e);
+            result.put("status", "failed");
+            result.put("error", e.getMessage());
+        } finally {
+            keyValueStore.releaseLease(LEASE_PREFIX + name, owner);
+        }
+        result.put("millis", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return result;
+    }
+
+    private void finish(long start, Map<String, CompletableFuture<Map<String, Object>>> futures) {
+        Map<String, Object> items = new LinkedHashMap<>();
+        futures.forEach((name, future) -> {
+            if (future.isDone() && !future.isCompletedExceptionally()) {
+                items.put(name, future.join());
+            } else {
+                Map<String, Object> timeout = new LinkedHashMap<>();
+                timeout.put("status", "timeout");
+                items.put(name, timeout);
+            }
+        });
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("totalMillis", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        result.put("items", items);
+        report = result;
+        ready = true;
+        log.info("缓存预热完成，开始接收请求: {}", result);
+    }
+}
@@ -0,0 +1,70 @@
+package com.vueones.cache;
+
+import org.springframework.cache.interceptor.KeyGenerator;
+
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.Date;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.TreeMap;
+
+/**
+ * 规范化缓存key生成器，作为全部缓存注解的默认key
+ * 参数按顺序以 _ 连接：null写作null，日期取毫秒时间戳，Map按键排序展开，集合按元素顺序展开；
+ * 无参数的方法使用 all。同样的查询条件无论从哪个方法进入都得到同一个key
+ */
+public class CanonicalKeyGenerator implements KeyGenerator {
+
+    private static final String NO_PARAMS = "all";
+
+    @Override
+    public Object generate(Object target, Method method, Object... params) {
+        return canonicalKey(params);
+    }
+
+    /**
+     * 一组参数的规范化key，与注解默认生成的key一致，供以表达式组合key时使用
+     * @param params 方法参数
+     * @return 规范化key
+     */
+    public static String canonicalKey(Object... params) {
+        if (params.length == 0) {
+            return NO_PARAMS;
+        }
+        StringJoiner key = new StringJoiner("_");
+        for (Object param : params) {
+            key.add(canonical(param));
+        }
+        return key.toString();
+    }
+
+    /**
+     * 单个值的规范化形式，@CacheEvict等注解中以表达式指定key时与此保持一致
+     * @param value 参数值
+     * @return 规范化字符串
+     */
+    public static String canonical(Object value) {
+        if (value == null) {
+            return "null";
+        }
+        if (value instanceof Date date) {
+            return String.valueOf(date.getTime());
+        }
+        if (value instanceof Map<?, ?> map) {
+            StringJoiner joiner = new StringJoiner(",", "{", "}");
+            Map<String, String> sorted = new TreeMap<>();
+            map.forEach((k, v) -> sorted.put(String.valueOf(k), canonical(v)));
+            sorted.forEach((k, v) -> joiner.add(k + "=" + v));
+            return joiner.toString();
+        }
+        if (value instanceof Collection<?> collection) {
+            StringJoiner joiner = new StringJoiner(",", "[", "]");
+            for (Object item : collection) {
+                joiner.add(canonical(item));
+            }
+            return joiner.toString();
+        }
+        return value.toString();
+    }
+}
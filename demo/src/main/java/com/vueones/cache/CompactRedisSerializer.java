@@ -0,0 +1,435 @@
+package com.vueones.cache;
+
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Redis值的紧凑二进制编码
+ * 格式：魔数、格式版本、标志位，随后是带类型标记的值；已登记结构的实体只写类型编号和按序排列的字段值，
+ * 不写类名和字段名，整数与日期用变长编码。编码结果超过压缩阈值时整体再做一次Deflate压缩（仅在确实变小时采用）。
+ * 未登记的类型交给备用的JSON序列化器编码后嵌入；读取时不以魔数开头的数据（旧的JSON缓存值、INCR写入的计数）
+ * 同样交给备用序列化器，因此切换编码不需要清空Redis
+ */
+public class CompactRedisSerializer implements RedisSerializer<Object> {
+
+    private static final byte MAGIC = (byte) 0xC7;
+    private static final byte FORMAT_VERSION = 1;
+    private static final int FLAG_DEFLATED = 1;
+    private static final int HEADER_LENGTH = 3;
+
+    private static final int TAG_NULL = 0;
+    private static final int TAG_TRUE = 1;
+    private static final int TAG_FALSE = 2;
+    private static final int TAG_INT = 3;
+    private static final int TAG_LONG = 4;
+    private static final int TAG_DOUBLE = 5;
+    private static final int TAG_STRING = 6;
+    private static final int TAG_DATE = 7;
+    private static final int TAG_LIST = 8;
+    private static final int TAG_MAP = 9;
+    private static final int TAG_ENTITY = 10;
+    private static final int TAG_JSON = 11;
+
+    /** 嵌套层数上限，防止实体间的循环引用导致栈溢出 */
+    private static final int MAX_DEPTH = 32;
+
+    private final RedisSerializer<Object> fallback;
+    private final int compressThreshold;
+    private final Map<Class<?>, EntitySchema<?>> schemasByType = new HashMap<>();
+    private final Map<Integer, EntitySchema<?>> schemasById = new HashMap<>();
+
+    /**
+     * @param fallback 备用JSON序列化器
+     * @param schemas 实体编码结构
+     * @param compressThreshold 编码后超过该字节数时压缩，小于等于0表示不压缩
+     */
+    public CompactRedisSerializer(RedisSerializer<Object> fallback, List<EntitySchema<?>> schemas, int compressThreshold) {
+        this.fallback = fallback;
+        this.compressThreshold = compressThreshold;
+        for (EntitySchema<?> schema : schemas) {
+            if (schemasById.put(schema.getTypeId(), schema) != null) {
+                throw new IllegalArgumentException("实体类型编号重复: " + schema.getTypeId());
+            }
+            schemasByType.put(schema.getType(), schema);
+        }
+    }
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        if (value == null) {
+            return new byte[0];
+        }
+        Output out = new Output(256);
+        out.writeByte(MAGIC);
+        out.writeByte(FORMAT_VERSION);
+        out.writeByte(0);
+        writeValue(out, value, 0);
+
+        int bodyLength = out.length - HEADER_LENGTH;
+        if (compressThreshold > 0 && bodyLength > compressThreshold) {
+            byte[] deflated = deflate(out.buffer, HEADER_LENGTH, bodyLength);
+            if (deflated != null) {
+                return deflated;
+            }
+        }
+        return out.toByteArray();
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        if (bytes[0] != MAGIC) {
+            return fallback.deserialize(bytes);
+        }
+        if (bytes.length < HEADER_LENGTH || bytes[1] != FORMAT_VERSION) {
+            throw new SerializationException("不支持的缓存编码版本: " + (bytes.length > 1 ? bytes[1] : -1));
+        }
+        Input in;
+        if ((bytes[2] & FLAG_DEFLATED) != 0) {
+            Input header = new Input(bytes, HEADER_LENGTH);
+            int length = header.readVarInt();
+            in = new Input(inflate(bytes, header.position, length), 0);
+        } else {
+            in = new Input(bytes, HEADER_LENGTH);
+        }
+        return readValue(in, 0);
+    }
+
+    private void writeValue(Output out, Object value, int depth) {
+        if (depth > MAX_DEPTH) {
+            throw new SerializationException("缓存值嵌套过深，可能存在循环引用: " + value.getClass().getName());
+        }
+        if (value == null) {
+            out.writeByte(TAG_NULL);
+        } else if (value instanceof Boolean) {
+            out.writeByte((Boolean) value ? TAG_TRUE : TAG_FALSE);
+        } else if (value instanceof Integer) {
+            out.writeByte(TAG_INT);
+            out.writeVarLong(zigZag((Integer) value));
+        } else if (value instanceof Long) {
+            out.writeByte(TAG_LONG);
+            out.writeVarLong(zigZag((Long) value));
+        } else if (value instanceof Double) {
+            out.writeByte(TAG_DOUBLE);
+            out.writeLong(Double.doubleToLongBits((Double) value));
+        } else if (value instanceof String) {
+            out.writeByte(TAG_STRING);
+            out.writeString((String) value);
+        } else if (value.getClass() == Date.class) {
+            out.writeByte(TAG_DATE);
+            out.writeVarLong(zigZag(((Date) value).getTime()));
+        } else if (value instanceof List) {
+            List<?> list = (List<?>) value;
+            out.writeByte(TAG_LIST);
+            out.writeVarInt(list.size());
+            for (Object element : list) {
+                writeValue(out, element, depth + 1);
+            }
+        } else if (value instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) value;
+            out.writeByte(TAG_MAP);
+            out.writeVarInt(map.size());
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                writeValue(out, entry.getKey(), depth + 1);
+                writeValue(out, entry.getValue(), depth + 1);
+            }
+        } else {
+            EntitySchema<?> schema = schemasByType.get(value.getClass());
+            if (schema != null) {
+                writeEntity(out, schema, value, depth);
+            } else {
+                byte[] json = fallback.serialize(value);
+                out.writeByte(TAG_JSON);
+                out.writeVarInt(json.length);
+                out.writeBytes(json, 0, json.length);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> void writeEntity(Output out, EntitySchema<T> schema, Object value, int depth) {
+        T entity = (T) value;
+        List<EntitySchema.Field<T>> fields = schema.fields();
+        out.writeByte(TAG_ENTITY);
+        out.writeVarInt(schema.getTypeId());
+        out.writeVarInt(fields.size());
+        for (EntitySchema.Field<T> field : fields) {
+            writeValue(out, field.getter.apply(entity), depth + 1);
+        }
+    }
+
+    private Object readValue(Input in, int depth) {
+        if (depth > MAX_DEPTH) {
+            throw new SerializationException("缓存值嵌套过深");
+        }
+        int tag = in.readByte();
+        switch (tag) {
+            case TAG_NULL:
+                return null;
+            case TAG_TRUE:
+                return Boolean.TRUE;
+            case TAG_FALSE:
+                return Boolean.FALSE;
+            case TAG_INT:
+                return (int) unZigZag(in.readVarLong());
+            case TAG_LONG:
+                return unZigZag(in.readVarLong());
+            case TAG_DOUBLE:
+                return Double.longBitsToDouble(in.readLong());
+            case TAG_STRING:
+                return in.readString();
+            case TAG_DATE:
+                return new Date(unZigZag(in.readVarLong()));
+            case TAG_LIST: {
+                int size = in.readVarInt();
+                List<Object> list = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    list.add(readValue(in, depth + 1));
+                }
+                return list;
+            }
+            case TAG_MAP: {
+                int size = in.readVarInt();
+                Map<Object, Object> map = new LinkedHashMap<>(size * 4 / 3 + 1);
+                for (int i = 0; i < size; i++) {
+                    Object key = readValue(in, depth + 1);
+                    map.put(key, readValue(in, depth + 1));
+                }
+                return map;
+            }
+            case TAG_ENTITY:
+                return readEntity(in, depth);
+            case TAG_JSON: {
+                int length = in.readVarInt();
+                return fallback.deserialize(in.readBytes(length));
+            }
+            default:
+                throw new SerializationException("未知的缓存值类型标记: " + tag);
+        }
+    }
+
+    private Object readEntity(Input in, int depth) {
+        int typeId = in.readVarInt();
+        EntitySchema<?> schema = schemasById.get(typeId);
+        if (schema == null) {
+            throw new SerializationException("未登记的缓存实体类型编号: " + typeId);
+        }
+        return readFields(in, schema, depth);
+    }
+
+    private <T> T readFields(Input in, EntitySchema<T> schema, int depth) {
+        T entity = schema.newInstance();
+        List<EntitySchema.Field<T>> fields = schema.fields();
+        int count = in.readVarInt();
+        for (int i = 0; i < count; i++) {
+            Object value = readValue(in, depth + 1);
+            // 较新版本写入的多余字段读出后丢弃
+            if (i < fields.size() && value != null) {
+                try {
+                    fields.get(i).setter.accept(entity, value);
+                } catch (ClassCastException e) {
+                    throw new SerializationException("缓存实体字段类型不匹配: " + schema.getType().getSimpleName()
+                            + "[" + i + "]", e);
+                }
+            }
+        }
+        return entity;
+    }
+
+    private static byte[] deflate(byte[] buffer, int offset, int length) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED, true);
+        try {
+            deflater.setInput(buffer, offset, length);
+            deflater.finish();
+            Output out = new Output(length / 2 + 16);
+            out.writeByte(MAGIC);
+            out.writeByte(FORMAT_VERSION);
+            out.writeByte(FLAG_DEFLATED);
+            out.writeVarInt(length);
+            while (!deflater.finished()) {
+                out.ensureCapacity(512);
+                out.length += deflater.deflate(out.buffer, out.length, out.buffer.length - out.length);
+                if (out.length >= length + HEADER_LENGTH) {
+                    // 压缩后不比原始数据小，放弃压缩
+                    return null;
+                }
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] bytes, int offset, int length) {
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(bytes, offset, bytes.length - offset);
+            byte[] result = new byte[length];
+            int read = 0;
+            while (read < length) {
+                int n = inflater.inflate(result, read, length - read);
+                if (n == 0 && (inflater.finished() || inflater.needsInput())) {
+                    break;
+                }
+                read += n;
+            }
+            if (read != length) {
+                throw new SerializationException("缓存值解压后长度不符: expected=" + length + ", actual=" + read);
+            }
+            return result;
+        } catch (DataFormatException e) {
+            throw new SerializationException("缓存值解压失败", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * 可增长的字节缓冲，不做同步
+     */
+    private static final class Output {
+        byte[] buffer;
+        int length;
+
+        Output(int capacity) {
+            this.buffer = new byte[capacity];
+        }
+
+        void ensureCapacity(int extra) {
+            if (length + extra > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + extra));
+            }
+        }
+
+        void writeByte(int value) {
+            ensureCapacity(1);
+            buffer[length++] = (byte) value;
+        }
+
+        void writeBytes(byte[] bytes, int offset, int count) {
+            ensureCapacity(count);
+            System.arraycopy(bytes, offset, buffer, length, count);
+            length += count;
+        }
+
+        void writeVarInt(int value) {
+            writeVarLong(value & 0xFFFFFFFFL);
+        }
+
+        void writeVarLong(long value) {
+            ensureCapacity(10);
+            while ((value & ~0x7FL) != 0) {
+                buffer[length++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[length++] = (byte) value;
+        }
+
+        void writeLong(long value) {
+            ensureCapacity(8);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                buffer[length++] = (byte) (value >>> shift);
+            }
+        }
+
+        void writeString(String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(bytes.length);
+            writeBytes(bytes, 0, bytes.length);
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, length);
+        }
+    }
+
+    /**
+     * 字节数组上的顺序读取
+     */
+    private static final class Input {
+        final byte[] bytes;
+        int position;
+
+        Input(byte[] bytes, int position) {
+            this.bytes = bytes;
+            this.position = position;
+        }
+
+        private void require(int count) {
+            if (position + count > bytes.length) {
+                throw new SerializationException("缓存值数据不完整");
+            }
+        }
+
+        int readByte() {
+            require(1);
+            return bytes[position++] & 0xFF;
+        }
+
+        byte[] readBytes(int count) {
+            require(count);
+            byte[] result = Arrays.copyOfRange(bytes, position, position + count);
+            position += count;
+            return result;
+        }
+
+        int readVarInt() {
+            long value = readVarLong();
+            if (value > Integer.MAX_VALUE) {
+                throw new SerializationException("缓存值长度字段越界: " + value);
+            }
+            return (int) value;
+        }
+
+        long readVarLong() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new SerializationException("变长整数格式错误");
+        }
+
+        long readLong() {
+            require(8);
+            long value = 0;
+            for (int i = 0; i < 8; i++) {
+                value = (value << 8) | (bytes[position++] & 0xFF);
+            }
+            return value;
+        }
+
+        String readString() {
+            int length = readVarInt();
+            require(length);
+            String value = new String(bytes, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+    }
+}
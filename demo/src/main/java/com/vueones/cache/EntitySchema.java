@@ -0,0 +1,95 @@
+package com.vueones.cache;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 实体在紧凑编码中的结构描述：类型编号加按顺序排列的字段
+ * 编码时只写字段值不写字段名；字段只能在末尾追加，不能删除或调整顺序，
+ * 这样新旧版本互相读取时，多出的字段被跳过，缺少的字段保持默认值
+ * @param <T> 实体类型
+ */
+public final class EntitySchema<T> {
+
+    /**
+     * 单个字段的读写方法
+     */
+    static final class Field<T> {
+        final Function<T, ?> getter;
+        final BiConsumer<T, Object> setter;
+
+        Field(Function<T, ?> getter, BiConsumer<T, Object> setter) {
+            this.getter = getter;
+            this.setter = setter;
+        }
+    }
+
+    private final int typeId;
+    private final Class<T> type;
+    private final Supplier<T> factory;
+    private final List<Field<T>> fields;
+
+    private EntitySchema(int typeId, Class<T> type, Supplier<T> factory, List<Field<T>> fields) {
+        this.typeId = typeId;
+        this.type = type;
+        this.factory = factory;
+        this.fields = Collections.unmodifiableList(fields);
+    }
+
+    /**
+     * @param typeId 类型编号，写入缓存值，一经使用不可修改或复用
+     * @param type 实体类
+     * @param factory 无参构造
+     */
+    public static <T> Builder<T> builder(int typeId, Class<T> type, Supplier<T> factory) {
+        return new Builder<>(typeId, type, factory);
+    }
+
+    public int getTypeId() {
+        return typeId;
+    }
+
+    public Class<T> getType() {
+        return type;
+    }
+
+    T newInstance() {
+        return factory.get();
+    }
+
+    List<Field<T>> fields() {
+        return fields;
+    }
+
+    public static final class Builder<T> {
+        private final int typeId;
+        private final Class<T> type;
+        private final Supplier<T> factory;
+        private final List<Field<T>> fields = new ArrayList<>();
+
+        private Builder(int typeId, Class<T> type, Supplier<T> factory) {
+            this.typeId = typeId;
+            this.type = type;
+            this.factory = factory;
+        }
+
+        /**
+         * 追加一个字段
+         * @param valueType 字段类型，读取时按此类型校验
+         * @param getter 读取方法
+         * @param setter 写入方法
+         */
+        public <V> Builder<T> field(Class<V> valueType, Function<T, V> getter, BiConsumer<T, V> setter) {
+            fields.add(new Field<>(getter, (entity, value) -> setter.accept(entity, valueType.cast(value))));
+            return this;
+        }
+
+        public EntitySchema<T> build() {
+            return new EntitySchema<>(typeId, type, factory, new ArrayList<>(fields));
+        }
+    }
+}
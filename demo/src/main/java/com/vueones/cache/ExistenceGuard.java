@@ -0,0 +1,270 @@
+package com.vueones.cache;
+
+import com.vueones.mapper.ChemicalMapper;
+import com.vueones.mapper.InventoryMapper;
+import com.vueones.mapper.StorageRecordMapper;
+import com.vueones.mapper.UsageRecordMapper;
+import com.vueones.util.IntBloomFilter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 按ID查询的存在性防护
+ * 每种实体在本节点维护一个ID布隆过滤器，启动时与定时全量重建、新增时加入；过滤器判定不存在的ID直接返回null，
+ * 不访问Redis与数据库。其余未命中由数据库确认后写入短TTL的否定缓存（entityMissing），新增时在提交后清除。
+ * 过滤器只对判定水位及以下的ID作出判定：其他节点此后新增的ID都大于该值，照常走否定缓存与数据库，
+ * 因此不需要跨节点同步过滤器。自增ID先分配后提交，重建查询时尚未提交的事务可能写入低于本次最大ID的ID，
+ * 所以判定水位取上一次重建时的最大ID（间隔一个重建周期，这些事务早已提交），首次重建时取最大ID减去宽限ID数；
+ * 重建期间本节点的新增在查询结束后补入新过滤器
+ */
+@Component
+public class ExistenceGuard {
+
+    private static final Logger log = LoggerFactory.getLogger(ExistenceGuard.class);
+
+    /** 过滤器按重建时ID数的倍数预留容量，容纳到下一次重建前的新增 */
+    private static final int CAPACITY_FACTOR = 2;
+    private static final int MIN_CAPACITY = 1024;
+
+    @Value("${app.cache.existence.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.cache.existence.false-positive-rate:0.01}")
+    private double falsePositiveRate;
+
+    /** 首次重建时判定水位低于最大ID的宽限ID数 */
+    @Value("${app.cache.existence.grace-ids:1000}")
+    private int graceIds;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private ChemicalMapper chemicalMapper;
+
+    @Autowired
+    private InventoryMapper inventoryMapper;
+
+    @Autowired
+    private StorageRecordMapper storageRecordMapper;
+
+    @Autowired
+    private UsageRecordMapper usageRecordMapper;
+
+    private final Map<String, Guard> guards = new LinkedHashMap<>();
+
+    public ExistenceGuard() {
+        guards.put(CacheNames.CHEMICAL, new Guard(() -> chemicalMapper.selectAllIds()));
+        guards.put(CacheNames.INVENTORY, new Guard(() -> inventoryMapper.selectAllIds()));
+        guards.put(CacheNames.STORAGE_RECORD, new Guard(() -> storageRecordMapper.selectAllIds()));
+        guards.put(CacheNames.USAGE_RECORD, new Guard(() -> usageRecordMapper.selectAllIds()));
+    }
+
+    /**
+     * 带存在性防护的按ID加载，在 @Cacheable 方法体内包住数据库查询
+     * @param type 实体类型，取该实体的缓存名
+     * @param id ID
+     * @param loader 数据库查询
+     * @return 实体，不存在时为null
+     */
+    public <T> T load(String type, Integer id, Supplier<T> loader) {
+        Guard guard = guards.get(type);
+        if (!enabled || guard == null || id == null) {
+            return loader.get();
+        }
+        if (!guard.mightExist(id)) {
+            guard.rejected.increment();
+            return null;
+        }
+        Cache missing = cacheManager.getCache(CacheNames.ENTITY_MISSING);
+        String key = missingKey(type, id);
+        if (missing.get(key) != null) {
+            guard.negativeHits.increment();
+            return null;
+        }
+        T value = loader.get();
+        if (value == null) {
+            guard.negativeStores.increment();
+            missing.put(key, Boolean.TRUE);
+        }
+        return value;
+    }
+
+    /**
+     * 新增后登记ID：加入过滤器，并清除其否定缓存（存在事务时在提交后清除）
+     * @param type 实体类型
+     * @param id 新增的ID，为null时忽略
+     */
+    public void added(String type, Integer id) {
+        if (id != null) {
+            added(type, List.of(id));
+        }
+    }
+
+    /**
+     * 批量新增后登记ID
+     * @param type 实体类型
+     * @param ids 新增的ID，null元素被忽略
+     */
+    public void added(String type, Collection<Integer> ids) {
+        Guard guard = guards.get(type);
+        if (!enabled || guard == null) {
+            return;
+        }
+        List<String> keys = new ArrayList<>();
+        for (Integer id : ids) {
+            if (id != null) {
+                guard.put(id);
+                keys.add(missingKey(type, id));
+            }
+        }
+        if (!keys.isEmpty()) {
+            BatchCache.of(cacheManager.getCache(CacheNames.ENTITY_MISSING)).evictAll(keys);
+        }
+    }
+
+    /**
+     * 从数据库全量重建全部过滤器，启动时调用一次，之后按间隔执行；某个实体重建失败时保留其旧过滤器
+     */
+    @Scheduled(fixedDelayString = "${app.cache.existence.rebuild-interval-ms:3600000}",
+            initialDelayString = "${app.cache.existence.rebuild-interval-ms:3600000}")
+    public synchronized void rebuild() {
+        if (!enabled) {
+            return;
+        }
+        guards.forEach((type, guard) -> {
+            long start = System.currentTimeMillis();
+            try {
+                int size = guard.rebuild(falsePositiveRate, graceIds);
+                log.info("存在性过滤器重建完成: type={}, ids={}, millis={}", type, size, System.currentTimeMillis() - start);
+            } catch (RuntimeException e) {
+                log.warn("存在性过滤器重建失败: type={}", type, e);
+            }
+        });
+    }
+
+    /**
+     * 统计数据
+     * @return 每种实体的 ready、ids、watermark（判定水位）、maxId（重建时的最大ID）、bits、rejected（过滤器拦截）、negativeHits（否定缓存命中）、negativeStores
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        guards.forEach((type, guard) -> stats.put(type, guard.statistics()));
+        return stats;
+    }
+
+    private static String missingKey(String type, Integer id) {
+        return type + ":" + id;
+    }
+
+    /**
+     * 一种实体的过滤器
+     */
+    private static final class Guard {
+
+        private final Supplier<List<Integer>> allIds;
+        /** 过滤器与其水位一起替换，重建前为null，此时不作判定 */
+        private volatile Snapshot snapshot;
+        /** 重建期间的新增，查询结束后补入新过滤器 */
+        private List<Integer> pending;
+        private final LongAdder rejected = new LongAdder();
+        private final LongAdder negativeHits = new LongAdder();
+        private final LongAdder negativeStores = new LongAdder();
+
+        private Guard(Supplier<List<Integer>> allIds) {
+            this.allIds = allIds;
+        }
+
+        private boolean mightExist(int id) {
+            Snapshot current = snapshot;
+            return current == null || id > current.watermark || current.filter.mightContain(id);
+        }
+
+        private synchronized void put(int id) {
+            if (snapshot != null) {
+                snapshot.filter.put(id);
+            }
+            if (pending != null) {
+                pending.add(id);
+            }
+        }
+
+        private int rebuild(double falsePositiveRate, int graceIds) {
+            synchronized (this) {
+                pending = new ArrayList<>();
+            }
+            List<Integer> ids;
+            try {
+                ids = allIds.get();
+            } catch (RuntimeException e) {
+                synchronized (this) {
+                    pending = null;
+                }
+                throw e;
+            }
+            // 预留容量容纳到下一次重建前的新增
+            IntBloomFilter filter = new IntBloomFilter(Math.max(MIN_CAPACITY, ids.size() * CAPACITY_FACTOR), falsePositiveRate);
+            int maxId = 0;
+            for (Integer id : ids) {
+                if (id != null) {
+                    filter.put(id);
+                    maxId = Math.max(maxId, id);
+                }
+            }
+            synchronized (this) {
+                pending.forEach(filter::put);
+                pending = null;
+                Snapshot previous = snapshot;
+                int watermark = previous == null ? maxId - graceIds : Math.min(previous.maxId, maxId);
+                snapshot = new Snapshot(filter, Math.max(0, watermark), maxId, ids.size());
+            }
+            return ids.size();
+        }
+
+        private Map<String, Object> statistics() {
+            Snapshot current = snapshot;
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("ready", current != null);
+            stats.put("ids", current == null ? 0 : current.size);
+            stats.put("watermark", current == null ? 0 : current.watermark);
+            stats.put("maxId", current == null ? 0 : current.maxId);
+            stats.put("bits", current == null ? 0L : current.filter.bitSize());
+            stats.put("rejected", rejected.sum());
+            stats.put("negativeHits", negativeHits.sum());
+            stats.put("negativeStores", negativeStores.sum());
+            return stats;
+        }
+    }
+
+    private static final class Snapshot {
+
+        private final IntBloomFilter filter;
+        /** 判定水位，更大的ID不作判定 */
+        private final int watermark;
+        /** 重建时读到的最大ID，作为下一次重建的判定水位 */
+        private final int maxId;
+        private final int size;
+
+        private Snapshot(IntBloomFilter filter, int watermark, int maxId, int size) {
+            this.filter = filter;
+            this.watermark = watermark;
+            this.maxId = maxId;
+            this.size = size;
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package com.vueones.cache;
+
+import com.vueones.util.Histogram;
+import org.springframework.cache.Cache;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 带命中率与读取耗时统计的缓存，位于缓存链最外层
+ */
+public class InstrumentedCache implements BatchCache {
+
+    private final BatchCache delegate;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder puts = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    /** 读取耗时（微秒），包括未命中时的加载 */
+    private final Histogram getLatencyMicros = new Histogram(
+            1, 5, 10, 50, 100, 250, 500, 1000, 2500, 5000, 10000, 50000);
+    /**
+     * 未命中时加载（查询数据库）的耗时（微秒）。sync = true 的注解与直接调用 get(key, loader) 时计时加载函数；
+     * 其余 @Cacheable 先 get 未命中、执行方法后在同一线程 put 同一个key，以两者间隔计
+     */
+    private final Histogram loadMicros = new Histogram(
+            100, 500, 1000, 2500, 5000, 10000, 25000, 50000, 100000, 250000, 1000000, 5000000);
+    /** 当前线程最近一次未命中的key与时间，用于计算非sync注解的加载耗时 */
+    private final ThreadLocal<PendingLoad> pendingLoad = new ThreadLocal<>();
+
+    public InstrumentedCache(Cache delegate) {
+        this.delegate = BatchCache.of(delegate);
+    }
+
+    /**
+     * 统计数据
+     * @return hits、misses、hitRate、puts、evictions、getLatencyMicros、loadMicros
+     */
+    public Map<String, Object> getStatistics() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRate", hitCount + missCount == 0 ? 0D : (double) hitCount / (hitCount + missCount));
+        stats.put("puts", puts.sum());
+        stats.put("evictions", evictions.sum());
+        stats.put("getLatencyMicros", getLatencyMicros.snapshot());
+        stats.put("loadMicros", loadMicros.snapshot());
+        return stats;
+    }
+
+    @Override
+    public String getName() {
+        return delegate.getName();
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return delegate.getNativeCache();
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        long start = System.nanoTime();
+        ValueWrapper wrapper = delegate.get(key);
+        record(start, wrapper != null);
+        if (wrapper == null) {
+            pendingLoad.set(new PendingLoad(key, System.nanoTime()));
+        }
+        return wrapper;
+    }
+
+    @Override
+    public <T> T get(Object key, Class<T> type) {
+        long start = System.nanoTime();
+        T value = delegate.get(key, type);
+        record(start, value != null);
+        return value;
+    }
+
+    @Override
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        long start = System.nanoTime();
+        boolean[] loaded = new boolean[1];
+        T value = delegate.get(key, () -> {
+            loaded[0] = true;
+            long loadStart = System.nanoTime();
+            try {
+                return valueLoader.call();
+            } finally {
+                loadMicros.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - loadStart));
+            }
+        });
+        record(start, !loaded[0]);
+        return value;
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        puts.increment();
+        PendingLoad pending = pendingLoad.get();
+        if (pending != null) {
+            pendingLoad.remove();
+            if (pending.key.equals(key)) {
+                loadMicros.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - pending.missedAt));
+            }
+        }
+        delegate.put(key, value);
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(Object key, Object value) {
+        puts.increment();
+        return delegate.putIfAbsent(key, value);
+    }
+
+    @Override
+    public void evict(Object key) {
+        evictions.increment();
+        delegate.evict(key);
+    }
+
+    @Override
+    public boolean evictIfPresent(Object key) {
+        evictions.increment();
+        return delegate.evictIfPresent(key);
+    }
+
+    @Override
+    public void clear() {
+        evictions.increment();
+        delegate.clear();
+    }
+
+    @Override
+    public boolean invalidate() {
+        evictions.increment();
+        return delegate.invalidate();
+    }
+
+    @Override
+    public Map<Object, Object> getAll(Collection<?> keys) {
+        long start = System.nanoTime();
+        Map<Object, Object> result = delegate.getAll(keys);
+        getLatencyMicros.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+        hits.add(result.size());
+        misses.add(keys.size() - result.size());
+        return result;
+    }
+
+    @Override
+    public void putAll(Map<?, ?> entries) {
+        puts.add(entries.size());
+        delegate.putAll(entries);
+    }
+
+    @Override
+    public void evictAll(Collection<?> keys) {
+        evictions.add(keys.size());
+        delegate.evictAll(keys);
+    }
+
+    private void record(long start, boolean hit) {
+        getLatencyMicros.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+        pendingLoad.remove();
+        if (hit) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+    }
+
+    private static final class PendingLoad {
+        final Object key;
+        final long missedAt;
+
+        PendingLoad(Object key, long missedAt) {
+            this.key = key;
+            this.missedAt = missedAt;
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.vueones.cache;
+
+import org.springframework.cache.support.AbstractValueAdaptingCache;
+import org.springframework.cache.support.SimpleValueWrapper;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+/**
+ * 进程内缓存，app.cache.backend=local 时代替Redis缓存
+ * 条目存放在共享的LocalCacheStore中，key为 缓存名::key，与Redis中的key一致；值以与Redis相同的序列化器编码，
+ * 超过单条大小预算的值不写入，写入大小与key记入CacheMetrics。与Redis缓存一样不缓存null
+ */
+public class LocalCache extends AbstractValueAdaptingCache implements BatchCache {
+
+    private final String name;
+    private final LocalCacheStore store;
+    private final RedisSerializer<Object> serializer;
+    private final Duration ttl;
+    private final int maxEntryBytes;
+    private final CacheMetrics metrics;
+
+    /**
+     * @param name 缓存名
+     * @param store 共享存储
+     * @param serializer 值序列化器
+     * @param ttl 过期时间，为0表示不过期
+     * @param maxEntryBytes 单条缓存值的序列化大小上限（字节）
+     * @param metrics 写入大小与key基数的统计
+     */
+    public LocalCache(String name, LocalCacheStore store, RedisSerializer<Object> serializer, Duration ttl,
+            int maxEntryBytes, CacheMetrics metrics) {
+        super(false);
+        this.name = name;
+        this.store = store;
+        this.serializer = serializer;
+        this.ttl = ttl;
+        this.maxEntryBytes = maxEntryBytes;
+        this.metrics = metrics;
+    }
+
+    /**
+     * 过期时间
+     */
+    public Duration getTtl() {
+        return ttl;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return store;
+    }
+
+    @Override
+    protected Object lookup(Object key) {
+        byte[] value = store.get(storeKey(key));
+        return value == null ? null : serializer.deserialize(value);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public synchronized <T> T get(Object key, Callable<T> valueLoader) {
+        ValueWrapper wrapper = get(key);
+        if (wrapper != null) {
+            return (T) wrapper.get();
+        }
+        T value;
+        try {
+            value = valueLoader.call();
+        } catch (Exception e) {
+            throw new ValueRetrievalException(key, valueLoader, e);
+        }
+        put(key, value);
+        return value;
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        byte[] bytes = encode(key, value);
+        if (bytes != null) {
+            store.put(storeKey(key), bytes, ttl.toNanos());
+        }
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(Object key, Object value) {
+        byte[] bytes = encode(key, value);
+        if (bytes == null) {
+            return get(key);
+        }
+        byte[] existing = store.putIfAbsent(storeKey(key), bytes, ttl.toNanos());
+        return existing == null ? null : new SimpleValueWrapper(serializer.deserialize(existing));
+    }
+
+    @Override
+    public void evict(Object key) {
+        store.remove(storeKey(key));
+    }
+
+    @Override
+    public boolean evictIfPresent(Object key) {
+        return store.remove(storeKey(key));
+    }
+
+    @Override
+    public void clear() {
+        String prefix = name + "::";
+        store.removeIf(key -> key.startsWith(prefix));
+    }
+
+    @Override
+    public boolean invalidate() {
+        clear();
+        return true;
+    }
+
+    @Override
+    public Map<Object, Object> getAll(Collection<?> keys) {
+        Map<Object, Object> result = new LinkedHashMap<>();
+        for (Object key : keys) {
+            Object value = lookup(key);
+            if (value != null) {
+                result.put(key, value);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 编码缓存值，null或超过大小预算时返回null（并移除旧值，与Redis缓存的预算处理一致）
+     */
+    private byte[] encode(Object key, Object value) {
+        if (value == null) {
+            return null;
+        }
+        byte[] bytes = serializer.serialize(value);
+        if (bytes == null) {
+            evict(key);
+            return null;
+        }
+        if (bytes.length > maxEntryBytes) {
+            metrics.recordOversized(name, bytes.length);
+            evict(key);
+            return null;
+        }
+        metrics.recordWrite(name, storeKey(key).getBytes(StandardCharsets.UTF_8), bytes.length);
+        return bytes;
+    }
+
+    private String storeKey(Object key) {
+        return name + "::" + key;
+    }
+}
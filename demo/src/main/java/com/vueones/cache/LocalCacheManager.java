@@ -0,0 +1,67 @@
+package com.vueones.cache;
+
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 进程内缓存管理器，app.cache.backend=local 时代替Redis缓存管理器
+ * 全部缓存共享一个LocalCacheStore与其内存预算，各缓存的TTL与单条大小预算和Redis缓存使用同样的配置
+ */
+public class LocalCacheManager implements CacheManager {
+
+    private final LocalCacheStore store;
+    private final RedisSerializer<Object> serializer;
+    private final Map<String, Duration> ttls;
+    private final Map<String, Integer> maxEntryBytes;
+    private final Duration defaultTtl;
+    private final int defaultMaxEntryBytes;
+    private final CacheMetrics metrics;
+
+    private final ConcurrentMap<String, LocalCache> caches = new ConcurrentHashMap<>();
+
+    /**
+     * @param store 共享存储
+     * @param serializer 值序列化器
+     * @param ttls 缓存名 -> 过期时间
+     * @param maxEntryBytes 缓存名 -> 单条大小预算
+     * @param defaultTtl 未配置的缓存的过期时间
+     * @param defaultMaxEntryBytes 未配置的缓存的单条大小预算
+     * @param metrics 写入大小与key基数的统计
+     */
+    public LocalCacheManager(LocalCacheStore store, RedisSerializer<Object> serializer, Map<String, Duration> ttls,
+            Map<String, Integer> maxEntryBytes, Duration defaultTtl, int defaultMaxEntryBytes, CacheMetrics metrics) {
+        this.store = store;
+        this.serializer = serializer;
+        this.ttls = ttls;
+        this.maxEntryBytes = maxEntryBytes;
+        this.defaultTtl = defaultTtl;
+        this.defaultMaxEntryBytes = defaultMaxEntryBytes;
+        this.metrics = metrics;
+    }
+
+    /**
+     * 共享存储，用于统计
+     */
+    public LocalCacheStore getStore() {
+        return store;
+    }
+
+    @Override
+    public Cache getCache(String name) {
+        return caches.computeIfAbsent(name, key -> new LocalCache(key, store, serializer,
+                ttls.getOrDefault(key, defaultTtl), maxEntryBytes.getOrDefault(key, defaultMaxEntryBytes), metrics));
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        return Collections.unmodifiableSet(caches.keySet());
+    }
+}
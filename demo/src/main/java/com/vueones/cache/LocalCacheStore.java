@@ -0,0 +1,393 @@
+package com.vueones.cache;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * 进程内缓存存储，app.cache.backend=local 时代替Redis
+ * 值为序列化后的字节（与写入Redis的字节相同），按字节数计入内存预算，读出时反序列化为新对象，调用方修改不影响缓存。
+ * 淘汰采用W-TinyLFU：新条目先进入占预算1%的窗口LRU，被挤出窗口后与主区（分段LRU：试用段20%、保护段80%）
+ * 试用段最久未访问的条目比较访问频率（Count-Min草图估计，定期减半衰减），频率更高者留下。
+ * 一次性扫描的大量新key留在窗口与试用段，不会冲掉反复访问的热点条目。每个条目有自己的过期时间，读取时检查
+ */
+public class LocalCacheStore {
+
+    /** 条目的固定开销估计（节点对象、HashMap条目、key字符串头部），计入内存预算 */
+    private static final int ENTRY_OVERHEAD = 96;
+    private static final int WINDOW = 0;
+    private static final int PROBATION = 1;
+    private static final int PROTECTED = 2;
+
+    private final long maxBytes;
+    private final long windowMaxBytes;
+    private final long protectedMaxBytes;
+    private final Map<String, Node> data = new HashMap<>();
+    private final Node[] heads = new Node[3];
+    private final Node[] tails = new Node[3];
+    private final long[] bytes = new long[3];
+    private final FrequencySketch sketch;
+    /** 容量淘汰时以被淘汰的key回调，用于按缓存统计淘汰次数 */
+    private volatile Consumer<String> evictionListener = key -> { };
+
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long rejections;
+    private long expirations;
+
+    /**
+     * @param maxBytes 内存预算（字节），按值的字节数加固定开销计算
+     */
+    public LocalCacheStore(long maxBytes) {
+        this.maxBytes = Math.max(1L, maxBytes);
+        this.windowMaxBytes = Math.max(1L, this.maxBytes / 100);
+        this.protectedMaxBytes = (this.maxBytes - windowMaxBytes) * 8 / 10;
+        // 草图宽度按平均每条约256字节估计的条目数
+        this.sketch = new FrequencySketch((int) Math.min(1L << 22, Math.max(1024L, this.maxBytes / 256)));
+    }
+
+    /**
+     * 设置容量淘汰回调，回调在存储的锁内执行，不应做耗时操作
+     * @param evictionListener 以被淘汰的key调用
+     */
+    public void setEvictionListener(Consumer<String> evictionListener) {
+        this.evictionListener = evictionListener;
+    }
+
+    /**
+     * 读取
+     * @param key 键
+     * @return 值，不存在或已过期时返回null
+     */
+    public synchronized byte[] get(String key) {
+        sketch.increment(key);
+        Node node = data.get(key);
+        if (node == null) {
+            misses++;
+            return null;
+        }
+        if (node.isExpired(System.nanoTime())) {
+            remove(node);
+            expirations++;
+            misses++;
+            return null;
+        }
+        hits++;
+        onAccess(node);
+        return node.value;
+    }
+
+    /**
+     * 写入，值超过预算时不写入（同时移除旧值）
+     * @param key 键
+     * @param value 值
+     * @param ttlNanos 存活时间（纳秒），小于等于0表示不过期
+     */
+    public synchronized void put(String key, byte[] value, long ttlNanos) {
+        long weight = weigh(key, value);
+        Node node = data.get(key);
+        if (weight > maxBytes) {
+            if (node != null) {
+                remove(node);
+            }
+            return;
+        }
+        sketch.increment(key);
+        long expireAt = ttlNanos > 0 ? System.nanoTime() + ttlNanos : 0L;
+        if (node != null) {
+            bytes[node.queue] += weight - node.weight;
+            node.value = value;
+            node.weight = weight;
+            node.expireAt = expireAt;
+            onAccess(node);
+        } else {
+            node = new Node(key, value, weight, expireAt);
+            data.put(key, node);
+            link(node, WINDOW);
+        }
+        evict();
+    }
+
+    /**
+     * 键不存在（或已过期）时写入
+     * @param key 键
+     * @param value 值
+     * @param ttlNanos 存活时间（纳秒），小于等于0表示不过期
+     * @return 已存在的值，不存在时返回null并写入
+     */
+    public synchronized byte[] putIfAbsent(String key, byte[] value, long ttlNanos) {
+        Node node = data.get(key);
+        if (node != null && !node.isExpired(System.nanoTime())) {
+            onAccess(node);
+            return node.value;
+        }
+        put(key, value, ttlNanos);
+        return null;
+    }
+
+    /**
+     * 设置过期时间
+     * @param key 键
+     * @param ttlNanos 存活时间（纳秒），小于等于0表示不过期
+     * @return 键是否存在
+     */
+    public synchronized boolean expire(String key, long ttlNanos) {
+        Node node = data.get(key);
+        if (node == null || node.isExpired(System.nanoTime())) {
+            return false;
+        }
+        node.expireAt = ttlNanos > 0 ? System.nanoTime() + ttlNanos : 0L;
+        return true;
+    }
+
+    /**
+     * 删除
+     * @param key 键
+     * @return 是否删除了未过期的条目
+     */
+    public synchronized boolean remove(String key) {
+        Node node = data.get(key);
+        if (node == null) {
+            return false;
+        }
+        remove(node);
+        return !node.isExpired(System.nanoTime());
+    }
+
+    /**
+     * 删除满足条件的全部键，遍历全部条目，只用于整体清空等低频操作
+     * @param filter 键的条件
+     * @return 删除的条目数
+     */
+    public synchronized long removeIf(Predicate<String> filter) {
+        List<Node> matched = new ArrayList<>();
+        for (Node node : data.values()) {
+            if (filter.test(node.key)) {
+                matched.add(node);
+            }
+        }
+        matched.forEach(this::remove);
+        return matched.size();
+    }
+
+    /**
+     * 统计数据
+     * @return entries、bytes、maxBytes、各区字节数、hits、misses、hitRate、evictions、
+     *         rejections（新条目因频率低于主区条目被拒绝的次数）、expirations
+     */
+    public synchronized Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("entries", data.size());
+        stats.put("bytes", bytes[WINDOW] + bytes[PROBATION] + bytes[PROTECTED]);
+        stats.put("maxBytes", maxBytes);
+        stats.put("windowBytes", bytes[WINDOW]);
+        stats.put("probationBytes", bytes[PROBATION]);
+        stats.put("protectedBytes", bytes[PROTECTED]);
+        stats.put("hits", hits);
+        stats.put("misses", misses);
+        stats.put("hitRate", hits + misses == 0 ? 0D : (double) hits / (hits + misses));
+        stats.put("evictions", evictions);
+        stats.put("rejections", rejections);
+        stats.put("expirations", expirations);
+        return stats;
+    }
+
+    private void onAccess(Node node) {
+        if (node.queue == PROBATION) {
+            // 试用段再次被访问：晋升到保护段，保护段超出份额时最久未访问的降回试用段
+            unlink(node);
+            link(node, PROTECTED);
+            while (bytes[PROTECTED] > protectedMaxBytes && heads[PROTECTED] != node) {
+                Node demoted = heads[PROTECTED];
+                unlink(demoted);
+                link(demoted, PROBATION);
+            }
+        } else {
+            unlink(node);
+            link(node, node.queue);
+        }
+    }
+
+    private void evict() {
+        // 挤出窗口的条目进入试用段尾部，作为准入候选
+        Node candidate = null;
+        while (bytes[WINDOW] > windowMaxBytes && heads[WINDOW] != null) {
+            Node moved = heads[WINDOW];
+            unlink(moved);
+            link(moved, PROBATION);
+            if (candidate == null) {
+                candidate = moved;
+            }
+        }
+        long now = System.nanoTime();
+        while (bytes[WINDOW] + bytes[PROBATION] + bytes[PROTECTED] > maxBytes) {
+            Node victim = heads[PROBATION] != null ? heads[PROBATION]
+                    : heads[PROTECTED] != null ? heads[PROTECTED] : heads[WINDOW];
+            if (candidate == null || victim == candidate || victim.queue != PROBATION || victim.isExpired(now)) {
+                if (victim == candidate) {
+                    candidate = candidate.next;
+                }
+                evict(victim);
+                continue;
+            }
+            if (candidate.isExpired(now) || sketch.frequency(candidate.key) <= sketch.frequency(victim.key)) {
+                // 候选者频率不高于主区条目：拒绝候选者
+                Node next = candidate.next;
+                evict(candidate);
+                if (!candidate.isExpired(now)) {
+                    rejections++;
+                }
+                candidate = next;
+            } else {
+                evict(victim);
+            }
+        }
+    }
+
+    private void evict(Node node) {
+        remove(node);
+        evictions++;
+        evictionListener.accept(node.key);
+    }
+
+    private void remove(Node node) {
+        unlink(node);
+        data.remove(node.key);
+    }
+
+    private void link(Node node, int queue) {
+        node.queue = queue;
+        node.prev = tails[queue];
+        node.next = null;
+        if (tails[queue] == null) {
+            heads[queue] = node;
+        } else {
+            tails[queue].next = node;
+        }
+        tails[queue] = node;
+        bytes[queue] += node.weight;
+    }
+
+    private void unlink(Node node) {
+        int queue = node.queue;
+        if (node.prev == null) {
+            heads[queue] = node.next;
+        } else {
+            node.prev.next = node.next;
+        }
+        if (node.next == null) {
+            tails[queue] = node.prev;
+        } else {
+            node.next.prev = node.prev;
+        }
+        node.prev = null;
+        node.next = null;
+        bytes[queue] -= node.weight;
+    }
+
+    private static long weigh(String key, byte[] value) {
+        return (long) value.length + key.length() * 2L + ENTRY_OVERHEAD;
+    }
+
+    private static final class Node {
+        final String key;
+        byte[] value;
+        long weight;
+        /** 过期时刻（System.nanoTime），0表示不过期 */
+        long expireAt;
+        int queue;
+        Node prev;
+        Node next;
+
+        Node(String key, byte[] value, long weight, long expireAt) {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+            this.expireAt = expireAt;
+        }
+
+        boolean isExpired(long now) {
+            return expireAt != 0 && expireAt - now <= 0;
+        }
+    }
+
+    /**
+     * 4行Count-Min草图，每个计数器4位（上限15）；累计增加次数达到宽度的10倍时全部减半，
+     * 使频率反映近期访问而不是历史总数
+     */
+    private static final class FrequencySketch {
+
+        private static final long[] SEEDS = {
+                0x97CB3127E6A1D48BL, 0xB492B66FBE98F273L, 0x9AE16A3B2F90404FL, 0xCBF29CE484222325L};
+        private static final long RESET_MASK = 0x7777777777777777L;
+
+        /** 每个long容纳16个4位计数器 */
+        private final long[] table;
+        private final int tableMask;
+        private final int sampleSize;
+        private int additions;
+
+        FrequencySketch(int width) {
+            int size = Integer.highestOneBit(Math.max(16, width) - 1) << 1;
+            this.table = new long[size];
+            this.tableMask = size - 1;
+            this.sampleSize = 10 * size;
+        }
+
+        void increment(String key) {
+            int hash = spread(key.hashCode());
+            boolean added = false;
+            for (int i = 0; i < 4; i++) {
+                int index = indexOf(hash, i);
+                int offset = counterOffset(hash, i);
+                long mask = 0xFL << offset;
+                if ((table[index] & mask) != mask) {
+                    table[index] += 1L << offset;
+                    added = true;
+                }
+            }
+            if (added && ++additions >= sampleSize) {
+                reset();
+            }
+        }
+
+        int frequency(String key) {
+            int hash = spread(key.hashCode());
+            int frequency = Integer.MAX_VALUE;
+            for (int i = 0; i < 4; i++) {
+                int count = (int) ((table[indexOf(hash, i)] >>> counterOffset(hash, i)) & 0xFL);
+                frequency = Math.min(frequency, count);
+            }
+            return frequency;
+        }
+
+        private void reset() {
+            for (int i = 0; i < table.length; i++) {
+                table[i] = (table[i] >>> 1) & RESET_MASK;
+            }
+            additions /= 2;
+        }
+
+        private int indexOf(int hash, int row) {
+            long h = (hash + SEEDS[row]) * SEEDS[row];
+            h += h >>> 32;
+            return (int) h & tableMask;
+        }
+
+        /** 每行使用long中不同的4个计数器之一 */
+        private static int counterOffset(int hash, int row) {
+            return (((hash >>> (row << 3)) & 3) << 2 | row) << 2;
+        }
+
+        private static int spread(int hash) {
+            hash = ((hash >>> 16) ^ hash) * 0x45d9f3b;
+            hash = ((hash >>> 16) ^ hash) * 0x45d9f3b;
+            return (hash >>> 16) ^ hash;
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.vueones.cache;
+
+import com.vueones.util.KeyValueStore;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.redis.cache.RedisCache;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 统一缓存管理器，全部缓存注解都经过这里
+ * 每个缓存由内到外组装为：Redis缓存（或进程内缓存，见LocalCacheManager）→ 单飞加载与提前刷新（已配置的缓存）→ 命名空间版本（查询结果缓存）
+ * → 近端缓存（开启时）→ 事务感知（写入与失效在事务提交后执行）→ 命中率与耗时统计；
+ * 每一层都支持批量操作，取得的缓存可通过 BatchCache.of 使用批量读写与失效
+ */
+public class ManagedCacheManager implements CacheManager {
+
+    private final CacheManager remote;
+    private final KeyValueStore keyValueStore;
+    /** 近端缓存协调器，未开启近端缓存时为null */
+    private final NearCacheCoordinator nearCacheCoordinator;
+    private final Set<String> singleFlightCacheNames;
+    private final long leaseMillis;
+    private final long waitMillis;
+    private final double earlyRefreshBeta;
+    private final long versionTtlMillis;
+    private final CacheMetrics metrics;
+
+    private final ConcurrentMap<String, InstrumentedCache> caches = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, SingleFlightCache> singleFlightCaches = new ConcurrentHashMap<>();
+
+    /**
+     * @param remote Redis或进程内缓存管理器（已设置各缓存的TTL）
+     * @param keyValueStore 用于命名空间版本与单飞加载的租约
+     * @param nearCacheCoordinator 近端缓存协调器，可为null
+     * @param singleFlightCacheNames 启用单飞加载与提前刷新的缓存名
+     * @param leaseMillis 单飞加载的跨节点租约时长（毫秒）
+     * @param waitMillis 未拿到租约时等待其他节点加载的最长时间（毫秒）
+     * @param earlyRefreshBeta 提前刷新系数，0表示不提前刷新
+     * @param versionTtlMillis 查询结果缓存的命名空间版本在本节点的缓存时间（毫秒），0表示不缓存
+     * @param metrics 存储层的写入大小、key基数与键值存储调用统计
+     */
+    public ManagedCacheManager(CacheManager remote, KeyValueStore keyValueStore, NearCacheCoordinator nearCacheCoordinator,
+            Set<String> singleFlightCacheNames, long leaseMillis, long waitMillis, double earlyRefreshBeta,
+            long versionTtlMillis, CacheMetrics metrics) {
+        this.remote = remote;
+        this.keyValueStore = keyValueStore;
+        this.nearCacheCoordinator = nearCacheCoordinator;
+        this.singleFlightCacheNames = singleFlightCacheNames;
+        this.leaseMillis = leaseMillis;
+        this.waitMillis = waitMillis;
+        this.earlyRefreshBeta = earlyRefreshBeta;
+        this.versionTtlMillis = versionTtlMillis;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public Cache getCache(String name) {
+        return caches.computeIfAbsent(name, this::createCache);
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        return remote.getCacheNames();
+    }
+
+    /**
+     * 各缓存的命中率、读取与加载耗时，存储层的值大小分布与key基数，键值存储各操作的耗时，
+     * 单飞加载的合并次数，近端缓存的条目数，以及进程内后端的内存占用与淘汰次数
+     * @return 统计数据
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new TreeMap<>();
+        caches.forEach((name, cache) -> stats.put(name, cache.getStatistics()));
+        Map<String, Object> store = new LinkedHashMap<>();
+        metrics.getCaches().forEach((name, cache) -> store.put(name, cache.snapshot()));
+        Map<String, Object> operations = new LinkedHashMap<>();
+        metrics.getOperations().forEach((name, operation) -> operations.put(name, operation.snapshot()));
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("caches", stats);
+        result.put("store", store);
+        result.put("keyValueStore", operations);
+        Map<String, Object> singleFlight = new LinkedHashMap<>();
+        singleFlightCaches.forEach((name, cache) -> singleFlight.put(name, cache.getStatistics()));
+        result.put("singleFlight", singleFlight);
+        result.put("near", nearCacheCoordinator == null ? null : nearCacheCoordinator.getStatistics());
+        result.put("local", remote instanceof LocalCacheManager ? ((LocalCacheManager) remote).getStore().getStatistics() : null);
+        return result;
+    }
+
+    private InstrumentedCache createCache(String name) {
+        Cache cache = remote.getCache(name);
+        if (cache == null) {
+            return null;
+        }
+        Duration ttl = ttlOf(cache);
+        if (singleFlightCacheNames.contains(name) && ttl != null) {
+            SingleFlightCache singleFlight = new SingleFlightCache(cache, keyValueStore, ttl.toMillis(), leaseMillis,
+                    waitMillis, earlyRefreshBeta);
+            singleFlightCaches.put(name, singleFlight);
+            cache = singleFlight;
+        }
+        if (CacheNames.VERSIONED.contains(name)) {
+            cache = new VersionedCache(cache, keyValueStore, versionTtlMillis);
+        }
+        if (nearCacheCoordinator != null) {
+            cache = nearCacheCoordinator.wrap(name, cache);
+        }
+        return new InstrumentedCache(new TransactionAwareBatchCache(cache));
+    }
+
+    private static Duration ttlOf(Cache cache) {
+        if (cache instanceof RedisCache) {
+            return ((RedisCache) cache).getCacheConfiguration().getTtl();
+        }
+        if (cache instanceof LocalCache) {
+            return ((LocalCache) cache).getTtl();
+        }
+        return null;
+    }
+}
@@ -0,0 +1,141 @@
+package com.vueones.cache;
+
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 进程内近端缓存
+ * 按最近访问顺序淘汰（LRU），超过容量时移除最久未访问的条目；每个条目写入后经过TTL即过期。
+ * 条目以key的字符串形式存放，与失效通知中的key一致。
+ * 值按远端缓存的编码存为字节，每次读取解码出新对象：缓存中的实体是可变对象，
+ * 调用方修改取得的对象不会影响本地条目，也不会影响同一进程内的其他调用方
+ */
+public class NearCache {
+
+    private final int maxSize;
+    private final long ttlNanos;
+    private final RedisSerializer<Object> serializer;
+    private final LinkedHashMap<String, Entry> entries;
+
+    /** 失效代数：每次本地失效递增，用于丢弃失效前开始、失效后才完成的回填 */
+    private final AtomicLong generation = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    private static final class Entry {
+        final byte[] value;
+        final long expireAt;
+
+        Entry(byte[] value, long expireAt) {
+            this.value = value;
+            this.expireAt = expireAt;
+        }
+    }
+
+    /**
+     * @param maxSize 最大条目数
+     * @param ttlSeconds 条目存活时间（秒）
+     * @param serializer 值序列化器，与远端缓存一致
+     */
+    public NearCache(int maxSize, long ttlSeconds, RedisSerializer<Object> serializer) {
+        this.maxSize = maxSize;
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+        this.serializer = serializer;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > NearCache.this.maxSize;
+            }
+        };
+    }
+
+    /**
+     * 读取条目
+     * @param key 键
+     * @return 值的副本，不存在或已过期时返回null
+     */
+    public Object get(Object key) {
+        String k = String.valueOf(key);
+        byte[] value = null;
+        synchronized (entries) {
+            Entry entry = entries.get(k);
+            if (entry != null && entry.expireAt - System.nanoTime() > 0) {
+                value = entry.value;
+            } else if (entry != null) {
+                entries.remove(k);
+            }
+        }
+        if (value == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return serializer.deserialize(value);
+    }
+
+    /**
+     * 当前失效代数，回填前读取，回填时传给putIfCurrent
+     * @return 失效代数
+     */
+    public long generation() {
+        return generation.get();
+    }
+
+    /**
+     * 写入条目，期间发生过失效时放弃写入，避免把失效前读到的旧值留在本地
+     * @param key 键
+     * @param value 值
+     * @param expectedGeneration 读取远端缓存前的失效代数
+     */
+    public void putIfCurrent(Object key, Object value, long expectedGeneration) {
+        if (value == null || generation.get() != expectedGeneration) {
+            return;
+        }
+        // 编码在锁外完成，写入时再确认期间没有发生失效
+        byte[] bytes = serializer.serialize(value);
+        synchronized (entries) {
+            if (generation.get() == expectedGeneration) {
+                entries.put(String.valueOf(key), new Entry(bytes, System.nanoTime() + ttlNanos));
+            }
+        }
+    }
+
+    /**
+     * 移除条目
+     * @param key 键
+     */
+    public void evict(Object key) {
+        synchronized (entries) {
+            generation.incrementAndGet();
+            entries.remove(String.valueOf(key));
+        }
+    }
+
+    /**
+     * 清空全部条目
+     */
+    public void clear() {
+        synchronized (entries) {
+            generation.incrementAndGet();
+            entries.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+}
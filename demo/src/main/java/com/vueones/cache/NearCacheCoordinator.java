@@ -0,0 +1,107 @@
+package com.vueones.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cache.Cache;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 近端缓存协调器
+ * 为配置的缓存在远端缓存前加一层进程内近端缓存，并通过失效通知通道在节点间同步失效。
+ * 失效消息格式为 节点ID|缓存名|E或C|key（E为单个key，C为清空），节点忽略自己发出的消息
+ */
+public class NearCacheCoordinator {
+
+    private static final Logger log = LoggerFactory.getLogger(NearCacheCoordinator.class);
+
+    private static final String SEPARATOR = "|";
+    private static final String EVICT = "E";
+    private static final String CLEAR = "C";
+
+    private final CacheInvalidationBus bus;
+    private final Map<String, Integer> maxEntries;
+    private final long ttlSeconds;
+    private final RedisSerializer<Object> serializer;
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private final ConcurrentMap<String, NearCache> nearCaches = new ConcurrentHashMap<>();
+
+    /**
+     * @param bus 失效通知通道
+     * @param maxEntries 启用近端缓存的缓存名 -> 最大条目数
+     * @param ttlSeconds 近端缓存条目存活时间（秒）
+     * @param serializer 值序列化器，与远端缓存一致，近端条目按其编码存放，读取时解码出副本
+     */
+    public NearCacheCoordinator(CacheInvalidationBus bus, Map<String, Integer> maxEntries, long ttlSeconds,
+            RedisSerializer<Object> serializer) {
+        this.bus = bus;
+        this.maxEntries = maxEntries;
+        this.ttlSeconds = ttlSeconds;
+        this.serializer = serializer;
+        bus.subscribe(this::onInvalidation);
+        log.info("两级缓存已启用: caches={}, ttlSeconds={}", maxEntries, ttlSeconds);
+    }
+
+    /**
+     * 为启用近端缓存的缓存加上本地一级，其余缓存原样返回
+     * @param name 缓存名
+     * @param remote 远端缓存
+     * @return 缓存
+     */
+    public Cache wrap(String name, Cache remote) {
+        Integer size = maxEntries.get(name);
+        if (size == null) {
+            return remote;
+        }
+        NearCache near = nearCaches.computeIfAbsent(name, k -> new NearCache(size, ttlSeconds, serializer));
+        return new TwoLevelCache(name, remote, near, this);
+    }
+
+    /**
+     * 近端缓存的条目数与命中情况
+     * @return 缓存名 -> size、hits、misses
+     */
+    public Map<String, Map<String, Object>> getStatistics() {
+        Map<String, Map<String, Object>> stats = new LinkedHashMap<>();
+        nearCaches.forEach((name, near) -> {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("size", near.size());
+            item.put("hits", near.getHits());
+            item.put("misses", near.getMisses());
+            stats.put(name, item);
+        });
+        return stats;
+    }
+
+    /**
+     * 广播失效消息
+     * @param name 缓存名
+     * @param key 键，为null表示清空整个缓存
+     */
+    void publishEviction(String name, Object key) {
+        bus.publish(nodeId + SEPARATOR + name + SEPARATOR
+                + (key == null ? CLEAR + SEPARATOR : EVICT + SEPARATOR + key));
+    }
+
+    private void onInvalidation(String message) {
+        String[] parts = message.split("\\|", 4);
+        if (parts.length < 4 || nodeId.equals(parts[0])) {
+            return;
+        }
+        NearCache near = nearCaches.get(parts[1]);
+        if (near == null) {
+            return;
+        }
+        if (CLEAR.equals(parts[2])) {
+            near.clear();
+        } else {
+            near.evict(parts[3]);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.vueones.cache;
+
+import com.vueones.util.KeyValueStore;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.StringJoiner;
+
+/**
+ * 查询结果缓存的标签失效
+ * 查询按其依赖的维度打上标签，缓存key末尾带上这些标签的当前版本（canonicalKey#版本.版本...）；
+ * 写入只递增与该记录相交的标签，其他化学品、不受影响的历史月份的查询key不变，继续命中，旧key随TTL过期。
+ * 标签为 分组#化学品|月份，化学品为ID或*，月份为yyyy-MM或*。一条记录（化学品c、月份m）写入时递增
+ * c|m、*|m、c|*、*|* 四个标签，任何能匹配到这条记录的查询都至少依赖其中一个：
+ * 按化学品ID过滤的查询依赖 c|各月份，不按ID过滤的依赖 *|各月份，没有完整时间范围的依赖 *。
+ * 按名称或供应商的模糊条件无法对应到单个取值，不参与打标签（视为不过滤，只会多失效不会漏失效）
+ */
+@Component
+public class QueryTags {
+
+    private static final String ANY = "*";
+    /** 查询跨越的月份超过该值时按全部时间打标签，避免单次读取过多标签版本 */
+    private static final int MAX_MONTHS = 24;
+
+    @Autowired
+    private KeyValueStore keyValueStore;
+
+    /**
+     * 带标签版本的缓存key，在@Cacheable的key表达式中使用
+     * @param group 分组，一般为表名
+     * @param chemicalId 查询的化学品ID条件，可为null
+     * @param startTime 查询的开始时间，可为null
+     * @param endTime 查询的结束时间，可为null
+     * @param args 方法的全部参数
+     * @return 规范化key#标签版本
+     */
+    public String key(String group, Integer chemicalId, Date startTime, Date endTime, Object[] args) {
+        List<Long> versions = keyValueStore.namespaceVersions(queryTags(group, chemicalId, startTime, endTime));
+        StringJoiner key = new StringJoiner(".", CanonicalKeyGenerator.canonicalKey(args) + "#", "");
+        versions.forEach(version -> key.add(String.valueOf(version)));
+        return key.toString();
+    }
+
+    /**
+     * 查询依赖的标签
+     */
+    List<String> queryTags(String group, Integer chemicalId, Date startTime, Date endTime) {
+        String chemical = chemicalId == null ? ANY : String.valueOf(chemicalId);
+        List<String> tags = new ArrayList<>();
+        if (startTime == null || endTime == null) {
+            tags.add(tag(group, chemical, ANY));
+            return tags;
+        }
+        YearMonth from = month(startTime);
+        YearMonth to = month(endTime);
+        if (from.plusMonths(MAX_MONTHS).isBefore(to)) {
+            tags.add(tag(group, chemical, ANY));
+            return tags;
+        }
+        for (YearMonth month = from; !month.isAfter(to); month = month.plusMonths(1)) {
+            tags.add(tag(group, chemical, month.toString()));
+        }
+        return tags;
+    }
+
+    /**
+     * 一条记录写入（新增、修改前后、删除）时需要递增的标签
+     * @param group 分组
+     * @param chemicalId 记录的化学品ID
+     * @param time 记录的时间，为null时只影响不限时间的查询
+     * @return 标签
+     */
+    public Set<String> recordTags(String group, Integer chemicalId, Date time) {
+        Set<String> tags = new LinkedHashSet<>();
+        String month = time == null ? null : month(time).toString();
+        if (chemicalId != null) {
+            if (month != null) {
+                tags.add(tag(group, String.valueOf(chemicalId), month));
+            }
+            tags.add(tag(group, String.valueOf(chemicalId), ANY));
+        }
+        if (month != null) {
+            tags.add(tag(group, ANY, month));
+        }
+        tags.add(tag(group, ANY, ANY));
+        return tags;
+    }
+
+    /**
+     * 递增标签版本（存在事务时在提交后执行），多个标签在一个管道中完成
+     * @param tags 标签
+     */
+    public void invalidateAfterCommit(Collection<String> tags) {
+        if (tags.isEmpty()) {
+            return;
+        }
+        String[] namespaces = tags.toArray(new String[0]);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    keyValueStore.bumpNamespace(namespaces);
+                }
+            });
+        } else {
+            keyValueStore.bumpNamespace(namespaces);
+        }
+    }
+
+    private static String tag(String group, String chemical, String month) {
+        return group + "#" + chemical + "|" + month;
+    }
+
+    private static YearMonth month(Date time) {
+        return YearMonth.from(Instant.ofEpochMilli(time.getTime()).atZone(ZoneId.systemDefault()));
+    }
+}
@@ -0,0 +1,46 @@
+package com.vueones.cache;
+
+/**
+ * 单飞缓存写入Redis的条目：缓存值加上计算耗时与过期时间，用于到期前的概率性提前刷新
+ */
+public class RefreshableValue {
+
+    private Object value;
+    /** 计算该值耗费的毫秒数 */
+    private long computeMillis;
+    /** 预计过期的时间戳（毫秒） */
+    private long expiresAt;
+
+    public RefreshableValue() {
+    }
+
+    public RefreshableValue(Object value, long computeMillis, long expiresAt) {
+        this.value = value;
+        this.computeMillis = computeMillis;
+        this.expiresAt = expiresAt;
+    }
+
+    public Object getValue() {
+        return value;
+    }
+
+    public void setValue(Object value) {
+        this.value = value;
+    }
+
+    public long getComputeMillis() {
+        return computeMillis;
+    }
+
+    public void setComputeMillis(long computeMillis) {
+        this.computeMillis = computeMillis;
+    }
+
+    public long getExpiresAt() {
+        return expiresAt;
+    }
+
+    public void setExpiresAt(long expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+}
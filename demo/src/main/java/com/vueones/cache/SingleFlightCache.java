@@ -0,0 +1,320 @@
+package com.vueones.cache;
+
+import com.vueones.util.KeyValueStore;
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.SimpleValueWrapper;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 防击穿缓存，直接包装Redis缓存，配合 @Cacheable(sync = true) 使用
+ * 1. 单飞加载：同一节点内同一key的并发未命中共享一次加载；跨节点由Redis短租约选出一个加载者，
+ *    其余节点短暂轮询等待其写入缓存，等待上限（远小于租约时长）内仍未写入时自行加载，
+ *    加载者变慢或宕机时请求最多多等待这一上限
+ * 2. 提前刷新：条目记录计算耗时与过期时间，读取时按XFetch算法以随到期临近而增大的概率提前重算，
+ *    只有拿到租约的请求执行重算，其余请求继续返回当前值，热点key不会在同一时刻集中过期
+ * 写入Redis的是RefreshableValue，读出时解包，对上层透明；批量读取只解包不做提前刷新
+ */
+public class SingleFlightCache implements BatchCache {
+
+    /** 等待其他节点加载时的首次轮询间隔（毫秒），之后逐次加倍 */
+    private static final long MIN_POLL_MILLIS = 2;
+    /** 等待其他节点加载时的最大轮询间隔（毫秒） */
+    private static final long MAX_POLL_MILLIS = 20;
+
+    private final BatchCache delegate;
+    private final KeyValueStore keyValueStore;
+    private final long ttlMillis;
+    private final long leaseMillis;
+    private final long waitMillis;
+    private final double beta;
+    private final String owner = UUID.randomUUID().toString();
+
+    private final ConcurrentMap<Object, CompletableFuture<Object>> flights = new ConcurrentHashMap<>();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder sharedLoads = new LongAdder();
+    private final LongAdder leaseWaits = new LongAdder();
+    private final LongAdder leaseWaitTimeouts = new LongAdder();
+    private final LongAdder earlyRefreshes = new LongAdder();
+
+    /**
+     * @param delegate Redis缓存
+     * @param keyValueStore 用于跨节点租约
+     * @param ttlMillis 缓存的过期时间（毫秒），与Redis缓存配置一致
+     * @param leaseMillis 租约时长，加载者最长占用租约的时间
+     * @param waitMillis 未拿到租约时等待其他节点加载的最长时间，超过租约时长时按租约时长
+     * @param beta 提前刷新系数，越大越早刷新，0表示不提前刷新
+     */
+    public SingleFlightCache(Cache delegate, KeyValueStore keyValueStore, long ttlMillis, long leaseMillis,
+            long waitMillis, double beta) {
+        this.delegate = BatchCache.of(delegate);
+        this.keyValueStore = keyValueStore;
+        this.ttlMillis = ttlMillis;
+        this.leaseMillis = leaseMillis;
+        this.waitMillis = Math.min(waitMillis, leaseMillis);
+        this.beta = beta;
+    }
+
+    /**
+     * 统计数据
+     * @return loads（实际加载次数）、sharedLoads（搭乘本节点进行中加载的次数）、
+     *         leaseWaits（等待其他节点加载的次数）、leaseWaitTimeouts（等待超时后自行加载的次数）、
+     *         earlyRefreshes（提前刷新次数）
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("loads", loads.sum());
+        stats.put("sharedLoads", sharedLoads.sum());
+        stats.put("leaseWaits", leaseWaits.sum());
+        stats.put("leaseWaitTimeouts", leaseWaitTimeouts.sum());
+        stats.put("earlyRefreshes", earlyRefreshes.sum());
+        stats.put("inFlight", flights.size());
+        return stats;
+    }
+
+    @Override
+    public String getName() {
+        return delegate.getName();
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return delegate.getNativeCache();
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        return unwrap(delegate.get(key));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Class<T> type) {
+        ValueWrapper wrapper = get(key);
+        Object value = wrapper == null ? null : wrapper.get();
+        if (value != null && type != null && !type.isInstance(value)) {
+            throw new IllegalStateException("Cached value is not of required type [" + type.getName() + "]: " + value);
+        }
+        return (T) value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        ValueWrapper wrapper = delegate.get(key);
+        if (wrapper == null) {
+            return (T) flight(key, () -> loadOnMiss(key, valueLoader));
+        }
+        Object stored = wrapper.get();
+        if (!(stored instanceof RefreshableValue)) {
+            return (T) stored;
+        }
+        RefreshableValue current = (RefreshableValue) stored;
+        if (!shouldRefreshEarly(current) || flights.containsKey(key)) {
+            return (T) current.getValue();
+        }
+        return (T) flight(key, () -> {
+            // 其他节点已在刷新或租约不可用时继续使用当前值
+            if (!tryLease(key)) {
+                return current.getValue();
+            }
+            earlyRefreshes.increment();
+            try {
+                return load(key, valueLoader);
+            } finally {
+                keyValueStore.releaseLease(leaseKey(key), owner);
+            }
+        });
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        delegate.put(key, wrap(value, 0L));
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(Object key, Object value) {
+        return unwrap(delegate.putIfAbsent(key, wrap(value, 0L)));
+    }
+
+    @Override
+    public void evict(Object key) {
+        delegate.evict(key);
+    }
+
+    @Override
+    public boolean evictIfPresent(Object key) {
+        return delegate.evictIfPresent(key);
+    }
+
+    @Override
+    public void clear() {
+        delegate.clear();
+    }
+
+    @Override
+    public boolean invalidate() {
+        return delegate.invalidate();
+    }
+
+    @Override
+    public Map<Object, Object> getAll(Collection<?> keys) {
+        Map<Object, Object> result = delegate.getAll(keys);
+        result.replaceAll((key, value) -> value instanceof RefreshableValue ? ((RefreshableValue) value).getValue() : value);
+        return result;
+    }
+
+    @Override
+    public void putAll(Map<?, ?> entries) {
+        Map<Object, Object> wrapped = new LinkedHashMap<>();
+        entries.forEach((key, value) -> {
+            if (value != null) {
+                wrapped.put(key, wrap(value, 0L));
+            }
+        });
+        delegate.putAll(wrapped);
+    }
+
+    @Override
+    public void evictAll(Collection<?> keys) {
+        delegate.evictAll(keys);
+    }
+
+    /**
+     * 同一key只有一个线程执行action，其余线程等待其结果
+     */
+    private Object flight(Object key, Callable<Object> action) {
+        CompletableFuture<Object> mine = new CompletableFuture<>();
+        CompletableFuture<Object> existing = flights.putIfAbsent(key, mine);
+        if (existing != null) {
+            sharedLoads.increment();
+            try {
+                return existing.join();
+            } catch (CompletionException e) {
+                throw rethrow(e.getCause());
+            }
+        }
+        try {
+            Object value = action.call();
+            mine.complete(value);
+            return value;
+        } catch (Throwable e) {
+            mine.completeExceptionally(e);
+            throw rethrow(e);
+        } finally {
+            flights.remove(key, mine);
+        }
+    }
+
+    private boolean tryLease(Object key) {
+        try {
+            return keyValueStore.tryLease(leaseKey(key), owner, leaseMillis);
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    private Object loadOnMiss(Object key, Callable<?> valueLoader) {
+        boolean leased;
+        try {
+            leased = keyValueStore.tryLease(leaseKey(key), owner, leaseMillis);
+        } catch (RuntimeException e) {
+            // 租约不可用：不做跨节点协调，本节点内仍只加载一次
+            return load(key, valueLoader);
+        }
+        if (leased) {
+            try {
+                return load(key, valueLoader);
+            } finally {
+                keyValueStore.releaseLease(leaseKey(key), owner);
+            }
+        }
+        // 其他节点正在加载：短暂等待其写入缓存，超过等待上限仍未写入则不再等租约，直接自行加载
+        leaseWaits.increment();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(waitMillis);
+        long pollMillis = MIN_POLL_MILLIS;
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > 0) {
+            try {
+                Thread.sleep(Math.min(pollMillis, Math.max(1L, TimeUnit.NANOSECONDS.toMillis(remaining))));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            ValueWrapper wrapper = get(key);
+            if (wrapper != null) {
+                return wrapper.get();
+            }
+            pollMillis = Math.min(pollMillis * 2, MAX_POLL_MILLIS);
+        }
+        leaseWaitTimeouts.increment();
+        return load(key, valueLoader);
+    }
+
+    private Object load(Object key, Callable<?> valueLoader) {
+        long start = System.nanoTime();
+        Object value;
+        try {
+            value = valueLoader.call();
+        } catch (Throwable e) {
+            throw new ValueRetrievalException(key, valueLoader, e);
+        }
+        loads.increment();
+        if (value != null) {
+            // 不足1毫秒按1毫秒计，保证快速查询也能参与提前刷新
+            delegate.put(key, wrap(value, Math.max(1L, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start))));
+        }
+        return value;
+    }
+
+    /**
+     * XFetch：now - computeMillis * beta * ln(rand) >= expiresAt 时提前刷新
+     */
+    private boolean shouldRefreshEarly(RefreshableValue value) {
+        if (beta <= 0 || value.getComputeMillis() <= 0) {
+            return false;
+        }
+        double random = ThreadLocalRandom.current().nextDouble();
+        double gap = -value.getComputeMillis() * beta * Math.log(random == 0 ? Double.MIN_VALUE : random);
+        return System.currentTimeMillis() + gap >= value.getExpiresAt();
+    }
+
+    private Object wrap(Object value, long computeMillis) {
+        if (value == null) {
+            return null;
+        }
+        return new RefreshableValue(value, computeMillis, System.currentTimeMillis() + ttlMillis);
+    }
+
+    private static ValueWrapper unwrap(ValueWrapper wrapper) {
+        if (wrapper == null || !(wrapper.get() instanceof RefreshableValue)) {
+            return wrapper;
+        }
+        return new SimpleValueWrapper(((RefreshableValue) wrapper.get()).getValue());
+    }
+
+    private String leaseKey(Object key) {
+        return getName() + ":" + key;
+    }
+
+    private static RuntimeException rethrow(Throwable e) {
+        if (e instanceof RuntimeException) {
+            return (RuntimeException) e;
+        }
+        if (e instanceof Error) {
+            throw (Error) e;
+        }
+        return new IllegalStateException(e);
+    }
+}
@@ -0,0 +1,55 @@
+package com.vueones.cache;
+
+import org.springframework.cache.Cache;
+import org.springframework.cache.transaction.TransactionAwareCacheDecorator;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 事务感知的批量缓存
+ * 与TransactionAwareCacheDecorator一致：存在事务时批量写入与批量失效在事务提交后执行，读取直接执行
+ */
+public class TransactionAwareBatchCache extends TransactionAwareCacheDecorator implements BatchCache {
+
+    private final BatchCache target;
+
+    public TransactionAwareBatchCache(Cache target) {
+        super(target);
+        this.target = BatchCache.of(target);
+    }
+
+    @Override
+    public Map<Object, Object> getAll(Collection<?> keys) {
+        return target.getAll(keys);
+    }
+
+    @Override
+    public void putAll(Map<?, ?> entries) {
+        Map<Object, Object> copy = new LinkedHashMap<>(entries);
+        afterCommit(() -> target.putAll(copy));
+    }
+
+    @Override
+    public void evictAll(Collection<?> keys) {
+        Collection<Object> copy = new ArrayList<>(keys);
+        afterCommit(() -> target.evictAll(copy));
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.vueones.cache;
+
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.SimpleValueWrapper;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+/**
+ * 两级缓存：进程内近端缓存 + 远端（Redis）缓存
+ * 读先查本地，未命中再查远端并回填本地；失效同时作用于两级，并广播给其他节点清除其本地条目。
+ * 本地条目按远端缓存的编码存放，每次读取得到独立的副本，与读远端缓存一样，调用方修改取得的对象不影响缓存。
+ * 批量失效多个key时只广播一条清空消息，其他节点清空该缓存的本地条目后从远端重新读取
+ */
+public class TwoLevelCache implements BatchCache {
+
+    private final String name;
+    private final BatchCache remote;
+    private final NearCache near;
+    private final NearCacheCoordinator coordinator;
+
+    TwoLevelCache(String name, Cache remote, NearCache near, NearCacheCoordinator coordinator) {
+        this.name = name;
+        this.remote = BatchCache.of(remote);
+        this.near = near;
+        this.coordinator = coordinator;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return remote.getNativeCache();
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        Object value = near.get(key);
+        if (value != null) {
+            return new SimpleValueWrapper(value);
+        }
+        long generation = near.generation();
+        ValueWrapper wrapper = remote.get(key);
+        if (wrapper != null) {
+            near.putIfCurrent(key, wrapper.get(), generation);
+        }
+        return wrapper;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Class<T> type) {
+        ValueWrapper wrapper = get(key);
+        Object value = wrapper != null ? wrapper.get() : null;
+        if (value != null && type != null && !type.isInstance(value)) {
+            throw new IllegalStateException("缓存值类型不匹配: key=" + key + ", required=" + type.getName());
+        }
+        return (T) value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        Object value = near.get(key);
+        if (value != null) {
+            return (T) value;
+        }
+        long generation = near.generation();
+        T loaded = remote.get(key, valueLoader);
+        near.putIfCurrent(key, loaded, generation);
+        return loaded;
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        remote.put(key, value);
+        near.putIfCurrent(key, value, near.generation());
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(Object key, Object value) {
+        ValueWrapper existing = remote.putIfAbsent(key, value);
+        if (existing == null) {
+            near.putIfCurrent(key, value, near.generation());
+        }
+        return existing;
+    }
+
+    @Override
+    public void evict(Object key) {
+        remote.evict(key);
+        near.evict(key);
+        coordinator.publishEviction(name, key);
+    }
+
+    @Override
+    public boolean evictIfPresent(Object key) {
+        boolean present = remote.evictIfPresent(key);
+        near.evict(key);
+        coordinator.publishEviction(name, key);
+        return present;
+    }
+
+    @Override
+    public void clear() {
+        remote.clear();
+        near.clear();
+        coordinator.publishEviction(name, null);
+    }
+
+    @Override
+    public boolean invalidate() {
+        boolean present = remote.invalidate();
+        near.clear();
+        coordinator.publishEviction(name, null);
+        return present;
+    }
+
+    @Override
+    public Map<Object, Object> getAll(Collection<?> keys) {
+        Map<Object, Object> result = new LinkedHashMap<>();
+        List<Object> missing = new ArrayList<>();
+        for (Object key : keys) {
+            Object value = near.get(key);
+            result.put(key, value);
+            if (value == null) {
+                missing.add(key);
+            }
+        }
+        if (!missing.isEmpty()) {
+            long generation = near.generation();
+            Map<Object, Object> loaded = remote.getAll(missing);
+            loaded.forEach((key, value) -> near.putIfCurrent(key, value, generation));
+            result.putAll(loaded);
+        }
+        result.values().removeIf(value -> value == null);
+        return result;
+    }
+
+    @Override
+    public void putAll(Map<?, ?> entries) {
+        remote.putAll(entries);
+        long generation = near.generation();
+        entries.forEach((key, value) -> near.putIfCurrent(key, value, generation));
+    }
+
+    @Override
+    public void evictAll(Collection<?> keys) {
+        if (keys.isEmpty()) {
+            return;
+        }
+        remote.evictAll(keys);
+        for (Object key : keys) {
+            near.evict(key);
+        }
+        coordinator.publishEviction(name, keys.size() == 1 ? keys.iterator().next() : null);
+    }
+}
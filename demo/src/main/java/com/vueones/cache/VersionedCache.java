@@ -0,0 +1,165 @@
+package com.vueones.cache;
+
+import com.vueones.util.KeyValueStore;
+import org.springframework.cache.Cache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 按命名空间版本失效的缓存
+ * key前加上缓存名的当前版本（v版本号:key），清空时只递增版本，旧版本条目不再被读到并随TTL过期；
+ * 批量操作只读取一次版本号。版本号在本节点缓存一小段时间，命中时每次读取只访问一次Redis：
+ * 本节点清空后立即重新读取版本，其他节点的清空最迟在版本缓存时间之后生效
+ */
+public class VersionedCache implements BatchCache {
+
+    private final BatchCache delegate;
+    private final KeyValueStore keyValueStore;
+    private final long versionTtlNanos;
+
+    /** 本节点缓存的版本号，为null时下次读取访问键值存储 */
+    private volatile Version cachedVersion;
+    /** 本节点清空的次数，读取版本期间发生清空时读到的旧版本不缓存 */
+    private final AtomicLong clears = new AtomicLong();
+
+    private static final class Version {
+        final long value;
+        final long expireAt;
+
+        Version(long value, long expireAt) {
+            this.value = value;
+            this.expireAt = expireAt;
+        }
+    }
+
+    /**
+     * @param delegate 被包装的缓存
+     * @param keyValueStore 保存命名空间版本的键值存储
+     * @param versionTtlMillis 版本号在本节点的缓存时间（毫秒），0表示每次读取都访问键值存储
+     */
+    public VersionedCache(Cache delegate, KeyValueStore keyValueStore, long versionTtlMillis) {
+        this.delegate = BatchCache.of(delegate);
+        this.keyValueStore = keyValueStore;
+        this.versionTtlNanos = TimeUnit.MILLISECONDS.toNanos(versionTtlMillis);
+    }
+
+    @Override
+    public String getName() {
+        return delegate.getName();
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return delegate.getNativeCache();
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        return delegate.get(versioned(key));
+    }
+
+    @Override
+    public <T> T get(Object key, Class<T> type) {
+        return delegate.get(versioned(key), type);
+    }
+
+    @Override
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        return delegate.get(versioned(key), valueLoader);
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        delegate.put(versioned(key), value);
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(Object key, Object value) {
+        return delegate.putIfAbsent(versioned(key), value);
+    }
+
+    @Override
+    public void evict(Object key) {
+        delegate.evict(versioned(key));
+    }
+
+    @Override
+    public boolean evictIfPresent(Object key) {
+        return delegate.evictIfPresent(versioned(key));
+    }
+
+    @Override
+    public void clear() {
+        keyValueStore.bumpNamespace(getName());
+        clears.incrementAndGet();
+        cachedVersion = null;
+    }
+
+    @Override
+    public boolean invalidate() {
+        clear();
+        return false;
+    }
+
+    @Override
+    public Map<Object, Object> getAll(Collection<?> keys) {
+        String prefix = versionPrefix();
+        Map<Object, Object> versionedKeys = new LinkedHashMap<>();
+        for (Object key : keys) {
+            versionedKeys.put(prefix + key, key);
+        }
+        Map<Object, Object> result = new LinkedHashMap<>();
+        delegate.getAll(versionedKeys.keySet()).forEach((key, value) -> result.put(versionedKeys.get(key), value));
+        return result;
+    }
+
+    @Override
+    public void putAll(Map<?, ?> entries) {
+        String prefix = versionPrefix();
+        Map<Object, Object> versioned = new LinkedHashMap<>();
+        entries.forEach((key, value) -> versioned.put(prefix + key, value));
+        delegate.putAll(versioned);
+    }
+
+    @Override
+    public void evictAll(Collection<?> keys) {
+        String prefix = versionPrefix();
+        List<Object> versioned = new ArrayList<>(keys.size());
+        for (Object key : keys) {
+            versioned.add(prefix + key);
+        }
+        delegate.evictAll(versioned);
+    }
+
+    private String versioned(Object key) {
+        return versionPrefix() + key;
+    }
+
+    private String versionPrefix() {
+        return "v" + currentVersion() + ":";
+    }
+
+    private long currentVersion() {
+        if (versionTtlNanos <= 0) {
+            return keyValueStore.namespaceVersion(getName());
+        }
+        long now = System.nanoTime();
+        Version cached = cachedVersion;
+        if (cached != null && cached.expireAt - now > 0) {
+            return cached.value;
+        }
+        long generation = clears.get();
+        long version = keyValueStore.namespaceVersion(getName());
+        if (clears.get() == generation) {
+            cachedVersion = new Version(version, now + versionTtlNanos);
+        }
+        return version;
+    }
+}
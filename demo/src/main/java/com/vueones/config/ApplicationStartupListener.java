@@ -1,9 +1,9 @@
 package com.vueones.config;
 
-import com.vueones.service.impl.UsageRecordServiceImpl;
-import com.vueones.service.impl.ChemicalServiceImpl;
-import com.vueones.service.impl.StorageRecordServiceImpl;
-import com.vueones.util.RedisUtil;
+import com.vueones.cache.CacheWarmer;
+import com.vueones.cache.ExistenceGuard;
+import com.vueones.service.IRecordRollupService;
+import com.vueones.util.KeyValueStore;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -11,27 +11,42 @@ import org.springframework.context.ApplicationListener;
 import org.springframework.context.event.ContextRefreshedEvent;
 import org.springframework.stereotype.Component;
 
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
 /**
  * 应用启动监听器
- * 在应用启动时执行一些初始化操作，如清除缓存
+ * 在应用启动时执行一些初始化操作：清理旧版本遗留的缓存键，并在后台开始缓存预热、存在性过滤器的首次构建，
+ * 以及未执行升级脚本的旧库上记录汇总的补建
+ * 各缓存在数据写入时已按注解失效，重启不再整体清空，避免节点冷启动后查询全部落到数据库
  */
 @Component
 public class ApplicationStartupListener implements ApplicationListener<ContextRefreshedEvent> {
 
     private static final Logger log = LoggerFactory.getLogger(ApplicationStartupListener.class);
     private static boolean isInitialized = false;
-    
+
+    /**
+     * 改为统一缓存层之前各服务手工写入的缓存键，升级后不再读取，清理掉即可
+     * chemical、inventory与现有缓存同名，排除 缓存名:: 开头的现有缓存键
+     */
+    private static final List<String> LEGACY_KEY_PATTERNS = Arrays.asList(
+            "chemical:[^:]*", "chemical_list:*", "chemical_count:*", "inventory:[^:]*",
+            "storage_record:*", "storage_record_list:*", "storage_record_count:*", "storage_record_sum:*",
+            "usage_record:*", "usage_record_list:*", "usage_record_count:*", "usage_record_sum:*");
+
     @Autowired
-    private UsageRecordServiceImpl usageRecordService;
-    
-    @Autowired(required = false)
-    private ChemicalServiceImpl chemicalService;
-    
-    @Autowired(required = false)
-    private StorageRecordServiceImpl storageRecordService;
-    
+    private CacheWarmer cacheWarmer;
+
+    @Autowired
+    private ExistenceGuard existenceGuard;
+
     @Autowired
-    private RedisUtil redisUtil;
+    private KeyValueStore keyValueStore;
+
+    @Autowired
+    private IRecordRollupService recordRollupService;
 
     @Override
     public void onApplicationEvent(ContextRefreshedEvent event) {
@@ -39,8 +54,15 @@ public class ApplicationStartupListener implements ApplicationListener<ContextRe
         if (!isInitialized) {
             log.info("应用启动，执行初始化操作");
             
-            // 清除所有缓存，避免ID重复问题
-            clearAllCaches();
+            clearLegacyCaches();
+            cacheWarmer.start();
+            // 构建完成前过滤器不作判定，不必阻塞启动
+            CompletableFuture.runAsync(existenceGuard::rebuild);
+            CompletableFuture.runAsync(recordRollupService::seedIfEmpty).whenComplete((v, e) -> {
+                if (e != null) {
+                    log.error("补建记录汇总时发生错误", e);
+                }
+            });
             
             isInitialized = true;
             log.info("初始化操作完成");
@@ -48,53 +70,21 @@ public class ApplicationStartupListener implements ApplicationListener<ContextRe
     }
     
     /**
-     * 清除所有缓存
+     * 清除改为统一缓存层之前手工写入的缓存键
      */
-    private void clearAllCaches() {
-        log.info("清除所有缓存");
-        
-        try {
-            // 清除UsageRecord相关缓存
-            usageRecordService.clearAllUsageRecordCaches();
-            
-            // 清除Chemical相关缓存（如果存在）
-            if (chemicalService != null) {
-                // 如果ChemicalServiceImpl有类似的清除缓存方法，可以调用
-                // chemicalService.clearAllChemicalCaches();
-                
-                // 手动清除chemical相关缓存
-                clearCachesByPattern("chemical:*");
-                clearCachesByPattern("chemicalList:*");
-            }
-            
-            // 清除StorageRecord相关缓存（如果存在）
-            if (storageRecordService != null) {
-                // 调用StorageRecordServiceImpl的清除缓存方法
-                storageRecordService.clearAllStorageRecordCaches();
-            }
-            
-            log.info("所有缓存清除完成");
-        } catch (Exception e) {
-            log.error("清除缓存时发生错误", e);
-        }
+    private void clearLegacyCaches() {
+        LEGACY_KEY_PATTERNS.forEach(this::clearCachesByPattern);
     }
     
     /**
-     * 根据模式清除缓存
+     * 根据模式清除缓存，在后台以SCAN+UNLINK分批删除，不阻塞启动
      * @param pattern 缓存键模式
      */
     private void clearCachesByPattern(String pattern) {
-        try {
-            // 获取并删除所有匹配模式的键
-            java.util.Set<String> keys = redisUtil.keys(pattern);
-            if (keys != null && !keys.isEmpty()) {
-                for (String key : keys) {
-                    redisUtil.del(key);
-                }
-                log.info("已清除{}个{}缓存", keys.size(), pattern);
+        keyValueStore.unlinkByPattern(pattern).whenComplete((count, e) -> {
+            if (e != null) {
+                log.error("清除{}缓存时发生错误", pattern, e);
             }
-        } catch (Exception e) {
-            log.error("清除{}缓存时发生错误", pattern, e);
-        }
+        });
     }
-}
\ No newline at end of file
+}
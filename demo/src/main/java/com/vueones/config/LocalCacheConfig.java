@@ -0,0 +1,39 @@
+package com.vueones.config;
+
+import com.vueones.cache.CacheMetrics;
+import com.vueones.cache.LocalCacheStore;
+import com.vueones.util.LocalKeyValueStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+/**
+ * 进程内缓存后端配置
+ * 仅在 app.cache.backend=local 时生效：缓存与键值存储都在进程内，不连接Redis，适合单节点部署与性能测试；
+ * 多节点部署时各节点的缓存互不可见，写入后的失效只作用于本节点，应使用redis后端
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "app.cache", name = "backend", havingValue = "local")
+public class LocalCacheConfig {
+
+    /**
+     * 缓存与键值存储共用的进程内存储，容量淘汰按缓存名计入统计
+     */
+    @Bean
+    public LocalCacheStore localCacheStore(@Value("${app.cache.local.max-bytes:67108864}") long maxBytes,
+            CacheMetrics cacheMetrics) {
+        LocalCacheStore store = new LocalCacheStore(maxBytes);
+        store.setEvictionListener(cacheMetrics::recordCapacityEviction);
+        return store;
+    }
+
+    /**
+     * 代替RedisUtil的键值存储，由RedisConfig包装统计后供缓存层使用
+     */
+    @Bean
+    public LocalKeyValueStore localKeyValueStore(LocalCacheStore localCacheStore, RedisSerializer<Object> redisValueSerializer) {
+        return new LocalKeyValueStore(localCacheStore, redisValueSerializer);
+    }
+}
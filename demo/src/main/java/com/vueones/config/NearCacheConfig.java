@@ -0,0 +1,52 @@
+package com.vueones.config;
+
+import com.vueones.cache.CacheInvalidationBus;
+import com.vueones.cache.InProcessCacheInvalidationBus;
+import com.vueones.cache.RedisCacheInvalidationBus;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+/**
+ * 近端缓存失效通知配置
+ * 仅在 app.cache.near.enabled=true 时生效，RedisConfig据此把缓存管理器包装为两级缓存
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "app.cache.near", name = "enabled", havingValue = "true")
+public class NearCacheConfig {
+
+    /**
+     * Redis发布订阅监听容器
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "app.cache.near", name = "transport", havingValue = "redis", matchIfMissing = true)
+    public RedisMessageListenerContainer cacheInvalidationListenerContainer(RedisConnectionFactory connectionFactory) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        return container;
+    }
+
+    /**
+     * 通过Redis频道广播失效消息
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "app.cache.near", name = "transport", havingValue = "redis", matchIfMissing = true)
+    public CacheInvalidationBus redisCacheInvalidationBus(StringRedisTemplate stringRedisTemplate,
+                                                          RedisMessageListenerContainer cacheInvalidationListenerContainer,
+                                                          @Value("${app.cache.near.channel:cache:invalidate}") String channel) {
+        return new RedisCacheInvalidationBus(stringRedisTemplate, cacheInvalidationListenerContainer, channel);
+    }
+
+    /**
+     * 进程内广播失效消息，无需Redis服务
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "app.cache.near", name = "transport", havingValue = "local")
+    public CacheInvalidationBus inProcessCacheInvalidationBus() {
+        return new InProcessCacheInvalidationBus();
+    }
+}
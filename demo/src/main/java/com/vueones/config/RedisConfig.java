@@ -1,15 +1,41 @@
 package com.vueones.config;
 
+import com.vueones.cache.BatchRedisCacheManager;
+import com.vueones.cache.BudgetedRedisCacheWriter;
+import com.vueones.cache.CacheEntitySchemas;
+import com.vueones.cache.CacheInvalidationBus;
+import com.vueones.cache.CacheMetrics;
+import com.vueones.cache.CacheNames;
+import com.vueones.cache.CanonicalKeyGenerator;
+import com.vueones.cache.CompactRedisSerializer;
+import com.vueones.cache.LocalCacheManager;
+import com.vueones.cache.LocalCacheStore;
+import com.vueones.cache.ManagedCacheManager;
+import com.vueones.cache.NearCacheCoordinator;
+import com.vueones.util.InstrumentedKeyValueStore;
+import com.vueones.util.KeyValueStore;
+import com.vueones.util.LocalKeyValueStore;
+import com.vueones.util.RedisUtil;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.CachingConfigurer;
 import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.interceptor.KeyGenerator;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.data.redis.cache.BatchStrategies;
 import org.springframework.data.redis.cache.RedisCacheConfiguration;
-import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.cache.RedisCacheWriter;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.annotation.JsonTypeInfo;
@@ -21,14 +47,25 @@ import com.fasterxml.jackson.annotation.PropertyAccessor;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 
 import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Redis配置类
- * 用于配置Redis缓存管理器和序列化方式
+ * 用于配置Redis缓存管理器和序列化方式；app.cache.backend=local 时缓存管理器改用进程内缓存（见LocalCacheConfig）
  */
 @Configuration
 @EnableCaching
-public class RedisConfig {
+public class RedisConfig implements CachingConfigurer {
+
+    /** 默认启用单飞加载的缓存：写入时整体失效、失效后并发重算代价最大的查询结果缓存 */
+    private static final String SINGLE_FLIGHT_DEFAULT_CACHES = CacheNames.CHEMICAL_LIST + "," + CacheNames.CHEMICAL_COUNT
+            + "," + CacheNames.STORAGE_RECORD_LIST + "," + CacheNames.STORAGE_RECORD_COUNT + ","
+            + CacheNames.STORAGE_RECORD_SUM + "," + CacheNames.USAGE_RECORD_LIST + "," + CacheNames.USAGE_RECORD_SUM + ","
+            + CacheNames.USAGE_STATISTICS + "," + CacheNames.RECORD_STATISTICS + "," + CacheNames.WARNING_UNHANDLED_COUNT;
 
     // 不再注入全局ObjectMapper，而是创建专用的Redis序列化ObjectMapper
 
@@ -65,33 +102,130 @@ public class RedisConfig {
     }
 
     /**
-     * 配置Redis缓存管理器
+     * 配置Redis值的序列化方式，缓存管理器与RedisTemplate共用
+     * app.cache.codec=compact（默认）使用紧凑二进制编码，未登记的类型以及旧的JSON数据仍由JSON序列化器处理；
+     * app.cache.codec=json 恢复为带类型信息的JSON，此时无法读取紧凑编码写入的值，切换后依赖启动时的缓存清理
      * 
-     * @param connectionFactory Redis连接工厂
-     * @return Redis缓存管理器
+     * @param redisObjectMapper Redis专用ObjectMapper
+     * @return 值序列化器
      */
     @Bean
-    public RedisCacheManager cacheManager(RedisConnectionFactory connectionFactory, ObjectMapper redisObjectMapper) {
-        // 创建自定义的Jackson2JsonRedisSerializer
-        Jackson2JsonRedisSerializer<Object> serializer = new Jackson2JsonRedisSerializer<>(redisObjectMapper,
-                Object.class);
+    public RedisSerializer<Object> redisValueSerializer(ObjectMapper redisObjectMapper,
+            @Value("${app.cache.codec:compact}") String codec,
+            @Value("${app.cache.compress-threshold-bytes:512}") int compressThreshold) {
+        Jackson2JsonRedisSerializer<Object> json = new Jackson2JsonRedisSerializer<>(redisObjectMapper, Object.class);
+        if ("json".equalsIgnoreCase(codec)) {
+            return json;
+        }
+        return new CompactRedisSerializer(json, CacheEntitySchemas.ALL, compressThreshold);
+    }
 
+    /**
+     * 缓存注解默认使用规范化key
+     */
+    @Override
+    public KeyGenerator keyGenerator() {
+        return new CanonicalKeyGenerator();
+    }
+
+    /**
+     * 缓存层使用的键值存储：按 app.cache.backend 取RedisUtil或LocalKeyValueStore，包装调用统计
+     *
+     * @param redisUtil Redis实现，仅redis后端时存在
+     * @param localKeyValueStore 进程内实现，仅进程内后端时存在
+     * @param cacheMetrics 统计
+     * @return 键值存储
+     */
+    @Bean
+    @Primary
+    public KeyValueStore keyValueStore(ObjectProvider<RedisUtil> redisUtil,
+            ObjectProvider<LocalKeyValueStore> localKeyValueStore, CacheMetrics cacheMetrics) {
+        KeyValueStore delegate = localKeyValueStore.getIfAvailable();
+        return new InstrumentedKeyValueStore(delegate != null ? delegate : redisUtil.getObject(), cacheMetrics);
+    }
+
+    /**
+     * 配置缓存管理器
+     * 各缓存的TTL取 app.cache.ttl.缓存名，单条大小预算取 app.cache.max-entry-bytes.缓存名，未配置时使用默认值；
+     * 开启 app.cache.near.enabled 时，app.cache.near.caches 中的缓存在Redis前再加一层进程内近端缓存；
+     * app.cache.single-flight.caches 中的缓存启用单飞加载与提前刷新（需配合 @Cacheable(sync = true)）；
+     * app.cache.backend=local 时各缓存存放在进程内，按同样的TTL与单条大小预算，不再加近端缓存
+     * 
+     * @param connectionFactory Redis连接工厂，进程内后端时不使用
+     * @param localCacheStore 进程内存储，仅进程内后端时存在
+     * @param invalidationBus 近端缓存失效通知通道，未开启近端缓存时不存在
+     * @param cacheMetrics 写入大小、key基数与键值存储调用的统计
+     * @return 缓存管理器
+     */
+    @Bean
+    public ManagedCacheManager cacheManager(ObjectProvider<RedisConnectionFactory> connectionFactory,
+            ObjectProvider<LocalCacheStore> localCacheStore,
+            RedisSerializer<Object> redisValueSerializer,
+            KeyValueStore keyValueStore, Environment environment,
+            ObjectProvider<CacheInvalidationBus> invalidationBus, CacheMetrics cacheMetrics,
+            @Value("${app.cache.backend:redis}") String backend,
+            @Value("${app.cache.default-ttl:30m}") Duration defaultTtl,
+            @Value("${app.cache.default-max-entry-bytes:1048576}") int defaultMaxEntryBytes,
+            @Value("${app.cache.near.caches:chemical}") String[] nearCacheNames,
+            @Value("${app.cache.near.max-size:10000}") int nearMaxSize,
+            @Value("${app.cache.near.ttl-seconds:60}") long nearTtlSeconds,
+            @Value("${app.cache.single-flight.caches:" + SINGLE_FLIGHT_DEFAULT_CACHES + "}") String[] singleFlightCacheNames,
+            @Value("${app.cache.single-flight.lease-ms:3000}") long leaseMillis,
+            @Value("${app.cache.single-flight.wait-ms:200}") long waitMillis,
+            @Value("${app.cache.single-flight.early-refresh-beta:1.0}") double earlyRefreshBeta,
+            @Value("${app.cache.namespace-version-ttl-ms:1000}") long versionTtlMillis) {
         // 默认配置
         RedisCacheConfiguration config = RedisCacheConfiguration.defaultCacheConfig()
-                // 设置缓存过期时间为30分钟
-                .entryTtl(Duration.ofMinutes(30))
+                // 设置缓存过期时间，默认30分钟
+                .entryTtl(defaultTtl)
                 // 设置key的序列化方式
                 .serializeKeysWith(
                         RedisSerializationContext.SerializationPair.fromSerializer(new StringRedisSerializer()))
                 // 设置value的序列化方式
-                .serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(serializer))
+                .serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(redisValueSerializer))
                 // 不缓存null值
                 .disableCachingNullValues();
 
-        return RedisCacheManager.builder(connectionFactory)
-                .cacheDefaults(config)
-                .transactionAware()
-                .build();
+        Map<String, RedisCacheConfiguration> cacheConfigurations = new HashMap<>();
+        Map<String, Duration> ttls = new HashMap<>();
+        Map<String, Integer> maxEntryBytes = new HashMap<>();
+        for (String name : CacheNames.ALL) {
+            ttls.put(name, environment.getProperty("app.cache.ttl." + name, Duration.class, defaultTtl));
+            cacheConfigurations.put(name, config.entryTtl(ttls.get(name)));
+            maxEntryBytes.put(name,
+                    environment.getProperty("app.cache.max-entry-bytes." + name, Integer.class, defaultMaxEntryBytes));
+        }
+        Set<String> singleFlight = new HashSet<>(Arrays.asList(singleFlightCacheNames));
+
+        if ("local".equalsIgnoreCase(backend)) {
+            CacheManager localCacheManager = new LocalCacheManager(localCacheStore.getObject(), redisValueSerializer,
+                    ttls, maxEntryBytes, defaultTtl, defaultMaxEntryBytes, cacheMetrics);
+            return new ManagedCacheManager(localCacheManager, keyValueStore, null, singleFlight, leaseMillis, waitMillis,
+                    earlyRefreshBeta, versionTtlMillis, cacheMetrics);
+        }
+
+        // allEntries清除缓存时用SCAN分批删除，默认的KEYS会遍历整个键空间并阻塞Redis
+        BudgetedRedisCacheWriter cacheWriter = new BudgetedRedisCacheWriter(
+                RedisCacheWriter.nonLockingRedisCacheWriter(connectionFactory.getObject(), BatchStrategies.scan(1000)),
+                connectionFactory.getObject(), maxEntryBytes, defaultMaxEntryBytes, cacheMetrics);
+
+        // 事务感知由ManagedCacheManager在缓存链外层统一加上
+        BatchRedisCacheManager redisCacheManager = new BatchRedisCacheManager(cacheWriter, config, cacheConfigurations);
+        // 被包装后不再作为Bean初始化，需手动完成
+        redisCacheManager.afterPropertiesSet();
+
+        NearCacheCoordinator nearCacheCoordinator = null;
+        CacheInvalidationBus bus = invalidationBus.getIfAvailable();
+        if (bus != null) {
+            Map<String, Integer> nearMaxEntries = new HashMap<>();
+            for (String name : nearCacheNames) {
+                nearMaxEntries.put(name,
+                        environment.getProperty("app.cache.near.max-entries." + name, Integer.class, nearMaxSize));
+            }
+            nearCacheCoordinator = new NearCacheCoordinator(bus, nearMaxEntries, nearTtlSeconds, redisValueSerializer);
+        }
+        return new ManagedCacheManager(redisCacheManager, keyValueStore, nearCacheCoordinator,
+                singleFlight, leaseMillis, waitMillis, earlyRefreshBeta, versionTtlMillis, cacheMetrics);
     }
 
     /**
@@ -101,24 +235,21 @@ public class RedisConfig {
      * @return RedisTemplate
      */
     @Bean
+    @ConditionalOnProperty(prefix = "app.cache", name = "backend", havingValue = "redis", matchIfMissing = true)
     public RedisTemplate<String, Object> redisTemplate(RedisConnectionFactory connectionFactory,
-            ObjectMapper redisObjectMapper) {
+            RedisSerializer<Object> redisValueSerializer) {
         RedisTemplate<String, Object> template = new RedisTemplate<>();
         template.setConnectionFactory(connectionFactory);
 
-        // 创建自定义的Jackson2JsonRedisSerializer
-        Jackson2JsonRedisSerializer<Object> serializer = new Jackson2JsonRedisSerializer<>(redisObjectMapper,
-                Object.class);
-
         // 使用StringRedisSerializer来序列化和反序列化redis的key值
         template.setKeySerializer(new StringRedisSerializer());
-        // 使用自定义的Jackson2JsonRedisSerializer来序列化和反序列化redis的value值
-        template.setValueSerializer(serializer);
+        // value与缓存管理器使用同一个值序列化器
+        template.setValueSerializer(redisValueSerializer);
 
         // Hash的key也采用StringRedisSerializer的序列化方式
         template.setHashKeySerializer(new StringRedisSerializer());
-        // Hash的value也采用自定义的Jackson2JsonRedisSerializer的序列化方式
-        template.setHashValueSerializer(serializer);
+        // Hash的value也采用同一个值序列化器
+        template.setHashValueSerializer(redisValueSerializer);
 
         template.afterPropertiesSet();
         return template;
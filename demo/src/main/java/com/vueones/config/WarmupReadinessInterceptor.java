@@ -0,0 +1,38 @@
+package com.vueones.config;
+
+import com.vueones.cache.CacheWarmer;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 就绪拦截器
+ * 启动预热完成前对业务请求返回503，并提示客户端稍后重试
+ */
+@Component
+public class WarmupReadinessInterceptor implements HandlerInterceptor {
+
+    private static final String NOT_READY_BODY = "{\"code\":503,\"message\":\"服务预热中，请稍后重试\",\"data\":null}";
+
+    @Autowired
+    private CacheWarmer cacheWarmer;
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
+        if (cacheWarmer.isReady()) {
+            return true;
+        }
+        response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+        response.setHeader("Retry-After", "1");
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.getWriter().write(NOT_READY_BODY);
+        return false;
+    }
+}
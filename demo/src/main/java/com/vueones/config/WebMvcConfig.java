@@ -0,0 +1,24 @@
+package com.vueones.config;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Web MVC配置
+ */
+@Configuration
+public class WebMvcConfig implements WebMvcConfigurer {
+
+    @Autowired
+    private WarmupReadinessInterceptor warmupReadinessInterceptor;
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        // 缓存监控接口不受就绪门控，便于观察预热进度
+        registry.addInterceptor(warmupReadinessInterceptor)
+                .addPathPatterns("/**")
+                .excludePathPatterns("/cache/**");
+    }
+}
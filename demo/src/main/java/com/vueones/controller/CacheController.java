@@ -0,0 +1,98 @@
+package com.vueones.controller;
+
+import com.vueones.cache.CacheMetricsExporter;
+import com.vueones.cache.CacheWarmer;
+import com.vueones.cache.ExistenceGuard;
+import com.vueones.cache.ManagedCacheManager;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 缓存监控控制器
+ */
+@RestController
+@RequestMapping("/cache")
+public class CacheController {
+
+    @Autowired
+    private ManagedCacheManager cacheManager;
+
+    @Autowired
+    private CacheWarmer cacheWarmer;
+
+    @Autowired
+    private ExistenceGuard existenceGuard;
+
+    @Autowired
+    private CacheMetricsExporter cacheMetricsExporter;
+
+    /**
+     * 获取各缓存的命中率、写入/失效次数与读取耗时分布
+     * @return 缓存统计
+     */
+    @GetMapping("/statistics")
+    public ResponseEntity<Map<String, Object>> getStatistics() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("code", 200);
+        response.put("message", "获取缓存统计成功");
+        response.put("data", cacheManager.getStatistics());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * 获取启动预热的状态与各预热项耗时
+     * @return 预热报告
+     */
+    @GetMapping("/warmup")
+    public ResponseEntity<Map<String, Object>> getWarmupReport() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("code", 200);
+        response.put("message", "获取预热状态成功");
+        response.put("data", cacheWarmer.getReport());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * 获取按ID查询的存在性过滤器与否定缓存统计
+     * @return 各实体的过滤器状态与拦截次数
+     */
+    @GetMapping("/existence")
+    public ResponseEntity<Map<String, Object>> getExistenceStatistics() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("code", 200);
+        response.put("message", "获取存在性过滤统计成功");
+        response.put("data", existenceGuard.getStatistics());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * 以Prometheus文本格式导出缓存指标，供监控系统抓取
+     * @return 指标文本
+     */
+    @GetMapping("/metrics")
+    public ResponseEntity<String> getMetrics() {
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("text/plain; version=0.0.4; charset=utf-8"))
+                .body(cacheMetricsExporter.prometheus());
+    }
+
+    /**
+     * 获取各缓存的精简统计：命中率、加载耗时、值大小、key数与失效次数，用于调整TTL与下线无效缓存
+     * @return 精简统计
+     */
+    @GetMapping("/summary")
+    public ResponseEntity<Map<String, Object>> getSummary() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("code", 200);
+        response.put("message", "获取缓存概览成功");
+        response.put("data", cacheMetricsExporter.summary());
+        return ResponseEntity.ok(response);
+    }
+}
@@ -1,6 +1,15 @@
 package com.vueones.controller;
 
+import com.vueones.dto.CursorPage;
+import com.vueones.dto.InventoryCursor;
+import com.vueones.dto.StockMutationResult;
 import com.vueones.entity.Inventory;
+import com.vueones.entity.InventoryLot;
+import com.vueones.entity.InventoryMovement;
+import com.vueones.exception.InventoryException;
+import com.vueones.dto.ReconciliationReport;
+import com.vueones.service.IInventoryMovementService;
+import com.vueones.service.IInventoryReconcileService;
 import com.vueones.service.IInventoryService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
@@ -10,10 +19,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
 import java.util.ArrayList;
-import java.util.Date;
-import java.util.Calendar;
-import java.util.Random;
-import java.text.SimpleDateFormat;
 
 /**
  * 库存管理控制器
@@ -31,6 +36,12 @@ public class InventoryController {
     
     @Autowired
     private IInventoryService inventoryService;
+
+    @Autowired
+    private IInventoryMovementService inventoryMovementService;
+
+    @Autowired
+    private IInventoryReconcileService inventoryReconcileService;
     
     /**
      * 添加库存记录
@@ -111,9 +122,10 @@ public class InventoryController {
      * @param chemicalId 化学品ID
      * @param chemicalName 化学品名称
      * @param location 存储位置
-     * @param status 库存状态（normal:正常,low:不足,high:超储）
-     * @param page 页码
+     * @param status 库存状态（normal:正常,warning:预警,low:不足,high:超储）
+     * @param page 页码（未传游标时按页码跳页）
      * @param size 每页记录数
+     * @param cursor 上一页返回的nextCursor，传入时按游标读取下一页
      * @return 库存记录列表
      */
     @GetMapping("/list")
@@ -123,27 +135,49 @@ public class InventoryController {
             @RequestParam(required = false) String location,
             @RequestParam(required = false) String status,
             @RequestParam(required = false, defaultValue = "1") Integer page,
-            @RequestParam(required = false, defaultValue = "5") Integer size) {
+            @RequestParam(required = false, defaultValue = "5") Integer size,
+            @RequestParam(required = false) String cursor) {
         Map<String, Object> response = new HashMap<>();
         try {
-            List<Inventory> inventories = inventoryService.getInventoryList(chemicalId, chemicalName, location, status);
             page = Math.max(1, page);
-            Integer offset = (page - 1) * size;
-            List<Inventory> pageRecords = inventories.size() > 0 && offset < inventories.size() ? 
-                inventories.subList(offset, Math.min(offset + size, inventories.size())) : new ArrayList<>();
+            size = Math.max(1, size);
+            int total = inventoryService.countInventoryList(chemicalId, chemicalName, location, status);
+            
+            List<Inventory> pageRecords;
+            String nextCursor;
+            if ((cursor != null && !cursor.isEmpty()) || page == 1) {
+                // 游标分页：按 (update_time, id) 索引顺序读取，深页与首页代价相同
+                CursorPage<Inventory> cursorPage = inventoryService.getInventoryPageAfter(
+                        chemicalId, chemicalName, location, status, cursor, size);
+                pageRecords = cursorPage.getRecords();
+                nextCursor = cursorPage.getNextCursor();
+            } else {
+                // 按页码跳页（兼容分页组件直接跳转）
+                pageRecords = total > (page - 1) * size ?
+                    inventoryService.getInventoryPage(chemicalId, chemicalName, location, status, page, size) : new ArrayList<>();
+                nextCursor = pageRecords.size() == size ?
+                    InventoryCursor.after(pageRecords.get(size - 1)).encode() : null;
+            }
             
             Map<String, Object> pageData = new HashMap<>();
             pageData.put("records", pageRecords);
-            pageData.put("total", inventories.size());
+            pageData.put("total", total);
             pageData.put("size", size);
             pageData.put("current", page);
-            pageData.put("pages", (inventories.size() + size - 1) / size);
+            pageData.put("pages", (total + size - 1) / size);
+            pageData.put("nextCursor", nextCursor);
+            pageData.put("hasMore", nextCursor != null);
             
             response.put("code", 200);
             response.put("message", "获取库存记录成功");
             response.put("data", pageData);
             
             return ResponseEntity.ok(response);
+        } catch (IllegalArgumentException e) {
+            response.put("code", 400);
+            response.put("message", e.getMessage());
+            response.put("data", null);
+            return ResponseEntity.badRequest().body(response);
         } catch (Exception e) {
             response.put("code", 500);
             response.put("message", "获取库存记录失败: " + e.getMessage());
@@ -262,19 +296,24 @@ public class InventoryController {
         Map<String, Object> response = new HashMap<>();
         
         try {
-            boolean result = inventoryService.processStorageIn(chemicalId, amount);
+            StockMutationResult result = inventoryService.applyStorageIn(chemicalId, amount);
             
-            if (result) {
+            if (result.isSuccess()) {
                 response.put("code", 200);
                 response.put("message", "入库操作成功");
-                response.put("data", null);
+                response.put("data", result);
             } else {
                 response.put("code", 400);
-                response.put("message", "入库操作失败");
-                response.put("data", null);
+                response.put("message", "入库操作失败: " + result.getMessage());
+                response.put("data", result);
             }
             
             return ResponseEntity.ok(response);
+        } catch (InventoryException e) {
+            response.put("code", e.getStatus());
+            response.put("message", "入库操作失败: " + e.getMessage());
+            response.put("data", null);
+            return ResponseEntity.status(e.getStatus()).body(response);
         } catch (Exception e) {
             e.printStackTrace();
             response.put("code", 500);
@@ -297,19 +336,24 @@ public class InventoryController {
         Map<String, Object> response = new HashMap<>();
         
         try {
-            boolean result = inventoryService.processStorageOut(chemicalId, amount);
+            StockMutationResult result = inventoryService.applyStorageOut(chemicalId, amount);
             
-            if (result) {
+            if (result.isSuccess()) {
                 response.put("code", 200);
                 response.put("message", "出库操作成功");
-                response.put("data", null);
+                response.put("data", result);
             } else {
                 response.put("code", 400);
-                response.put("message", "出库操作失败，可能是库存不足");
-                response.put("data", null);
+                response.put("message", "出库操作失败: " + result.getMessage());
+                response.put("data", result);
             }
             
             return ResponseEntity.ok(response);
+        } catch (InventoryException e) {
+            response.put("code", e.getStatus());
+            response.put("message", "出库操作失败: " + e.getMessage());
+            response.put("data", null);
+            return ResponseEntity.status(e.getStatus()).body(response);
         } catch (Exception e) {
             e.printStackTrace();
             response.put("code", 500);
@@ -318,6 +362,58 @@ public class InventoryController {
             return ResponseEntity.status(500).body(response);
         }
     }
+    /**
+     * 库存对账：按入库、出库、使用记录推算应有库存并与当前库存比对
+     * @param incremental 是否增量对账（只汇总上次对账之后新增的记录）
+     * @param autoCorrect 是否按差异自动修正库存
+     * @return 对账报告
+     */
+    @PostMapping("/reconcile")
+    public ResponseEntity<Map<String, Object>> reconcile(
+            @RequestParam(defaultValue = "true") boolean incremental,
+            @RequestParam(defaultValue = "false") boolean autoCorrect) {
+        Map<String, Object> response = new HashMap<>();
+        
+        try {
+            ReconciliationReport report = inventoryReconcileService.reconcile(incremental, autoCorrect);
+            response.put("code", 200);
+            response.put("message", "库存对账完成，差异数: " + report.getDiffs().size());
+            response.put("data", report);
+            return ResponseEntity.ok(response);
+        } catch (IllegalStateException e) {
+            response.put("code", 409);
+            response.put("message", e.getMessage());
+            response.put("data", null);
+            return ResponseEntity.status(409).body(response);
+        } catch (Exception e) {
+            e.printStackTrace();
+            response.put("code", 500);
+            response.put("message", "库存对账失败: " + e.getMessage());
+            response.put("data", null);
+            return ResponseEntity.status(500).body(response);
+        }
+    }
+
+    /**
+     * 获取出入库合并提交统计（批大小、额外延迟分布），用于调整合并窗口
+     * @return 统计数据
+     */
+    @GetMapping("/group-commit/statistics")
+    public ResponseEntity<Map<String, Object>> getGroupCommitStatistics() {
+        Map<String, Object> response = new HashMap<>();
+        
+        Map<String, Object> statistics = inventoryService.getGroupCommitStatistics();
+        if (statistics == null) {
+            response.put("code", 400);
+            response.put("message", "未开启出入库合并提交");
+            response.put("data", null);
+        } else {
+            response.put("code", 200);
+            response.put("message", "获取合并提交统计成功");
+            response.put("data", statistics);
+        }
+        return ResponseEntity.ok(response);
+    }
     /**
      * 获取库存统计数据
      * @param chemicalId 化学品ID
@@ -332,47 +428,8 @@ public class InventoryController {
         Map<String, Object> response = new HashMap<>();
         
         try {
-            // 只查询一次数据库
-            List<Inventory> allInventory = inventoryService.getInventoryList(chemicalId, null, location, null);
-            
-            // 准备符合前端需要的统计数据
-            Map<String, Object> data = new HashMap<>();
-            
-            // 计算总库存种类数
-            data.put("totalTypes", (int) allInventory.stream()
-                .map(Inventory::getChemicalId)
-                .distinct()
-                .count());
-            
-            // 计算库存预警数量 (库存量低于预警阈值的1.2倍但高于预警阈值)
-            long warningCount = allInventory.stream()
-                .filter(inventory -> inventory.getChemical() != null && 
-                       inventory.getCurrentAmount() < inventory.getChemical().getWarningThreshold() * 1.2 &&
-                       inventory.getCurrentAmount() >= inventory.getChemical().getWarningThreshold())
-                .count();
-            data.put("warningCount", warningCount);
-            
-            // 计算库存不足数量 (库存量低于预警阈值)
-            long lowCount = allInventory.stream()
-                .filter(inventory -> inventory.getChemical() != null && 
-                       inventory.getCurrentAmount() < inventory.getChemical().getWarningThreshold())
-                .count();
-            data.put("lowCount", lowCount);
-            
-            // 计算超储数量 (暂时设为0，可以根据业务需求补充逻辑)
-            data.put("highCount", 0);
-            
-            // 总库存记录数
-            data.put("totalRecords", allInventory.size());
-            
-            // 计算总库存量
-            double totalAmount = allInventory.stream()
-                .mapToDouble(Inventory::getCurrentAmount)
-                .sum();
-            data.put("totalAmount", totalAmount);
-            
-            // 低于预警阈值的记录数
-            data.put("belowThreshold", lowCount);
+            // 按库存状态在数据库中一次汇总
+            Map<String, Object> data = inventoryService.getInventoryStatistics(chemicalId, location);
             
             response.put("code", 200);
             response.put("message", "获取统计数据成功");
@@ -387,18 +444,47 @@ public class InventoryController {
             return ResponseEntity.status(500).body(response);
         }
     }
+    /**
+     * 获取化学品的库存批次
+     * @param chemicalId 化学品ID
+     * @param includeClosed 是否包含已用完的批次
+     * @return 批次列表
+     */
+    @GetMapping("/lots")
+    public ResponseEntity<Map<String, Object>> getLots(
+            @RequestParam Integer chemicalId,
+            @RequestParam(defaultValue = "false") boolean includeClosed) {
+        Map<String, Object> response = new HashMap<>();
+        
+        try {
+            List<InventoryLot> lots = inventoryService.getLots(chemicalId, includeClosed);
+            
+            response.put("code", 200);
+            response.put("message", "获取库存批次成功");
+            response.put("data", lots);
+            
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            response.put("code", 500);
+            response.put("message", "获取库存批次失败: " + e.getMessage());
+            response.put("data", null);
+            
+            return ResponseEntity.status(500).body(response);
+        }
+    }
     /**
      * 获取库存历史记录
      * @param inventoryId 库存ID
      * @return 库存历史记录列表
      */
     @GetMapping("/{inventoryId}/history")
-    public ResponseEntity<Map<String, Object>> getInventoryHistory(@PathVariable Integer inventoryId) {
+    public ResponseEntity<Map<String, Object>> getInventoryHistory(
+            @PathVariable Integer inventoryId,
+            @RequestParam(defaultValue = "100") Integer limit) {
         Map<String, Object> response = new HashMap<>();
         
         try {
-            // 这里实际应该调用Service层获取历史记录，暂时返回空列表
-            List<Object> historyList = new ArrayList<>();
+            List<InventoryMovement> historyList = inventoryMovementService.getHistory(inventoryId, Math.min(limit, 1000));
             
             response.put("code", 200);
             response.put("message", "获取历史记录成功");
@@ -416,37 +502,18 @@ public class InventoryController {
     /**
      * 获取库存趋势图数据
      * @param chemicalId 化学品ID
+     * @param days 天数（默认30天）
      * @return 趋势图数据
      */
     @GetMapping("/trend")
-    public ResponseEntity<Map<String, Object>> getInventoryTrend(@RequestParam Integer chemicalId) {
+    public ResponseEntity<Map<String, Object>> getInventoryTrend(
+            @RequestParam Integer chemicalId,
+            @RequestParam(defaultValue = "30") Integer days) {
         Map<String, Object> response = new HashMap<>();
         
         try {
-            // 模拟数据，实际应该从数据库获取历史库存变化记录
-            Map<String, Object> data = new HashMap<>();
-            List<String> dates = new ArrayList<>();
-            List<Double> amounts = new ArrayList<>();
-            
-            // 生成近30天的示例数据
-            Date now = new Date();
-            SimpleDateFormat sdf = new SimpleDateFormat("MM-dd");
-            Random random = new Random();
-            double baseAmount = 100.0; // 基础库存量
-            
-            for (int i = 29; i >= 0; i--) {
-                Calendar cal = Calendar.getInstance();
-                cal.setTime(now);
-                cal.add(Calendar.DAY_OF_MONTH, -i);
-                
-                dates.add(sdf.format(cal.getTime()));
-                // 生成一个在基础库存量上下浮动的值
-                double fluctuation = random.nextDouble() * 20 - 10; // -10到10之间的随机数
-                amounts.add(Math.max(0, baseAmount + fluctuation));
-            }
-            
-            data.put("dates", dates);
-            data.put("amounts", amounts);
+            // 由日终快照与窗口内的库存流水计算
+            Map<String, Object> data = inventoryMovementService.getTrend(chemicalId, Math.max(1, Math.min(days, 366)));
             
             response.put("code", 200);
             response.put("message", "获取趋势图数据成功");
@@ -1,12 +1,19 @@
 package com.vueones.controller;
 
+import com.vueones.common.R;
+import com.vueones.dto.OutboundResult;
+import com.vueones.dto.RecordStatistics;
+import com.vueones.entity.LotAllocation;
 import com.vueones.entity.OutboundRecord;
 import com.vueones.entity.Chemical;
 import com.vueones.entity.Man;
 import com.vueones.entity.Inventory;
+import com.vueones.mapper.RecordRollupMapper;
 import com.vueones.service.IOutboundRecordService;
+import com.vueones.service.IRecordStatisticsService;
 import com.vueones.service.IChemicalService;
 import com.vueones.service.IInventoryService;
+import com.vueones.exception.InventoryException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
@@ -19,7 +26,6 @@ import java.util.List;
 import java.util.Date;
 import java.util.Map;
 import java.util.HashMap;
-import java.util.Calendar;
 import java.util.ArrayList;
 import java.io.BufferedReader;
 import java.io.InputStreamReader;
@@ -52,114 +58,41 @@ public class OutboundRecordController {
     
     @Autowired
     private IInventoryService inventoryService;
+
+    @Autowired
+    private IRecordStatisticsService recordStatisticsService;
     
     /**
      * 添加出库记录
      * @param record 出库记录
-     * @return 是否成功
+     * @return 成功时返回写入的出库记录（开启批次管理时含批次分配）
      */
     @PostMapping("/add")
-    public ResponseEntity<?> addOutboundRecord(@RequestBody OutboundRecord record) {
+    public ResponseEntity<R<OutboundRecord>> addOutboundRecord(@RequestBody OutboundRecord record) {
         log.info("接收到添加出库记录请求: {}", record);
         
         try {
-            // 设置创建时间
-            if (record.getCreateTime() == null) {
-                record.setCreateTime(new Date());
-            }
-            
-            // 设置出库时间，如果没有指定
-            if (record.getOutboundTime() == null) {
-                record.setOutboundTime(new Date());
-            }
-            
             // 如果没有设置操作员ID，使用默认值
             if (record.getOperatorId() == null) {
                 record.setOperatorId(1); // 默认操作员
                 log.warn("未指定操作员ID，使用默认值: 1");
             }
             
-            // 根据化学品ID获取库存信息
-            if (record.getChemicalId() != null) {
-                // 获取化学品信息
-                Chemical chemical = chemicalService.selectChemicalById(record.getChemicalId());
-                if (chemical != null) {
-                    log.info("找到化学品信息: {}", chemical.getName());
-                    
-                    // 设置化学品名称
-                    if (chemical.getName() != null) {
-                        record.setChemicalName(chemical.getName());
-                    }
-                    
-                    // 获取当前库存
-                    Double currentInventory = inventoryService.getTotalAmount(record.getChemicalId());
-                    log.info("当前库存数量: {}", currentInventory);
-                    
-                    // 检查库存是否足够
-                    if (currentInventory == null || currentInventory < record.getAmount()) {
-                        log.warn("库存不足，当前库存: {}, 需要出库: {}", currentInventory, record.getAmount());
-                        
-                        Map<String, Object> response = new HashMap<>();
-                        response.put("code", 400);
-                        response.put("message", "库存不足，当前库存: " + currentInventory + ", 需要出库: " + record.getAmount());
-                        return ResponseEntity.status(400).body(response);
-                    }
-                } else {
-                    log.warn("找不到ID为 {} 的化学品信息", record.getChemicalId());
-                    
-                    Map<String, Object> response = new HashMap<>();
-                    response.put("code", 400);
-                    response.put("message", "找不到指定的化学品");
-                    return ResponseEntity.status(400).body(response);
-                }
-            } else {
-                log.error("缺少化学品ID");
-                
-                Map<String, Object> response = new HashMap<>();
-                response.put("code", 400);
-                response.put("message", "缺少化学品ID");
-                return ResponseEntity.status(400).body(response);
-            }
-            
-            // 执行出库操作
-        int result = outboundRecordService.addOutboundRecord(record);
-            
-        if (result > 0) {
-                // 出库成功，更新库存
-                boolean inventoryUpdated = inventoryService.processStorageOut(record.getChemicalId(), record.getAmount());
-                
-                if (inventoryUpdated) {
-                    log.info("出库成功，ID: {}, 库存已更新", record.getId());
-                } else {
-                    log.warn("出库记录已创建，但库存更新失败");
-                }
-                
-                // 构建成功响应
-                Map<String, Object> response = new HashMap<>();
-                response.put("code", 200);
-                response.put("message", "添加出库记录成功");
-                response.put("data", record);
-                
+            // 校验、扣减库存与写入出库记录在同一事务中完成
+            OutboundResult result = outboundRecordService.reserveAndRecordOutbound(record);
+            if (result.isSuccess()) {
+                R<OutboundRecord> response = R.ok(result.getRecord());
+                response.setMessage(result.getMessage());
                 return ResponseEntity.ok(response);
-            } else {
-                log.error("添加出库记录失败");
-                
-                // 构建失败响应
-                Map<String, Object> response = new HashMap<>();
-                response.put("code", 500);
-                response.put("message", "添加出库记录失败");
-                
-                return ResponseEntity.status(500).body(response);
             }
+            
+            return ResponseEntity.status(400).body(R.error(400, result.getMessage()));
+        } catch (InventoryException e) {
+            log.warn("添加出库记录失败: {}", e.getMessage());
+            return ResponseEntity.status(e.getStatus()).body(R.error(e.getStatus(), "添加出库记录失败: " + e.getMessage()));
         } catch (Exception e) {
             log.error("添加出库记录异常", e);
-            
-            // 构建异常响应
-            Map<String, Object> response = new HashMap<>();
-            response.put("code", 500);
-            response.put("message", "添加出库记录失败: " + e.getMessage());
-            
-            return ResponseEntity.status(500).body(response);
+            return ResponseEntity.status(500).body(R.error(500, "添加出库记录失败: " + e.getMessage()));
         }
     }
     
@@ -352,6 +285,14 @@ public class OutboundRecordController {
                 
                 return ResponseEntity.status(500).body(response);
             }
+        } catch (InventoryException e) {
+            log.warn("更新出库记录失败: id={}, {}", id, e.getMessage());
+            
+            Map<String, Object> response = new HashMap<>();
+            response.put("code", e.getStatus());
+            response.put("message", "更新出库记录失败: " + e.getMessage());
+            
+            return ResponseEntity.status(e.getStatus()).body(response);
         } catch (Exception e) {
             log.error("更新出库记录异常", e);
             
@@ -443,6 +384,28 @@ public class OutboundRecordController {
         }
         return ResponseEntity.notFound().build();
     }
+    /**
+     * 查询出库记录的批次分配
+     * @param id 出库记录id
+     * @return 批次分配列表
+     */
+    @GetMapping("/{id}/allocations")
+    public ResponseEntity<Map<String, Object>> getLotAllocations(@PathVariable Integer id) {
+        Map<String, Object> response = new HashMap<>();
+        try {
+            List<LotAllocation> allocations = outboundRecordService.getLotAllocations(id);
+            response.put("code", 200);
+            response.put("message", "获取批次分配成功");
+            response.put("data", allocations);
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            log.error("获取批次分配失败", e);
+            response.put("code", 500);
+            response.put("message", "获取批次分配失败: " + e.getMessage());
+            response.put("data", null);
+            return ResponseEntity.status(500).body(response);
+        }
+    }
     /**
      * 根据化学品名称、领用人、用途查询出库记录
      * @param chemicalId 化学品id
@@ -542,57 +505,9 @@ public class OutboundRecordController {
             log.info("接收到出库统计请求：chemicalId={}, chemicalName={}, startTime={}, endTime={}", 
                     chemicalId, chemicalName, startTime, endTime);
                     
-            // 获取月度统计数据
-            Calendar now = Calendar.getInstance();
-            Calendar firstDayOfMonth = Calendar.getInstance();
-            firstDayOfMonth.set(Calendar.DAY_OF_MONTH, 1);
-            firstDayOfMonth.set(Calendar.HOUR_OF_DAY, 0);
-            firstDayOfMonth.set(Calendar.MINUTE, 0);
-            firstDayOfMonth.set(Calendar.SECOND, 0);
-            
-            // 月度出库总量
-            Double monthlyTotal = outboundRecordService.sumAmountByChemicalId(
-                chemicalId, firstDayOfMonth.getTime(), now.getTime());
-            
-            // 月度出库记录数
-            Integer monthlyCount = outboundRecordService.getMonthlyOutboundCount(chemicalId, chemicalName);
-            
-            // 月度出库次数
-            Integer monthlyTimes = outboundRecordService.getMonthlyOutboundTimes(chemicalId, chemicalName);
-            
-            // 获取日统计数据
-            Calendar startOfDay = Calendar.getInstance();
-            startOfDay.set(Calendar.HOUR_OF_DAY, 0);
-            startOfDay.set(Calendar.MINUTE, 0);
-            startOfDay.set(Calendar.SECOND, 0);
-            
-            Calendar endOfDay = Calendar.getInstance();
-            endOfDay.set(Calendar.HOUR_OF_DAY, 23);
-            endOfDay.set(Calendar.MINUTE, 59);
-            endOfDay.set(Calendar.SECOND, 59);
-            
-            // 日出库总量
-            Double dailyTotal = outboundRecordService.sumAmountByChemicalId(
-                chemicalId, startOfDay.getTime(), endOfDay.getTime());
-            
-            // 日出库记录数
-            Integer dailyCount = outboundRecordService.getDailyOutboundCount(chemicalId, chemicalName);
-            
-            // 日出库次数
-            Integer dailyTimes = outboundRecordService.getDailyOutboundTimes(chemicalId, chemicalName);
-            
-            // 获取总量
-            Double totalAmount = outboundRecordService.sumAmountByChemicalId(chemicalId, null, null);
-            
-            // 创建统计结果
-            Map<String, Object> statisticsData = new HashMap<>();
-            statisticsData.put("monthlyTotal", monthlyTotal != null ? monthlyTotal : 0.0);
-            statisticsData.put("monthlyCount", monthlyCount != null ? monthlyCount : 0);
-            statisticsData.put("monthlyTimes", monthlyTimes != null ? monthlyTimes : 0);
-            statisticsData.put("dailyTotal", dailyTotal != null ? dailyTotal : 0.0);
-            statisticsData.put("dailyCount", dailyCount != null ? dailyCount : 0);
-            statisticsData.put("dailyTimes", dailyTimes != null ? dailyTimes : 0);
-            statisticsData.put("totalAmount", totalAmount != null ? totalAmount : 0.0);
+            // 本月与当日的合计、记录数与次数，以及不限时间的总量，一次查询取得
+            RecordStatistics statisticsData = recordStatisticsService.getStatistics(
+                    RecordRollupMapper.TYPE_OUTBOUND, chemicalId, chemicalName, true);
             
             // 包装响应对象
             Map<String, Object> response = new HashMap<>();
@@ -600,8 +515,7 @@ public class OutboundRecordController {
             response.put("message", "获取统计数据成功");
             response.put("data", statisticsData);
             
-            log.info("统计数据：monthlyTotal={}, monthlyCount={}, monthlyTimes={}, dailyTotal={}, dailyCount={}, dailyTimes={}, totalAmount={}",
-                    monthlyTotal, monthlyCount, monthlyTimes, dailyTotal, dailyCount, dailyTimes, totalAmount);
+            log.info("统计数据：{}", statisticsData);
             
             return ResponseEntity.ok(response);
         } catch (Exception e) {
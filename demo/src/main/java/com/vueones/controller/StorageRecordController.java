@@ -1,10 +1,14 @@
 package com.vueones.controller;
 
+import com.vueones.dto.RecordStatistics;
 import com.vueones.entity.StorageRecord;
 import com.vueones.entity.Chemical;
+import com.vueones.mapper.RecordRollupMapper;
 import com.vueones.service.IStorageRecordService;
+import com.vueones.service.IRecordStatisticsService;
 import com.vueones.service.IInventoryService;
 import com.vueones.service.IChemicalService;
+import com.vueones.exception.InventoryException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
@@ -16,7 +20,6 @@ import java.util.List;
 import java.util.Date;
 import java.util.Map;
 import java.util.HashMap;
-import java.util.Calendar;
 import java.util.ArrayList;
 import java.text.SimpleDateFormat;
 import java.net.URLEncoder;
@@ -52,6 +55,9 @@ public class StorageRecordController {
     
     @Autowired
     private IChemicalService chemicalService;
+
+    @Autowired
+    private IRecordStatisticsService recordStatisticsService;
     
     /**
      * 添加一个私有方法，用于从StorageRecord中提取关键信息，并返回简化的Map对象
@@ -322,6 +328,14 @@ public class StorageRecordController {
                 
                 return ResponseEntity.status(200).body(response);
             }
+        } catch (InventoryException e) {
+            log.warn("更新入库记录失败: id={}, {}", id, e.getMessage());
+            
+            Map<String, Object> response = new HashMap<>();
+            response.put("code", e.getStatus());
+            response.put("message", "更新入库记录失败: " + e.getMessage());
+            
+            return ResponseEntity.status(200).body(response);
         } catch (Exception e) {
             log.error("更新入库记录异常", e);
             
@@ -607,19 +621,9 @@ public class StorageRecordController {
                 return ResponseEntity.status(200).body(response);
             }
             
-            // 确保每条记录都有化学品名称
+            // 确保每条记录都有化学品名称，缺少名称的化学品一次批量查询
+            fillChemicalNames(records);
             for (StorageRecord record : records) {
-                if (record.getChemicalId() != null && (record.getChemicalName() == null || record.getChemicalName().isEmpty())) {
-                    try {
-                        Chemical chemical = chemicalService.selectChemicalById(record.getChemicalId());
-                        if (chemical != null) {
-                            record.setChemicalName(chemical.getName());
-                        }
-                    } catch (Exception e) {
-                        log.warn("获取化学品信息失败: {}", e.getMessage());
-                    }
-                }
-                
                 // 设置默认值
                 if (record.getCreateTime() == null) {
                     record.setCreateTime(new Date());
@@ -688,51 +692,9 @@ public class StorageRecordController {
             log.info("接收到入库统计请求：chemicalId={}, chemicalName={}, startTime={}, endTime={}", 
                     chemicalId, chemicalName, startTime, endTime);
             
-            // 获取月度统计数据
-            Calendar now = Calendar.getInstance();
-            Calendar firstDayOfMonth = Calendar.getInstance();
-            firstDayOfMonth.set(Calendar.DAY_OF_MONTH, 1);
-            firstDayOfMonth.set(Calendar.HOUR_OF_DAY, 0);
-            firstDayOfMonth.set(Calendar.MINUTE, 0);
-            firstDayOfMonth.set(Calendar.SECOND, 0);
-            
-            // 月度入库总量
-            Double monthlyTotal = storageRecordService.sumStorageAmount(chemicalId, chemicalName, firstDayOfMonth.getTime(), now.getTime());
-            
-            // 月度入库记录数
-            Integer monthlyCount = storageRecordService.getMonthlyStorageCount(chemicalId, chemicalName);
-            
-            // 月度入库次数
-            Integer monthlyTimes = storageRecordService.getMonthlyStorageTimes(chemicalId, chemicalName);
-            
-            // 获取日统计数据
-            Calendar startOfDay = Calendar.getInstance();
-            startOfDay.set(Calendar.HOUR_OF_DAY, 0);
-            startOfDay.set(Calendar.MINUTE, 0);
-            startOfDay.set(Calendar.SECOND, 0);
-            
-            Calendar endOfDay = Calendar.getInstance();
-            endOfDay.set(Calendar.HOUR_OF_DAY, 23);
-            endOfDay.set(Calendar.MINUTE, 59);
-            endOfDay.set(Calendar.SECOND, 59);
-            
-            // 日入库总量
-            Double dailyTotal = storageRecordService.sumStorageAmount(chemicalId, chemicalName, startOfDay.getTime(), endOfDay.getTime());
-            
-            // 日入库记录数
-            Integer dailyCount = storageRecordService.getDailyStorageCount(chemicalId, chemicalName);
-            
-            // 日入库次数
-            Integer dailyTimes = storageRecordService.getDailyStorageTimes(chemicalId, chemicalName);
-            
-            // 准备统计数据
-        Map<String, Object> statistics = new HashMap<>();
-            statistics.put("monthlyTotal", monthlyTotal != null ? monthlyTotal : 0.0);
-            statistics.put("monthlyCount", monthlyCount != null ? monthlyCount : 0);
-            statistics.put("monthlyTimes", monthlyTimes != null ? monthlyTimes : 0);
-            statistics.put("dailyTotal", dailyTotal != null ? dailyTotal : 0.0);
-            statistics.put("dailyCount", dailyCount != null ? dailyCount : 0);
-            statistics.put("dailyTimes", dailyTimes != null ? dailyTimes : 0);
+            // 本月与当日的合计、记录数与次数，一次查询取得
+            RecordStatistics statistics = recordStatisticsService.getStatistics(
+                    RecordRollupMapper.TYPE_STORAGE, chemicalId, chemicalName, false);
             
             // 准备响应
             Map<String, Object> response = new HashMap<>();
@@ -952,6 +914,7 @@ public class StorageRecordController {
             }
             
             // 批量添加记录
+            fillChemicalNames(records);
             int result = storageRecordService.batchAddStorageRecords(records);
             
             if (result > 0) {
@@ -990,4 +953,31 @@ public class StorageRecordController {
             return ResponseEntity.status(500).body(error);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * 为缺少化学品名称的记录补全名称，所有化学品通过一次批量查询获得
+     * @param records 入库记录列表
+     */
+    private void fillChemicalNames(List<StorageRecord> records) {
+        List<Integer> chemicalIds = new ArrayList<>();
+        for (StorageRecord record : records) {
+            if (record.getChemicalId() != null && (record.getChemicalName() == null || record.getChemicalName().isEmpty())) {
+                chemicalIds.add(record.getChemicalId());
+            }
+        }
+        if (chemicalIds.isEmpty()) {
+            return;
+        }
+        try {
+            Map<Integer, Chemical> chemicals = chemicalService.selectChemicalsByIds(chemicalIds);
+            for (StorageRecord record : records) {
+                Chemical chemical = record.getChemicalId() == null ? null : chemicals.get(record.getChemicalId());
+                if (chemical != null && (record.getChemicalName() == null || record.getChemicalName().isEmpty())) {
+                    record.setChemicalName(chemical.getName());
+                }
+            }
+        } catch (Exception e) {
+            log.warn("获取化学品信息失败: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.vueones.dto;
+
+import com.vueones.entity.Inventory;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Date;
+
+/**
+ * 库存列表分页游标
+ * 记录上一页最后一条记录的 (update_time, id)，下一页从该位置之后继续读取；
+ * 对外以Base64编码的不透明字符串传递
+ */
+public class InventoryCursor {
+
+    private final Date updateTime;
+    private final Integer id;
+
+    public InventoryCursor(Date updateTime, Integer id) {
+        this.updateTime = updateTime;
+        this.id = id;
+    }
+
+    /**
+     * 以某条库存记录为位置构建游标
+     * @param last 当前页最后一条记录
+     * @return 游标
+     */
+    public static InventoryCursor after(Inventory last) {
+        return new InventoryCursor(last.getUpdateTime(), last.getId());
+    }
+
+    /**
+     * 编码为不透明字符串
+     * @return 游标字符串
+     */
+    public String encode() {
+        String raw = updateTime.getTime() + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 解析游标字符串
+     * @param token 游标字符串
+     * @return 游标
+     * @throws IllegalArgumentException 游标格式非法
+     */
+    public static InventoryCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = raw.indexOf(':');
+            long millis = Long.parseLong(raw.substring(0, separator));
+            int id = Integer.parseInt(raw.substring(separator + 1));
+            return new InventoryCursor(new Date(millis), id);
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("无效的分页游标: " + token);
+        }
+    }
+
+    public Date getUpdateTime() {
+        return updateTime;
+    }
+
+    public Integer getId() {
+        return id;
+    }
+
+    @Override
+    public String toString() {
+        return "InventoryCursor{" +
+                "updateTime=" + updateTime +
+                ", id=" + id +
+                '}';
+    }
+}
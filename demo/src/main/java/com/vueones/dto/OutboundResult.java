@@ -0,0 +1,117 @@
+package com.vueones.dto;
+
+import com.vueones.entity.OutboundRecord;
+
+/**
+ * 出库结果DTO
+ * reserveAndRecordOutbound的返回值：出库是否成功、失败原因、写入的出库记录（含批次分配）及出库后的库存余额
+ */
+public class OutboundResult {
+
+    /**
+     * 出库结果状态
+     */
+    public enum Status {
+        /** 出库成功 */
+        SUCCESS,
+        /** 请求参数不合法 */
+        INVALID_REQUEST,
+        /** 化学品不存在 */
+        CHEMICAL_NOT_FOUND,
+        /** 库存不足或无库存记录 */
+        INSUFFICIENT_STOCK
+    }
+
+    private Status status;
+    private String message;
+    private OutboundRecord record;
+    private Integer inventoryId;
+    private Double balance;
+
+    public OutboundResult() {
+    }
+
+    /**
+     * 构建成功结果
+     * @param record 已写入的出库记录
+     * @param inventoryId 被扣减的库存ID
+     * @param balance 出库后的余额
+     * @return 出库结果
+     */
+    public static OutboundResult success(OutboundRecord record, Integer inventoryId, Double balance) {
+        OutboundResult result = new OutboundResult();
+        result.setStatus(Status.SUCCESS);
+        result.setMessage("添加出库记录成功");
+        result.setRecord(record);
+        result.setInventoryId(inventoryId);
+        result.setBalance(balance);
+        return result;
+    }
+
+    /**
+     * 构建失败结果
+     * @param status 失败状态
+     * @param message 失败原因
+     * @return 出库结果
+     */
+    public static OutboundResult failure(Status status, String message) {
+        OutboundResult result = new OutboundResult();
+        result.setStatus(status);
+        result.setMessage(message);
+        return result;
+    }
+
+    public boolean isSuccess() {
+        return status == Status.SUCCESS;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public void setMessage(String message) {
+        this.message = message;
+    }
+
+    public OutboundRecord getRecord() {
+        return record;
+    }
+
+    public void setRecord(OutboundRecord record) {
+        this.record = record;
+    }
+
+    public Integer getInventoryId() {
+        return inventoryId;
+    }
+
+    public void setInventoryId(Integer inventoryId) {
+        this.inventoryId = inventoryId;
+    }
+
+    public Double getBalance() {
+        return balance;
+    }
+
+    public void setBalance(Double balance) {
+        this.balance = balance;
+    }
+
+    @Override
+    public String toString() {
+        return "OutboundResult{" +
+                "status=" + status +
+                ", message='" + message + '\'' +
+                ", inventoryId=" + inventoryId +
+                ", balance=" + balance +
+                '}';
+    }
+}
@@ -0,0 +1,95 @@
+package com.vueones.dto;
+
+/**
+ * 库存对账差异DTO
+ * 单个化学品按记录推算的应有库存与inventory中实际库存的差异
+ */
+public class ReconciliationDiff {
+
+    private Integer chemicalId;
+    private Double storageTotal;
+    private Double outboundTotal;
+    private Double usageTotal;
+    private Double expected;
+    private Double actual;
+    private Double difference;
+    private boolean corrected;
+
+    public ReconciliationDiff() {
+    }
+
+    public ReconciliationDiff(Integer chemicalId, Double storageTotal, Double outboundTotal, Double usageTotal,
+                              Double expected, Double actual) {
+        this.chemicalId = chemicalId;
+        this.storageTotal = storageTotal;
+        this.outboundTotal = outboundTotal;
+        this.usageTotal = usageTotal;
+        this.expected = expected;
+        this.actual = actual;
+        this.difference = Math.round((expected - actual) * 100) / 100.0;
+    }
+
+    public Integer getChemicalId() {
+        return chemicalId;
+    }
+
+    public void setChemicalId(Integer chemicalId) {
+        this.chemicalId = chemicalId;
+    }
+
+    public Double getStorageTotal() {
+        return storageTotal;
+    }
+
+    public void setStorageTotal(Double storageTotal) {
+        this.storageTotal = storageTotal;
+    }
+
+    public Double getOutboundTotal() {
+        return outboundTotal;
+    }
+
+    public void setOutboundTotal(Double outboundTotal) {
+        this.outboundTotal = outboundTotal;
+    }
+
+    public Double getUsageTotal() {
+        return usageTotal;
+    }
+
+    public void setUsageTotal(Double usageTotal) {
+        this.usageTotal = usageTotal;
+    }
+
+    public Double getExpected() {
+        return expected;
+    }
+
+    public void setExpected(Double expected) {
+        this.expected = expected;
+    }
+
+    public Double getActual() {
+        return actual;
+    }
+
+    public void setActual(Double actual) {
+        this.actual = actual;
+    }
+
+    public Double getDifference() {
+        return difference;
+    }
+
+    public void setDifference(Double difference) {
+        this.difference = difference;
+    }
+
+    public boolean isCorrected() {
+        return corrected;
+    }
+
+    public void setCorrected(boolean corrected) {
+        this.corrected = corrected;
+    }
+}
@@ -0,0 +1,127 @@
+package com.vueones.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 库存对账报告DTO
+ */
+public class ReconciliationReport {
+
+    private boolean incremental;
+    private boolean autoCorrect;
+
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private Date startTime;
+
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private Date endTime;
+
+    private long durationMs;
+    private int partitions;
+    private int chemicalsChecked;
+    private int correctedCount;
+    private Long storageMaxId;
+    private Long outboundMaxId;
+    private Long usageMaxId;
+    private List<ReconciliationDiff> diffs = new ArrayList<>();
+
+    public boolean isIncremental() {
+        return incremental;
+    }
+
+    public void setIncremental(boolean incremental) {
+        this.incremental = incremental;
+    }
+
+    public boolean isAutoCorrect() {
+        return autoCorrect;
+    }
+
+    public void setAutoCorrect(boolean autoCorrect) {
+        this.autoCorrect = autoCorrect;
+    }
+
+    public Date getStartTime() {
+        return startTime;
+    }
+
+    public void setStartTime(Date startTime) {
+        this.startTime = startTime;
+    }
+
+    public Date getEndTime() {
+        return endTime;
+    }
+
+    public void setEndTime(Date endTime) {
+        this.endTime = endTime;
+    }
+
+    public long getDurationMs() {
+        return durationMs;
+    }
+
+    public void setDurationMs(long durationMs) {
+        this.durationMs = durationMs;
+    }
+
+    public int getPartitions() {
+        return partitions;
+    }
+
+    public void setPartitions(int partitions) {
+        this.partitions = partitions;
+    }
+
+    public int getChemicalsChecked() {
+        return chemicalsChecked;
+    }
+
+    public void setChemicalsChecked(int chemicalsChecked) {
+        this.chemicalsChecked = chemicalsChecked;
+    }
+
+    public int getCorrectedCount() {
+        return correctedCount;
+    }
+
+    public void setCorrectedCount(int correctedCount) {
+        this.correctedCount = correctedCount;
+    }
+
+    public Long getStorageMaxId() {
+        return storageMaxId;
+    }
+
+    public void setStorageMaxId(Long storageMaxId) {
+        this.storageMaxId = storageMaxId;
+    }
+
+    public Long getOutboundMaxId() {
+        return outboundMaxId;
+    }
+
+    public void setOutboundMaxId(Long outboundMaxId) {
+        this.outboundMaxId = outboundMaxId;
+    }
+
+    public Long getUsageMaxId() {
+        return usageMaxId;
+    }
+
+    public void setUsageMaxId(Long usageMaxId) {
+        this.usageMaxId = usageMaxId;
+    }
+
+    public List<ReconciliationDiff> getDiffs() {
+        return diffs;
+    }
+
+    public void setDiffs(List<ReconciliationDiff> diffs) {
+        this.diffs = diffs;
+    }
+}
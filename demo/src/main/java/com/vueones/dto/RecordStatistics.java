@@ -0,0 +1,89 @@
+package com.vueones.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * 入库/出库统计DTO
+ * 本月（截至今日）与当日的数量合计、记录数、次数，次数按本月有记录的天数、当日有记录的分钟数计；
+ * totalAmount为不限时间的数量合计，只在需要时计算，未计算时不输出
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class RecordStatistics {
+
+    private Double monthlyTotal;
+    private Integer monthlyCount;
+    private Integer monthlyTimes;
+    private Double dailyTotal;
+    private Integer dailyCount;
+    private Integer dailyTimes;
+    private Double totalAmount;
+
+    public Double getMonthlyTotal() {
+        return monthlyTotal;
+    }
+
+    public void setMonthlyTotal(Double monthlyTotal) {
+        this.monthlyTotal = monthlyTotal;
+    }
+
+    public Integer getMonthlyCount() {
+        return monthlyCount;
+    }
+
+    public void setMonthlyCount(Integer monthlyCount) {
+        this.monthlyCount = monthlyCount;
+    }
+
+    public Integer getMonthlyTimes() {
+        return monthlyTimes;
+    }
+
+    public void setMonthlyTimes(Integer monthlyTimes) {
+        this.monthlyTimes = monthlyTimes;
+    }
+
+    public Double getDailyTotal() {
+        return dailyTotal;
+    }
+
+    public void setDailyTotal(Double dailyTotal) {
+        this.dailyTotal = dailyTotal;
+    }
+
+    public Integer getDailyCount() {
+        return dailyCount;
+    }
+
+    public void setDailyCount(Integer dailyCount) {
+        this.dailyCount = dailyCount;
+    }
+
+    public Integer getDailyTimes() {
+        return dailyTimes;
+    }
+
+    public void setDailyTimes(Integer dailyTimes) {
+        this.dailyTimes = dailyTimes;
+    }
+
+    public Double getTotalAmount() {
+        return totalAmount;
+    }
+
+    public void setTotalAmount(Double totalAmount) {
+        this.totalAmount = totalAmount;
+    }
+
+    @Override
+    public String toString() {
+        return "RecordStatistics{" +
+                "monthlyTotal=" + monthlyTotal +
+                ", monthlyCount=" + monthlyCount +
+                ", monthlyTimes=" + monthlyTimes +
+                ", dailyTotal=" + dailyTotal +
+                ", dailyCount=" + dailyCount +
+                ", dailyTimes=" + dailyTimes +
+                ", totalAmount=" + totalAmount +
+                '}';
+    }
+}
@@ -0,0 +1,127 @@
+package com.vueones.dto;
+
+/**
+ * 库存变动结果DTO
+ * 记录一次入库/出库变动的影响行数、被修改的库存记录以及变动后的余额
+ */
+public class StockMutationResult {
+
+    private Integer chemicalId;
+    private Integer inventoryId;
+    private Double amount;
+    private int affectedRows;
+    private Double balance;
+    private boolean success;
+    private String message;
+
+    public StockMutationResult() {
+    }
+
+    /**
+     * 构建成功的变动结果
+     * @param chemicalId 化学品ID
+     * @param inventoryId 被修改的库存ID
+     * @param amount 变动数量
+     * @param affectedRows 影响行数
+     * @param balance 变动后的余额
+     * @return 变动结果
+     */
+    public static StockMutationResult accepted(Integer chemicalId, Integer inventoryId, Double amount,
+                                               int affectedRows, Double balance) {
+        StockMutationResult result = new StockMutationResult();
+        result.setChemicalId(chemicalId);
+        result.setInventoryId(inventoryId);
+        result.setAmount(amount);
+        result.setAffectedRows(affectedRows);
+        result.setBalance(balance);
+        result.setSuccess(true);
+        result.setMessage("库存变动成功");
+        return result;
+    }
+
+    /**
+     * 构建被拒绝的变动结果（如库存不足、参数非法）
+     * @param chemicalId 化学品ID
+     * @param amount 变动数量
+     * @param message 拒绝原因
+     * @return 变动结果
+     */
+    public static StockMutationResult rejected(Integer chemicalId, Double amount, String message) {
+        StockMutationResult result = new StockMutationResult();
+        result.setChemicalId(chemicalId);
+        result.setAmount(amount);
+        result.setAffectedRows(0);
+        result.setSuccess(false);
+        result.setMessage(message);
+        return result;
+    }
+
+    public Integer getChemicalId() {
+        return chemicalId;
+    }
+
+    public void setChemicalId(Integer chemicalId) {
+        this.chemicalId = chemicalId;
+    }
+
+    public Integer getInventoryId() {
+        return inventoryId;
+    }
+
+    public void setInventoryId(Integer inventoryId) {
+        this.inventoryId = inventoryId;
+    }
+
+    public Double getAmount() {
+        return amount;
+    }
+
+    public void setAmount(Double amount) {
+        this.amount = amount;
+    }
+
+    public int getAffectedRows() {
+        return affectedRows;
+    }
+
+    public void setAffectedRows(int affectedRows) {
+        this.affectedRows = affectedRows;
+    }
+
+    public Double getBalance() {
+        return balance;
+    }
+
+    public void setBalance(Double balance) {
+        this.balance = balance;
+    }
+
+    public boolean isSuccess() {
+        return success;
+    }
+
+    public void setSuccess(boolean success) {
+        this.success = success;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public void setMessage(String message) {
+        this.message = message;
+    }
+
+    @Override
+    public String toString() {
+        return "StockMutationResult{" +
+                "chemicalId=" + chemicalId +
+                ", inventoryId=" + inventoryId +
+                ", amount=" + amount +
+                ", affectedRows=" + affectedRows +
+                ", balance=" + balance +
+                ", success=" + success +
+                ", message='" + message + '\'' +
+                '}';
+    }
+}
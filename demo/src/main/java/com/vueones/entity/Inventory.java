@@ -26,6 +26,9 @@ public class Inventory {
     @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
     private Date updateTime;
 
+    // 库存状态：low(不足)、warning(预警)、normal(正常)、high(超储)，由数据库随数量与预警阈值维护
+    private String stockStatus;
+
     // 关联的危化品信息
     private Chemical chemical;
 
@@ -94,6 +97,14 @@ public class Inventory {
         this.updateTime = updateTime;
     }
 
+    public String getStockStatus() {
+        return stockStatus;
+    }
+
+    public void setStockStatus(String stockStatus) {
+        this.stockStatus = stockStatus;
+    }
+
     public Chemical getChemical() {
         return chemical;
     }
@@ -112,6 +123,7 @@ public class Inventory {
                 ", lastCheckTime=" + lastCheckTime +
                 ", createTime=" + createTime +
                 ", updateTime=" + updateTime +
+                ", stockStatus='" + stockStatus + '\'' +
                 ", chemical=" + (chemical != null ? chemical.getId() : null) +
                 '}';
     }
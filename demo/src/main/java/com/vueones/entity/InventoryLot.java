@@ -0,0 +1,107 @@
+package com.vueones.entity;
+
+import java.util.Date;
+import com.fasterxml.jackson.annotation.JsonFormat;
+
+/**
+ * 库存批次
+ * 每次入库形成一个批次，出库按先进先出或近效期先出从批次中扣减
+ */
+public class InventoryLot {
+    private Long id;
+    private Integer chemicalId;
+    /** 来源入库记录ID，期初批次为空 */
+    private Integer storageRecordId;
+    private String batchNo;
+    private Double initialAmount;
+    private Double remainingAmount;
+
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private Date receiptTime;
+
+    /** 有效期至，可为空 */
+    @JsonFormat(pattern = "yyyy-MM-dd")
+    private Date expiryDate;
+
+    public InventoryLot() {
+    }
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Integer getChemicalId() {
+        return chemicalId;
+    }
+
+    public void setChemicalId(Integer chemicalId) {
+        this.chemicalId = chemicalId;
+    }
+
+    public Integer getStorageRecordId() {
+        return storageRecordId;
+    }
+
+    public void setStorageRecordId(Integer storageRecordId) {
+        this.storageRecordId = storageRecordId;
+    }
+
+    public String getBatchNo() {
+        return batchNo;
+    }
+
+    public void setBatchNo(String batchNo) {
+        this.batchNo = batchNo;
+    }
+
+    public Double getInitialAmount() {
+        return initialAmount;
+    }
+
+    public void setInitialAmount(Double initialAmount) {
+        this.initialAmount = initialAmount;
+    }
+
+    public Double getRemainingAmount() {
+        return remainingAmount;
+    }
+
+    public void setRemainingAmount(Double remainingAmount) {
+        this.remainingAmount = remainingAmount;
+    }
+
+    public Date getReceiptTime() {
+        return receiptTime;
+    }
+
+    public void setReceiptTime(Date receiptTime) {
+        this.receiptTime = receiptTime;
+    }
+
+    public Date getExpiryDate() {
+        return expiryDate;
+    }
+
+    public void setExpiryDate(Date expiryDate) {
+        this.expiryDate = expiryDate;
+    }
+
+    @Override
+    public String toString() {
+        return "InventoryLot{" +
+                "id=" + id +
+                ", chemicalId=" + chemicalId +
+                ", storageRecordId=" + storageRecordId +
+                ", batchNo='" + batchNo + '\'' +
+                ", initialAmount=" + initialAmount +
+                ", remainingAmount=" + remainingAmount +
+                ", receiptTime=" + receiptTime +
+                ", expiryDate=" + expiryDate +
+                '}';
+    }
+}
@@ -0,0 +1,92 @@
+package com.vueones.entity;
+
+import java.util.Date;
+import com.fasterxml.jackson.annotation.JsonFormat;
+
+public class InventoryMovement {
+    /** 入库 */
+    public static final String TYPE_IN = "IN";
+    /** 出库 */
+    public static final String TYPE_OUT = "OUT";
+    /** 人工调整（新增/编辑/删除库存记录） */
+    public static final String TYPE_ADJUST = "ADJUST";
+
+    private Long id;
+    private Integer inventoryId;
+    private Integer chemicalId;
+    private String movementType;
+    private Double delta;
+    private Double balanceAfter;
+
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private Date movementTime;
+
+    public InventoryMovement() {
+    }
+
+    public InventoryMovement(Integer inventoryId, Integer chemicalId, String movementType,
+                             Double delta, Double balanceAfter) {
+        this.inventoryId = inventoryId;
+        this.chemicalId = chemicalId;
+        this.movementType = movementType;
+        this.delta = delta;
+        this.balanceAfter = balanceAfter;
+    }
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Integer getInventoryId() {
+        return inventoryId;
+    }
+
+    public void setInventoryId(Integer inventoryId) {
+        this.inventoryId = inventoryId;
+    }
+
+    public Integer getChemicalId() {
+        return chemicalId;
+    }
+
+    public void setChemicalId(Integer chemicalId) {
+        this.chemicalId = chemicalId;
+    }
+
+    public String getMovementType() {
+        return movementType;
+    }
+
+    public void setMovementType(String movementType) {
+        this.movementType = movementType;
+    }
+
+    public Double getDelta() {
+        return delta;
+    }
+
+    public void setDelta(Double delta) {
+        this.delta = delta;
+    }
+
+    public Double getBalanceAfter() {
+        return balanceAfter;
+    }
+
+    public void setBalanceAfter(Double balanceAfter) {
+        this.balanceAfter = balanceAfter;
+    }
+
+    public Date getMovementTime() {
+        return movementTime;
+    }
+
+    public void setMovementTime(Date movementTime) {
+        this.movementTime = movementTime;
+    }
+}
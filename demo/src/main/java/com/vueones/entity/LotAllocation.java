@@ -0,0 +1,101 @@
+package com.vueones.entity;
+
+import java.util.Date;
+import com.fasterxml.jackson.annotation.JsonFormat;
+
+/**
+ * 出库批次分配
+ * 一次出库可能拆分到多个批次，每个批次一条
+ */
+public class LotAllocation {
+    private Long id;
+    private Integer outboundRecordId;
+    private Long lotId;
+    private Integer chemicalId;
+    private String batchNo;
+    private Double amount;
+
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private Date createTime;
+
+    public LotAllocation() {
+    }
+
+    public LotAllocation(Integer outboundRecordId, Long lotId, Integer chemicalId, String batchNo, Double amount) {
+        this.outboundRecordId = outboundRecordId;
+        this.lotId = lotId;
+        this.chemicalId = chemicalId;
+        this.batchNo = batchNo;
+        this.amount = amount;
+    }
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Integer getOutboundRecordId() {
+        return outboundRecordId;
+    }
+
+    public void setOutboundRecordId(Integer outboundRecordId) {
+        this.outboundRecordId = outboundRecordId;
+    }
+
+    public Long getLotId() {
+        return lotId;
+    }
+
+    public void setLotId(Long lotId) {
+        this.lotId = lotId;
+    }
+
+    public Integer getChemicalId() {
+        return chemicalId;
+    }
+
+    public void setChemicalId(Integer chemicalId) {
+        this.chemicalId = chemicalId;
+    }
+
+    public String getBatchNo() {
+        return batchNo;
+    }
+
+    public void setBatchNo(String batchNo) {
+        this.batchNo = batchNo;
+    }
+
+    public Double getAmount() {
+        return amount;
+    }
+
+    public void setAmount(Double amount) {
+        this.amount = amount;
+    }
+
+    public Date getCreateTime() {
+        return createTime;
+    }
+
+    public void setCreateTime(Date createTime) {
+        this.createTime = createTime;
+    }
+
+    @Override
+    public String toString() {
+        return "LotAllocation{" +
+                "id=" + id +
+                ", outboundRecordId=" + outboundRecordId +
+                ", lotId=" + lotId +
+                ", chemicalId=" + chemicalId +
+                ", batchNo='" + batchNo + '\'' +
+                ", amount=" + amount +
+                ", createTime=" + createTime +
+                '}';
+    }
+}
@@ -1,6 +1,7 @@
 package com.vueones.entity;
 
 import java.util.Date;
+import java.util.List;
 import com.fasterxml.jackson.annotation.JsonIdentityInfo;
 import com.fasterxml.jackson.annotation.ObjectIdGenerators;
 import com.fasterxml.jackson.annotation.JsonFormat;
@@ -32,6 +33,8 @@ public class OutboundRecord {
     private Chemical chemical;
     private Inventory inventory;
     private Man operator;
+    // 批次分配，仅出库成功的响应中返回
+    private List<LotAllocation> allocations;
 
     // Getters and Setters
     public Integer getId() {
@@ -162,6 +165,14 @@ public class OutboundRecord {
         this.operator = operator;
     }
 
+    public List<LotAllocation> getAllocations() {
+        return allocations;
+    }
+
+    public void setAllocations(List<LotAllocation> allocations) {
+        this.allocations = allocations;
+    }
+
     @Override
     public String toString() {
         return "OutboundRecord{" +
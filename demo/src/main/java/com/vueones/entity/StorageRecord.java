@@ -14,6 +14,10 @@ public class StorageRecord {
     
     @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
     private Date storageTime;
+    
+    // 有效期至（可选），入库时写入库存批次
+    @JsonFormat(pattern = "yyyy-MM-dd")
+    private Date expiryDate;
     private Integer operatorId;
     private String supplier;
     private String notes;
@@ -83,6 +87,14 @@ public class StorageRecord {
         this.batchNo = batchNo;
     }
 
+    public Date getExpiryDate() {
+        return expiryDate;
+    }
+
+    public void setExpiryDate(Date expiryDate) {
+        this.expiryDate = expiryDate;
+    }
+
     public Date getStorageTime() {
         return storageTime;
     }
@@ -158,6 +170,7 @@ public class StorageRecord {
                 ", unit='" + unit + '\'' +
                 ", batchNo='" + batchNo + '\'' +
                 ", storageTime=" + storageTime +
+                ", expiryDate=" + expiryDate +
                 ", operatorId=" + operatorId +
                 ", supplier='" + supplier + '\'' +
                 ", notes='" + notes + '\'' +
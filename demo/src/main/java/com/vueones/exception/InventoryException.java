@@ -0,0 +1,18 @@
+package com.vueones.exception;
+
+/**
+ * 库存出入库相关的业务异常
+ */
+public class InventoryException extends RuntimeException {
+
+    private final int status;
+
+    public InventoryException(int status, String message) {
+        super(message);
+        this.status = status;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+}
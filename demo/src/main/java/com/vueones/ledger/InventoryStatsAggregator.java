@@ -0,0 +1,489 @@
+package com.vueones.ledger;
+
+import com.vueones.entity.Inventory;
+import com.vueones.mapper.InventoryMapper;
+import com.vueones.mapper.InventoryMovementMapper;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 库存统计聚合器
+ * 开启 app.inventory.stats.enabled 后，启动时从数据库加载一次全部库存记录，按存储位置分区维护
+ * 记录数、总量及各库存状态数量；之后每次库存变动或预警阈值修改在事务提交后增量更新，
+ * 统计接口直接读取计数器。
+ * 并发事务的afterCommit回调顺序与提交顺序不一定一致，每条记录以最新流水ID作为版本，
+ * 只接受版本更新的余额，迟到的旧余额被丢弃；单条与全部重新加载同样以读取时的流水ID为版本，不覆盖内存中更新的余额。
+ * 定时与数据库汇总结果比对，内存已生效的最大流水ID之后仍有流水的记录两边都不计入，
+ * 连续两次比对都不一致时重新加载，提交后尚未到达的人工修改只会造成一次不一致
+ */
+@Component
+@ConditionalOnProperty(prefix = "app.inventory.stats", name = "enabled", havingValue = "true")
+public class InventoryStatsAggregator {
+
+    private static final Logger log = LoggerFactory.getLogger(InventoryStatsAggregator.class);
+
+    /** 定点精度，与inventory.current_amount的decimal(10,2)一致 */
+    private static final long SCALE = 100L;
+    private static final String STATUS_LOW = "low";
+    private static final String STATUS_WARNING = "warning";
+    private static final String STATUS_NORMAL = "normal";
+    private static final String STATUS_HIGH = "high";
+
+    @Autowired
+    private InventoryMapper inventoryMapper;
+
+    @Autowired
+    private InventoryMovementMapper inventoryMovementMapper;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private Map<Integer, Row> rows = new HashMap<>();
+    private Map<String, Partition> partitions = new HashMap<>();
+    private Partition total = new Partition();
+    /** 化学品预警阈值（按定点精度），未设阈值的化学品不在表中 */
+    private Map<Integer, Long> thresholds = new HashMap<>();
+
+    /** 已生效的最大流水ID，比对时之后仍有流水的记录不计入 */
+    private long maxVersion;
+
+    private final AtomicLong driftCorrections = new AtomicLong();
+    /** 上一次比对是否不一致 */
+    private boolean mismatched;
+
+    /**
+     * 单条库存记录的当前归类
+     */
+    private static final class Row {
+        final int chemicalId;
+        final String location;
+        long units;
+        String status;
+        /** 数量所对应的最新流水ID */
+        final long version;
+
+        Row(int chemicalId, String location, long units, String status, long version) {
+            this.chemicalId = chemicalId;
+            this.location = location;
+            this.units = units;
+            this.status = status;
+            this.version = version;
+        }
+    }
+
+    /**
+     * 一个存储位置（或全局）的统计计数
+     */
+    private static final class Partition {
+        long records;
+        long units;
+        long low;
+        long warning;
+        long high;
+        /** 化学品ID -> 该分区内的库存记录数，用于统计库存种类数 */
+        final Map<Integer, Integer> chemicals = new HashMap<>();
+
+        void add(Row row, int sign) {
+            records += sign;
+            units += sign * row.units;
+            if (STATUS_LOW.equals(row.status)) {
+                low += sign;
+            } else if (STATUS_WARNING.equals(row.status)) {
+                warning += sign;
+            } else if (STATUS_HIGH.equals(row.status)) {
+                high += sign;
+            }
+            chemicals.merge(row.chemicalId, sign, (a, b) -> a + b == 0 ? null : a + b);
+        }
+
+        Partition copy() {
+            Partition copy = new Partition();
+            copy.records = records;
+            copy.units = units;
+            copy.low = low;
+            copy.warning = warning;
+            copy.high = high;
+            copy.chemicals.putAll(chemicals);
+            return copy;
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        reload();
+        log.info("库存统计聚合器已启动: records={}, locations={}", total.records, partitions.size());
+    }
+
+    /**
+     * 读取统计数据
+     * @param location 存储位置（可选，按包含匹配，与列表查询一致）
+     * @return totalTypes、warningCount、lowCount、highCount、totalRecords、totalAmount、belowThreshold
+     */
+    public Map<String, Object> snapshot(String location) {
+        long records = 0;
+        long units = 0;
+        long low = 0;
+        long warning = 0;
+        long high = 0;
+        int types;
+        lock.lock();
+        try {
+            if (location == null || location.isEmpty()) {
+                records = total.records;
+                units = total.units;
+                low = total.low;
+                warning = total.warning;
+                high = total.high;
+                types = total.chemicals.size();
+            } else {
+                Set<Integer> chemicals = new HashSet<>();
+                for (Map.Entry<String, Partition> entry : partitions.entrySet()) {
+                    if (entry.getKey() == null || !entry.getKey().contains(location)) {
+                        continue;
+                    }
+                    Partition partition = entry.getValue();
+                    records += partition.records;
+                    units += partition.units;
+                    low += partition.low;
+                    warning += partition.warning;
+                    high += partition.high;
+                    chemicals.addAll(partition.chemicals.keySet());
+                }
+                types = chemicals.size();
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        return data(records, units, low, warning, high, types);
+    }
+
+    /**
+     * 库存数量变动（出入库、对账修正），事务提交后生效
+     * @param inventoryId 库存ID
+     * @param chemicalId 化学品ID
+     * @param amount 变动后的数量
+     * @param movementId 同一事务中写入的流水ID，作为该数量的版本
+     */
+    public void onStockChanged(Integer inventoryId, Integer chemicalId, Double amount, Long movementId) {
+        if (inventoryId == null || movementId == null) {
+            return;
+        }
+        afterCommit(() -> {
+            lock.lock();
+            try {
+                Row row = rows.get(inventoryId);
+                if (row != null) {
+                    if (movementId <= row.version) {
+                        // 更新的余额已先一步生效
+                        return;
+                    }
+                    remove(inventoryId);
+                    put(inventoryId, new Row(chemicalId, row.location, toUnits(amount), null, movementId));
+                    return;
+                }
+            } finally {
+                lock.unlock();
+            }
+            // 新建的库存记录需要读取存储位置
+            reloadRow(inventoryId);
+        });
+    }
+
+    /**
+     * 库存记录被人工新增、编辑或删除，事务提交后从数据库重新读取该记录
+     * @param inventoryId 库存ID
+     */
+    public void onRowChanged(Integer inventoryId) {
+        if (inventoryId == null) {
+            return;
+        }
+        afterCommit(() -> reloadRow(inventoryId));
+    }
+
+    /**
+     * 化学品预警阈值修改，事务提交后重新归类该化学品的全部库存记录
+     * @param chemicalId 化学品ID
+     * @param warningThreshold 新的预警阈值
+     */
+    public void onThresholdChanged(Integer chemicalId, Double warningThreshold) {
+        if (chemicalId == null) {
+            return;
+        }
+        afterCommit(() -> {
+            lock.lock();
+            try {
+                if (warningThreshold == null) {
+                    thresholds.remove(chemicalId);
+                } else {
+                    thresholds.put(chemicalId, toUnits(warningThreshold));
+                }
+                Map<Integer, Row> affected = new HashMap<>();
+                rows.forEach((id, row) -> {
+                    if (row.chemicalId == chemicalId) {
+                        affected.put(id, row);
+                    }
+                });
+                affected.forEach((id, row) -> {
+                    remove(id);
+                    put(id, new Row(row.chemicalId, row.location, row.units, null, row.version));
+                });
+            } finally {
+                lock.unlock();
+            }
+        });
+    }
+
+    /**
+     * 与数据库汇总结果比对，连续两次不一致时重新加载。
+     * 内存已生效的最大流水ID之后仍有流水的记录（已提交、回调尚未到达）两边都不计入；
+     * 已提交但尚未到达的人工修改会造成一次不一致，到下一次比对时已经一致
+     */
+    @Scheduled(fixedDelayString = "${app.inventory.stats.verify-interval-ms:300000}",
+            initialDelayString = "${app.inventory.stats.verify-interval-ms:300000}")
+    public synchronized void verify() {
+        long watermark;
+        lock.lock();
+        try {
+            watermark = maxVersion;
+        } finally {
+            lock.unlock();
+        }
+        Set<Integer> pending = new HashSet<>(inventoryMovementMapper.selectInventoryIdsAfter(watermark));
+        Map<String, Object> expected = inventoryMapper.getInventoryStatisticsExcluding(pending);
+        Map<String, Object> actual = snapshotExcluding(pending);
+        long expectedUnits = expected.get("totalAmount") == null ? 0L
+                : toUnits(((Number) expected.get("totalAmount")).doubleValue());
+        boolean drifted = toLong(expected.get("totalRecords")) != ((Integer) actual.get("totalRecords"))
+                || toLong(expected.get("totalTypes")) != ((Integer) actual.get("totalTypes"))
+                || toLong(expected.get("lowCount")) != (Long) actual.get("lowCount")
+                || toLong(expected.get("warningCount")) != (Long) actual.get("warningCount")
+                || toLong(expected.get("highCount")) != (Long) actual.get("highCount")
+                || expectedUnits != toUnits((Double) actual.get("totalAmount"));
+        if (!drifted) {
+            mismatched = false;
+            return;
+        }
+        if (!mismatched) {
+            mismatched = true;
+            log.info("库存统计聚合器与数据库暂不一致，下次比对仍不一致时重新加载: watermark={}, pending={}, expected={}, actual={}",
+                    watermark, pending.size(), expected, actual);
+            return;
+        }
+        driftCorrections.incrementAndGet();
+        log.warn("库存统计聚合器与数据库连续两次不一致，重新加载: watermark={}, expected={}, actual={}", watermark, expected, actual);
+        mismatched = false;
+        reload();
+    }
+
+    /**
+     * 累计纠偏次数
+     * @return 自启动以来因比对不一致而重新加载的次数
+     */
+    public long getDriftCorrections() {
+        return driftCorrections.get();
+    }
+
+    /**
+     * 从数据库重新加载全部库存记录。
+     * 每条记录以读取前的最新流水ID为版本，换入时内存中版本更新的记录（加载期间到达的余额）保留不被覆盖
+     */
+    public void reload() {
+        // 先读版本再读记录：记录至少包含版本对应的变动，之后到达的更新版本照常生效
+        Map<Integer, Long> versions = new HashMap<>();
+        long loadedVersion = 0L;
+        for (Map<String, Object> latest : inventoryMovementMapper.selectLatestIds()) {
+            long version = toLong(latest.get("movement_id"));
+            versions.put(((Number) latest.get("inventory_id")).intValue(), version);
+            loadedVersion = Math.max(loadedVersion, version);
+        }
+        List<Inventory> inventories = inventoryMapper.getInventoryList(null, null, null, null);
+        Map<Integer, Row> newRows = new HashMap<>();
+        Map<String, Partition> newPartitions = new HashMap<>();
+        Partition newTotal = new Partition();
+        Map<Integer, Long> newThresholds = new HashMap<>();
+        for (Inventory inventory : inventories) {
+            Long threshold = thresholdOf(inventory);
+            if (threshold != null) {
+                newThresholds.put(inventory.getChemicalId(), threshold);
+            }
+            Row row = new Row(inventory.getChemicalId(), inventory.getLocation(),
+                    toUnits(inventory.getCurrentAmount()), null, versions.getOrDefault(inventory.getId(), 0L));
+            row.status = classify(row.units, threshold);
+            newRows.put(inventory.getId(), row);
+            newTotal.add(row, 1);
+            newPartitions.computeIfAbsent(row.location, k -> new Partition()).add(row, 1);
+        }
+
+        long readVersion = loadedVersion;
+        lock.lock();
+        try {
+            Map<Integer, Row> current = rows;
+            rows = newRows;
+            partitions = newPartitions;
+            total = newTotal;
+            thresholds = newThresholds;
+            maxVersion = readVersion;
+            // 读取之后生效的余额比读到的新，保留内存中的值
+            current.forEach((id, row) -> {
+                Row loaded = newRows.get(id);
+                if (row.version > (loaded == null ? readVersion : loaded.version)) {
+                    remove(id);
+                    put(id, new Row(row.chemicalId, row.location, row.units, null, row.version));
+                }
+            });
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 从数据库重新读取单条记录，以读取前的最新流水ID为版本，内存中已有更新版本时不覆盖
+     */
+    private void reloadRow(Integer inventoryId) {
+        Long latest = inventoryMovementMapper.selectLatestId(inventoryId);
+        long version = latest == null ? 0L : latest;
+        Inventory inventory = inventoryMapper.getInventoryById(inventoryId);
+        lock.lock();
+        try {
+            Row current = rows.get(inventoryId);
+            if (current != null && current.version > version) {
+                return;
+            }
+            remove(inventoryId);
+            if (inventory == null) {
+                return;
+            }
+            Long threshold = thresholdOf(inventory);
+            if (threshold == null) {
+                thresholds.remove(inventory.getChemicalId());
+            } else {
+                thresholds.put(inventory.getChemicalId(), threshold);
+            }
+            put(inventoryId, new Row(inventory.getChemicalId(), inventory.getLocation(),
+                    toUnits(inventory.getCurrentAmount()), null, version));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 全部记录的统计，排除指定记录
+     */
+    private Map<String, Object> snapshotExcluding(Set<Integer> excluded) {
+        Partition remaining;
+        lock.lock();
+        try {
+            remaining = total.copy();
+            for (Integer id : excluded) {
+                Row row = rows.get(id);
+                if (row != null) {
+                    remaining.add(row, -1);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        return data(remaining.records, remaining.units, remaining.low, remaining.warning, remaining.high,
+                remaining.chemicals.size());
+    }
+
+    /**
+     * 加入一条记录并按当前阈值归类，调用方须持有锁
+     */
+    private void put(Integer inventoryId, Row row) {
+        row.status = classify(row.units, thresholds.get(row.chemicalId));
+        rows.put(inventoryId, row);
+        maxVersion = Math.max(maxVersion, row.version);
+        total.add(row, 1);
+        partitions.computeIfAbsent(row.location, k -> new Partition()).add(row, 1);
+    }
+
+    /**
+     * 移除一条记录，调用方须持有锁
+     */
+    private void remove(Integer inventoryId) {
+        Row row = rows.remove(inventoryId);
+        if (row == null) {
+            return;
+        }
+        total.add(row, -1);
+        Partition partition = partitions.get(row.location);
+        partition.add(row, -1);
+        if (partition.records == 0) {
+            partitions.remove(row.location);
+        }
+    }
+
+    private static Map<String, Object> data(long records, long units, long low, long warning, long high, int types) {
+        Map<String, Object> data = new HashMap<>();
+        data.put("totalTypes", types);
+        data.put("warningCount", warning);
+        data.put("lowCount", low);
+        data.put("highCount", high);
+        data.put("totalRecords", (int) records);
+        data.put("totalAmount", (double) units / SCALE);
+        data.put("belowThreshold", low);
+        return data;
+    }
+
+    /**
+     * 与InventoryMapper.xml中Stock_Status_Expr相同的分类规则，按定点整数比较避免浮点误差
+     */
+    private static String classify(long units, Long threshold) {
+        if (threshold == null) {
+            return null;
+        }
+        if (units < threshold) {
+            return STATUS_LOW;
+        }
+        if (units * 10 < threshold * 12) {
+            return STATUS_WARNING;
+        }
+        if (units > threshold * 5) {
+            return STATUS_HIGH;
+        }
+        return STATUS_NORMAL;
+    }
+
+    private static Long thresholdOf(Inventory inventory) {
+        if (inventory.getChemical() == null || inventory.getChemical().getWarningThreshold() == null) {
+            return null;
+        }
+        return toUnits(inventory.getChemical().getWarningThreshold());
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    private static long toUnits(Double amount) {
+        return amount == null ? 0L : Math.round(amount * SCALE);
+    }
+
+    private static long toLong(Object value) {
+        return value == null ? 0L : ((Number) value).longValue();
+    }
+}
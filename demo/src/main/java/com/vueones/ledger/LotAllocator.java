@@ -0,0 +1,225 @@
+package com.vueones.ledger;
+
+import com.vueones.entity.InventoryLot;
+import com.vueones.entity.LotAllocation;
+import com.vueones.entity.StorageRecord;
+import com.vueones.exception.InventoryException;
+import com.vueones.mapper.InventoryLotMapper;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 库存批次分配
+ * 开启 app.inventory.lot.enabled 后，每条入库记录形成一个批次；出库时按先进先出（FIFO）
+ * 或近效期先出（FEFO）从该化学品的未用完批次中依次扣减，一次出库可拆分到多个批次。
+ * 批次状态只在数据库中：分配在出库事务中按出库顺序分页锁定未用完批次（FOR UPDATE，被并发出库锁住的批次
+ * 等待其事务结束而不是跳过，先入库或先到期的批次总是先出），索引只覆盖未用完的批次，批次再多每次分配也只读取需要的几条。
+ * 每次分配是一次加锁读取、每个被扣减批次一条UPDATE和一次分配记录批量插入，耗时由这几次数据库往返决定，与批次总数无关；
+ * 多个节点共用同一份批次，事务回滚时扣减随之撤销。入库、出库记录的新增、批量新增、修改与删除都须经过本类同步批次
+ */
+@Component
+@ConditionalOnProperty(prefix = "app.inventory.lot", name = "enabled", havingValue = "true")
+public class LotAllocator {
+
+    private static final Logger log = LoggerFactory.getLogger(LotAllocator.class);
+
+    /** 定点精度，与decimal(10,2)一致 */
+    private static final long SCALE = 100L;
+    /** 每次锁定的批次数，一次出库通常只涉及一两个批次 */
+    private static final int PAGE_SIZE = 8;
+
+    /** 先进先出：按入库时间 */
+    public static final String STRATEGY_FIFO = "FIFO";
+    /** 近效期先出：按有效期，无有效期的批次排在最后，同有效期按入库时间 */
+    public static final String STRATEGY_FEFO = "FEFO";
+
+    @Value("${app.inventory.lot.strategy:FIFO}")
+    private String strategy;
+
+    @Autowired
+    private InventoryLotMapper inventoryLotMapper;
+
+    private boolean fefo;
+
+    @PostConstruct
+    public void init() {
+        fefo = STRATEGY_FEFO.equalsIgnoreCase(strategy);
+        strategy = fefo ? STRATEGY_FEFO : STRATEGY_FIFO;
+        log.info("库存批次分配已启动: strategy={}", strategy);
+    }
+
+    /**
+     * 入库形成新批次，须在写入入库记录的事务中调用
+     * @param record 已写入的入库记录
+     * @return 新批次
+     */
+    public InventoryLot receive(StorageRecord record) {
+        InventoryLot lot = toLot(record);
+        inventoryLotMapper.insert(lot);
+        return lot;
+    }
+
+    /**
+     * 批量入库，每条记录形成一个批次，须在写入入库记录的事务中调用
+     * @param records 已写入的入库记录
+     * @return 新批次列表
+     */
+    public List<InventoryLot> receiveAll(List<StorageRecord> records) {
+        List<InventoryLot> lots = new ArrayList<>(records.size());
+        for (StorageRecord record : records) {
+            lots.add(toLot(record));
+        }
+        if (!lots.isEmpty()) {
+            inventoryLotMapper.insertBatch(lots);
+        }
+        return lots;
+    }
+
+    /**
+     * 入库记录修改后同步批次（化学品、数量、批次号、入库时间、有效期），须在修改入库记录的事务中调用
+     * @param before 修改前的入库记录
+     * @param after 修改内容，为null的字段表示不修改
+     */
+    public void storageRecordChanged(StorageRecord before, StorageRecord after) {
+        InventoryLot lot = inventoryLotMapper.selectByStorageRecordIdForUpdate(before.getId());
+        if (lot == null) {
+            return;
+        }
+        long consumed = toUnits(lot.getInitialAmount()) - toUnits(lot.getRemainingAmount());
+        Integer chemicalId = after.getChemicalId() != null ? after.getChemicalId() : lot.getChemicalId();
+        if (!chemicalId.equals(lot.getChemicalId()) && consumed > 0) {
+            throw new InventoryException(409, "该入库批次已出库" + toAmount(consumed) + "，不能修改化学品");
+        }
+        double delta = after.getAmount() == null || before.getAmount() == null
+                ? 0D : toAmount(toUnits(after.getAmount()) - toUnits(before.getAmount()));
+        String batchNo = after.getBatchNo() != null ? after.getBatchNo() : lot.getBatchNo();
+        Date receiptTime = after.getStorageTime() != null ? after.getStorageTime() : lot.getReceiptTime();
+        Date expiryDate = after.getExpiryDate() != null ? after.getExpiryDate() : lot.getExpiryDate();
+        if (inventoryLotMapper.updateFromRecord(lot.getId(), chemicalId, delta, batchNo, receiptTime, expiryDate) == 0) {
+            throw new InventoryException(409, "该入库批次已出库" + toAmount(consumed) + "，入库数量不能少于已出库数量");
+        }
+    }
+
+    /**
+     * 入库记录删除后作废其批次：未被出库使用的批次直接删除，部分已出库的批次关闭并保留已出库数量，
+     * 须在删除入库记录的事务中调用
+     * @param storageRecordId 入库记录ID
+     */
+    public void storageRecordRemoved(Integer storageRecordId) {
+        InventoryLot lot = inventoryLotMapper.selectByStorageRecordIdForUpdate(storageRecordId);
+        if (lot == null) {
+            return;
+        }
+        if (toUnits(lot.getInitialAmount()) == toUnits(lot.getRemainingAmount())) {
+            inventoryLotMapper.deleteById(lot.getId());
+        } else {
+            inventoryLotMapper.close(lot.getId());
+        }
+    }
+
+    /**
+     * 为一次出库分配批次，须在写入出库记录的事务中调用
+     * @param outboundRecordId 出库记录ID
+     * @param chemicalId 化学品ID
+     * @param amount 出库数量
+     * @return 批次分配列表，按扣减顺序
+     * @throws InventoryException 未用完批次的合计不足或与并发出库死锁时抛出409，出库随事务回滚
+     */
+    public List<LotAllocation> allocate(Integer outboundRecordId, Integer chemicalId, Double amount) {
+        try {
+            return doAllocate(outboundRecordId, chemicalId, amount);
+        } catch (PessimisticLockingFailureException e) {
+            // 锁定读的间隙锁与并发扣减可能形成死锁，数据库已回滚本事务，按冲突返回由调用方重试
+            log.warn("批次分配锁冲突: chemicalId={}, outboundRecordId={}, {}", chemicalId, outboundRecordId, e.getMessage());
+            throw new InventoryException(409, "批次正被其他出库占用，请稍后重试");
+        }
+    }
+
+    private List<LotAllocation> doAllocate(Integer outboundRecordId, Integer chemicalId, Double amount) {
+        long need = toUnits(amount);
+        List<LotAllocation> allocations = new ArrayList<>();
+        while (need > 0) {
+            // 本事务扣完的批次不再出现在下一页中
+            List<InventoryLot> page = inventoryLotMapper.selectOpenLotsForUpdate(chemicalId, fefo, PAGE_SIZE);
+            for (InventoryLot lot : page) {
+                long take = Math.min(toUnits(lot.getRemainingAmount()), need);
+                if (inventoryLotMapper.consume(lot.getId(), toAmount(take)) == 0) {
+                    throw new IllegalStateException("批次剩余数量与加锁读取的不一致: lotId=" + lot.getId());
+                }
+                allocations.add(new LotAllocation(outboundRecordId, lot.getId(), chemicalId, lot.getBatchNo(), toAmount(take)));
+                need -= take;
+                if (need == 0) {
+                    break;
+                }
+            }
+            if (page.size() < PAGE_SIZE && need > 0) {
+                log.warn("批次剩余数量不足: chemicalId={}, outboundRecordId={}, unallocated={}",
+                        chemicalId, outboundRecordId, toAmount(need));
+                throw new InventoryException(409, "批次剩余数量不足，尚有" + toAmount(need) + "无法分配到批次");
+            }
+        }
+        if (!allocations.isEmpty()) {
+            inventoryLotMapper.insertAllocations(allocations);
+        }
+        return allocations;
+    }
+
+    /**
+     * 撤销出库记录的批次分配，数量归还原批次，须在修改或删除出库记录的事务中调用
+     * @param outboundRecordId 出库记录ID
+     * @return 被撤销的分配
+     * @throws InventoryException 原批次已关闭或已过期时抛出409：归还会让作废或过期的批次重新可分配，出库修改或删除随事务回滚
+     */
+    public List<LotAllocation> release(Integer outboundRecordId) {
+        List<LotAllocation> allocations = inventoryLotMapper.selectAllocationsByOutboundId(outboundRecordId);
+        for (LotAllocation allocation : allocations) {
+            if (inventoryLotMapper.restore(allocation.getLotId(), allocation.getAmount()) == 0) {
+                log.warn("批次已关闭或已过期，不能归还: lotId={}, outboundRecordId={}", allocation.getLotId(), outboundRecordId);
+                throw new InventoryException(409, "批次" + (allocation.getBatchNo() == null ? allocation.getLotId() : allocation.getBatchNo())
+                        + "已关闭或已过期，不能归还出库数量");
+            }
+        }
+        if (!allocations.isEmpty()) {
+            inventoryLotMapper.deleteAllocationsByOutboundId(outboundRecordId);
+        }
+        return allocations;
+    }
+
+    /**
+     * 当前分配策略
+     * @return FIFO或FEFO
+     */
+    public String getStrategy() {
+        return strategy;
+    }
+
+    private static InventoryLot toLot(StorageRecord record) {
+        InventoryLot lot = new InventoryLot();
+        lot.setChemicalId(record.getChemicalId());
+        lot.setStorageRecordId(record.getId());
+        lot.setBatchNo(record.getBatchNo());
+        lot.setInitialAmount(record.getAmount());
+        lot.setRemainingAmount(record.getAmount());
+        lot.setReceiptTime(record.getStorageTime() != null ? record.getStorageTime() : new Date());
+        lot.setExpiryDate(record.getExpiryDate());
+        return lot;
+    }
+
+    private static long toUnits(Double amount) {
+        return amount == null ? 0L : Math.round(amount * SCALE);
+    }
+
+    private static double toAmount(long units) {
+        return (double) units / SCALE;
+    }
+}
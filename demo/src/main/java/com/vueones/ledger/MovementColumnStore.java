@@ -0,0 +1,777 @@
+package com.vueones.ledger;
+
+import com.vueones.mapper.RecordMovementMapper;
+import com.vueones.mapper.RecordRollupMapper;
+import com.vueones.util.IntLongHashMap;
+import jakarta.annotation.PostConstruct;
+import org.apache.ibatis.cursor.Cursor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 内存列式流水
+ * 开启 app.inventory.movement-store.enabled 后，启动时流式读取入库、出库、使用三类记录，
+ * 按（记录类型、化学品）分区，每个分区以并列的原始类型数组保存时间（秒）、人员ID、数量（定点）与记录ID，
+ * 并按时间排序；数量与条数各维护一棵树状数组，任意时间范围的合计与条数在O(log n)内得出，不访问数据库。
+ * 补录的早期记录先进入分区的补录缓冲、累积到sqrt(n)条再归并，不逐条移动数组。
+ * 记录增删改在事务提交后按ID重新读取并更新分区，换入前确认读取期间没有其他更新先生效；定时与数据库的条数、合计比对（只比对不超过内存已读入最大ID的记录），
+ * 连续两次比对都不一致时重新加载，提交后尚未更新到内存的记录只会造成一次不一致
+ */
+@Component
+@ConditionalOnProperty(prefix = "app.inventory.movement-store", name = "enabled", havingValue = "true")
+public class MovementColumnStore {
+
+    private static final Logger log = LoggerFactory.getLogger(MovementColumnStore.class);
+
+    /** 定点精度，与记录表amount的decimal(10,2)一致 */
+    private static final long SCALE = 100L;
+    private static final int BATCH_SIZE = 500;
+    /** 读取期间有其他更新生效时重新读取的次数上限 */
+    private static final int REFRESH_ATTEMPTS = 3;
+    /** 没有人员ID的记录 */
+    private static final int NO_USER = 0;
+    private static final String[] TYPES = {
+            RecordRollupMapper.TYPE_STORAGE, RecordRollupMapper.TYPE_OUTBOUND, RecordRollupMapper.TYPE_USAGE};
+
+    @Autowired
+    private RecordMovementMapper recordMovementMapper;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private Map<String, Movements> movements = emptyMovements();
+    /** 重新加载期间提交的记录ID，新数据换入后重放 */
+    private Map<String, Set<Integer>> changedWhileLoading;
+
+    private final AtomicLong driftCorrections = new AtomicLong();
+    /** 上一次比对不一致的记录类型 */
+    private final Set<String> mismatched = new HashSet<>();
+
+    /**
+     * 一类记录的全部分区
+     */
+    private static final class Movements {
+        final Map<Integer, Partition> partitions = new HashMap<>();
+        /** 记录ID -> 位置，见location */
+        final IntLongHashMap locations = new IntLongHashMap();
+        /** 已读入的最大记录ID，比对时数据库只合计不超过该ID的记录 */
+        int maxRecordId;
+        /** 按ID更新的次数，更新前据此判断读取数据库期间是否有其他更新先一步生效 */
+        long updates;
+
+        void add(int recordId, int chemicalId, long second, int userId, long units) {
+            partitions.computeIfAbsent(chemicalId, k -> new Partition()).insert(recordId, second, userId, units);
+            put(recordId, chemicalId, second);
+        }
+
+        void put(int recordId, int chemicalId, long second) {
+            locations.put(recordId, location(chemicalId, second));
+            maxRecordId = Math.max(maxRecordId, recordId);
+        }
+
+        void remove(int recordId) {
+            long location = locations.get(recordId, -1L);
+            if (location == -1L) {
+                return;
+            }
+            locations.remove(recordId);
+            int chemicalId = (int) (location >>> 32);
+            Partition partition = partitions.get(chemicalId);
+            partition.remove(recordId, secondOf(location));
+            if (partition.live() == 0) {
+                partitions.remove(chemicalId);
+            }
+        }
+    }
+
+    /**
+     * 一个化学品的流水：并列数组按时间升序，树状数组下标从1开始，容量与列数组一致。
+     * 删除只打标记（记录ID置为-1）并从树中扣除，标记过多时压缩。
+     * 补录的早期记录先放入无序的补录缓冲，查询时逐条扫描；缓冲超过sqrt(n)条时一次归并进主数组并重建树，
+     * 每条补录的均摊代价为O(sqrt(n))而不是移动数组、重建树的O(n)
+     */
+    private static final class Partition {
+        private static final int MIN_BUFFER = 32;
+
+        long[] seconds = new long[8];
+        int[] userIds = new int[8];
+        long[] units = new long[8];
+        int[] recordIds = new int[8];
+        long[] amountTree = new long[9];
+        int[] countTree = new int[9];
+        int size;
+        int removed;
+
+        long[] bufferSeconds = new long[MIN_BUFFER];
+        int[] bufferUserIds = new int[MIN_BUFFER];
+        long[] bufferUnits = new long[MIN_BUFFER];
+        int[] bufferRecordIds = new int[MIN_BUFFER];
+        int buffered;
+
+        int live() {
+            return size - removed + buffered;
+        }
+
+        /**
+         * 加载时追加，不维护顺序与树，加载结束后调用build
+         */
+        void append(int recordId, long second, int userId, long amount) {
+            if (size == seconds.length) {
+                resize(size << 1);
+            }
+            seconds[size] = second;
+            userIds[size] = userId;
+            units[size] = amount;
+            recordIds[size] = recordId;
+            size++;
+        }
+
+        /**
+         * 按时间排序并建树。seconds减去分区最小值后放在高位、原下标放在低31位，
+         * 对long数组排序即得到稳定的排列，避免装箱比较
+         */
+        void build() {
+            boolean sorted = true;
+            for (int i = 1; i < size && sorted; i++) {
+                sorted = seconds[i - 1] <= seconds[i];
+            }
+            if (!sorted) {
+                long min = Long.MAX_VALUE;
+                for (int i = 0; i < size; i++) {
+                    min = Math.min(min, seconds[i]);
+                }
+                long[] order = new long[size];
+                for (int i = 0; i < size; i++) {
+                    order[i] = (seconds[i] - min) << 31 | i;
+                }
+                Arrays.sort(order);
+                long[] newSeconds = new long[seconds.length];
+                int[] newUserIds = new int[seconds.length];
+                long[] newUnits = new long[seconds.length];
+                int[] newRecordIds = new int[seconds.length];
+                for (int i = 0; i < size; i++) {
+                    int from = (int) (order[i] & Integer.MAX_VALUE);
+                    newSeconds[i] = seconds[from];
+                    newUserIds[i] = userIds[from];
+                    newUnits[i] = units[from];
+                    newRecordIds[i] = recordIds[from];
+                }
+                seconds = newSeconds;
+                userIds = newUserIds;
+                units = newUnits;
+                recordIds = newRecordIds;
+            }
+            rebuildTrees();
+        }
+
+        /**
+         * 插入一条记录：时间不早于末尾时直接追加并更新树，补录的早期记录放入补录缓冲
+         */
+        void insert(int recordId, long second, int userId, long amount) {
+            if (size > 0 && second < seconds[size - 1]) {
+                if (buffered == bufferSeconds.length) {
+                    int capacity = buffered << 1;
+                    bufferSeconds = Arrays.copyOf(bufferSeconds, capacity);
+                    bufferUserIds = Arrays.copyOf(bufferUserIds, capacity);
+                    bufferUnits = Arrays.copyOf(bufferUnits, capacity);
+                    bufferRecordIds = Arrays.copyOf(bufferRecordIds, capacity);
+                }
+                bufferSeconds[buffered] = second;
+                bufferUserIds[buffered] = userId;
+                bufferUnits[buffered] = amount;
+                bufferRecordIds[buffered] = recordId;
+                buffered++;
+                if (buffered > Math.max(MIN_BUFFER, (int) Math.sqrt(size))) {
+                    mergeBuffer();
+                }
+                return;
+            }
+            if (size == seconds.length) {
+                resize(size << 1);
+            }
+            append(recordId, second, userId, amount);
+            update(size, amount, 1);
+        }
+
+        void remove(int recordId, long second) {
+            boolean found = false;
+            for (int i = lowerBound(second); i < size && seconds[i] == second; i++) {
+                if (recordIds[i] == recordId) {
+                    update(i + 1, -units[i], -1);
+                    recordIds[i] = -1;
+                    units[i] = 0L;
+                    removed++;
+                    found = true;
+                    break;
+                }
+            }
+            for (int i = 0; i < buffered && !found; i++) {
+                if (bufferRecordIds[i] == recordId) {
+                    buffered--;
+                    bufferSeconds[i] = bufferSeconds[buffered];
+                    bufferUserIds[i] = bufferUserIds[buffered];
+                    bufferUnits[i] = bufferUnits[buffered];
+                    bufferRecordIds[i] = bufferRecordIds[buffered];
+                    found = true;
+                }
+            }
+            if (removed > 64 && removed * 2 > size) {
+                compact();
+            }
+        }
+
+        /** 补录缓冲中时间在[from, to]内的条数 */
+        long bufferedCount(long from, long to) {
+            long count = 0L;
+            for (int i = 0; i < buffered; i++) {
+                if (bufferSeconds[i] >= from && bufferSeconds[i] <= to) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        /** 补录缓冲中时间在[from, to]内的数量合计 */
+        long bufferedUnits(long from, long to) {
+            long sum = 0L;
+            for (int i = 0; i < buffered; i++) {
+                if (bufferSeconds[i] >= from && bufferSeconds[i] <= to) {
+                    sum += bufferUnits[i];
+                }
+            }
+            return sum;
+        }
+
+        /**
+         * 补录缓冲按时间排序后与主数组归并，同时丢弃已删除的标记并重建树
+         */
+        private void mergeBuffer() {
+            // 与build相同：时间差放高位、缓冲下标放低31位，排序即得到按时间稳定的顺序
+            long min = Long.MAX_VALUE;
+            for (int i = 0; i < buffered; i++) {
+                min = Math.min(min, bufferSeconds[i]);
+            }
+            long[] order = new long[buffered];
+            for (int i = 0; i < buffered; i++) {
+                order[i] = (bufferSeconds[i] - min) << 31 | i;
+            }
+            Arrays.sort(order);
+            for (int i = 0; i < buffered; i++) {
+                order[i] &= Integer.MAX_VALUE;
+            }
+            int capacity = Math.max(8, Integer.highestOneBit(Math.max(1, size - removed + buffered)) << 1);
+            long[] newSeconds = new long[capacity];
+            int[] newUserIds = new int[capacity];
+            long[] newUnits = new long[capacity];
+            int[] newRecordIds = new int[capacity];
+            int kept = 0;
+            int b = 0;
+            for (int i = 0; i <= size; i++) {
+                // 相同时间时已有记录在前，与追加的顺序一致
+                while (b < buffered && (i == size || bufferSeconds[(int) order[b]] < seconds[i])) {
+                    int from = (int) order[b++];
+                    newSeconds[kept] = bufferSeconds[from];
+                    newUserIds[kept] = bufferUserIds[from];
+                    newUnits[kept] = bufferUnits[from];
+                    newRecordIds[kept] = bufferRecordIds[from];
+                    kept++;
+                }
+                if (i < size && recordIds[i] >= 0) {
+                    newSeconds[kept] = seconds[i];
+                    newUserIds[kept] = userIds[i];
+                    newUnits[kept] = units[i];
+                    newRecordIds[kept] = recordIds[i];
+                    kept++;
+                }
+            }
+            seconds = newSeconds;
+            userIds = newUserIds;
+            units = newUnits;
+            recordIds = newRecordIds;
+            size = kept;
+            removed = 0;
+            buffered = 0;
+            rebuildTrees();
+        }
+
+        /** 下标区间[lo, hi)内的数量合计 */
+        long units(int lo, int hi) {
+            return hi <= lo ? 0L : prefix(amountTree, hi) - prefix(amountTree, lo);
+        }
+
+        long count(int lo, int hi) {
+            if (hi <= lo) {
+                return 0L;
+            }
+            long count = 0L;
+            for (int i = hi; i > 0; i -= i & -i) {
+                count += countTree[i];
+            }
+            for (int i = lo; i > 0; i -= i & -i) {
+                count -= countTree[i];
+            }
+            return count;
+        }
+
+        private void compact() {
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                if (recordIds[i] < 0) {
+                    continue;
+                }
+                seconds[kept] = seconds[i];
+                userIds[kept] = userIds[i];
+                units[kept] = units[i];
+                recordIds[kept] = recordIds[i];
+                kept++;
+            }
+            size = kept;
+            removed = 0;
+            resize(Math.max(8, Integer.highestOneBit(Math.max(1, kept)) << 1));
+        }
+
+        private void resize(int capacity) {
+            seconds = Arrays.copyOf(seconds, capacity);
+            userIds = Arrays.copyOf(userIds, capacity);
+            units = Arrays.copyOf(units, capacity);
+            recordIds = Arrays.copyOf(recordIds, capacity);
+            rebuildTrees();
+        }
+
+        /**
+         * O(n)建树：每个节点把自己的值累加到父节点
+         */
+        private void rebuildTrees() {
+            int capacity = seconds.length;
+            amountTree = new long[capacity + 1];
+            countTree = new int[capacity + 1];
+            for (int i = 1; i <= size; i++) {
+                if (recordIds[i - 1] >= 0) {
+                    amountTree[i] += units[i - 1];
+                    countTree[i] += 1;
+                }
+            }
+            for (int i = 1; i <= capacity; i++) {
+                int parent = i + (i & -i);
+                if (parent <= capacity) {
+                    amountTree[parent] += amountTree[i];
+                    countTree[parent] += countTree[i];
+                }
+            }
+        }
+
+        private void update(int index, long amount, int count) {
+            for (int i = index; i < amountTree.length; i += i & -i) {
+                amountTree[i] += amount;
+                countTree[i] += count;
+            }
+        }
+
+        private static long prefix(long[] tree, int index) {
+            long sum = 0L;
+            for (int i = index; i > 0; i -= i & -i) {
+                sum += tree[i];
+            }
+            return sum;
+        }
+
+        /** 第一个不早于second的下标 */
+        int lowerBound(long second) {
+            int lo = 0;
+            int hi = size;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (seconds[mid] < second) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+
+        /** 第一个晚于second的下标 */
+        int upperBound(long second) {
+            int lo = 0;
+            int hi = size;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (seconds[mid] <= second) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+    }
+
+    /**
+     * 时间范围内的条数与数量合计
+     */
+    public static final class Totals {
+        private final long count;
+        private final long units;
+
+        Totals(long count, long units) {
+            this.count = count;
+            this.units = units;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public double getAmount() {
+            return (double) units / SCALE;
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        reload();
+        Totals storage = totals(RecordRollupMapper.TYPE_STORAGE, null, null, null);
+        Totals outbound = totals(RecordRollupMapper.TYPE_OUTBOUND, null, null, null);
+        Totals usage = totals(RecordRollupMapper.TYPE_USAGE, null, null, null);
+        log.info("内存列式流水已启动: storage={}, outbound={}, usage={}",
+                storage.getCount(), outbound.getCount(), usage.getCount());
+    }
+
+    /**
+     * 单个化学品在时间范围内的数量合计，时间为闭区间，与各记录表的合计查询一致
+     * @param type 记录类型，见RecordRollupMapper.TYPE_*
+     * @param chemicalId 化学品ID，为null时合计全部化学品
+     * @param startTime 开始时间，可为null
+     * @param endTime 结束时间，可为null
+     * @return 数量合计
+     */
+    public double sumAmount(String type, Integer chemicalId, Date startTime, Date endTime) {
+        return totals(type, chemicalId == null ? null : List.of(chemicalId), startTime, endTime).getAmount();
+    }
+
+    /**
+     * 若干化学品在时间范围内的条数与数量合计
+     * @param type 记录类型
+     * @param chemicalIds 化学品ID，为null时合计全部化学品
+     * @param startTime 开始时间，可为null
+     * @param endTime 结束时间，可为null
+     * @return 条数与数量合计
+     */
+    public Totals totals(String type, Collection<Integer> chemicalIds, Date startTime, Date endTime) {
+        long from = startTime == null ? Long.MIN_VALUE : Math.floorDiv(startTime.getTime() + 999L, 1000L);
+        long to = endTime == null ? Long.MAX_VALUE : Math.floorDiv(endTime.getTime(), 1000L);
+        long count = 0L;
+        long units = 0L;
+        lock.readLock().lock();
+        try {
+            Map<Integer, Partition> partitions = movements.get(type).partitions;
+            Collection<Partition> selected;
+            if (chemicalIds == null) {
+                selected = partitions.values();
+            } else {
+                selected = new ArrayList<>(chemicalIds.size());
+                for (Integer chemicalId : chemicalIds) {
+                    Partition partition = partitions.get(chemicalId);
+                    if (partition != null) {
+                        selected.add(partition);
+                    }
+                }
+            }
+            for (Partition partition : selected) {
+                int lo = partition.lowerBound(from);
+                int hi = partition.upperBound(to);
+                count += partition.count(lo, hi) + partition.bufferedCount(from, to);
+                units += partition.units(lo, hi) + partition.bufferedUnits(from, to);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return new Totals(count, units);
+    }
+
+    /**
+     * 时间范围内的不同人员数，逐条扫描范围内的人员ID列
+     * @param type 记录类型
+     * @param startTime 开始时间（含）
+     * @param endTime 结束时间（不含）
+     * @return 不同人员数，不计没有人员ID的记录
+     */
+    public int countDistinctUsers(String type, Date startTime, Date endTime) {
+        long from = Math.floorDiv(startTime.getTime() + 999L, 1000L);
+        long to = Math.floorDiv(endTime.getTime() - 1L, 1000L);
+        IntLongHashMap users = new IntLongHashMap();
+        lock.readLock().lock();
+        try {
+            for (Partition partition : movements.get(type).partitions.values()) {
+                for (int i = partition.lowerBound(from), hi = partition.upperBound(to); i < hi; i++) {
+                    if (partition.recordIds[i] >= 0 && partition.userIds[i] != NO_USER) {
+                        users.put(partition.userIds[i], 1L);
+                    }
+                }
+                for (int i = 0; i < partition.buffered; i++) {
+                    long second = partition.bufferSeconds[i];
+                    if (second >= from && second <= to && partition.bufferUserIds[i] != NO_USER) {
+                        users.put(partition.bufferUserIds[i], 1L);
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return users.size();
+    }
+
+    /**
+     * 记录新增、修改或删除，事务提交后按ID重新读取这些记录
+     * @param type 记录类型
+     * @param ids 记录ID
+     */
+    public void recordsChanged(String type, Collection<Integer> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return;
+        }
+        List<Integer> changed = new ArrayList<>(ids);
+        afterCommit(() -> {
+            try {
+                refresh(type, changed);
+            } catch (RuntimeException e) {
+                // 偏差由定时比对发现后重新加载
+                log.warn("内存列式流水更新失败: type={}, ids={}", type, changed, e);
+            }
+        });
+    }
+
+    /**
+     * 与数据库的条数、数量合计比对，同一类记录连续两次不一致时重新加载。
+     * 数据库只合计不超过内存已读入最大ID的记录，刚提交、尚未更新到内存的新记录不计入；
+     * 已提交但更新尚未完成的修改会造成一次不一致，到下一次比对时已经一致
+     */
+    @Scheduled(fixedDelayString = "${app.inventory.movement-store.verify-interval-ms:300000}",
+            initialDelayString = "${app.inventory.movement-store.verify-interval-ms:300000}")
+    public synchronized void verify() {
+        for (String type : TYPES) {
+            int watermark;
+            Totals actual;
+            lock.readLock().lock();
+            try {
+                watermark = movements.get(type).maxRecordId;
+                actual = totals(type, null, null, null);
+            } finally {
+                lock.readLock().unlock();
+            }
+            Map<String, Object> expected = recordMovementMapper.selectTotals(type, watermark);
+            long expectedCount = expected.get("cnt") == null ? 0L : ((Number) expected.get("cnt")).longValue();
+            long expectedUnits = toUnits(expected.get("total"));
+            if (expectedCount == actual.count && expectedUnits == actual.units) {
+                mismatched.remove(type);
+                continue;
+            }
+            if (mismatched.add(type)) {
+                log.info("内存列式流水与数据库暂不一致，下次比对仍不一致时重新加载: type={}, watermark={}, expected={}, actual=[count={}, amount={}]",
+                        type, watermark, expected, actual.getCount(), actual.getAmount());
+                continue;
+            }
+            driftCorrections.incrementAndGet();
+            log.warn("内存列式流水与数据库连续两次不一致，重新加载: type={}, watermark={}, expected={}, actual=[count={}, amount={}]",
+                    type, watermark, expected, actual.getCount(), actual.getAmount());
+            mismatched.clear();
+            reload();
+            return;
+        }
+    }
+
+    /**
+     * 累计纠偏次数
+     * @return 自启动以来因比对不一致而重新加载的次数
+     */
+    public long getDriftCorrections() {
+        return driftCorrections.get();
+    }
+
+    /**
+     * 从数据库流式重新加载全部记录，加载期间提交的修改在换入后重放
+     */
+    public synchronized void reload() {
+        lock.writeLock().lock();
+        try {
+            changedWhileLoading = new HashMap<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        Map<String, Set<Integer>> replay;
+        Map<String, Movements> loaded = emptyMovements();
+        boolean complete = false;
+        try {
+            for (String type : TYPES) {
+                load(type, loaded.get(type));
+            }
+            complete = true;
+        } finally {
+            lock.writeLock().lock();
+            try {
+                if (complete) {
+                    movements = loaded;
+                }
+                replay = changedWhileLoading;
+                changedWhileLoading = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+        replay.forEach((type, ids) -> refresh(type, new ArrayList<>(ids)));
+    }
+
+    private void load(String type, Movements target) {
+        try (Cursor<Map<String, Object>> rows = recordMovementMapper.scanMovements(type)) {
+            for (Map<String, Object> row : rows) {
+                Object chemicalId = row.get("chemical_id");
+                Object time = row.get("record_time");
+                if (chemicalId == null || time == null) {
+                    continue;
+                }
+                int recordId = ((Number) row.get("id")).intValue();
+                long second = toSeconds(time);
+                target.partitions.computeIfAbsent(((Number) chemicalId).intValue(), k -> new Partition())
+                        .append(recordId, second, toUserId(row.get("user_id")), toUnits(row.get("amount")));
+                target.put(recordId, ((Number) chemicalId).intValue(), second);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("关闭流水游标失败", e);
+        }
+        for (Partition partition : target.partitions.values()) {
+            partition.build();
+        }
+    }
+
+    /**
+     * 按ID从数据库读取记录当前内容并替换内存中的旧值，已删除的记录只移除。
+     * 读取在锁外进行，换入前在写锁下确认读取期间没有重新加载、也没有其他更新先生效（最大记录ID与更新次数不变），
+     * 否则读到的可能比已生效的旧，重新读取；多次重试仍有冲突时照常换入，残留的偏差由定时比对纠正
+     */
+    private void refresh(String type, List<Integer> ids) {
+        for (int from = 0; from < ids.size(); from += BATCH_SIZE) {
+            List<Integer> batch = ids.subList(from, Math.min(ids.size(), from + BATCH_SIZE));
+            for (int attempt = 1; ; attempt++) {
+                Movements before;
+                int maxRecordId;
+                long updates;
+                lock.readLock().lock();
+                try {
+                    before = movements.get(type);
+                    maxRecordId = before.maxRecordId;
+                    updates = before.updates;
+                } finally {
+                    lock.readLock().unlock();
+                }
+                List<Map<String, Object>> rows = recordMovementMapper.selectMovementsByIds(type, batch);
+                lock.writeLock().lock();
+                try {
+                    Movements target = movements.get(type);
+                    boolean unchanged = target == before && target.maxRecordId == maxRecordId && target.updates == updates;
+                    if (!unchanged && attempt < REFRESH_ATTEMPTS) {
+                        continue;
+                    }
+                    apply(type, target, batch, rows);
+                    break;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+        }
+    }
+
+    /**
+     * 以读到的记录替换内存中的旧值，调用方须持有写锁
+     */
+    private void apply(String type, Movements target, List<Integer> batch, List<Map<String, Object>> rows) {
+        for (Integer id : batch) {
+            target.remove(id);
+        }
+        for (Map<String, Object> row : rows) {
+            Object chemicalId = row.get("chemical_id");
+            Object time = row.get("record_time");
+            if (chemicalId == null || time == null) {
+                continue;
+            }
+            target.add(((Number) row.get("id")).intValue(), ((Number) chemicalId).intValue(),
+                    toSeconds(time), toUserId(row.get("user_id")), toUnits(row.get("amount")));
+        }
+        target.updates++;
+        if (changedWhileLoading != null) {
+            changedWhileLoading.computeIfAbsent(type, k -> new LinkedHashSet<>()).addAll(batch);
+        }
+    }
+
+    /**
+     * 记录位置：化学品ID放在高32位，时间秒数按无符号32位放在低32位。
+     * 无符号32位的秒数覆盖1970-01-01至2106-02-07（UTC），该范围外的时间截断后无法按位置找回记录，
+     * 删除或修改该记录时会漏掉旧值，由定时比对发现后重新加载
+     */
+    private static long location(int chemicalId, long second) {
+        return (long) chemicalId << 32 | (second & 0xFFFFFFFFL);
+    }
+
+    private static long secondOf(long location) {
+        return location & 0xFFFFFFFFL;
+    }
+
+    private static Map<String, Movements> emptyMovements() {
+        Map<String, Movements> result = new HashMap<>();
+        for (String type : TYPES) {
+            result.put(type, new Movements());
+        }
+        return result;
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    /**
+     * 驱动按版本返回Timestamp或LocalDateTime，统一按本地时区换算为秒，与查询参数的换算一致
+     */
+    private static long toSeconds(Object time) {
+        if (time instanceof Date) {
+            return Math.floorDiv(((Date) time).getTime(), 1000L);
+        }
+        return ((LocalDateTime) time).atZone(ZoneId.systemDefault()).toEpochSecond();
+    }
+
+    private static int toUserId(Object userId) {
+        return userId == null ? NO_USER : ((Number) userId).intValue();
+    }
+
+    private static long toUnits(Object amount) {
+        return amount == null ? 0L : Math.round(((Number) amount).doubleValue() * SCALE);
+    }
+}
@@ -0,0 +1,246 @@
+package com.vueones.ledger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * 库存增量日志（本地追加写）
+ * 每条记录定长24字节：序号(8) + 化学品ID(4) + 定点增量(8) + CRC32(4)；
+ * 日志按段滚动，段文件名为段内首条序号，检查点之前的段在刷盘成功后删除。
+ * append只写入操作系统缓冲，调用方在确认操作前调用sync：并发等待的调用合并为一次fsync（组提交）
+ */
+public class StockDeltaLog {
+
+    private static final Logger log = LoggerFactory.getLogger(StockDeltaLog.class);
+
+    static final int RECORD_SIZE = 24;
+    private static final String SEGMENT_PREFIX = "stock-ledger-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private final Path dir;
+    private final boolean fsync;
+    private final ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE);
+    private final CRC32 crc = new CRC32();
+
+    /** fsync互斥，同时等待的sync共用一次fsync；锁顺序：syncLock在前，this在后 */
+    private final Object syncLock = new Object();
+
+    private FileChannel channel;
+    private Path currentSegment;
+    private long currentRecords;
+    private long lastSeq;
+    /** 已确认落盘的最大序号 */
+    private volatile long syncedSeq;
+
+    /**
+     * 日志回放回调
+     */
+    @FunctionalInterface
+    public interface ReplayVisitor {
+        void visit(long seq, int chemicalId, long delta);
+    }
+
+    public StockDeltaLog(Path dir, boolean fsync) {
+        this.dir = dir;
+        this.fsync = fsync;
+    }
+
+    /**
+     * 回放序号大于afterSeq的所有记录
+     * 段尾不完整或校验失败的记录视为崩溃时的半写，直接截断
+     * @param afterSeq 检查点序号
+     * @param visitor 回调
+     * @return 日志中的最大序号
+     */
+    public synchronized long replay(long afterSeq, ReplayVisitor visitor) throws IOException {
+        Files.createDirectories(dir);
+        long maxSeq = afterSeq;
+        ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+        for (Path segment : listSegments()) {
+            try (FileChannel in = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                long validBytes = 0;
+                while (true) {
+                    record.clear();
+                    while (record.hasRemaining() && in.read(record) > 0) {
+                        // 读满一条记录
+                    }
+                    if (record.hasRemaining()) {
+                        break;
+                    }
+                    record.flip();
+                    long seq = record.getLong();
+                    int chemicalId = record.getInt();
+                    long delta = record.getLong();
+                    int checksum = record.getInt();
+                    if (checksum != checksum(seq, chemicalId, delta)) {
+                        break;
+                    }
+                    validBytes += RECORD_SIZE;
+                    if (seq > afterSeq) {
+                        visitor.visit(seq, chemicalId, delta);
+                    }
+                    maxSeq = Math.max(maxSeq, seq);
+                }
+                if (validBytes < in.size()) {
+                    log.warn("库存增量日志段尾部不完整，截断: segment={}, validBytes={}, size={}",
+                            segment.getFileName(), validBytes, in.size());
+                    in.truncate(validBytes);
+                }
+            }
+        }
+        return maxSeq;
+    }
+
+    /**
+     * 打开新的日志段，后续序号从lastSeq+1开始
+     * @param lastSeq 已使用的最大序号
+     */
+    public synchronized void open(long lastSeq) throws IOException {
+        this.lastSeq = lastSeq;
+        this.syncedSeq = lastSeq;
+        openSegment();
+    }
+
+    /**
+     * 追加一条增量记录（只写入操作系统缓冲，落盘见sync）
+     * @param chemicalId 化学品ID
+     * @param delta 定点增量
+     * @return 记录序号
+     */
+    public synchronized long append(int chemicalId, long delta) throws IOException {
+        long seq = lastSeq + 1;
+        buffer.clear();
+        buffer.putLong(seq).putInt(chemicalId).putLong(delta).putInt(checksum(seq, chemicalId, delta));
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        lastSeq = seq;
+        currentRecords++;
+        return seq;
+    }
+
+    /**
+     * 等待序号不超过seq的记录落盘
+     * 持有syncLock的线程fsync时，后续到达的调用在锁上排队；拿到锁时若已被上一次fsync覆盖则直接返回，
+     * 否则由它一次fsync当时已写入的全部记录。未开启fsync时直接返回
+     * @param seq 记录序号
+     */
+    public void sync(long seq) throws IOException {
+        if (!fsync || syncedSeq >= seq) {
+            return;
+        }
+        synchronized (syncLock) {
+            if (syncedSeq >= seq) {
+                return;
+            }
+            long target;
+            FileChannel current;
+            synchronized (this) {
+                target = lastSeq;
+                current = channel;
+            }
+            // fsync期间不持有this，其他线程可以继续append
+            current.force(false);
+            syncedSeq = target;
+        }
+    }
+
+    public synchronized long lastSeq() {
+        return lastSeq;
+    }
+
+    /**
+     * 封存当前段并开启新段
+     * @return 已封存的段文件（当前段为空时返回空列表）
+     */
+    public List<Path> roll() throws IOException {
+        synchronized (syncLock) {
+            synchronized (this) {
+                if (currentRecords == 0) {
+                    return Collections.emptyList();
+                }
+                Path sealed = currentSegment;
+                // 封存前落盘，sync不会再用到这个段
+                if (fsync) {
+                    channel.force(false);
+                    syncedSeq = lastSeq;
+                }
+                channel.close();
+                openSegment();
+                List<Path> result = new ArrayList<>();
+                result.add(sealed);
+                return result;
+            }
+        }
+    }
+
+    /**
+     * 删除已被检查点覆盖的日志段
+     * @param segments 段文件
+     */
+    public void delete(List<Path> segments) {
+        for (Path segment : segments) {
+            try {
+                Files.deleteIfExists(segment);
+            } catch (IOException e) {
+                log.warn("删除库存增量日志段失败: {}", segment, e);
+            }
+        }
+    }
+
+    /**
+     * 列出当前段之外的所有历史段（启动回放后用于清理）
+     */
+    public synchronized List<Path> sealedSegments() throws IOException {
+        List<Path> segments = listSegments();
+        segments.remove(currentSegment);
+        return segments;
+    }
+
+    public synchronized void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+        }
+    }
+
+    private void openSegment() throws IOException {
+        Files.createDirectories(dir);
+        currentSegment = dir.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, lastSeq + 1, SEGMENT_SUFFIX));
+        channel = FileChannel.open(currentSegment, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        currentRecords = channel.size() / RECORD_SIZE;
+    }
+
+    private List<Path> listSegments() throws IOException {
+        List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path segment : stream) {
+                segments.add(segment);
+            }
+        }
+        // 文件名中的序号定长补零，字典序即序号顺序
+        Collections.sort(segments);
+        return segments;
+    }
+
+    private int checksum(long seq, int chemicalId, long delta) {
+        crc.reset();
+        ByteBuffer tmp = ByteBuffer.allocate(20);
+        tmp.putLong(seq).putInt(chemicalId).putLong(delta);
+        crc.update(tmp.array());
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,401 @@
+package com.vueones.ledger;
+
+import com.vueones.cache.BatchCache;
+import com.vueones.cache.CacheNames;
+import com.vueones.cache.ExistenceGuard;
+import com.vueones.dto.StockMutationResult;
+import com.vueones.entity.Inventory;
+import com.vueones.entity.InventoryMovement;
+import com.vueones.mapper.InventoryCounterMapper;
+import com.vueones.mapper.InventoryMapper;
+import com.vueones.service.IInventoryMovementService;
+import com.vueones.util.Histogram;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cache.CacheManager;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 出入库合并提交
+ * 开启 app.inventory.group-commit.enabled 后，非事务内的入库/出库请求先进入队列，
+ * 由单个提交线程把一个时间窗口内的请求合并为一个事务：每个化学品锁定一次主库存记录、
+ * 按到达顺序逐个判定接受/拒绝（出库不足即拒绝），最后只执行一条UPDATE
+ */
+@Component
+@ConditionalOnProperty(prefix = "app.inventory.group-commit", name = "enabled", havingValue = "true")
+public class StockGroupCommitter {
+
+    private static final Logger log = LoggerFactory.getLogger(StockGroupCommitter.class);
+
+    private static final long SCALE = 100L;
+    /** 批次事务因死锁被回滚后的最大执行次数，与单条出入库一致 */
+    private static final int LOCK_RETRY_ATTEMPTS = 8;
+    /** 锁冲突重试前的随机等待上限（毫秒），按重试次数递增 */
+    private static final int LOCK_RETRY_BACKOFF_MILLIS = 5;
+
+    @Value("${app.inventory.group-commit.window-ms:2}")
+    private long windowMs;
+
+    @Value("${app.inventory.group-commit.max-batch:256}")
+    private int maxBatch;
+
+    @Autowired
+    private InventoryMapper inventoryMapper;
+
+    @Autowired
+    private InventoryCounterMapper inventoryCounterMapper;
+
+    @Autowired
+    private IInventoryMovementService inventoryMovementService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private ExistenceGuard existenceGuard;
+
+    @Autowired(required = false)
+    private InventoryStatsAggregator inventoryStatsAggregator;
+
+    private final BlockingQueue<PendingMovement> queue = new LinkedBlockingQueue<>();
+    private final Histogram batchSizes = new Histogram(1, 2, 4, 8, 16, 32, 64, 128, 256, 512);
+    /** 请求入队到结果返回的耗时（微秒），即合并提交带来的额外延迟 */
+    private final Histogram addedLatencyMicros = new Histogram(
+            100, 250, 500, 1000, 2000, 5000, 10000, 25000, 50000, 100000);
+
+    private Thread worker;
+    private volatile boolean running;
+
+    /**
+     * 排队中的单个出入库请求
+     */
+    private static final class PendingMovement {
+        final Integer chemicalId;
+        final Double amount;
+        final long units;
+        final boolean out;
+        final long enqueuedNanos = System.nanoTime();
+        final MovementFuture future = new MovementFuture();
+        StockMutationResult result;
+
+        PendingMovement(Integer chemicalId, Double amount, boolean out) {
+            this.chemicalId = chemicalId;
+            this.amount = amount;
+            this.units = Math.round(amount * SCALE);
+            this.out = out;
+        }
+    }
+
+    /**
+     * 请求结果；提交线程取走请求之前调用方可以取消（等待超时），取走之后取消无效，请求一定会被执行或失败
+     */
+    private static final class MovementFuture extends CompletableFuture<StockMutationResult> {
+        private final AtomicBoolean claimed = new AtomicBoolean();
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            return claimed.compareAndSet(false, true) && super.cancel(mayInterruptIfRunning);
+        }
+
+        /**
+         * 提交线程取走请求
+         * @return 请求已被取消时返回false
+         */
+        boolean claim() {
+            return claimed.compareAndSet(false, true);
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        worker = new Thread(this::runLoop, "stock-group-commit");
+        worker.setDaemon(true);
+        worker.start();
+        log.info("出入库合并提交已启动: windowMs={}, maxBatch={}", windowMs, maxBatch);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        worker.interrupt();
+        worker.join(TimeUnit.SECONDS.toMillis(5));
+    }
+
+    /**
+     * 提交入库请求
+     * @param chemicalId 化学品ID
+     * @param amount 入库数量
+     * @return 变动结果；等待超时后可调用cancel，返回true表示请求未被执行
+     */
+    public CompletableFuture<StockMutationResult> submitStorageIn(Integer chemicalId, Double amount) {
+        return submit(new PendingMovement(chemicalId, amount, false));
+    }
+
+    /**
+     * 提交出库请求
+     * @param chemicalId 化学品ID
+     * @param amount 出库数量
+     * @return 变动结果；等待超时后可调用cancel，返回true表示请求未被执行
+     */
+    public CompletableFuture<StockMutationResult> submitStorageOut(Integer chemicalId, Double amount) {
+        return submit(new PendingMovement(chemicalId, amount, true));
+    }
+
+    /**
+     * 批大小与额外延迟分布
+     * @return 统计数据
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("windowMs", windowMs);
+        stats.put("maxBatch", maxBatch);
+        stats.put("queueSize", queue.size());
+        stats.put("batchSize", batchSizes.snapshot());
+        stats.put("addedLatencyMicros", addedLatencyMicros.snapshot());
+        return stats;
+    }
+
+    private CompletableFuture<StockMutationResult> submit(PendingMovement movement) {
+        if (!running) {
+            movement.future.completeExceptionally(new IllegalStateException("出入库合并提交已停止"));
+            return movement.future;
+        }
+        if (movement.units <= 0) {
+            movement.future.complete(StockMutationResult.rejected(movement.chemicalId, movement.amount, "变动数量小于最小精度"));
+            return movement.future;
+        }
+        queue.add(movement);
+        return movement.future;
+    }
+
+    private void runLoop() {
+        List<PendingMovement> batch = new ArrayList<>();
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingMovement first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(windowMs);
+                while (batch.size() < maxBatch) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        queue.drainTo(batch, maxBatch - batch.size());
+                        break;
+                    }
+                    PendingMovement next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                commit(batch);
+            } catch (InterruptedException e) {
+                // 已取出的请求必须提交，停止时连同队列剩余请求一起处理
+                if (!running) {
+                    queue.drainTo(batch);
+                }
+                commit(batch);
+            } catch (Throwable e) {
+                // commit自行完成所有结果，这里只防止意外异常结束提交线程
+                log.error("出入库合并提交线程异常", e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * 在一个事务中提交一批请求
+     * 无论事务、缓存失效还是其他环节抛出什么异常，返回前每个请求的结果都已完成或失败
+     */
+    private void commit(List<PendingMovement> batch) {
+        // 调用方已等待超时并取消的请求不再执行
+        batch.removeIf(movement -> !movement.future.claim());
+        if (batch.isEmpty()) {
+            return;
+        }
+        Throwable failure = null;
+        try {
+            batchSizes.record(batch.size());
+
+            // 按化学品ID排序加锁，避免与其他批次或单条路径互相死锁；同一化学品内保持到达顺序
+            Map<Integer, List<PendingMovement>> byChemical = new TreeMap<>();
+            for (PendingMovement movement : batch) {
+                byChemical.computeIfAbsent(movement.chemicalId, k -> new ArrayList<>()).add(movement);
+            }
+
+            List<Integer> touchedInventoryIds = new ArrayList<>();
+            executeWithRetry(batch.size(), () -> transactionTemplate.executeWithoutResult(status -> {
+                touchedInventoryIds.clear();
+                List<InventoryMovement> journal = new ArrayList<>();
+                for (Map.Entry<Integer, List<PendingMovement>> entry : byChemical.entrySet()) {
+                    Integer inventoryId = applyChemical(entry.getKey(), entry.getValue(), journal);
+                    if (inventoryId != null) {
+                        touchedInventoryIds.add(inventoryId);
+                    }
+                }
+                inventoryMovementService.recordAll(journal);
+                statsStockChanged(journal);
+            }));
+            evictCommitted(touchedInventoryIds);
+        } catch (Throwable e) {
+            failure = e;
+            log.error("出入库合并提交失败: batchSize={}", batch.size(), e);
+        } finally {
+            long now = System.nanoTime();
+            for (PendingMovement movement : batch) {
+                if (failure != null) {
+                    movement.future.completeExceptionally(failure);
+                } else if (movement.result == null) {
+                    movement.future.completeExceptionally(new IllegalStateException("出入库合并提交未产生结果"));
+                } else {
+                    addedLatencyMicros.record(TimeUnit.NANOSECONDS.toMicros(now - movement.enqueuedNanos));
+                    movement.future.complete(movement.result);
+                }
+            }
+        }
+    }
+
+    /**
+     * 执行批次事务，死锁或锁等待超时被回滚时整批重新执行
+     * 重新执行时每个请求按最新余额重新判定，结果与流水都重新生成；
+     * 等待不响应中断，停止提交线程时已取出的批次仍要提交
+     */
+    private void executeWithRetry(int batchSize, Runnable transaction) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                transaction.run();
+                return;
+            } catch (PessimisticLockingFailureException e) {
+                if (attempt >= LOCK_RETRY_ATTEMPTS) {
+                    throw e;
+                }
+                log.warn("出入库合并提交发生锁冲突，重试第{}次: batchSize={}, {}", attempt, batchSize,
+                        e.getMostSpecificCause().getMessage());
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(
+                        ThreadLocalRandom.current().nextInt(1, LOCK_RETRY_BACKOFF_MILLIS * attempt + 1)));
+            }
+        }
+    }
+
+    /**
+     * 一批内被修改的库存缓存以一条UNLINK失效；事务已提交，失效失败只记录日志，不影响结果
+     */
+    private void evictCommitted(List<Integer> touchedInventoryIds) {
+        try {
+            BatchCache inventoryCache = BatchCache.of(cacheManager.getCache(CacheNames.INVENTORY));
+            if (inventoryCache != null && !touchedInventoryIds.isEmpty()) {
+                inventoryCache.evictAll(touchedInventoryIds);
+            }
+        } catch (RuntimeException e) {
+            log.warn("出入库合并提交后清除库存缓存失败: inventoryIds={}", touchedInventoryIds, e);
+        }
+    }
+
+    /**
+     * 在当前事务中处理同一化学品的一组请求
+     * @return 被修改的库存ID，没有被接受的请求时返回null
+     */
+    private Integer applyChemical(Integer chemicalId, List<PendingMovement> movements, List<InventoryMovement> journal) {
+        Inventory stock = inventoryMapper.selectPrimaryStockForUpdate(chemicalId);
+        long balance = stock == null || stock.getCurrentAmount() == null ? 0L : Math.round(stock.getCurrentAmount() * SCALE);
+        Integer inventoryId = stock == null ? null : stock.getId();
+
+        long netDelta = 0;
+        List<PendingMovement> accepted = new ArrayList<>();
+        for (PendingMovement movement : movements) {
+            if (movement.out && balance < movement.units) {
+                movement.result = StockMutationResult.rejected(chemicalId, movement.amount, "库存不足或库存记录不存在");
+                continue;
+            }
+            long delta = movement.out ? -movement.units : movement.units;
+            balance += delta;
+            netDelta += delta;
+            movement.result = StockMutationResult.accepted(chemicalId, inventoryId, movement.amount, 1, toAmount(balance));
+            journal.add(new InventoryMovement(inventoryId, chemicalId,
+                    movement.out ? InventoryMovement.TYPE_OUT : InventoryMovement.TYPE_IN,
+                    toAmount(delta), toAmount(balance)));
+            accepted.add(movement);
+        }
+        if (accepted.isEmpty()) {
+            return null;
+        }
+
+        if (stock == null) {
+            // 化学品尚无库存记录：锁定库存总数计数器（与首次入库同一把锁）后以净增量新建一条（单位取最近入库记录），
+            // 并回填结果与流水中的库存ID；锁内发现其他节点已新建时累加到该记录，按实际余额平移
+            inventoryCounterMapper.selectValueForUpdate(InventoryCounterMapper.INVENTORY_TOTAL);
+            Inventory existing = inventoryMapper.selectPrimaryStockForUpdate(chemicalId);
+            long shift = 0L;
+            if (existing == null) {
+                inventoryMapper.insertStock(chemicalId, toAmount(netDelta), inventoryMapper.selectReceiptUnit(chemicalId));
+                inventoryId = inventoryMapper.selectMutatedStock().getId();
+                inventoryCounterMapper.add(InventoryCounterMapper.INVENTORY_TOTAL, 1);
+                existenceGuard.added(CacheNames.INVENTORY, inventoryId);
+            } else {
+                inventoryId = existing.getId();
+                shift = existing.getCurrentAmount() == null ? 0L : Math.round(existing.getCurrentAmount() * SCALE);
+                inventoryMapper.addAmountById(inventoryId, toAmount(netDelta));
+            }
+            balance += shift;
+            for (PendingMovement movement : accepted) {
+                movement.result.setInventoryId(inventoryId);
+                movement.result.setBalance(movement.result.getBalance() + toAmount(shift));
+            }
+            for (int i = journal.size() - accepted.size(); i < journal.size(); i++) {
+                journal.get(i).setInventoryId(inventoryId);
+                journal.get(i).setBalanceAfter(journal.get(i).getBalanceAfter() + toAmount(shift));
+            }
+        } else if (netDelta != 0) {
+            inventoryMapper.addAmountById(inventoryId, toAmount(netDelta));
+        }
+        return inventoryId;
+    }
+
+    /**
+     * 流水写入后通知统计聚合器：每条库存记录取本批最后一条流水的余额，流水ID作为版本
+     */
+    private void statsStockChanged(List<InventoryMovement> journal) {
+        if (inventoryStatsAggregator == null) {
+            return;
+        }
+        Map<Integer, InventoryMovement> latest = new LinkedHashMap<>();
+        for (InventoryMovement movement : journal) {
+            latest.put(movement.getInventoryId(), movement);
+        }
+        for (InventoryMovement movement : latest.values()) {
+            inventoryStatsAggregator.onStockChanged(movement.getInventoryId(), movement.getChemicalId(),
+                    movement.getBalanceAfter(), movement.getId());
+        }
+    }
+
+    private static double toAmount(long units) {
+        return (double) units / SCALE;
+    }
+}
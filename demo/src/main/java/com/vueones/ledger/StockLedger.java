@@ -0,0 +1,481 @@
+package com.vueones.ledger;
+
+import com.vueones.cache.BatchCache;
+import com.vueones.cache.CacheNames;
+import com.vueones.cache.ExistenceGuard;
+import com.vueones.dto.StockMutationResult;
+import com.vueones.entity.Inventory;
+import com.vueones.entity.InventoryMovement;
+import com.vueones.mapper.InventoryCounterMapper;
+import com.vueones.mapper.InventoryMapper;
+import com.vueones.mapper.StockLedgerMapper;
+import com.vueones.service.IInventoryMovementService;
+import com.vueones.util.IntLongHashMap;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cache.CacheManager;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 库存内存账本
+ * 开启 app.inventory.ledger.enabled 后，入库/出库只修改内存中的定点余额并追加本地增量日志，
+ * 由定时任务将合并后的增量批量刷入inventory表；启动时从数据库加载余额并回放检查点之后的日志
+ */
+@Component
+@ConditionalOnProperty(prefix = "app.inventory.ledger", name = "enabled", havingValue = "true")
+public class StockLedger {
+
+    private static final Logger log = LoggerFactory.getLogger(StockLedger.class);
+
+    /** 定点精度：inventory.current_amount为decimal(10,2)，内存中按1/100存储 */
+    private static final long SCALE = 100L;
+
+    @Value("${app.inventory.ledger.stripes:64}")
+    private int stripeCount;
+
+    @Value("${app.inventory.ledger.log-dir:./data/stock-ledger}")
+    private String logDir;
+
+    @Value("${app.inventory.ledger.fsync:true}")
+    private boolean fsync;
+
+    @Autowired
+    private StockLedgerMapper stockLedgerMapper;
+
+    @Autowired
+    private InventoryMapper inventoryMapper;
+
+    @Autowired
+    private InventoryCounterMapper inventoryCounterMapper;
+
+    @Autowired
+    private ExistenceGuard existenceGuard;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private IInventoryMovementService inventoryMovementService;
+
+    @Autowired(required = false)
+    private InventoryStatsAggregator inventoryStatsAggregator;
+
+    private Stripe[] stripes;
+    private int stripeMask;
+    private StockDeltaLog deltaLog;
+    private TransactionTemplate flushTemplate;
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private long checkpointSeq;
+    /** 已封存、等待检查点推进后删除的日志段 */
+    private final List<Path> retainedSegments = new ArrayList<>();
+
+    /**
+     * 分段锁，每段维护自己的余额表与待刷盘增量表
+     */
+    private static final class Stripe {
+        final ReentrantLock lock = new ReentrantLock();
+        final IntLongHashMap balances = new IntLongHashMap();
+        final IntLongHashMap inventoryIds = new IntLongHashMap();
+        /** 调用方事务尚未提交的出库预留数量 */
+        final IntLongHashMap reserved = new IntLongHashMap();
+        IntLongHashMap pending = new IntLongHashMap();
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        int count = Integer.highestOneBit(Math.max(1, stripeCount - 1)) << 1;
+        stripes = new Stripe[count];
+        for (int i = 0; i < count; i++) {
+            stripes[i] = new Stripe();
+        }
+        stripeMask = count - 1;
+        flushTemplate = new TransactionTemplate(transactionManager);
+        flushTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+
+        Long checkpoint = stockLedgerMapper.selectCheckpoint();
+        checkpointSeq = checkpoint == null ? 0L : checkpoint;
+        loadBalances(stockLedgerMapper.selectPrimaryStock());
+
+        deltaLog = new StockDeltaLog(Paths.get(logDir), fsync);
+        final int[] replayed = {0};
+        long maxSeq = deltaLog.replay(checkpointSeq, (seq, chemicalId, delta) -> {
+            Stripe stripe = stripeFor(chemicalId);
+            stripe.balances.addTo(chemicalId, delta);
+            stripe.pending.addTo(chemicalId, delta);
+            replayed[0]++;
+        });
+        deltaLog.open(maxSeq);
+        retainedSegments.addAll(deltaLog.sealedSegments());
+        log.info("库存内存账本已启动: stripes={}, checkpoint={}, replayed={}, lastSeq={}",
+                count, checkpointSeq, replayed[0], maxSeq);
+
+        // 回放出的增量立即刷入数据库
+        flush();
+    }
+
+    /**
+     * 入库
+     * @param chemicalId 化学品ID
+     * @param amount 入库数量
+     * @return 变动结果
+     */
+    public StockMutationResult storageIn(Integer chemicalId, Double amount) {
+        return apply(chemicalId, amount, false);
+    }
+
+    /**
+     * 出库，余额不足时直接在内存中拒绝
+     * @param chemicalId 化学品ID
+     * @param amount 出库数量
+     * @return 变动结果
+     */
+    public StockMutationResult storageOut(Integer chemicalId, Double amount) {
+        return apply(chemicalId, amount, true);
+    }
+
+    private StockMutationResult apply(Integer chemicalId, Double amount, boolean out) {
+        long units = Math.round(amount * SCALE);
+        if (units <= 0) {
+            return StockMutationResult.rejected(chemicalId, amount, "变动数量小于最小精度");
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            return applyOnCommit(chemicalId, amount, units, out);
+        }
+        long delta = out ? -units : units;
+        Stripe stripe = stripeFor(chemicalId);
+        long balance;
+        long inventoryId;
+        long seq;
+        stripe.lock.lock();
+        try {
+            if (out && available(stripe, chemicalId) < units) {
+                return StockMutationResult.rejected(chemicalId, amount, "库存不足或库存记录不存在");
+            }
+            seq = append(stripe, chemicalId, delta);
+            balance = stripe.balances.get(chemicalId, 0L);
+            inventoryId = stripe.inventoryIds.get(chemicalId, -1L);
+        } finally {
+            stripe.lock.unlock();
+        }
+
+        // 在分段锁外等待日志落盘，同时到达的请求共用一次fsync；落盘失败时撤销已计入内存的增量，操作不被确认
+        try {
+            syncLog(seq);
+        } catch (IllegalStateException e) {
+            revert(stripe, chemicalId, delta);
+            throw e;
+        }
+        return StockMutationResult.accepted(chemicalId, inventoryId < 0 ? null : (int) inventoryId,
+                amount, 1, toAmount(balance));
+    }
+
+    /**
+     * 调用方处于数据库事务中时（如出入库记录与库存变动一起提交），增量在事务提交后才写日志、计入余额：
+     * 出库先预留数量，其他线程的出库校验不能再用这部分余额，回滚时释放；入库在提交前不可用，
+     * 不会出现其他出库用掉了一笔随后回滚的入库
+     */
+    private StockMutationResult applyOnCommit(Integer chemicalId, Double amount, long units, boolean out) {
+        long delta = out ? -units : units;
+        Stripe stripe = stripeFor(chemicalId);
+        long balance;
+        long inventoryId;
+        stripe.lock.lock();
+        try {
+            if (out) {
+                if (available(stripe, chemicalId) < units) {
+                    return StockMutationResult.rejected(chemicalId, amount, "库存不足或库存记录不存在");
+                }
+                stripe.reserved.addTo(chemicalId, units);
+            }
+            balance = stripe.balances.get(chemicalId, 0L) + delta;
+            inventoryId = stripe.inventoryIds.get(chemicalId, -1L);
+        } finally {
+            stripe.lock.unlock();
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                long seq = -1L;
+                stripe.lock.lock();
+                try {
+                    if (out) {
+                        release(stripe, chemicalId, units);
+                    }
+                    if (status == STATUS_COMMITTED) {
+                        seq = append(stripe, chemicalId, delta);
+                    }
+                } catch (IllegalStateException e) {
+                    // 事务已提交：增量仍计入内存，随下次刷盘写入数据库，只是刷盘前崩溃会丢失
+                    stripe.balances.addTo(chemicalId, delta);
+                    stripe.pending.addTo(chemicalId, delta);
+                    log.error("事务已提交但库存增量日志写入失败: chemicalId={}, delta={}", chemicalId, delta, e);
+                } finally {
+                    stripe.lock.unlock();
+                }
+                if (seq >= 0) {
+                    try {
+                        syncLog(seq);
+                    } catch (IllegalStateException e) {
+                        log.error("事务已提交但库存增量日志落盘失败: chemicalId={}, delta={}", chemicalId, delta, e);
+                    }
+                } else if (status != STATUS_COMMITTED) {
+                    log.info("事务未提交，放弃库存账本增量: chemicalId={}, delta={}, status={}", chemicalId, delta, status);
+                }
+            }
+        });
+        return StockMutationResult.accepted(chemicalId, inventoryId < 0 ? null : (int) inventoryId,
+                amount, 1, toAmount(balance));
+    }
+
+    /**
+     * 可用余额：账面余额减去未提交出库的预留，没有库存记录时返回-1；调用方须持有分段锁
+     */
+    private static long available(Stripe stripe, int chemicalId) {
+        if (!stripe.balances.containsKey(chemicalId)) {
+            return -1L;
+        }
+        return stripe.balances.get(chemicalId, 0L) - stripe.reserved.get(chemicalId, 0L);
+    }
+
+    private static void release(Stripe stripe, int chemicalId, long units) {
+        if (stripe.reserved.addTo(chemicalId, -units) == 0L) {
+            stripe.reserved.remove(chemicalId);
+        }
+    }
+
+    /**
+     * 写日志并更新内存，调用方须持有分段锁；返回的序号须在释放锁后交给syncLog
+     */
+    private long append(Stripe stripe, int chemicalId, long delta) {
+        long seq;
+        try {
+            seq = deltaLog.append(chemicalId, delta);
+        } catch (IOException e) {
+            throw new IllegalStateException("写入库存增量日志失败", e);
+        }
+        stripe.balances.addTo(chemicalId, delta);
+        stripe.pending.addTo(chemicalId, delta);
+        return seq;
+    }
+
+    /**
+     * 撤销一笔未被确认的增量：追加反向记录，使日志中残留的原记录在回放时被抵消；
+     * 反向记录也写不进日志时只撤销内存，下次刷盘推进检查点后原记录不再回放
+     */
+    private void revert(Stripe stripe, int chemicalId, long delta) {
+        stripe.lock.lock();
+        try {
+            append(stripe, chemicalId, -delta);
+        } catch (IllegalStateException e) {
+            stripe.balances.addTo(chemicalId, -delta);
+            stripe.pending.addTo(chemicalId, -delta);
+        } finally {
+            stripe.lock.unlock();
+        }
+        log.warn("库存增量日志落盘失败，撤销内存增量: chemicalId={}, delta={}", chemicalId, delta);
+    }
+
+    /**
+     * 等待日志记录落盘后再确认操作，不得在分段锁内调用
+     */
+    private void syncLog(long seq) {
+        try {
+            deltaLog.sync(seq);
+        } catch (IOException e) {
+            throw new IllegalStateException("库存增量日志落盘失败", e);
+        }
+    }
+
+    /**
+     * 将合并后的增量刷入数据库并推进检查点
+     * 可能在其他事务的afterCommit中被调用（见resync），刷盘事务一律新开（REQUIRES_NEW），不加入已结束的事务
+     */
+    @Scheduled(fixedDelayString = "${app.inventory.ledger.flush-interval-ms:200}")
+    public void flush() {
+        flushLock.lock();
+        try {
+            IntLongHashMap drained = new IntLongHashMap();
+            long upToSeq;
+            lockAll();
+            try {
+                upToSeq = deltaLog.lastSeq();
+                if (upToSeq == checkpointSeq) {
+                    deltaLog.delete(retainedSegments);
+                    retainedSegments.clear();
+                    return;
+                }
+                for (Stripe stripe : stripes) {
+                    stripe.pending.forEach((chemicalId, delta) -> drained.addTo(chemicalId, delta));
+                    stripe.pending = new IntLongHashMap();
+                }
+                retainedSegments.addAll(deltaLog.roll());
+            } finally {
+                unlockAll();
+            }
+
+            try {
+                writeBatch(drained, upToSeq);
+            } catch (RuntimeException e) {
+                // 刷盘失败：增量放回待刷盘表，日志段保留，下次重试
+                lockAll();
+                try {
+                    drained.forEach((chemicalId, delta) -> stripeFor(chemicalId).pending.addTo(chemicalId, delta));
+                } finally {
+                    unlockAll();
+                }
+                log.error("库存账本刷盘失败，等待下次重试: chemicals={}", drained.size(), e);
+                return;
+            }
+
+            checkpointSeq = upToSeq;
+            deltaLog.delete(retainedSegments);
+            retainedSegments.clear();
+        } catch (IOException e) {
+            log.error("库存增量日志滚动失败", e);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * 库存被人工修改（新增/编辑/删除）后调用：先刷出待写增量，再从数据库重新加载余额
+     * 刷盘与读取都在分段锁外进行，只在换入新余额时短暂持有全部分段锁；
+     * 期间仍有出入库写入待刷盘表，持有flushLock时这些增量不会被刷入数据库，换入时补加到读到的余额上
+     */
+    public void resync() {
+        flushLock.lock();
+        try {
+            flush();
+            List<Inventory> stock = stockLedgerMapper.selectPrimaryStock();
+            lockAll();
+            try {
+                for (Stripe stripe : stripes) {
+                    stripe.balances.clear();
+                    stripe.inventoryIds.clear();
+                }
+                loadBalances(stock);
+                for (Stripe stripe : stripes) {
+                    stripe.pending.forEach((chemicalId, delta) -> stripe.balances.addTo(chemicalId, delta));
+                }
+            } finally {
+                unlockAll();
+            }
+            log.info("库存账本已与数据库重新同步");
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws IOException {
+        flush();
+        deltaLog.close();
+    }
+
+    private void writeBatch(IntLongHashMap drained, long upToSeq) {
+        List<Integer> touched = new ArrayList<>();
+        flushTemplate.executeWithoutResult(status -> {
+            drained.forEach((chemicalId, delta) -> {
+                if (delta == 0) {
+                    return;
+                }
+                Inventory mutated;
+                int rows = stockLedgerMapper.applyDelta(chemicalId, toAmount(delta));
+                if (rows == 0) {
+                    // 首次入库：锁定库存总数计数器（与其他首次入库同一把锁）后重试累加，其他节点或人工新增已建好时累加到该记录，否则新建
+                    inventoryCounterMapper.selectValueForUpdate(InventoryCounterMapper.INVENTORY_TOTAL);
+                    if (stockLedgerMapper.applyDelta(chemicalId, toAmount(delta)) > 0) {
+                        mutated = inventoryMapper.selectMutatedStock();
+                    } else {
+                        inventoryMapper.insertStock(chemicalId, toAmount(delta), inventoryMapper.selectReceiptUnit(chemicalId));
+                        mutated = inventoryMapper.selectMutatedStock();
+                        inventoryCounterMapper.add(InventoryCounterMapper.INVENTORY_TOTAL, 1);
+                        existenceGuard.added(CacheNames.INVENTORY, mutated.getId());
+                    }
+                    Stripe stripe = stripeFor(chemicalId);
+                    stripe.lock.lock();
+                    try {
+                        stripe.inventoryIds.put(chemicalId, mutated.getId());
+                    } finally {
+                        stripe.lock.unlock();
+                    }
+                } else {
+                    mutated = inventoryMapper.selectMutatedStock();
+                }
+                // 账本模式下流水按刷盘批次合并，每个化学品每批一条
+                Long movementId = inventoryMovementService.record(mutated.getId(), chemicalId,
+                        delta > 0 ? InventoryMovement.TYPE_IN : InventoryMovement.TYPE_OUT,
+                        toAmount(delta), mutated.getCurrentAmount());
+                if (inventoryStatsAggregator != null) {
+                    inventoryStatsAggregator.onStockChanged(mutated.getId(), chemicalId, mutated.getCurrentAmount(), movementId);
+                }
+                touched.add(chemicalId);
+            });
+            stockLedgerMapper.saveCheckpoint(upToSeq);
+        });
+
+        List<Integer> inventoryIds = new ArrayList<>(touched.size());
+        for (Integer chemicalId : touched) {
+            long inventoryId = stripeFor(chemicalId).inventoryIds.get(chemicalId, -1L);
+            if (inventoryId >= 0) {
+                inventoryIds.add((int) inventoryId);
+            }
+        }
+        BatchCache inventoryCache = BatchCache.of(cacheManager.getCache(CacheNames.INVENTORY));
+        if (inventoryCache != null && !inventoryIds.isEmpty()) {
+            inventoryCache.evictAll(inventoryIds);
+        }
+        log.debug("库存账本刷盘完成: chemicals={}, seq={}", touched.size(), upToSeq);
+    }
+
+    private void loadBalances(List<Inventory> stock) {
+        for (Inventory inventory : stock) {
+            Stripe stripe = stripeFor(inventory.getChemicalId());
+            double amount = inventory.getCurrentAmount() == null ? 0D : inventory.getCurrentAmount();
+            stripe.balances.put(inventory.getChemicalId(), Math.round(amount * SCALE));
+            stripe.inventoryIds.put(inventory.getChemicalId(), inventory.getId());
+        }
+    }
+
+    private Stripe stripeFor(int chemicalId) {
+        return stripes[(chemicalId ^ (chemicalId >>> 16)) & stripeMask];
+    }
+
+    private void lockAll() {
+        for (Stripe stripe : stripes) {
+            stripe.lock.lock();
+        }
+    }
+
+    private void unlockAll() {
+        for (int i = stripes.length - 1; i >= 0; i--) {
+            stripes[i].lock.unlock();
+        }
+    }
+
+    private static double toAmount(long units) {
+        return (double) units / SCALE;
+    }
+}
@@ -70,6 +70,18 @@ public interface ChemicalMapper {
      * @return List<Chemical>
      */
     List<Chemical> listBelowWarningThreshold();
-    
+
+    /**
+     * 根据多个ID批量查询
+     * @param ids ID列表，不能为空
+     * @return List<Chemical>
+     */
+    List<Chemical> selectByIds(List<Integer> ids);
+
+    /**
+     * 查询全部ID，用于重建存在性过滤器
+     * @return ID列表
+     */
+    List<Integer> selectAllIds();
 
 }
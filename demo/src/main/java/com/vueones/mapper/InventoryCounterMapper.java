@@ -0,0 +1,39 @@
+package com.vueones.mapper;
+
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+@Mapper
+public interface InventoryCounterMapper {
+    /** 库存记录总数计数器 */
+    String INVENTORY_TOTAL = "inventory_total";
+
+    /**
+     * 获取计数器的值
+     * @param name 计数器名称
+     * @return 计数值，计数器不存在时返回null
+     */
+    Long selectValue(@Param("name") String name);
+
+    /**
+     * 锁定并读取计数器（SELECT ... FOR UPDATE，需在事务中调用）
+     * 新建库存记录前先锁定库存总数计数器，使并发的首次入库依次执行
+     * @param name 计数器名称
+     * @return 计数值，计数器不存在时返回null
+     */
+    Long selectValueForUpdate(@Param("name") String name);
+
+    /**
+     * 累加计数器（不存在时以增量创建），应与被计数的增删处于同一事务
+     * @param name 计数器名称
+     * @param delta 增量（可为负）
+     * @return 影响行数
+     */
+    int add(@Param("name") String name, @Param("delta") long delta);
+
+    /**
+     * 按inventory表实际记录数重建库存总数计数器
+     * @return 影响行数
+     */
+    int rebuildInventoryTotal();
+}
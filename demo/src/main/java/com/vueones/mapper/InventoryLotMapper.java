@@ -0,0 +1,117 @@
+package com.vueones.mapper;
+
+import com.vueones.entity.InventoryLot;
+import com.vueones.entity.LotAllocation;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import java.util.Date;
+import java.util.List;
+
+@Mapper
+public interface InventoryLotMapper {
+    /**
+     * 新增库存批次
+     * @param lot 批次
+     * @return 影响行数
+     */
+    int insert(InventoryLot lot);
+
+    /**
+     * 批量新增库存批次，回填批次ID
+     * @param lots 批次列表
+     * @return 影响行数
+     */
+    int insertBatch(@Param("list") List<InventoryLot> lots);
+
+    /**
+     * 按出库顺序锁定化学品的未用完批次（FOR UPDATE）
+     * @param chemicalId 化学品ID
+     * @param fefo true按有效期，false按入库时间
+     * @param limit 最多锁定的批次数
+     * @return 批次列表，按出库顺序
+     */
+    List<InventoryLot> selectOpenLotsForUpdate(@Param("chemicalId") Integer chemicalId,
+                                               @Param("fefo") boolean fefo,
+                                               @Param("limit") int limit);
+
+    /**
+     * 锁定入库记录形成的批次
+     * @param storageRecordId 入库记录ID
+     * @return 批次，入库记录早于批次功能时返回null
+     */
+    InventoryLot selectByStorageRecordIdForUpdate(@Param("storageRecordId") Integer storageRecordId);
+
+    /**
+     * 按修改后的入库记录同步批次
+     * @param id 批次ID
+     * @param chemicalId 化学品ID
+     * @param delta 数量差值
+     * @param batchNo 批次号
+     * @param receiptTime 入库时间
+     * @param expiryDate 有效期
+     * @return 影响行数，0表示调整后剩余数量小于0
+     */
+    int updateFromRecord(@Param("id") Long id, @Param("chemicalId") Integer chemicalId,
+                         @Param("delta") Double delta, @Param("batchNo") String batchNo,
+                         @Param("receiptTime") Date receiptTime, @Param("expiryDate") Date expiryDate);
+
+    /**
+     * 关闭批次，剩余数量作废，此后不再接受归还
+     * @param id 批次ID
+     * @return 影响行数
+     */
+    int close(@Param("id") Long id);
+
+    /**
+     * 删除批次
+     * @param id 批次ID
+     * @return 影响行数
+     */
+    int deleteById(@Param("id") Long id);
+
+    /**
+     * 归还批次数量，已关闭或已过期的批次不接受归还
+     * @param id 批次ID
+     * @param amount 归还数量
+     * @return 影响行数，0表示批次已关闭或已过期
+     */
+    int restore(@Param("id") Long id, @Param("amount") Double amount);
+
+    /**
+     * 删除出库记录的批次分配
+     * @param outboundRecordId 出库记录ID
+     * @return 影响行数
+     */
+    int deleteAllocationsByOutboundId(@Param("outboundRecordId") Integer outboundRecordId);
+
+    /**
+     * 查询化学品的批次（按入库时间倒序）
+     * @param chemicalId 化学品ID
+     * @param includeClosed 是否包含已用完的批次
+     * @return 批次列表
+     */
+    List<InventoryLot> selectByChemicalId(@Param("chemicalId") Integer chemicalId,
+                                          @Param("includeClosed") boolean includeClosed);
+
+    /**
+     * 从批次中扣减（剩余数量充足时才扣减）
+     * @param id 批次ID
+     * @param amount 扣减数量
+     * @return 影响行数，0表示剩余数量不足
+     */
+    int consume(@Param("id") Long id, @Param("amount") Double amount);
+
+    /**
+     * 批量写入出库批次分配（单条多值INSERT）
+     * @param allocations 分配列表
+     * @return 影响行数
+     */
+    int insertAllocations(@Param("list") List<LotAllocation> allocations);
+
+    /**
+     * 查询出库记录的批次分配
+     * @param outboundRecordId 出库记录ID
+     * @return 分配列表
+     */
+    List<LotAllocation> selectAllocationsByOutboundId(@Param("outboundRecordId") Integer outboundRecordId);
+}
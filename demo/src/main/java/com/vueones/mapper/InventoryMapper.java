@@ -3,7 +3,10 @@ package com.vueones.mapper;
 import com.vueones.entity.Inventory;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
+import java.util.Collection;
+import java.util.Date;
 import java.util.List;
+import java.util.Map;
 
 @Mapper
 public interface InventoryMapper {
@@ -20,6 +23,78 @@ public interface InventoryMapper {
                                     @Param("location") String location,
                                     @Param("status") String status);
     
+    /**
+     * 分页获取库存列表
+     * @param chemicalId 化学品ID（可选）
+     * @param chemicalName 化学品名称（可选）
+     * @param location 存储位置（可选）
+     * @param status 库存状态（可选）
+     * @param offset 起始行
+     * @param size 每页记录数
+     * @return 当前页库存列表
+     */
+    List<Inventory> getInventoryPage(@Param("chemicalId") Integer chemicalId,
+                                     @Param("chemicalName") String chemicalName,
+                                     @Param("location") String location,
+                                     @Param("status") String status,
+                                     @Param("offset") Integer offset,
+                                     @Param("size") Integer size);
+
+    /**
+     * 游标分页获取库存列表，按 (update_time, id) 倒序
+     * @param chemicalId 化学品ID（可选）
+     * @param chemicalName 化学品名称（可选）
+     * @param location 存储位置（可选）
+     * @param status 库存状态（可选）
+     * @param cursorTime 上一页最后一条记录的更新时间，首页传null
+     * @param cursorId 上一页最后一条记录的ID
+     * @param size 读取条数
+     * @return 库存列表
+     */
+    List<Inventory> getInventoryPageAfter(@Param("chemicalId") Integer chemicalId,
+                                          @Param("chemicalName") String chemicalName,
+                                          @Param("location") String location,
+                                          @Param("status") String status,
+                                          @Param("cursorTime") Date cursorTime,
+                                          @Param("cursorId") Integer cursorId,
+                                          @Param("size") Integer size);
+
+    /**
+     * 统计库存列表记录数
+     * @param chemicalId 化学品ID（可选）
+     * @param chemicalName 化学品名称（可选）
+     * @param location 存储位置（可选）
+     * @param status 库存状态（可选）
+     * @return 记录数
+     */
+    int countInventoryList(@Param("chemicalId") Integer chemicalId,
+                           @Param("chemicalName") String chemicalName,
+                           @Param("location") String location,
+                           @Param("status") String status);
+
+    /**
+     * 按库存状态汇总统计
+     * @param chemicalId 化学品ID（可选）
+     * @param location 存储位置（可选）
+     * @return totalTypes、totalRecords、totalAmount、warningCount、lowCount、highCount
+     */
+    Map<String, Object> getInventoryStatistics(@Param("chemicalId") Integer chemicalId,
+                                               @Param("location") String location);
+
+    /**
+     * 按库存状态汇总全部库存记录，排除指定记录
+     * @param excludeIds 不计入汇总的库存ID（可为空）
+     * @return totalTypes、totalRecords、totalAmount、warningCount、lowCount、highCount
+     */
+    Map<String, Object> getInventoryStatisticsExcluding(@Param("excludeIds") Collection<Integer> excludeIds);
+
+    /**
+     * 按化学品当前预警阈值重算其库存记录的状态
+     * @param chemicalId 化学品ID
+     * @return 影响行数
+     */
+    int refreshStockStatusByChemical(@Param("chemicalId") Integer chemicalId);
+
     /**
      * 根据ID获取库存
      * @param id 库存ID
@@ -91,23 +166,68 @@ public interface InventoryMapper {
     Double getTotalAmount(@Param("chemicalId") Integer chemicalId);
     
     /**
-     * 入库操作
+     * 入库操作（原子累加该化学品的首条库存记录）
      * @param chemicalId 化学品ID
      * @param amount 数量
-     * @return 影响行数
+     * @return 影响行数，0表示该化学品尚无库存记录
      */
     int processStorageIn(@Param("chemicalId") Integer chemicalId, @Param("amount") Double amount);
     
     /**
-     * 出库操作
+     * 出库操作（库存充足时原子扣减）
      * @param chemicalId 化学品ID
      * @param amount 数量
-     * @return 影响行数
+     * @return 影响行数，0表示库存不存在或库存不足
      */
     int processStorageOut(@Param("chemicalId") Integer chemicalId, @Param("amount") Double amount);
 
+    /**
+     * 化学品首次入库：新建主库存记录，之后可用selectMutatedStock读取
+     * 调用前须先锁定库存总数计数器（InventoryCounterMapper.selectValueForUpdate）并在锁内确认化学品仍无库存记录
+     * @param chemicalId 化学品ID
+     * @param amount 数量（可为负，用于对账修正）
+     * @param unit 单位，见selectReceiptUnit；为null时记为空串
+     * @return 影响行数
+     */
+    int insertStock(@Param("chemicalId") Integer chemicalId, @Param("amount") Double amount, @Param("unit") String unit);
+
+    /**
+     * 化学品最近一条入库记录的单位，用于新建库存记录
+     * @param chemicalId 化学品ID
+     * @return 单位，没有入库记录时返回null
+     */
+    String selectReceiptUnit(@Param("chemicalId") Integer chemicalId);
+
+    /**
+     * 查询最近一次入库/出库操作修改的库存记录
+     * 依赖同一连接上的LAST_INSERT_ID，必须与processStorageIn/processStorageOut/insertStock处于同一事务中调用
+     * @return 库存记录（仅包含id、chemicalId、currentAmount）
+     */
+    Inventory selectMutatedStock();
+
+    /**
+     * 锁定并读取化学品的主库存记录（SELECT ... FOR UPDATE，需在事务中调用）
+     * @param chemicalId 化学品ID
+     * @return 库存记录（仅包含id、chemicalId、currentAmount），不存在时返回null
+     */
+    Inventory selectPrimaryStockForUpdate(@Param("chemicalId") Integer chemicalId);
+
+    /**
+     * 按主键累加库存数量
+     * @param id 库存ID
+     * @param delta 增量（可为负）
+     * @return 影响行数
+     */
+    int addAmountById(@Param("id") Integer id, @Param("delta") Double delta);
+
     /**
      * 获取库存盘点功能
      * */
     List<Inventory> getInventoryCheck();
+
+    /**
+     * 查询全部ID，用于重建存在性过滤器
+     * @return ID列表
+     */
+    List<Integer> selectAllIds();
 } 
\ No newline at end of file
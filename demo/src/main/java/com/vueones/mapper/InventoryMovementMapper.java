@@ -0,0 +1,98 @@
+package com.vueones.mapper;
+
+import com.vueones.entity.InventoryMovement;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+@Mapper
+public interface InventoryMovementMapper {
+    /**
+     * 追加库存流水
+     * @param movement 流水
+     * @return 影响行数
+     */
+    int insert(InventoryMovement movement);
+
+    /**
+     * 批量追加库存流水（单条多值INSERT），回填流水ID
+     * @param movements 流水列表
+     * @return 影响行数
+     */
+    int insertBatch(@Param("list") List<InventoryMovement> movements);
+
+    /**
+     * 单条库存记录最新的流水ID
+     * @param inventoryId 库存ID
+     * @return 流水ID，没有流水时返回null
+     */
+    Long selectLatestId(@Param("inventoryId") Integer inventoryId);
+
+    /**
+     * 每条库存记录最新的流水ID
+     * @return inventory_id、movement_id
+     */
+    List<Map<String, Object>> selectLatestIds();
+
+    /**
+     * 指定流水ID之后有流水的库存记录
+     * @param afterId 流水ID（不含）
+     * @return 库存ID
+     */
+    List<Integer> selectInventoryIdsAfter(@Param("afterId") Long afterId);
+
+    /**
+     * 查询某条库存记录的流水（按时间倒序）
+     * @param inventoryId 库存ID
+     * @param limit 最大条数
+     * @return 流水列表
+     */
+    List<InventoryMovement> selectByInventoryId(@Param("inventoryId") Integer inventoryId,
+                                                @Param("limit") Integer limit);
+
+    /**
+     * 查询指定日期（含）之前最近一次的日终快照
+     * @param chemicalId 化学品ID
+     * @param date 日期
+     * @return snapshot_date、closing_balance，不存在时返回null
+     */
+    Map<String, Object> selectLatestSnapshot(@Param("chemicalId") Integer chemicalId,
+                                             @Param("date") LocalDate date);
+
+    /**
+     * 汇总时间区间[from, to)内的流水增量
+     * @param chemicalId 化学品ID
+     * @param from 起始日期（含），为null时不限
+     * @param to 结束日期（不含）
+     * @return 增量合计，无流水时返回null
+     */
+    Double sumDelta(@Param("chemicalId") Integer chemicalId,
+                    @Param("from") LocalDate from,
+                    @Param("to") LocalDate to);
+
+    /**
+     * 按天汇总时间区间[from, to)内的流水增量
+     * @param chemicalId 化学品ID
+     * @param from 起始日期（含）
+     * @param to 结束日期（不含）
+     * @return movement_date、delta
+     */
+    List<Map<String, Object>> selectDailyDelta(@Param("chemicalId") Integer chemicalId,
+                                               @Param("from") LocalDate from,
+                                               @Param("to") LocalDate to);
+
+    /**
+     * 生成指定日期的日终快照：当前库存减去该日之后的流水增量
+     * @param date 快照日期
+     * @return 影响行数
+     */
+    int buildDailySnapshot(@Param("date") LocalDate date);
+
+    /**
+     * 最近一次快照日期
+     * @return 快照日期，不存在时返回null
+     */
+    LocalDate selectLatestSnapshotDate();
+}
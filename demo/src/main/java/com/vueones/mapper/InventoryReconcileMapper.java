@@ -0,0 +1,84 @@
+package com.vueones.mapper;
+
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.cursor.Cursor;
+import java.util.List;
+import java.util.Map;
+
+@Mapper
+public interface InventoryReconcileMapper {
+    /**
+     * 化学品ID范围
+     * @return min_id、max_id
+     */
+    Map<String, Object> selectChemicalIdRange();
+
+    /**
+     * 三张记录表当前的最大ID（分区的汇总上界，须与汇总在同一事务中读取）
+     * @return storage_max_id、outbound_max_id、usage_max_id
+     */
+    Map<String, Object> selectRecordMaxIds();
+
+    /**
+     * 保存最近一次对账读到的最大记录ID
+     * @return 影响行数
+     */
+    int saveWatermark(@Param("storageMaxId") Long storageMaxId,
+                      @Param("outboundMaxId") Long outboundMaxId,
+                      @Param("usageMaxId") Long usageMaxId);
+
+    /**
+     * 流式汇总入库记录：按化学品分组，ID不超过toId；增量时每个化学品只汇总合计表中其水位之后的记录
+     * @return chemical_id、total
+     */
+    Cursor<Map<String, Object>> sumStorageByChemical(@Param("lo") Integer lo, @Param("hi") Integer hi,
+                                                     @Param("incremental") boolean incremental, @Param("toId") Long toId);
+
+    /**
+     * 流式汇总出库记录
+     * @return chemical_id、total
+     */
+    Cursor<Map<String, Object>> sumOutboundByChemical(@Param("lo") Integer lo, @Param("hi") Integer hi,
+                                                      @Param("incremental") boolean incremental, @Param("toId") Long toId);
+
+    /**
+     * 流式汇总使用记录
+     * @return chemical_id、total
+     */
+    Cursor<Map<String, Object>> sumUsageByChemical(@Param("lo") Integer lo, @Param("hi") Integer hi,
+                                                   @Param("incremental") boolean incremental, @Param("toId") Long toId);
+
+    /**
+     * 流式汇总当前库存
+     * @return chemical_id、total
+     */
+    Cursor<Map<String, Object>> sumInventoryByChemical(@Param("lo") Integer lo, @Param("hi") Integer hi);
+
+    /**
+     * 流式读取上次对账累计的记录合计（增量对账的基数）
+     * @return chemical_id、storage_total、outbound_total、usage_total
+     */
+    Cursor<Map<String, Object>> selectTotals(@Param("lo") Integer lo, @Param("hi") Integer hi);
+
+    /**
+     * 批量写入记录合计
+     * @param totals 每项为chemicalId、storageTotal、outboundTotal、usageTotal及对应的storageMaxId、outboundMaxId、usageMaxId
+     * @return 影响行数
+     */
+    int upsertTotals(@Param("list") List<Map<String, Object>> totals);
+
+    /**
+     * 锁定化学品的库存记录（SELECT ... FOR UPDATE）
+     * @param chemicalId 化学品ID
+     * @return 库存ID
+     */
+    List<Integer> lockInventory(@Param("chemicalId") Integer chemicalId);
+
+    /**
+     * 单个化学品的全量记录合计与当前库存
+     * @param chemicalId 化学品ID
+     * @return storage_total、outbound_total、usage_total、inventory_total
+     */
+    Map<String, Object> selectChemicalBalance(@Param("chemicalId") Integer chemicalId);
+}
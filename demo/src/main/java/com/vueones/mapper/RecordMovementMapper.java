@@ -0,0 +1,35 @@
+package com.vueones.mapper;
+
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.cursor.Cursor;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+@Mapper
+public interface RecordMovementMapper {
+    /**
+     * 流式读取某类记录的全部流水，不排序
+     * @param type 记录类型，见RecordRollupMapper.TYPE_*
+     * @return id、chemical_id、user_id（入库、出库为操作员）、record_time、amount
+     */
+    Cursor<Map<String, Object>> scanMovements(@Param("type") String type);
+
+    /**
+     * 按ID读取流水，已删除的记录不返回
+     * @param type 记录类型
+     * @param ids 记录ID
+     * @return 列同scanMovements
+     */
+    List<Map<String, Object>> selectMovementsByIds(@Param("type") String type, @Param("ids") Collection<Integer> ids);
+
+    /**
+     * 某类记录中ID不超过maxId的条数与数量合计，用于比对内存流水；与加载一致，不计没有化学品或时间的记录
+     * @param type 记录类型
+     * @param maxId 内存流水已读入的最大记录ID
+     * @return cnt、total
+     */
+    Map<String, Object> selectTotals(@Param("type") String type, @Param("maxId") int maxId);
+}
@@ -0,0 +1,154 @@
+package com.vueones.mapper;
+
+import com.vueones.dto.RecordStatistics;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
+
+@Mapper
+public interface RecordRollupMapper {
+    /** 入库记录 */
+    String TYPE_STORAGE = "storage";
+    /** 出库记录 */
+    String TYPE_OUTBOUND = "outbound";
+    /** 使用记录 */
+    String TYPE_USAGE = "usage";
+
+    /**
+     * 按记录当前内容累加分钟汇总，应与记录的增删改处于同一事务
+     * @param type 记录类型
+     * @param ids 记录ID
+     * @param sign 1为计入（写入之后调用），-1为扣除（删除或修改之前调用）
+     * @return 影响行数
+     */
+    int applyMinutes(@Param("type") String type, @Param("ids") Collection<Integer> ids, @Param("sign") int sign);
+
+    /**
+     * 按记录当前内容累加日汇总，须紧接在applyMinutes之后调用：
+     * 以累加后的分钟汇总判断哪些分钟由无记录变为有记录（或反之），据此调整有记录的分钟数
+     * @param type 记录类型
+     * @param ids 记录ID
+     * @param sign 与applyMinutes相同
+     * @return 影响行数
+     */
+    int applyDays(@Param("type") String type, @Param("ids") Collection<Integer> ids, @Param("sign") int sign);
+
+    /**
+     * 是否已有汇总数据
+     * @param type 记录类型
+     * @return 有汇总行时为1
+     */
+    Integer existsRollup(@Param("type") String type);
+
+    /**
+     * 是否有记录
+     * @param type 记录类型
+     * @return 有记录时为1
+     */
+    Integer existsRecord(@Param("type") String type);
+
+    /**
+     * 清空某类记录的分钟汇总
+     * @param type 记录类型
+     * @return 影响行数
+     */
+    int deleteMinutes(@Param("type") String type);
+
+    /**
+     * 清空某类记录的日汇总
+     * @param type 记录类型
+     * @return 影响行数
+     */
+    int deleteDays(@Param("type") String type);
+
+    /**
+     * 以记录表全量生成分钟汇总，需先清空
+     * @param type 记录类型
+     * @return 影响行数
+     */
+    int rebuildMinutes(@Param("type") String type);
+
+    /**
+     * 以分钟汇总生成日汇总，需先清空
+     * @param type 记录类型
+     * @return 影响行数
+     */
+    int rebuildDays(@Param("type") String type);
+
+    /**
+     * 日期区间内的记录数
+     * @param type 记录类型
+     * @param chemicalId 化学品ID，可为null
+     * @param chemicalName 化学品名称（模糊匹配），可为null
+     * @param from 起始日期（含），可为null
+     * @param to 结束日期（不含），可为null
+     * @return 记录数
+     */
+    Long sumRecordCount(@Param("type") String type, @Param("chemicalId") Integer chemicalId,
+                        @Param("chemicalName") String chemicalName,
+                        @Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    /**
+     * 日期区间内的数量合计
+     * @param type 记录类型
+     * @param chemicalId 化学品ID，可为null
+     * @param chemicalName 化学品名称（模糊匹配），可为null
+     * @param from 起始日期（含），可为null
+     * @param to 结束日期（不含），可为null
+     * @return 数量合计
+     */
+    Double sumAmount(@Param("type") String type, @Param("chemicalId") Integer chemicalId,
+                     @Param("chemicalName") String chemicalName,
+                     @Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    /**
+     * 日期区间内有记录的天数
+     * @param type 记录类型
+     * @param chemicalId 化学品ID，可为null
+     * @param chemicalName 化学品名称（模糊匹配），可为null
+     * @param from 起始日期（含）
+     * @param to 结束日期（不含）
+     * @return 天数
+     */
+    Integer countActiveDays(@Param("type") String type, @Param("chemicalId") Integer chemicalId,
+                            @Param("chemicalName") String chemicalName,
+                            @Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    /**
+     * 某一天有记录的分钟数；只按化学品ID筛选时直接取日汇总中维护的分钟数，否则在分钟汇总中去重
+     * @param type 记录类型
+     * @param chemicalId 化学品ID，可为null
+     * @param chemicalName 化学品名称（模糊匹配），可为null
+     * @param date 日期
+     * @return 分钟数
+     */
+    Integer countActiveMinutes(@Param("type") String type, @Param("chemicalId") Integer chemicalId,
+                               @Param("chemicalName") String chemicalName, @Param("date") LocalDate date);
+
+    /**
+     * 指定时间之后有记录的化学品数（按分钟粒度）
+     * @param type 记录类型
+     * @param since 起始时间
+     * @return 化学品数
+     */
+    Integer countActiveChemicals(@Param("type") String type, @Param("since") LocalDateTime since);
+
+    /**
+     * 本月（截至今日）与当日的合计、记录数与次数，一条语句取得
+     * @param type 记录类型
+     * @param chemicalId 化学品ID，可为null
+     * @param chemicalName 化学品名称（模糊匹配），可为null
+     * @param monthStart 本月第一天
+     * @param today 今日
+     * @param tomorrow 明日
+     * @param withTotal 是否同时计算不限时间的数量合计
+     * @return 统计结果
+     */
+    RecordStatistics selectStatistics(@Param("type") String type, @Param("chemicalId") Integer chemicalId,
+                                      @Param("chemicalName") String chemicalName,
+                                      @Param("monthStart") LocalDate monthStart, @Param("today") LocalDate today,
+                                      @Param("tomorrow") LocalDate tomorrow, @Param("withTotal") boolean withTotal);
+}
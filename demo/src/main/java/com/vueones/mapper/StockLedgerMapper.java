@@ -0,0 +1,37 @@
+package com.vueones.mapper;
+
+import com.vueones.entity.Inventory;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import java.util.List;
+
+@Mapper
+public interface StockLedgerMapper {
+    /**
+     * 获取每个化学品的主库存记录（id最小的一条，与入库/出库的UPDATE命中同一行）
+     * @return 库存列表（仅包含id、chemicalId、currentAmount）
+     */
+    List<Inventory> selectPrimaryStock();
+
+    /**
+     * 将合并后的增量累加到化学品的主库存记录
+     * 被修改的记录可随后通过InventoryMapper.selectMutatedStock读取
+     * @param chemicalId 化学品ID
+     * @param delta 增量（可为负）
+     * @return 影响行数，0表示该化学品尚无库存记录
+     */
+    int applyDelta(@Param("chemicalId") Integer chemicalId, @Param("delta") Double delta);
+
+    /**
+     * 获取已刷入数据库的增量日志序号
+     * @return 检查点序号，不存在时返回null
+     */
+    Long selectCheckpoint();
+
+    /**
+     * 保存增量日志检查点
+     * @param lastSeq 已刷入数据库的最大序号
+     * @return 影响行数
+     */
+    int saveCheckpoint(@Param("lastSeq") Long lastSeq);
+}
@@ -22,6 +22,14 @@ public interface StorageRecordMapper {
                                  @Param("supplier") String supplier,
                                  @Param("offset") Integer offset,
                                  @Param("size") Integer size);
+    List<Integer> selectIdList(@Param("chemicalId") Integer chemicalId,
+                               @Param("chemicalName") String chemicalName,
+                               @Param("startTime") Date startTime,
+                               @Param("endTime") Date endTime,
+                               @Param("supplier") String supplier,
+                               @Param("offset") Integer offset,
+                               @Param("size") Integer size);
+    List<StorageRecord> selectByIds(List<Integer> ids);
     
     // 批量操作
     int batchInsert(List<StorageRecord> records);
@@ -64,4 +72,7 @@ public interface StorageRecordMapper {
     // 获取当日入库次数
     Integer getDailyStorageTimes(@Param("chemicalId") Integer chemicalId,
                                 @Param("chemicalName") String chemicalName);
+
+    // 查询全部ID，用于重建存在性过滤器
+    List<Integer> selectAllIds();
 } 
\ No newline at end of file
@@ -55,4 +55,7 @@ public interface UsageRecordMapper {
 
     // 获取用户使用记录列表
     List<UsageRecord> getUserUsageRecords(@Param("userName") String userName);
+
+    // 查询全部ID，用于重建存在性过滤器
+    List<Integer> selectAllIds();
 } 
\ No newline at end of file
@@ -1,6 +1,7 @@
 package com.vueones.service;
 
 import com.vueones.entity.Chemical;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
@@ -71,5 +72,12 @@ public interface IChemicalService {
      * @return List<Chemical>
      */
     List<Chemical> listBelowWarningThreshold();
-    
+
+    /**
+     * 根据多个 id 批量查询 Chemical 数据
+     * 先从缓存批量读取，未命中的一次查询数据库并批量写回缓存
+     * @param ids id集合
+     * @return id -> Chemical，不存在的id不出现
+     */
+    Map<Integer, Chemical> selectChemicalsByIds(Collection<Integer> ids);
 }
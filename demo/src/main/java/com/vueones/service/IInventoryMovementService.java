@@ -0,0 +1,54 @@
+package com.vueones.service;
+
+import com.vueones.entity.InventoryMovement;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+public interface IInventoryMovementService {
+    /**
+     * 记录一条库存流水（与库存变动处于同一事务）
+     * @param inventoryId 库存ID
+     * @param chemicalId 化学品ID
+     * @param movementType 流水类型，见InventoryMovement.TYPE_*
+     * @param delta 数量变化（入库为正，出库为负）
+     * @param balanceAfter 变动后该库存记录的余额
+     * @return 流水ID，数量未变化时不记录并返回null
+     */
+    Long record(Integer inventoryId, Integer chemicalId, String movementType, Double delta, Double balanceAfter);
+
+    /**
+     * 批量记录库存流水（与库存变动处于同一事务），写入后回填每条流水的ID
+     * @param movements 流水列表
+     */
+    void recordAll(List<InventoryMovement> movements);
+
+    /**
+     * 获取库存记录的变动历史
+     * @param inventoryId 库存ID
+     * @param limit 最大条数
+     * @return 流水列表（按时间倒序）
+     */
+    List<InventoryMovement> getHistory(Integer inventoryId, int limit);
+
+    /**
+     * 获取化学品在指定日期日终的库存量
+     * @param chemicalId 化学品ID
+     * @param date 日期
+     * @return 库存量
+     */
+    double getBalanceAsOf(Integer chemicalId, LocalDate date);
+
+    /**
+     * 获取化学品近N天的库存趋势
+     * @param chemicalId 化学品ID
+     * @param days 天数
+     * @return dates（MM-dd）与amounts
+     */
+    Map<String, Object> getTrend(Integer chemicalId, int days);
+
+    /**
+     * 生成日终快照（补齐上次快照之后、截至昨天的每一天）
+     */
+    void buildDailySnapshots();
+}
@@ -0,0 +1,16 @@
+package com.vueones.service;
+
+import com.vueones.dto.ReconciliationReport;
+
+/**
+ * 库存对账服务接口
+ */
+public interface IInventoryReconcileService {
+    /**
+     * 执行库存对账：按 入库合计 − 出库合计 − 使用合计 推算每个化学品的应有库存，与inventory比对
+     * @param incremental 是否增量对账（只汇总上次水位之后新增的记录）
+     * @param autoCorrect 是否自动按差异修正库存
+     * @return 对账报告
+     */
+    ReconciliationReport reconcile(boolean incremental, boolean autoCorrect);
+}
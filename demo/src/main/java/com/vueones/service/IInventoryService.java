@@ -1,7 +1,11 @@
 package com.vueones.service;
 
+import com.vueones.dto.CursorPage;
+import com.vueones.dto.StockMutationResult;
 import com.vueones.entity.Inventory;
+import com.vueones.entity.InventoryLot;
 import java.util.List;
+import java.util.Map;
 
 public interface IInventoryService {
     // 基本操作
@@ -15,10 +19,55 @@ public interface IInventoryService {
      * @param chemicalId 化学品ID
      * @param chemicalName 化学品名称
      * @param location 位置
-     * @param status 库存状态（normal:正常,low:不足,high:超储）
+     * @param status 库存状态（normal:正常,warning:预警,low:不足,high:超储）
      * @return 库存列表
      */
     List<Inventory> getInventoryList(Integer chemicalId, String chemicalName, String location, String status);
+
+    /**
+     * 分页获取库存列表
+     * @param chemicalId 化学品ID
+     * @param chemicalName 化学品名称
+     * @param location 位置
+     * @param status 库存状态（normal:正常,warning:预警,low:不足,high:超储）
+     * @param page 页码，从1开始
+     * @param size 每页记录数
+     * @return 当前页库存列表
+     */
+    List<Inventory> getInventoryPage(Integer chemicalId, String chemicalName, String location, String status,
+                                     int page, int size);
+
+    /**
+     * 游标分页获取库存列表
+     * @param chemicalId 化学品ID
+     * @param chemicalName 化学品名称
+     * @param location 位置
+     * @param status 库存状态
+     * @param cursor 上一页返回的游标，首页传null
+     * @param size 每页记录数
+     * @return 当前页记录与下一页游标
+     * @throws IllegalArgumentException 游标格式非法
+     */
+    CursorPage<Inventory> getInventoryPageAfter(Integer chemicalId, String chemicalName, String location, String status,
+                                                String cursor, int size);
+
+    /**
+     * 统计库存列表记录数
+     * @param chemicalId 化学品ID
+     * @param chemicalName 化学品名称
+     * @param location 位置
+     * @param status 库存状态
+     * @return 记录数
+     */
+    int countInventoryList(Integer chemicalId, String chemicalName, String location, String status);
+
+    /**
+     * 获取库存统计数据
+     * @param chemicalId 化学品ID
+     * @param location 存储位置
+     * @return 库存种类数、记录数、总量及各状态数量
+     */
+    Map<String, Object> getInventoryStatistics(Integer chemicalId, String location);
     
     /**
      * 更新库存数量
@@ -50,6 +99,39 @@ public interface IInventoryService {
      * @return 是否成功
      */
     boolean processStorageOut(Integer chemicalId, Double amount);
+    /**
+     * 原子入库：单条条件UPDATE完成累加，不存在库存记录时新建
+     * @param chemicalId 化学品ID
+     * @param amount 入库数量
+     * @return 变动结果（影响行数、库存ID、变动后余额）
+     */
+    StockMutationResult applyStorageIn(Integer chemicalId, Double amount);
+    /**
+     * 原子出库：单条条件UPDATE完成扣减，库存不足时直接拒绝
+     * @param chemicalId 化学品ID
+     * @param amount 出库数量
+     * @return 变动结果（影响行数、库存ID、变动后余额）
+     */
+    StockMutationResult applyStorageOut(Integer chemicalId, Double amount);
+    /**
+     * 按增量修正化学品库存（对账纠偏等），记为人工调整流水
+     * @param chemicalId 化学品ID
+     * @param delta 增量（可为负）
+     * @return 修正后主库存记录的余额
+     */
+    Double adjustStock(Integer chemicalId, Double delta);
+    /**
+     * 出入库合并提交的批大小与额外延迟分布
+     * @return 统计数据，未开启合并提交时返回null
+     */
+    Map<String, Object> getGroupCommitStatistics();
+    /**
+     * 获取化学品的库存批次
+     * @param chemicalId 化学品ID
+     * @param includeClosed 是否包含已用完的批次
+     * @return 批次列表（按入库时间倒序）
+     */
+    List<InventoryLot> getLots(Integer chemicalId, boolean includeClosed);
     /**
      * 获取化学品总库存量
      * @param chemicalId 化学品id
@@ -1,5 +1,7 @@
 package com.vueones.service;
 
+import com.vueones.dto.OutboundResult;
+import com.vueones.entity.LotAllocation;
 import com.vueones.entity.OutboundRecord;
 import java.util.List;
 import java.util.Date;
@@ -14,6 +16,19 @@ public interface IOutboundRecordService {
      * @return 是否成功
      */
     int addOutboundRecord(OutboundRecord record);
+    /**
+     * 出库：在同一事务中校验并扣减库存、写入出库记录
+     * 库存校验与扣减由一条条件UPDATE完成，不会超卖；库存不足时不写入任何数据
+     * @param record 出库记录
+     * @return 出库结果
+     */
+    OutboundResult reserveAndRecordOutbound(OutboundRecord record);
+    /**
+     * 查询出库记录的批次分配
+     * @param outboundRecordId 出库记录id
+     * @return 批次分配列表
+     */
+    List<LotAllocation> getLotAllocations(Integer outboundRecordId);
     /**
      * 更新出库记录
      * @param record 出库记录
@@ -0,0 +1,89 @@
+package com.vueones.service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
+
+/**
+ * 入库、出库、使用记录的按日与按分钟汇总
+ * 每个化学品每天（每分钟）一行，保存记录数、数量合计，日汇总另保存有记录的分钟数；
+ * 在记录增删改的同一事务中增量维护，统计接口的开销只与时间窗口内的天数（分钟数）有关，与记录总数无关。
+ * 记录类型见RecordRollupMapper.TYPE_*
+ */
+public interface IRecordRollupService {
+    /**
+     * 计入新写入或修改后的记录（写入或修改之后、同一事务内调用）
+     * @param type 记录类型
+     * @param ids 记录ID
+     */
+    void recordsAdded(String type, Collection<Integer> ids);
+
+    /**
+     * 扣除将要删除或修改的记录（删除或修改之前、同一事务内调用）
+     * @param type 记录类型
+     * @param ids 记录ID
+     */
+    void recordsRemoving(String type, Collection<Integer> ids);
+
+    /**
+     * 以记录表全量重建某类记录的汇总
+     * @param type 记录类型
+     */
+    void rebuild(String type);
+
+    /**
+     * 汇总为空而记录表有数据时（旧库未执行升级脚本）全量建立汇总
+     */
+    void seedIfEmpty();
+
+    /**
+     * 日期区间内的记录数
+     * @param type 记录类型
+     * @param chemicalId 化学品ID，可为null
+     * @param chemicalName 化学品名称，可为null
+     * @param from 起始日期（含），null表示不限
+     * @param to 结束日期（不含），null表示不限
+     * @return 记录数
+     */
+    int countRecords(String type, Integer chemicalId, String chemicalName, LocalDate from, LocalDate to);
+
+    /**
+     * 日期区间内的数量合计
+     * @param type 记录类型
+     * @param chemicalId 化学品ID，可为null
+     * @param chemicalName 化学品名称，可为null
+     * @param from 起始日期（含），null表示不限
+     * @param to 结束日期（不含），null表示不限
+     * @return 数量合计
+     */
+    double sumAmount(String type, Integer chemicalId, String chemicalName, LocalDate from, LocalDate to);
+
+    /**
+     * 日期区间内有记录的天数
+     * @param type 记录类型
+     * @param chemicalId 化学品ID，可为null
+     * @param chemicalName 化学品名称，可为null
+     * @param from 起始日期（含）
+     * @param to 结束日期（不含）
+     * @return 天数
+     */
+    int countActiveDays(String type, Integer chemicalId, String chemicalName, LocalDate from, LocalDate to);
+
+    /**
+     * 某一天有记录的分钟数
+     * @param type 记录类型
+     * @param chemicalId 化学品ID，可为null
+     * @param chemicalName 化学品名称，可为null
+     * @param date 日期
+     * @return 分钟数
+     */
+    int countActiveMinutes(String type, Integer chemicalId, String chemicalName, LocalDate date);
+
+    /**
+     * 指定时间之后有记录的化学品数，按分钟粒度（起始时间所在的整分钟计入）
+     * @param type 记录类型
+     * @param since 起始时间
+     * @return 化学品数
+     */
+    int countActiveChemicals(String type, LocalDateTime since);
+}
@@ -0,0 +1,19 @@
+package com.vueones.service;
+
+import com.vueones.dto.RecordStatistics;
+
+/**
+ * 入库、出库统计
+ * 本月与当日的全部统计数字由一条语句从记录汇总中取得，结果按（记录类型、筛选条件、日期）缓存
+ */
+public interface IRecordStatisticsService {
+    /**
+     * 获取本月（截至今日）与当日的数量合计、记录数与次数
+     * @param type 记录类型，见RecordRollupMapper.TYPE_*
+     * @param chemicalId 化学品ID，可为null
+     * @param chemicalName 化学品名称，可为null
+     * @param withTotal 是否同时计算不限时间的数量合计
+     * @return 统计结果
+     */
+    RecordStatistics getStatistics(String type, Integer chemicalId, String chemicalName, boolean withTotal);
+}
@@ -1,64 +1,61 @@
 package com.vueones.service.impl;
 
+import com.vueones.cache.BatchCache;
+import com.vueones.cache.CacheNames;
+import com.vueones.cache.ExistenceGuard;
+import com.vueones.cache.CanonicalKeyGenerator;
 import com.vueones.entity.Chemical;
+import com.vueones.ledger.InventoryStatsAggregator;
 import com.vueones.mapper.ChemicalMapper;
+import com.vueones.mapper.InventoryMapper;
 import com.vueones.service.IChemicalService;
-import com.vueones.util.RedisUtil;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.Caching;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.TimeUnit;
 
 @Service
 public class ChemicalServiceImpl implements IChemicalService {
     
     private static final Logger log = LoggerFactory.getLogger(ChemicalServiceImpl.class);
     
-    // 缓存相关常量
-    private static final String CACHE_KEY_CHEMICAL = "chemical:";
-    private static final String CACHE_KEY_CHEMICAL_LIST = "chemical_list:";
-    private static final String CACHE_KEY_CHEMICAL_COUNT = "chemical_count:";
-    private static final long CACHE_EXPIRE_TIME = 30; // 缓存过期时间（分钟）
-    
     @Autowired
     private ChemicalMapper chemicalMapper;
     
     @Autowired
-    private RedisUtil redisUtil;
+    private InventoryMapper inventoryMapper;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private ExistenceGuard existenceGuard;
+    
+    /** 库存统计聚合器，仅在 app.inventory.stats.enabled=true 时存在 */
+    @Autowired(required = false)
+    private InventoryStatsAggregator inventoryStatsAggregator;
 
     /**
      * 查询全部危化品数据
      * @return List<Chemical>
      */
     @Override
-    @Cacheable(value = "chemicalList", key = "'all'", unless = "#result == null || #result.isEmpty()")
+    @Cacheable(cacheNames = CacheNames.CHEMICAL_LIST, sync = true)
     public List<Chemical> listChemical() {
         log.info("从数据库查询所有化学品");
-        
-        // 尝试从缓存获取
-        String cacheKey = CACHE_KEY_CHEMICAL_LIST + "all";
-        Object cachedChemicals = redisUtil.get(cacheKey);
-        if (cachedChemicals != null) {
-            log.info("从缓存获取所有化学品");
-            return (List<Chemical>) cachedChemicals;
-        }
-        
-        // 从数据库获取
-        List<Chemical> chemicals = chemicalMapper.listChemical(null, null, null, null);
-        
-        // 放入缓存
-        if (chemicals != null && !chemicals.isEmpty()) {
-            redisUtil.set(cacheKey, chemicals, TimeUnit.MINUTES.toSeconds(CACHE_EXPIRE_TIME));
-        }
-        
-        return chemicals;
+        return chemicalMapper.listChemical(null, null, null, null);
     }
     
     /**
@@ -105,27 +102,57 @@ public class ChemicalServiceImpl implements IChemicalService {
      * @return Chemical
      */
     @Override
-    @Cacheable(value = "chemical", key = "#id", unless = "#result == null")
+    @Cacheable(cacheNames = CacheNames.CHEMICAL, unless = "#result == null")
     public Chemical selectChemicalById(Integer id) {
-        log.info("从数据库查询化学品, id: {}", id);
-        
-        // 尝试从缓存获取
-        String cacheKey = CACHE_KEY_CHEMICAL + id;
-        Object cachedChemical = redisUtil.get(cacheKey);
-        if (cachedChemical != null) {
-            log.info("从缓存获取化学品, id: {}", id);
-            return (Chemical) cachedChemical;
+        return existenceGuard.load(CacheNames.CHEMICAL, id, () -> {
+            log.info("从数据库查询化学品, id: {}", id);
+            return chemicalMapper.selectChemicalById(id);
+        });
+    }
+
+    /**
+     * 根据多个 id 批量查询 危化品 数据
+     * 与 selectChemicalById 使用同一缓存与key：一次批量读取缓存，未命中的一条IN查询后批量写回
+     * @param ids id集合
+     * @return id -> Chemical，按传入顺序，不存在的id不出现
+     */
+    @Override
+    public Map<Integer, Chemical> selectChemicalsByIds(Collection<Integer> ids) {
+        Map<Integer, Chemical> result = new LinkedHashMap<>();
+        Map<String, Integer> keys = new LinkedHashMap<>();
+        for (Integer id : new LinkedHashSet<>(ids)) {
+            if (id != null) {
+                keys.put(CanonicalKeyGenerator.canonical(id), id);
+            }
         }
-        
-        // 从数据库获取
-        Chemical chemical = chemicalMapper.selectChemicalById(id);
-        
-        // 放入缓存
-        if (chemical != null) {
-            redisUtil.set(cacheKey, chemical, TimeUnit.MINUTES.toSeconds(CACHE_EXPIRE_TIME));
+        if (keys.isEmpty()) {
+            return result;
         }
-        
-        return chemical;
+        BatchCache cache = BatchCache.of(cacheManager.getCache(CacheNames.CHEMICAL));
+        Map<Object, Object> cached = cache.getAll(keys.keySet());
+        List<Integer> missing = new ArrayList<>();
+        keys.forEach((key, id) -> {
+            if (!cached.containsKey(key)) {
+                missing.add(id);
+            }
+        });
+        Map<Integer, Chemical> loaded = new LinkedHashMap<>();
+        if (!missing.isEmpty()) {
+            log.info("从数据库批量查询化学品, ids: {}", missing.size());
+            Map<Object, Object> backfill = new LinkedHashMap<>();
+            for (Chemical chemical : chemicalMapper.selectByIds(missing)) {
+                loaded.put(chemical.getId(), chemical);
+                backfill.put(CanonicalKeyGenerator.canonical(chemical.getId()), chemical);
+            }
+            cache.putAll(backfill);
+        }
+        keys.forEach((key, id) -> {
+            Chemical chemical = cached.containsKey(key) ? (Chemical) cached.get(key) : loaded.get(id);
+            if (chemical != null) {
+                result.put(id, chemical);
+            }
+        });
+        return result;
     }
 
     /**
@@ -134,9 +161,13 @@ public class ChemicalServiceImpl implements IChemicalService {
      */
     @Override
     @Transactional
-    @CacheEvict(value = {"chemicalList", "chemicalCount"}, allEntries = true)
+    @CacheEvict(cacheNames = {CacheNames.CHEMICAL_LIST, CacheNames.CHEMICAL_COUNT}, allEntries = true)
     public int addChemical(Chemical chemical) {
-        return chemicalMapper.addChemical(chemical);
+        int rows = chemicalMapper.addChemical(chemical);
+        if (rows > 0) {
+            existenceGuard.added(CacheNames.CHEMICAL, chemical.getId());
+        }
+        return rows;
     }
 
     /**
@@ -145,12 +176,11 @@ public class ChemicalServiceImpl implements IChemicalService {
      */
     @Override
     @Transactional
-    @CacheEvict(value = {"chemical", "chemicalList", "chemicalCount"}, allEntries = true)
+    @Caching(evict = {
+            @CacheEvict(cacheNames = CacheNames.CHEMICAL),
+            @CacheEvict(cacheNames = {CacheNames.CHEMICAL_LIST, CacheNames.CHEMICAL_COUNT}, allEntries = true)
+    })
     public int removeChemical(Integer id) {
-        // 清除单个记录的缓存
-        String cacheKey = CACHE_KEY_CHEMICAL + id;
-        redisUtil.del(cacheKey);
-        
         return chemicalMapper.removeChemical(id);
     }
 
@@ -160,13 +190,20 @@ public class ChemicalServiceImpl implements IChemicalService {
      */
     @Override
     @Transactional
-    @CacheEvict(value = {"chemical", "chemicalList", "chemicalCount"}, allEntries = true)
+    @Caching(evict = {
+            @CacheEvict(cacheNames = CacheNames.CHEMICAL, key = "#chemical.id"),
+            @CacheEvict(cacheNames = {CacheNames.CHEMICAL_LIST, CacheNames.CHEMICAL_COUNT}, allEntries = true)
+    })
     public int editChemical(Chemical chemical) {
-        // 清除单个记录的缓存
-        String cacheKey = CACHE_KEY_CHEMICAL + chemical.getId();
-        redisUtil.del(cacheKey);
-        
-        return chemicalMapper.editChemical(chemical);
+        int rows = chemicalMapper.editChemical(chemical);
+        // 预警阈值变化时重算该化学品库存记录的状态
+        if (rows > 0 && chemical.getWarningThreshold() != null) {
+            inventoryMapper.refreshStockStatusByChemical(chemical.getId());
+            if (inventoryStatsAggregator != null) {
+                inventoryStatsAggregator.onThresholdChanged(chemical.getId(), chemical.getWarningThreshold());
+            }
+        }
+        return rows;
     }
     
     /**
@@ -175,25 +212,10 @@ public class ChemicalServiceImpl implements IChemicalService {
      * @return int
      */
     @Override
-    @Cacheable(value = "chemicalCount", key = "'params_' + #params", unless = "#result == 0")
+    @Cacheable(cacheNames = CacheNames.CHEMICAL_COUNT, sync = true)
     public int countChemical(Map<String, Object> params) {
         log.info("从数据库统计化学品数量, params: {}", params);
-        
-        // 尝试从缓存获取
-        String cacheKey = CACHE_KEY_CHEMICAL_COUNT + "params_" + (params != null ? params.hashCode() : "null");
-        Object cachedCount = redisUtil.get(cacheKey);
-        if (cachedCount != null) {
-            log.info("从缓存获取化学品数量");
-            return (int) cachedCount;
-        }
-        
-        // 从数据库获取
-        int count = chemicalMapper.countChemical(params);
-        
-        // 放入缓存
-        redisUtil.set(cacheKey, count, TimeUnit.MINUTES.toSeconds(CACHE_EXPIRE_TIME));
-        
-        return count;
+        return chemicalMapper.countChemical(params);
     }
     
     /**
@@ -0,0 +1,171 @@
+package com.vueones.service.impl;
+
+import com.vueones.entity.InventoryMovement;
+import com.vueones.mapper.InventoryMapper;
+import com.vueones.mapper.InventoryMovementMapper;
+import com.vueones.service.IInventoryMovementService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@Service
+public class InventoryMovementServiceImpl implements IInventoryMovementService {
+
+    private static final Logger log = LoggerFactory.getLogger(InventoryMovementServiceImpl.class);
+
+    /** 快照缺失时最多补齐的天数 */
+    private static final int MAX_SNAPSHOT_CATCH_UP_DAYS = 31;
+    private static final DateTimeFormatter TREND_DATE_FORMAT = DateTimeFormatter.ofPattern("MM-dd");
+
+    @Autowired
+    private InventoryMovementMapper inventoryMovementMapper;
+
+    @Autowired
+    private InventoryMapper inventoryMapper;
+
+    /**
+     * 记录库存流水
+     * @param inventoryId 库存ID
+     * @param chemicalId 化学品ID
+     * @param movementType 流水类型
+     * @param delta 数量变化
+     * @param balanceAfter 变动后余额
+     * @return 流水ID
+     */
+    @Override
+    public Long record(Integer inventoryId, Integer chemicalId, String movementType, Double delta, Double balanceAfter) {
+        if (chemicalId == null || delta == null || delta == 0) {
+            return null;
+        }
+        InventoryMovement movement = new InventoryMovement(inventoryId, chemicalId, movementType, delta, balanceAfter);
+        inventoryMovementMapper.insert(movement);
+        return movement.getId();
+    }
+
+    /**
+     * 批量记录库存流水
+     * @param movements 流水列表
+     */
+    @Override
+    public void recordAll(List<InventoryMovement> movements) {
+        if (movements == null || movements.isEmpty()) {
+            return;
+        }
+        inventoryMovementMapper.insertBatch(movements);
+    }
+
+    /**
+     * 获取库存变动历史
+     * @param inventoryId 库存ID
+     * @param limit 最大条数
+     * @return 流水列表
+     */
+    @Override
+    public List<InventoryMovement> getHistory(Integer inventoryId, int limit) {
+        return inventoryMovementMapper.selectByInventoryId(inventoryId, limit);
+    }
+
+    /**
+     * 指定日期日终库存：取该日及之前最近的快照，再累加快照日之后到该日的流水；
+     * 没有快照时以当前库存为锚点倒推
+     * @param chemicalId 化学品ID
+     * @param date 日期
+     * @return 库存量
+     */
+    @Override
+    public double getBalanceAsOf(Integer chemicalId, LocalDate date) {
+        Map<String, Object> snapshot = inventoryMovementMapper.selectLatestSnapshot(chemicalId, date);
+        if (snapshot != null) {
+            LocalDate snapshotDate = toLocalDate(snapshot.get("snapshot_date"));
+            double closing = toDouble(snapshot.get("closing_balance"));
+            if (snapshotDate.equals(date)) {
+                return closing;
+            }
+            return closing + nullToZero(inventoryMovementMapper.sumDelta(chemicalId, snapshotDate.plusDays(1), date.plusDays(1)));
+        }
+
+        double current = nullToZero(inventoryMapper.getTotalAmount(chemicalId));
+        return current - nullToZero(inventoryMovementMapper.sumDelta(chemicalId, date.plusDays(1), null));
+    }
+
+    /**
+     * 库存趋势：窗口起点前一天的日终余额 + 窗口内按天汇总的流水
+     * @param chemicalId 化学品ID
+     * @param days 天数
+     * @return 趋势数据
+     */
+    @Override
+    public Map<String, Object> getTrend(Integer chemicalId, int days) {
+        LocalDate today = LocalDate.now();
+        LocalDate start = today.minusDays(days - 1L);
+
+        Map<LocalDate, Double> dailyDelta = new HashMap<>();
+        for (Map<String, Object> row : inventoryMovementMapper.selectDailyDelta(chemicalId, start, today.plusDays(1))) {
+            dailyDelta.put(toLocalDate(row.get("movement_date")), toDouble(row.get("delta")));
+        }
+
+        double balance = getBalanceAsOf(chemicalId, start.minusDays(1));
+        List<String> dates = new ArrayList<>(days);
+        List<Double> amounts = new ArrayList<>(days);
+        for (LocalDate day = start; !day.isAfter(today); day = day.plusDays(1)) {
+            balance += dailyDelta.getOrDefault(day, 0D);
+            dates.add(day.format(TREND_DATE_FORMAT));
+            amounts.add(Math.round(balance * 100) / 100.0);
+        }
+
+        Map<String, Object> data = new HashMap<>();
+        data.put("dates", dates);
+        data.put("amounts", amounts);
+        return data;
+    }
+
+    /**
+     * 每天凌晨生成前一天的日终快照
+     */
+    @Override
+    @Scheduled(cron = "${app.inventory.snapshot-cron:0 5 0 * * ?}")
+    public void buildDailySnapshots() {
+        LocalDate yesterday = LocalDate.now().minusDays(1);
+        LocalDate latest = inventoryMovementMapper.selectLatestSnapshotDate();
+        LocalDate from = latest == null ? yesterday : latest.plusDays(1);
+        if (from.isBefore(yesterday.minusDays(MAX_SNAPSHOT_CATCH_UP_DAYS))) {
+            from = yesterday.minusDays(MAX_SNAPSHOT_CATCH_UP_DAYS);
+        }
+
+        for (LocalDate day = from; !day.isAfter(yesterday); day = day.plusDays(1)) {
+            int rows = inventoryMovementMapper.buildDailySnapshot(day);
+            log.info("生成库存日终快照: date={}, rows={}", day, rows);
+        }
+    }
+
+    private static LocalDate toLocalDate(Object value) {
+        if (value instanceof LocalDate) {
+            return (LocalDate) value;
+        }
+        if (value instanceof LocalDateTime) {
+            return ((LocalDateTime) value).toLocalDate();
+        }
+        if (value instanceof java.sql.Date) {
+            return ((java.sql.Date) value).toLocalDate();
+        }
+        return LocalDate.parse(String.valueOf(value).substring(0, 10));
+    }
+
+    private static double toDouble(Object value) {
+        return value == null ? 0D : ((Number) value).doubleValue();
+    }
+
+    private static double nullToZero(Double value) {
+        return value == null ? 0D : value;
+    }
+}
@@ -0,0 +1,354 @@
+package com.vueones.service.impl;
+
+import com.vueones.dto.ReconciliationDiff;
+import com.vueones.dto.ReconciliationReport;
+import com.vueones.mapper.InventoryReconcileMapper;
+import com.vueones.service.IInventoryReconcileService;
+import com.vueones.service.IInventoryService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.apache.ibatis.cursor.Cursor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * 库存对账
+ * 化学品ID空间被切分为若干分区，由ForkJoinPool并行处理；每个分区在只读事务中用流式游标
+ * 读取三张记录表按化学品分组的合计，数据库完成聚合，堆内只保留分区内每个化学品的一组合计。
+ * 分区事务先读三张记录表的最大ID作为上界，上界与各项合计来自同一个一致性快照；合计表中每个
+ * 化学品保存自己的水位，增量对账以其合计为基数，只汇总该水位之后的记录。所有分区成功后才在
+ * 一个事务中写入新的合计与水位。自动修正前在锁住库存行的事务中重新全量计算该化学品，差异
+ * 仍然存在才调整。注意增量对账只感知新增记录，记录被修改或删除后需要跑一次全量对账。
+ */
+@Service
+public class InventoryReconcileServiceImpl implements IInventoryReconcileService {
+
+    private static final Logger log = LoggerFactory.getLogger(InventoryReconcileServiceImpl.class);
+
+    /** 合计差异小于该值视为一致（库存精度为两位小数） */
+    private static final double TOLERANCE = 0.005;
+    /** 合计表每批写入的行数 */
+    private static final int UPSERT_BATCH_SIZE = 500;
+
+    @Value("${app.inventory.reconcile.parallelism:4}")
+    private int parallelism;
+
+    @Value("${app.inventory.reconcile.partition-size:500}")
+    private int partitionSize;
+
+    @Value("${app.inventory.reconcile.include-usage:false}")
+    private boolean includeUsage;
+
+    @Autowired
+    private InventoryReconcileMapper inventoryReconcileMapper;
+
+    @Autowired
+    private IInventoryService inventoryService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private ForkJoinPool pool;
+    private TransactionTemplate readOnlyTemplate;
+    private final AtomicBoolean running = new AtomicBoolean(false);
+
+    @PostConstruct
+    public void init() {
+        pool = new ForkJoinPool(Math.max(1, parallelism));
+        readOnlyTemplate = new TransactionTemplate(transactionManager);
+        readOnlyTemplate.setReadOnly(true);
+        readOnlyTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * 定时增量对账（只出报告，不自动修正），默认关闭
+     */
+    @Scheduled(cron = "${app.inventory.reconcile.cron:-}")
+    public void scheduledReconcile() {
+        ReconciliationReport report = reconcile(true, false);
+        log.info("定时库存对账完成: checked={}, diffs={}, durationMs={}",
+                report.getChemicalsChecked(), report.getDiffs().size(), report.getDurationMs());
+    }
+
+    /**
+     * 执行库存对账
+     * @param incremental 是否增量
+     * @param autoCorrect 是否自动修正
+     * @return 对账报告
+     */
+    @Override
+    public ReconciliationReport reconcile(boolean incremental, boolean autoCorrect) {
+        if (!running.compareAndSet(false, true)) {
+            throw new IllegalStateException("库存对账正在进行中");
+        }
+        try {
+            return doReconcile(incremental, autoCorrect);
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private ReconciliationReport doReconcile(boolean incremental, boolean autoCorrect) {
+        long startNanos = System.nanoTime();
+        ReconciliationReport report = new ReconciliationReport();
+        report.setStartTime(new Date());
+        report.setIncremental(incremental);
+        report.setAutoCorrect(autoCorrect);
+
+        Map<String, Object> range = inventoryReconcileMapper.selectChemicalIdRange();
+        PartitionResult result = new PartitionResult();
+        if (range != null && range.get("min_id") != null) {
+            int minId = ((Number) range.get("min_id")).intValue();
+            int maxId = ((Number) range.get("max_id")).intValue();
+            result = pool.invoke(new PartitionTask(minId, maxId, incremental));
+        }
+        // 报告中的水位为各分区上界中的最大值
+        Watermark upper = result.upper == null ? new Watermark(0L, 0L, 0L) : result.upper;
+        report.setStorageMaxId(upper.storageMaxId);
+        report.setOutboundMaxId(upper.outboundMaxId);
+        report.setUsageMaxId(upper.usageMaxId);
+
+        // 所有分区成功后，合计与水位在同一事务中写入
+        saveTotalsAndWatermark(result.totals, upper);
+
+        result.diffs.sort(Comparator.comparing(ReconciliationDiff::getChemicalId));
+        if (autoCorrect) {
+            int corrected = 0;
+            for (ReconciliationDiff diff : result.diffs) {
+                if (Boolean.TRUE.equals(transactionTemplate.execute(status -> correct(diff)))) {
+                    corrected++;
+                }
+            }
+            report.setCorrectedCount(corrected);
+        }
+
+        report.setPartitions(result.partitions);
+        report.setChemicalsChecked(result.checked);
+        report.setDiffs(result.diffs);
+        report.setEndTime(new Date());
+        report.setDurationMs((System.nanoTime() - startNanos) / 1_000_000);
+        log.info("库存对账完成: incremental={}, partitions={}, checked={}, diffs={}, corrected={}, durationMs={}",
+                incremental, result.partitions, result.checked, result.diffs.size(),
+                report.getCorrectedCount(), report.getDurationMs());
+        return report;
+    }
+
+    private void saveTotalsAndWatermark(List<Map<String, Object>> totals, Watermark upper) {
+        transactionTemplate.executeWithoutResult(status -> {
+            for (int from = 0; from < totals.size(); from += UPSERT_BATCH_SIZE) {
+                inventoryReconcileMapper.upsertTotals(totals.subList(from, Math.min(from + UPSERT_BATCH_SIZE, totals.size())));
+            }
+            inventoryReconcileMapper.saveWatermark(upper.storageMaxId, upper.outboundMaxId, upper.usageMaxId);
+        });
+    }
+
+    /**
+     * 锁住化学品的库存行后重新全量计算，差异仍然存在时才调整库存，需在事务中执行。
+     * 分区读取到修正之间可能有出入库提交，直接按分区时的差异调整会把正常的变动当成差异
+     * @return 是否做了调整
+     */
+    private boolean correct(ReconciliationDiff diff) {
+        inventoryReconcileMapper.lockInventory(diff.getChemicalId());
+        Map<String, Object> current = inventoryReconcileMapper.selectChemicalBalance(diff.getChemicalId());
+        double storageTotal = toDouble(current.get("storage_total"));
+        double outboundTotal = toDouble(current.get("outbound_total"));
+        double usageTotal = toDouble(current.get("usage_total"));
+        double expected = storageTotal - outboundTotal - (includeUsage ? usageTotal : 0D);
+        double actual = toDouble(current.get("inventory_total"));
+        diff.setStorageTotal(round(storageTotal));
+        diff.setOutboundTotal(round(outboundTotal));
+        diff.setUsageTotal(round(usageTotal));
+        diff.setExpected(round(expected));
+        diff.setActual(round(actual));
+        diff.setDifference(round(expected - actual));
+        if (Math.abs(expected - actual) < TOLERANCE) {
+            log.info("化学品{}的库存差异在复核时已消失，不做调整", diff.getChemicalId());
+            return false;
+        }
+        inventoryService.adjustStock(diff.getChemicalId(), diff.getDifference());
+        diff.setCorrected(true);
+        return true;
+    }
+
+    /**
+     * 对账分区任务：区间过大时二分，否则直接对区间内的化学品对账
+     */
+    private class PartitionTask extends RecursiveTask<PartitionResult> {
+        private final int lo;
+        private final int hi;
+        private final boolean incremental;
+
+        PartitionTask(int lo, int hi, boolean incremental) {
+            this.lo = lo;
+            this.hi = hi;
+            this.incremental = incremental;
+        }
+
+        @Override
+        protected PartitionResult compute() {
+            if ((long) hi - lo + 1 <= partitionSize) {
+                return readOnlyTemplate.execute(status -> reconcilePartition(lo, hi, incremental));
+            }
+            int mid = lo + (hi - lo) / 2;
+            PartitionTask left = new PartitionTask(lo, mid, incremental);
+            PartitionTask right = new PartitionTask(mid + 1, hi, incremental);
+            left.fork();
+            PartitionResult rightResult = right.compute();
+            PartitionResult merged = left.join();
+            merged.merge(rightResult);
+            return merged;
+        }
+    }
+
+    /**
+     * 对单个分区对账，需在事务中执行（游标依赖同一会话）。
+     * 上界是事务中的第一次读取，此后的汇总都在同一快照中，不会统计到上界之后提交的记录
+     */
+    private PartitionResult reconcilePartition(int lo, int hi, boolean incremental) {
+        Map<String, Object> maxIds = inventoryReconcileMapper.selectRecordMaxIds();
+        Watermark upper = new Watermark(toLong(maxIds.get("storage_max_id")),
+                toLong(maxIds.get("outbound_max_id")), toLong(maxIds.get("usage_max_id")));
+        // 每个化学品一组：[入库合计, 出库合计, 使用合计, 实际库存]
+        Map<Integer, double[]> sums = new HashMap<>();
+        if (incremental) {
+            consume(inventoryReconcileMapper.selectTotals(lo, hi), row -> {
+                double[] acc = sums.computeIfAbsent(toInt(row.get("chemical_id")), k -> new double[4]);
+                acc[0] += toDouble(row.get("storage_total"));
+                acc[1] += toDouble(row.get("outbound_total"));
+                if (includeUsage) {
+                    acc[2] += toDouble(row.get("usage_total"));
+                }
+            });
+        }
+        consume(inventoryReconcileMapper.sumStorageByChemical(lo, hi, incremental, upper.storageMaxId),
+                row -> sums.computeIfAbsent(toInt(row.get("chemical_id")), k -> new double[4])[0] += toDouble(row.get("total")));
+        consume(inventoryReconcileMapper.sumOutboundByChemical(lo, hi, incremental, upper.outboundMaxId),
+                row -> sums.computeIfAbsent(toInt(row.get("chemical_id")), k -> new double[4])[1] += toDouble(row.get("total")));
+        if (includeUsage) {
+            consume(inventoryReconcileMapper.sumUsageByChemical(lo, hi, incremental, upper.usageMaxId),
+                    row -> sums.computeIfAbsent(toInt(row.get("chemical_id")), k -> new double[4])[2] += toDouble(row.get("total")));
+        }
+        consume(inventoryReconcileMapper.sumInventoryByChemical(lo, hi),
+                row -> sums.computeIfAbsent(toInt(row.get("chemical_id")), k -> new double[4])[3] += toDouble(row.get("total")));
+
+        PartitionResult result = new PartitionResult();
+        result.partitions = 1;
+        result.upper = upper;
+        for (Map.Entry<Integer, double[]> entry : sums.entrySet()) {
+            double[] acc = entry.getValue();
+            double expected = acc[0] - acc[1] - (includeUsage ? acc[2] : 0D);
+            result.checked++;
+            if (Math.abs(expected - acc[3]) >= TOLERANCE) {
+                result.diffs.add(new ReconciliationDiff(entry.getKey(), round(acc[0]), round(acc[1]), round(acc[2]),
+                        round(expected), round(acc[3])));
+            }
+            Map<String, Object> total = new HashMap<>();
+            total.put("chemicalId", entry.getKey());
+            total.put("storageTotal", round(acc[0]));
+            total.put("outboundTotal", round(acc[1]));
+            total.put("usageTotal", round(acc[2]));
+            // 合计对应的水位，下次增量从这里继续
+            total.put("storageMaxId", upper.storageMaxId);
+            total.put("outboundMaxId", upper.outboundMaxId);
+            // 不扣除使用记录时使用合计不推进，之后打开开关会从头汇总
+            total.put("usageMaxId", includeUsage ? upper.usageMaxId : 0L);
+            result.totals.add(total);
+        }
+        return result;
+    }
+
+    private void consume(Cursor<Map<String, Object>> cursor, Consumer<Map<String, Object>> action) {
+        try (Cursor<Map<String, Object>> rows = cursor) {
+            for (Map<String, Object> row : rows) {
+                action.accept(row);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("关闭对账游标失败", e);
+        }
+    }
+
+    /**
+     * 分区结果，合并时直接拼接
+     */
+    private static class PartitionResult {
+        int partitions;
+        int checked;
+        Watermark upper;
+        final List<ReconciliationDiff> diffs = new ArrayList<>();
+        final List<Map<String, Object>> totals = new ArrayList<>();
+
+        void merge(PartitionResult other) {
+            upper = upper == null ? other.upper : upper.max(other.upper);
+            partitions += other.partitions;
+            checked += other.checked;
+            diffs.addAll(other.diffs);
+            totals.addAll(other.totals);
+        }
+    }
+
+    /**
+     * 三张记录表的ID水位
+     */
+    private static class Watermark {
+        final Long storageMaxId;
+        final Long outboundMaxId;
+        final Long usageMaxId;
+
+        Watermark(Long storageMaxId, Long outboundMaxId, Long usageMaxId) {
+            this.storageMaxId = storageMaxId;
+            this.outboundMaxId = outboundMaxId;
+            this.usageMaxId = usageMaxId;
+        }
+
+        Watermark max(Watermark other) {
+            if (other == null) {
+                return this;
+            }
+            return new Watermark(Math.max(storageMaxId, other.storageMaxId),
+                    Math.max(outboundMaxId, other.outboundMaxId), Math.max(usageMaxId, other.usageMaxId));
+        }
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100) / 100.0;
+    }
+
+    private static int toInt(Object value) {
+        return ((Number) value).intValue();
+    }
+
+    private static long toLong(Object value) {
+        return value == null ? 0L : ((Number) value).longValue();
+    }
+
+    private static double toDouble(Object value) {
+        return value == null ? 0D : ((Number) value).doubleValue();
+    }
+}
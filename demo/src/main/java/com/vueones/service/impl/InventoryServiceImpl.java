@@ -1,38 +1,95 @@
 package com.vueones.service.impl;
 
+import com.vueones.cache.BatchCache;
+import com.vueones.cache.CacheNames;
+import com.vueones.cache.ExistenceGuard;
+import com.vueones.dto.CursorPage;
+import com.vueones.dto.InventoryCursor;
+import com.vueones.dto.StockMutationResult;
 import com.vueones.entity.Inventory;
+import com.vueones.entity.InventoryLot;
+import com.vueones.entity.InventoryMovement;
+import com.vueones.exception.InventoryException;
+import com.vueones.ledger.InventoryStatsAggregator;
+import com.vueones.ledger.StockGroupCommitter;
+import com.vueones.ledger.StockLedger;
+import com.vueones.mapper.InventoryCounterMapper;
+import com.vueones.mapper.InventoryLotMapper;
 import com.vueones.mapper.InventoryMapper;
+import com.vueones.service.IInventoryMovementService;
 import com.vueones.service.IInventoryService;
-import com.vueones.util.RedisUtil;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
+import org.springframework.dao.PessimisticLockingFailureException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
 
 @Service
 public class InventoryServiceImpl implements IInventoryService {
     
     private static final Logger log = LoggerFactory.getLogger(InventoryServiceImpl.class);
-    
-    // 缓存相关常量
-    private static final String CACHE_KEY_INVENTORY = "inventory:";
-    private static final String CACHE_KEY_INVENTORY_LIST = "inventory_list:";
-    private static final String CACHE_KEY_INVENTORY_COUNT = "inventory_count:";
-    private static final long CACHE_EXPIRE_TIME = 30; // 缓存过期时间（分钟）
+
+    /** 出入库因死锁被回滚后的最大执行次数 */
+    private static final int LOCK_RETRY_ATTEMPTS = 8;
+    /** 锁冲突重试前的随机等待上限（毫秒），按重试次数递增，错开再次撞上的并发请求 */
+    private static final int LOCK_RETRY_BACKOFF_MILLIS = 5;
     
     @Autowired
     private InventoryMapper inventoryMapper;
     
     @Autowired
-    private RedisUtil redisUtil;
+    private InventoryCounterMapper inventoryCounterMapper;
+    
+    @Autowired
+    private InventoryLotMapper inventoryLotMapper;
+    
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private ExistenceGuard existenceGuard;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private IInventoryMovementService inventoryMovementService;
+
+    /** 内存账本，仅在 app.inventory.ledger.enabled=true 时存在 */
+    @Autowired(required = false)
+    private StockLedger stockLedger;
+
+    /** 出入库合并提交，仅在 app.inventory.group-commit.enabled=true 时存在 */
+    @Autowired(required = false)
+    private StockGroupCommitter stockGroupCommitter;
+
+    @Value("${app.inventory.group-commit.timeout-ms:5000}")
+    private long groupCommitTimeoutMs;
+
+    /** 库存统计聚合器，仅在 app.inventory.stats.enabled=true 时存在 */
+    @Autowired(required = false)
+    private InventoryStatsAggregator inventoryStatsAggregator;
     
 
     /**
@@ -42,13 +99,21 @@ public class InventoryServiceImpl implements IInventoryService {
      */
     @Override
     @Transactional
-    @CacheEvict(value = {"inventoryList", "inventoryCount"}, allEntries = true)
     public int addInventory(Inventory inventory) {
         if (inventory.getCreateTime() == null) {
             inventory.setCreateTime(new Date());
         }
         inventory.setUpdateTime(new Date());
-        return inventoryMapper.addInventory(inventory);
+        resyncLedgerAfterCommit();
+        int rows = inventoryMapper.insert(inventory);
+        if (rows > 0) {
+            inventoryCounterMapper.add(InventoryCounterMapper.INVENTORY_TOTAL, 1);
+            existenceGuard.added(CacheNames.INVENTORY, inventory.getId());
+            inventoryMovementService.record(inventory.getId(), inventory.getChemicalId(),
+                    InventoryMovement.TYPE_ADJUST, inventory.getCurrentAmount(), inventory.getCurrentAmount());
+            refreshStatsAfterCommit(inventory.getId());
+        }
+        return rows;
     }
     /**
      * 更新库存
@@ -57,14 +122,17 @@ public class InventoryServiceImpl implements IInventoryService {
      */
     @Override
     @Transactional
-    @CacheEvict(value = {"inventory", "inventoryList", "inventoryCount"}, allEntries = true)
+    @CacheEvict(cacheNames = CacheNames.INVENTORY, key = "#inventory.id")
     public int updateInventory(Inventory inventory) {
-        // 清除单个记录的缓存
-        String cacheKey = CACHE_KEY_INVENTORY + inventory.getId();
-        redisUtil.del(cacheKey);
-        
         inventory.setUpdateTime(new Date());
-        return inventoryMapper.updateInventory(inventory);
+        resyncLedgerAfterCommit();
+        Inventory before = inventoryMapper.getInventoryById(inventory.getId());
+        int rows = inventoryMapper.updateInventory(inventory);
+        if (rows > 0) {
+            recordAdjustment(before, inventory.getCurrentAmount());
+            refreshStatsAfterCommit(inventory.getId());
+        }
+        return rows;
     }
     /**
      * 删除库存
@@ -73,13 +141,17 @@ public class InventoryServiceImpl implements IInventoryService {
      */
     @Override
     @Transactional
-    @CacheEvict(value = {"inventory", "inventoryList", "inventoryCount"}, allEntries = true)
+    @CacheEvict(cacheNames = CacheNames.INVENTORY)
     public int deleteInventory(Integer id) {
-        // 清除单个记录的缓存
-        String cacheKey = CACHE_KEY_INVENTORY + id;
-        redisUtil.del(cacheKey);
-        
-        return inventoryMapper.deleteInventory(id);
+        resyncLedgerAfterCommit();
+        Inventory before = inventoryMapper.getInventoryById(id);
+        int rows = inventoryMapper.deleteInventory(id);
+        if (rows > 0) {
+            inventoryCounterMapper.add(InventoryCounterMapper.INVENTORY_TOTAL, -1);
+            recordAdjustment(before, 0D);
+            refreshStatsAfterCommit(id);
+        }
+        return rows;
     }
     /**
      * 根据id查询库存
@@ -87,80 +159,124 @@ public class InventoryServiceImpl implements IInventoryService {
      * @return 库存信息
      */
     @Override
-    @Cacheable(value = "inventory", key = "#id", unless = "#result == null")
+    @Cacheable(cacheNames = CacheNames.INVENTORY, unless = "#result == null")
     public Inventory getInventoryById(Integer id) {
-        log.info("从数据库查询库存记录, id: {}", id);
-        
-        // 尝试从缓存获取
-        String cacheKey = CACHE_KEY_INVENTORY + id;
-        Object cachedInventory = redisUtil.get(cacheKey);
-        if (cachedInventory != null) {
-            log.info("从缓存获取库存记录, id: {}", id);
-            return (Inventory) cachedInventory;
-        }
-        
-        // 从数据库获取
-        Inventory inventory = inventoryMapper.getInventoryById(id);
-        
-        // 放入缓存
-        if (inventory != null) {
-            redisUtil.set(cacheKey, inventory, TimeUnit.MINUTES.toSeconds(CACHE_EXPIRE_TIME));
-        }
-        
-        return inventory;
+        return existenceGuard.load(CacheNames.INVENTORY, id, () -> {
+            log.info("从数据库查询库存记录, id: {}", id);
+            return inventoryMapper.getInventoryById(id);
+        });
     }
     /**
      * 根据化学品id和存储位置查询库存
      * @param chemicalId 化学品id
      * @param chemicalName 化学品名称
      * @param location 存储位置
-     * @param status 库存状态（normal:正常,low:不足,high:超储）
+     * @param status 库存状态（normal:正常,warning:预警,low:不足,high:超储）
      * @return 库存信息列表
      */
     @Override
     public List<Inventory> getInventoryList(Integer chemicalId, String chemicalName, String location, String status) {
-        // 先获取基础库存列表
-        List<Inventory> inventories = inventoryMapper.getInventoryList(chemicalId, chemicalName, location,status);
-        
-        // 如果状态为空，返回所有库存
-        if (status == null || status.isEmpty()) {
-            return inventories;
+        // 状态筛选由inventory.stock_status索引完成
+        return inventoryMapper.getInventoryList(chemicalId, chemicalName, location, status);
+    }
+
+    /**
+     * 分页获取库存列表
+     * @param chemicalId 化学品id
+     * @param chemicalName 化学品名称
+     * @param location 存储位置
+     * @param status 库存状态
+     * @param page 页码，从1开始
+     * @param size 每页记录数
+     * @return 当前页库存列表
+     */
+    @Override
+    public List<Inventory> getInventoryPage(Integer chemicalId, String chemicalName, String location, String status,
+                                            int page, int size) {
+        int offset = (Math.max(1, page) - 1) * size;
+        return inventoryMapper.getInventoryPage(chemicalId, chemicalName, location, status, offset, size);
+    }
+
+    /**
+     * 游标分页获取库存列表
+     * @param chemicalId 化学品id
+     * @param chemicalName 化学品名称
+     * @param location 存储位置
+     * @param status 库存状态
+     * @param cursor 上一页返回的游标，首页传null
+     * @param size 每页记录数
+     * @return 当前页记录与下一页游标
+     */
+    @Override
+    public CursorPage<Inventory> getInventoryPageAfter(Integer chemicalId, String chemicalName, String location,
+                                                       String status, String cursor, int size) {
+        InventoryCursor after = cursor == null || cursor.isEmpty() ? null : InventoryCursor.decode(cursor);
+        // 多取一条用于判断是否还有下一页
+        List<Inventory> records = inventoryMapper.getInventoryPageAfter(chemicalId, chemicalName, location, status,
+                after == null ? null : after.getUpdateTime(), after == null ? null : after.getId(), size + 1);
+        String nextCursor = null;
+        if (records.size() > size) {
+            records = new ArrayList<>(records.subList(0, size));
+            nextCursor = InventoryCursor.after(records.get(size - 1)).encode();
         }
-        
-        // 根据状态筛选
-        List<Inventory> filteredInventories = new ArrayList<>();
-        for (Inventory inventory : inventories) {
-            if (inventory.getChemical() == null) {
-                continue;
-            }
-            
-            Double warningThreshold = inventory.getChemical().getWarningThreshold();
-            Double currentAmount = inventory.getCurrentAmount();
-            
-            // 根据状态筛选
-            switch (status) {
-                case "normal": // 正常
-                    if (currentAmount >= warningThreshold * 1.2) {
-                        filteredInventories.add(inventory);
-                    }
-                    break;
-                case "low": // 不足
-                    if (currentAmount < warningThreshold) {
-                        filteredInventories.add(inventory);
-                    }
-                    break;
-                case "high": // 超储（暂定为超过预警阈值的5倍为超储）
-                    if (currentAmount > warningThreshold * 5) {
-                        filteredInventories.add(inventory);
-                    }
-                    break;
-                default:
-                    filteredInventories.add(inventory);
-                    break;
-            }
+        return new CursorPage<>(records, nextCursor);
+    }
+
+    /**
+     * 统计库存列表记录数，无筛选条件时直接读取维护的计数器
+     * @param chemicalId 化学品id
+     * @param chemicalName 化学品名称
+     * @param location 存储位置
+     * @param status 库存状态
+     * @return 记录数
+     */
+    @Override
+    public int countInventoryList(Integer chemicalId, String chemicalName, String location, String status) {
+        boolean unfiltered = chemicalId == null && isEmpty(chemicalName) && isEmpty(location) && isEmpty(status);
+        if (!unfiltered) {
+            return inventoryMapper.countInventoryList(chemicalId, chemicalName, location, status);
+        }
+        Long total = inventoryCounterMapper.selectValue(InventoryCounterMapper.INVENTORY_TOTAL);
+        if (total == null) {
+            // 计数器尚未初始化（旧库未执行升级脚本），按实际记录数建立
+            inventoryCounterMapper.rebuildInventoryTotal();
+            total = inventoryCounterMapper.selectValue(InventoryCounterMapper.INVENTORY_TOTAL);
+        }
+        return total == null ? 0 : total.intValue();
+    }
+
+    private static boolean isEmpty(String value) {
+        return value == null || value.isEmpty();
+    }
+
+    /**
+     * 获取库存统计数据
+     * @param chemicalId 化学品id
+     * @param location 存储位置
+     * @return 库存统计信息
+     */
+    @Override
+    public Map<String, Object> getInventoryStatistics(Integer chemicalId, String location) {
+        // 聚合器按位置分区，按化学品筛选时仍走数据库
+        if (inventoryStatsAggregator != null && chemicalId == null) {
+            return inventoryStatsAggregator.snapshot(location);
         }
-        
-        return filteredInventories;
+        Map<String, Object> row = inventoryMapper.getInventoryStatistics(chemicalId, location);
+        long lowCount = toLong(row.get("lowCount"));
+
+        Map<String, Object> data = new HashMap<>();
+        data.put("totalTypes", (int) toLong(row.get("totalTypes")));
+        data.put("warningCount", toLong(row.get("warningCount")));
+        data.put("lowCount", lowCount);
+        data.put("highCount", toLong(row.get("highCount")));
+        data.put("totalRecords", (int) toLong(row.get("totalRecords")));
+        data.put("totalAmount", row.get("totalAmount") == null ? 0D : ((Number) row.get("totalAmount")).doubleValue());
+        data.put("belowThreshold", lowCount);
+        return data;
+    }
+
+    private static long toLong(Object value) {
+        return value == null ? 0L : ((Number) value).longValue();
     }
     /**
      * 更新库存数量
@@ -170,13 +286,16 @@ public class InventoryServiceImpl implements IInventoryService {
      */
     @Override
     @Transactional
-    @CacheEvict(value = {"inventory", "inventoryList"}, allEntries = true)
+    @CacheEvict(cacheNames = CacheNames.INVENTORY, key = "#id")
     public int updateInventoryAmount(Integer id, Double amount) {
-        // 清除相关缓存
-        String cacheKey = CACHE_KEY_INVENTORY + id;
-        redisUtil.del(cacheKey);
-        
-        return inventoryMapper.updateInventoryAmount(id, amount);
+        resyncLedgerAfterCommit();
+        Inventory before = inventoryMapper.getInventoryById(id);
+        int rows = inventoryMapper.updateInventoryAmount(id, amount);
+        if (rows > 0) {
+            recordAdjustment(before, amount);
+            refreshStatsAfterCommit(id);
+        }
+        return rows;
     }
     /**
      * 获取低于预警阈值的库存
@@ -201,10 +320,35 @@ public class InventoryServiceImpl implements IInventoryService {
     @Transactional
     public int batchUpdateInventory(List<Inventory> inventories) {
         Date now = new Date();
+        List<Inventory> befores = new ArrayList<>(inventories.size());
         inventories.forEach(inventory -> {
             inventory.setUpdateTime(now);
+            befores.add(inventoryMapper.getInventoryById(inventory.getId()));
         });
-        return inventoryMapper.batchUpdateInventory(inventories);
+        resyncLedgerAfterCommit();
+        int rows = inventoryMapper.batchUpdateInventory(inventories);
+        List<Integer> ids = new ArrayList<>(inventories.size());
+        for (int i = 0; i < inventories.size(); i++) {
+            recordAdjustment(befores.get(i), inventories.get(i).getCurrentAmount());
+            refreshStatsAfterCommit(inventories.get(i).getId());
+            ids.add(inventories.get(i).getId());
+        }
+        // 一次批量失效全部被修改的库存缓存（事务提交后生效）
+        BatchCache cache = BatchCache.of(cacheManager.getCache(CacheNames.INVENTORY));
+        if (cache != null) {
+            cache.evictAll(ids);
+        }
+        return rows;
+    }
+    /**
+     * 获取化学品的库存批次
+     * @param chemicalId 化学品id
+     * @param includeClosed 是否包含已用完的批次
+     * @return 批次列表
+     */
+    @Override
+    public List<InventoryLot> getLots(Integer chemicalId, boolean includeClosed) {
+        return inventoryLotMapper.selectByChemicalId(chemicalId, includeClosed);
     }
     /**
      * 获取化学品总库存量
@@ -232,27 +376,8 @@ public class InventoryServiceImpl implements IInventoryService {
      * @return 是否成功
      */
     @Override
-    @Transactional
     public boolean processStorageIn(Integer chemicalId, Double amount) {
-        Inventory inventory = inventoryMapper.getInventoryList(chemicalId, null, null,null).stream()
-                .findFirst()
-                .orElse(null);
-                
-        if (inventory == null) {
-            // 如果不存在库存记录，创建新记录
-            inventory = new Inventory();
-            inventory.setChemicalId(chemicalId);
-            inventory.setCurrentAmount(amount);
-            inventory.setCreateTime(new Date());
-            inventory.setUpdateTime(new Date());
-            return inventoryMapper.addInventory(inventory) > 0;
-        } else {
-            // 更新现有库存
-            Double newAmount = inventory.getCurrentAmount() + amount;
-            inventory.setCurrentAmount(newAmount);
-            inventory.setUpdateTime(new Date());
-            return inventoryMapper.updateInventory(inventory) > 0;
-        }
+        return applyStorageIn(chemicalId, amount).isSuccess();
     }
     /**
      * 出库操作
@@ -261,22 +386,277 @@ public class InventoryServiceImpl implements IInventoryService {
      * @return 是否成功
      */
     @Override
-    @Transactional
     public boolean processStorageOut(Integer chemicalId, Double amount) {
-        Inventory inventory = inventoryMapper.getInventoryList(chemicalId, null, null,null).stream()
-                .findFirst()
-                .orElse(null);
-                
-        if (inventory == null || inventory.getCurrentAmount() < amount) {
+        return applyStorageOut(chemicalId, amount).isSuccess();
+    }
+
+    /**
+     * 原子入库
+     * 直接在数据库中执行 current_amount = current_amount + amount，避免先查后改造成的丢失更新；
+     * 开启内存账本时改由账本处理，不占用数据库连接
+     * @param chemicalId 化学品id
+     * @param amount 入库数量
+     * @return 变动结果
+     */
+    @Override
+    public StockMutationResult applyStorageIn(Integer chemicalId, Double amount) {
+        if (chemicalId == null || amount == null || amount <= 0) {
+            return StockMutationResult.rejected(chemicalId, amount, "入库参数不合法");
+        }
+        if (stockLedger != null) {
+            return stockLedger.storageIn(chemicalId, amount);
+        }
+        if (useGroupCommit()) {
+            return awaitGroupCommit(stockGroupCommitter.submitStorageIn(chemicalId, amount));
+        }
+        StockMutationResult result = executeStockTransaction(() -> doStorageIn(chemicalId, amount));
+        if (result == null) {
+            // 化学品无库存记录：在新事务中锁定库存总数计数器后新建
+            result = executeStockTransaction(() -> doFirstStorageIn(chemicalId, amount));
+        }
+        return result;
+    }
+
+    /**
+     * 累加已有库存记录
+     * @return 变动结果，化学品无库存记录时返回null（未做任何修改）
+     */
+    private StockMutationResult doStorageIn(Integer chemicalId, Double amount) {
+        int affectedRows = inventoryMapper.processStorageIn(chemicalId, amount);
+        if (affectedRows == 0) {
+            return null;
+        }
+        return storageInApplied(chemicalId, amount, affectedRows);
+    }
+
+    /**
+     * 化学品首次入库
+     * 先锁定库存总数计数器，并发的首次入库依次执行；锁内重新执行入库UPDATE，已由先到者新建时累加到该记录，否则新建。
+     * 不锁化学品记录：入库UPDATE设置库存状态的子查询会对化学品记录加共享锁，持有化学品排他锁再等待库存记录会与之死锁
+     */
+    private StockMutationResult doFirstStorageIn(Integer chemicalId, Double amount) {
+        inventoryCounterMapper.selectValueForUpdate(InventoryCounterMapper.INVENTORY_TOTAL);
+        int affectedRows = inventoryMapper.processStorageIn(chemicalId, amount);
+        if (affectedRows == 0) {
+            affectedRows = createStock(chemicalId, amount);
+        }
+        return storageInApplied(chemicalId, amount, affectedRows);
+    }
+
+    private StockMutationResult storageInApplied(Integer chemicalId, Double amount, int affectedRows) {
+        Inventory mutated = inventoryMapper.selectMutatedStock();
+        evictInventoryCache(mutated.getId());
+        Long movementId = inventoryMovementService.record(mutated.getId(), chemicalId, InventoryMovement.TYPE_IN, amount, mutated.getCurrentAmount());
+        statsStockChanged(mutated.getId(), chemicalId, mutated.getCurrentAmount(), movementId);
+        return StockMutationResult.accepted(chemicalId, mutated.getId(), amount, affectedRows, mutated.getCurrentAmount());
+    }
+
+    /**
+     * 原子出库
+     * 库存校验与扣减在同一条UPDATE中完成（current_amount >= amount），并发出库不会超卖；
+     * 开启内存账本时由账本在内存中校验余额
+     * @param chemicalId 化学品id
+     * @param amount 出库数量
+     * @return 变动结果
+     */
+    @Override
+    public StockMutationResult applyStorageOut(Integer chemicalId, Double amount) {
+        if (chemicalId == null || amount == null || amount <= 0) {
+            return StockMutationResult.rejected(chemicalId, amount, "出库参数不合法");
+        }
+        if (stockLedger != null) {
+            return stockLedger.storageOut(chemicalId, amount);
+        }
+        if (useGroupCommit()) {
+            return awaitGroupCommit(stockGroupCommitter.submitStorageOut(chemicalId, amount));
+        }
+        return executeStockTransaction(() -> doStorageOut(chemicalId, amount));
+    }
+
+    private StockMutationResult doStorageOut(Integer chemicalId, Double amount) {
+        int affectedRows = inventoryMapper.processStorageOut(chemicalId, amount);
+        if (affectedRows == 0) {
             // 库存不存在或库存不足
-            return false;
+            return StockMutationResult.rejected(chemicalId, amount, "库存不足或库存记录不存在");
+        }
+
+        Inventory mutated = inventoryMapper.selectMutatedStock();
+        evictInventoryCache(mutated.getId());
+        Long movementId = inventoryMovementService.record(mutated.getId(), chemicalId, InventoryMovement.TYPE_OUT, -amount, mutated.getCurrentAmount());
+        statsStockChanged(mutated.getId(), chemicalId, mutated.getCurrentAmount(), movementId);
+        return StockMutationResult.accepted(chemicalId, mutated.getId(), amount, affectedRows, mutated.getCurrentAmount());
+    }
+
+    /**
+     * 按增量修正化学品库存
+     * 锁定主库存记录后累加增量，不存在库存记录时新建；与首次入库一样先锁定库存总数计数器
+     * @param chemicalId 化学品id
+     * @param delta 增量
+     * @return 修正后余额
+     */
+    @Override
+    @Transactional
+    public Double adjustStock(Integer chemicalId, Double delta) {
+        inventoryCounterMapper.selectValueForUpdate(InventoryCounterMapper.INVENTORY_TOTAL);
+        Inventory stock = inventoryMapper.selectPrimaryStockForUpdate(chemicalId);
+        double balance;
+        Integer inventoryId;
+        if (stock == null) {
+            createStock(chemicalId, delta);
+            Inventory mutated = inventoryMapper.selectMutatedStock();
+            inventoryId = mutated.getId();
+            balance = mutated.getCurrentAmount();
+            evictInventoryCache(inventoryId);
+        } else {
+            inventoryMapper.addAmountById(stock.getId(), delta);
+            inventoryId = stock.getId();
+            balance = (stock.getCurrentAmount() == null ? 0D : stock.getCurrentAmount()) + delta;
+            evictInventoryCache(inventoryId);
+        }
+        Long movementId = inventoryMovementService.record(inventoryId, chemicalId, InventoryMovement.TYPE_ADJUST, delta, balance);
+        statsStockChanged(inventoryId, chemicalId, balance, movementId);
+        resyncLedgerAfterCommit();
+        return balance;
+    }
+
+    /**
+     * 等待合并提交的结果，最多等待app.inventory.group-commit.timeout-ms
+     * 超时时请求若还在排队则取消，调用方可以放心重试；已被提交线程取走的请求结果未知，需核对库存
+     */
+    private StockMutationResult awaitGroupCommit(CompletableFuture<StockMutationResult> future) {
+        try {
+            return future.get(groupCommitTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            if (future.cancel(false)) {
+                throw new InventoryException(503, "出入库排队超时，请求未执行，请稍后重试");
+            }
+            if (!future.isDone()) {
+                throw new InventoryException(504, "出入库处理超时，结果未确认，请核对库存后再操作");
+            }
+            // 超时的同时刚好完成
+            return awaitGroupCommit(future);
+        } catch (ExecutionException e) {
+            log.error("出入库合并提交失败", e.getCause());
+            throw new InventoryException(500, "出入库提交失败: " + e.getCause().getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InventoryException(500, "等待出入库结果时被中断");
+        }
+    }
+
+    /**
+     * 在事务中执行一次出入库
+     * 未命中的UPDATE会持有库存表上的间隙锁，与相邻位置新建库存记录的INSERT仍可能互相死锁；
+     * InnoDB回滚其中一方的整个事务，重新执行即可。
+     * 处于外层事务中时外层事务已被回滚，不能重试
+     */
+    private StockMutationResult executeStockTransaction(Supplier<StockMutationResult> action) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(status -> action.get());
+            } catch (PessimisticLockingFailureException e) {
+                if (attempt >= LOCK_RETRY_ATTEMPTS || TransactionSynchronizationManager.isActualTransactionActive()) {
+                    throw e;
+                }
+                log.warn("出入库发生锁冲突，重试第{}次: {}", attempt, e.getMostSpecificCause().getMessage());
+                try {
+                    Thread.sleep(ThreadLocalRandom.current().nextInt(1, LOCK_RETRY_BACKOFF_MILLIS * attempt + 1));
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * 新建化学品的主库存记录，调用前须已锁定库存总数计数器；之后可用selectMutatedStock读取
+     * @return 影响行数
+     */
+    private int createStock(Integer chemicalId, Double amount) {
+        int rows = inventoryMapper.insertStock(chemicalId, amount, inventoryMapper.selectReceiptUnit(chemicalId));
+        Inventory created = inventoryMapper.selectMutatedStock();
+        inventoryCounterMapper.add(InventoryCounterMapper.INVENTORY_TOTAL, 1);
+        existenceGuard.added(CacheNames.INVENTORY, created.getId());
+        log.info("化学品无库存记录，新建库存: chemicalId={}, inventoryId={}", chemicalId, created.getId());
+        return rows;
+    }
+
+    /**
+     * 出入库合并提交统计
+     * @return 统计数据，未开启时返回null
+     */
+    @Override
+    public Map<String, Object> getGroupCommitStatistics() {
+        return stockGroupCommitter == null ? null : stockGroupCommitter.getStatistics();
+    }
+
+    /**
+     * 是否走合并提交：调用方已在事务中时（如出入库记录与库存一起提交）必须留在该事务内，不能合并
+     */
+    private boolean useGroupCommit() {
+        return stockGroupCommitter != null && !TransactionSynchronizationManager.isActualTransactionActive();
+    }
+
+    /**
+     * 人工修改后记录调整流水
+     * @param before 修改前的库存记录
+     * @param newAmount 修改后的数量（null表示未修改数量）
+     */
+    private void recordAdjustment(Inventory before, Double newAmount) {
+        if (before == null || newAmount == null) {
+            return;
+        }
+        double oldAmount = before.getCurrentAmount() == null ? 0D : before.getCurrentAmount();
+        inventoryMovementService.record(before.getId(), before.getChemicalId(), InventoryMovement.TYPE_ADJUST,
+                newAmount - oldAmount, newAmount);
+    }
+
+    /**
+     * 人工修改库存后，在事务提交后让内存账本重新加载余额
+     */
+    private void resyncLedgerAfterCommit() {
+        if (stockLedger == null) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            stockLedger.resync();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                stockLedger.resync();
+            }
+        });
+    }
+
+    /**
+     * 通知统计聚合器库存数量已变化（事务提交后生效）
+     */
+    private void statsStockChanged(Integer inventoryId, Integer chemicalId, Double amount, Long movementId) {
+        if (inventoryStatsAggregator != null) {
+            inventoryStatsAggregator.onStockChanged(inventoryId, chemicalId, amount, movementId);
+        }
+    }
+
+    /**
+     * 清除单条库存缓存（事务提交后生效）
+     */
+    private void evictInventoryCache(Integer inventoryId) {
+        Cache cache = cacheManager.getCache(CacheNames.INVENTORY);
+        if (cache != null) {
+            cache.evict(inventoryId);
+        }
+    }
+
+    /**
+     * 库存记录被人工修改后，通知统计聚合器重新读取该记录（事务提交后生效）
+     */
+    private void refreshStatsAfterCommit(Integer inventoryId) {
+        if (inventoryStatsAggregator != null) {
+            inventoryStatsAggregator.onRowChanged(inventoryId);
         }
-        
-        // 更新库存
-        Double newAmount = inventory.getCurrentAmount() - amount;
-        inventory.setCurrentAmount(newAmount);
-        inventory.setUpdateTime(new Date());
-        return inventoryMapper.updateInventory(inventory) > 0;
     }
 
     /**
@@ -1,19 +1,67 @@
 package com.vueones.service.impl;
 
+import com.vueones.cache.QueryTags;
+import com.vueones.dto.OutboundResult;
+import com.vueones.dto.StockMutationResult;
+import com.vueones.entity.Chemical;
+import com.vueones.entity.LotAllocation;
 import com.vueones.entity.OutboundRecord;
+import com.vueones.ledger.LotAllocator;
+import com.vueones.ledger.MovementColumnStore;
+import com.vueones.mapper.InventoryLotMapper;
 import com.vueones.mapper.OutboundRecordMapper;
+import com.vueones.mapper.RecordRollupMapper;
+import com.vueones.service.IChemicalService;
+import com.vueones.service.IInventoryService;
 import com.vueones.service.IOutboundRecordService;
+import com.vueones.service.IRecordRollupService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Date;
+import java.util.Set;
+import java.util.stream.Collectors;
+
 @Service
 public class OutboundRecordServiceImpl implements IOutboundRecordService {
     
+    private static final Logger log = LoggerFactory.getLogger(OutboundRecordServiceImpl.class);
+
+    /** 统计缓存的标签分组，记录增删或出库时间、数量变化时按化学品与月份失效 */
+    private static final String SUM_TAG_GROUP = "outbound_record_amount";
+
     @Autowired
     private OutboundRecordMapper outboundRecordMapper;
+
+    @Autowired
+    private InventoryLotMapper inventoryLotMapper;
+
+    @Autowired
+    private IInventoryService inventoryService;
+
+    @Autowired
+    private IChemicalService chemicalService;
+
+    @Autowired
+    private IRecordRollupService recordRollupService;
+
+    @Autowired
+    private QueryTags queryTags;
+
+    /** 库存批次分配，仅在 app.inventory.lot.enabled=true 时存在 */
+    @Autowired(required = false)
+    private LotAllocator lotAllocator;
+
+    /** 内存列式流水，仅在 app.inventory.movement-store.enabled=true 时存在 */
+    @Autowired(required = false)
+    private MovementColumnStore movementColumnStore;
     /**
      * 添加出库记录
      * @param record 出库记录
@@ -25,7 +73,90 @@ public class OutboundRecordServiceImpl implements IOutboundRecordService {
         if (record.getCreateTime() == null) {
             record.setCreateTime(new Date());
         }
-        return outboundRecordMapper.insert(record);
+        int rows = outboundRecordMapper.insert(record);
+        if (rows > 0) {
+            if (lotAllocator != null) {
+                lotAllocator.allocate(record.getId(), record.getChemicalId(), record.getAmount());
+            }
+            recordRollupService.recordsAdded(RecordRollupMapper.TYPE_OUTBOUND, Collections.singletonList(record.getId()));
+            if (movementColumnStore != null) {
+                movementColumnStore.recordsChanged(RecordRollupMapper.TYPE_OUTBOUND, Collections.singletonList(record.getId()));
+            }
+            queryTags.invalidateAfterCommit(queryTags.recordTags(SUM_TAG_GROUP, record.getChemicalId(), record.getOutboundTime()));
+        }
+        return rows;
+    }
+    /**
+     * 出库
+     * 先执行条件扣减（库存不足时影响行数为0，直接返回），成功后在同一事务中写入出库记录；
+     * 只有失败时才额外查询化学品与库存，用于给出具体原因
+     * @param record 出库记录
+     * @return 出库结果
+     */
+    @Override
+    @Transactional
+    public OutboundResult reserveAndRecordOutbound(OutboundRecord record) {
+        if (record.getChemicalId() == null) {
+            return OutboundResult.failure(OutboundResult.Status.INVALID_REQUEST, "缺少化学品ID");
+        }
+        if (record.getAmount() == null || record.getAmount() <= 0) {
+            return OutboundResult.failure(OutboundResult.Status.INVALID_REQUEST, "出库数量必须大于0");
+        }
+
+        StockMutationResult stock = inventoryService.applyStorageOut(record.getChemicalId(), record.getAmount());
+        Chemical chemical = chemicalService.selectChemicalById(record.getChemicalId());
+        if (!stock.isSuccess()) {
+            if (chemical == null) {
+                log.warn("找不到ID为 {} 的化学品信息", record.getChemicalId());
+                return OutboundResult.failure(OutboundResult.Status.CHEMICAL_NOT_FOUND, "找不到指定的化学品");
+            }
+            Double currentInventory = inventoryService.getTotalAmount(record.getChemicalId());
+            log.warn("库存不足，当前库存: {}, 需要出库: {}", currentInventory, record.getAmount());
+            return OutboundResult.failure(OutboundResult.Status.INSUFFICIENT_STOCK,
+                    "库存不足，当前库存: " + currentInventory + ", 需要出库: " + record.getAmount());
+        }
+        if (chemical == null) {
+            // 有库存记录却没有化学品，属于脏数据，回滚扣减
+            throw new IllegalStateException("找不到ID为 " + record.getChemicalId() + " 的化学品信息");
+        }
+
+        Date now = new Date();
+        if (record.getCreateTime() == null) {
+            record.setCreateTime(now);
+        }
+        if (record.getOutboundTime() == null) {
+            record.setOutboundTime(now);
+        }
+        record.setChemicalName(chemical.getName());
+        record.setInventoryId(stock.getInventoryId());
+        outboundRecordMapper.insert(record);
+        recordRollupService.recordsAdded(RecordRollupMapper.TYPE_OUTBOUND, Collections.singletonList(record.getId()));
+        if (movementColumnStore != null) {
+            movementColumnStore.recordsChanged(RecordRollupMapper.TYPE_OUTBOUND, Collections.singletonList(record.getId()));
+        }
+        queryTags.invalidateAfterCommit(queryTags.recordTags(SUM_TAG_GROUP, record.getChemicalId(), record.getOutboundTime()));
+
+        if (lotAllocator != null) {
+            List<LotAllocation> allocations = lotAllocator.allocate(record.getId(), record.getChemicalId(), record.getAmount());
+            record.setAllocations(allocations);
+            // 未指定批次号且只涉及一个批次时回填批次号
+            if ((record.getBatchNo() == null || record.getBatchNo().isEmpty()) && allocations.size() == 1) {
+                record.setBatchNo(allocations.get(0).getBatchNo());
+                outboundRecordMapper.update(record);
+            }
+        }
+
+        log.info("出库成功，ID: {}, 库存ID: {}, 剩余库存: {}", record.getId(), stock.getInventoryId(), stock.getBalance());
+        return OutboundResult.success(record, stock.getInventoryId(), stock.getBalance());
+    }
+    /**
+     * 查询出库记录的批次分配
+     * @param outboundRecordId 出库记录id
+     * @return 批次分配列表
+     */
+    @Override
+    public List<LotAllocation> getLotAllocations(Integer outboundRecordId) {
+        return inventoryLotMapper.selectAllocationsByOutboundId(outboundRecordId);
     }
     /**
      * 更新出库记录
@@ -35,7 +166,36 @@ public class OutboundRecordServiceImpl implements IOutboundRecordService {
     @Override
     @Transactional
     public int updateOutboundRecord(OutboundRecord record) {
-        return outboundRecordMapper.update(record);
+        OutboundRecord before = outboundRecordMapper.selectById(record.getId());
+        if (before == null) {
+            return outboundRecordMapper.update(record);
+        }
+        // 先按修改前的内容从汇总中扣除，修改后再计入
+        List<Integer> ids = Collections.singletonList(record.getId());
+        recordRollupService.recordsRemoving(RecordRollupMapper.TYPE_OUTBOUND, ids);
+        int rows = outboundRecordMapper.update(record);
+        recordRollupService.recordsAdded(RecordRollupMapper.TYPE_OUTBOUND, ids);
+        if (rows > 0) {
+            Integer chemicalId = record.getChemicalId() != null ? record.getChemicalId() : before.getChemicalId();
+            Double amount = record.getAmount() != null ? record.getAmount() : before.getAmount();
+            if (lotAllocator != null && (!chemicalId.equals(before.getChemicalId())
+                    || Double.compare(amount, before.getAmount()) != 0)) {
+                // 化学品或数量变化时归还原分配，按修改后的内容重新分配
+                lotAllocator.release(record.getId());
+                lotAllocator.allocate(record.getId(), chemicalId, amount);
+            }
+            if (movementColumnStore != null) {
+                movementColumnStore.recordsChanged(RecordRollupMapper.TYPE_OUTBOUND, ids);
+            }
+            // 化学品不可修改，出库时间变化影响修改前后两个月份
+            Set<String> tags = new LinkedHashSet<>(
+                    queryTags.recordTags(SUM_TAG_GROUP, before.getChemicalId(), before.getOutboundTime()));
+            if (record.getOutboundTime() != null) {
+                tags.addAll(queryTags.recordTags(SUM_TAG_GROUP, before.getChemicalId(), record.getOutboundTime()));
+            }
+            queryTags.invalidateAfterCommit(tags);
+        }
+        return rows;
     }
     /**
      * 删除出库记录
@@ -45,7 +205,22 @@ public class OutboundRecordServiceImpl implements IOutboundRecordService {
     @Override
     @Transactional
     public int deleteOutboundRecord(Integer id) {
-        return outboundRecordMapper.deleteById(id);
+        OutboundRecord before = outboundRecordMapper.selectById(id);
+        if (before == null) {
+            return 0;
+        }
+        recordRollupService.recordsRemoving(RecordRollupMapper.TYPE_OUTBOUND, Collections.singletonList(id));
+        int rows = outboundRecordMapper.deleteById(id);
+        if (rows > 0) {
+            if (lotAllocator != null) {
+                lotAllocator.release(id);
+            }
+            if (movementColumnStore != null) {
+                movementColumnStore.recordsChanged(RecordRollupMapper.TYPE_OUTBOUND, Collections.singletonList(id));
+            }
+            queryTags.invalidateAfterCommit(queryTags.recordTags(SUM_TAG_GROUP, before.getChemicalId(), before.getOutboundTime()));
+        }
+        return rows;
     }
     /**
      * 根据id查询出库记录
@@ -91,6 +266,7 @@ public class OutboundRecordServiceImpl implements IOutboundRecordService {
     
     /**
      * 统计出库总量
+     * 开启内存列式流水时直接读取内存；否则不限时间时从日汇总读取，按时间范围时查询出库记录
      * @param chemicalId 化学品id
      * @param startTime 开始时间
      * @param endTime 结束时间
@@ -98,6 +274,12 @@ public class OutboundRecordServiceImpl implements IOutboundRecordService {
      */
     @Override
     public Double sumAmountByChemicalId(Integer chemicalId, Date startTime, Date endTime) {
+        if (movementColumnStore != null) {
+            return movementColumnStore.sumAmount(RecordRollupMapper.TYPE_OUTBOUND, chemicalId, startTime, endTime);
+        }
+        if (startTime == null && endTime == null) {
+            return recordRollupService.sumAmount(RecordRollupMapper.TYPE_OUTBOUND, chemicalId, null, null, null);
+        }
         return outboundRecordMapper.sumAmountByChemicalId(chemicalId, startTime, endTime);
     }
     
@@ -119,7 +301,25 @@ public class OutboundRecordServiceImpl implements IOutboundRecordService {
                 record.setCreateTime(now);
             }
         }
-        return outboundRecordMapper.batchInsert(records);
+        int rows = outboundRecordMapper.batchInsert(records);
+        if (rows > 0) {
+            List<Integer> ids = records.stream().map(OutboundRecord::getId).collect(Collectors.toList());
+            if (lotAllocator != null) {
+                for (OutboundRecord record : records) {
+                    lotAllocator.allocate(record.getId(), record.getChemicalId(), record.getAmount());
+                }
+            }
+            recordRollupService.recordsAdded(RecordRollupMapper.TYPE_OUTBOUND, ids);
+            if (movementColumnStore != null) {
+                movementColumnStore.recordsChanged(RecordRollupMapper.TYPE_OUTBOUND, ids);
+            }
+            Set<String> tags = new LinkedHashSet<>();
+            for (OutboundRecord record : records) {
+                tags.addAll(queryTags.recordTags(SUM_TAG_GROUP, record.getChemicalId(), record.getOutboundTime()));
+            }
+            queryTags.invalidateAfterCommit(tags);
+        }
+        return rows;
     }
     
     /**
@@ -128,8 +328,9 @@ public class OutboundRecordServiceImpl implements IOutboundRecordService {
      */
     @Override
     public int getMonthlyOutboundCount(Integer chemicalId, String chemicalName) {
-        // 直接调用mapper的getMonthlyOutboundCount方法
-        return outboundRecordMapper.getMonthlyOutboundCount(chemicalId, chemicalName);
+        // 与原先的统计口径一致，为全部化学品本月出库记录数，从日汇总读取
+        LocalDate month = LocalDate.now().withDayOfMonth(1);
+        return recordRollupService.countRecords(RecordRollupMapper.TYPE_OUTBOUND, null, null, month, month.plusMonths(1));
     }
     
     /**
@@ -137,8 +338,9 @@ public class OutboundRecordServiceImpl implements IOutboundRecordService {
      * @return 当日出库记录数量
      */
     public int getDailyOutboundCount(Integer chemicalId, String chemicalName) {
-        // 直接调用mapper的getDailyOutboundCount方法
-        return outboundRecordMapper.getDailyOutboundCount(chemicalId, chemicalName);
+        // 与原先的统计口径一致，为全部化学品当日出库记录数，从日汇总读取
+        LocalDate today = LocalDate.now();
+        return recordRollupService.countRecords(RecordRollupMapper.TYPE_OUTBOUND, null, null, today, today.plusDays(1));
     }
     /**
      * 获取当日出库记录次数
@@ -146,8 +348,8 @@ public class OutboundRecordServiceImpl implements IOutboundRecordService {
      */
     @Override
     public int getDailyOutboundTimes(Integer chemicalId, String chemicalName) {
-        Integer result = outboundRecordMapper.getDailyOutboundTimes(chemicalId, chemicalName);
-        return result != null ? result : 0;
+        return recordRollupService.countActiveMinutes(RecordRollupMapper.TYPE_OUTBOUND, chemicalId, chemicalName,
+                LocalDate.now());
     }
 
     /**
@@ -156,7 +358,8 @@ public class OutboundRecordServiceImpl implements IOutboundRecordService {
      */
     @Override
     public int getMonthlyOutboundTimes(Integer chemicalId, String chemicalName) {
-        Integer result = outboundRecordMapper.getMonthlyOutboundTimes(chemicalId, chemicalName);
-        return result != null ? result : 0;
+        LocalDate month = LocalDate.now().withDayOfMonth(1);
+        return recordRollupService.countActiveDays(RecordRollupMapper.TYPE_OUTBOUND, chemicalId, chemicalName,
+                month, month.plusMonths(1));
     }
 } 
\ No newline at end of file
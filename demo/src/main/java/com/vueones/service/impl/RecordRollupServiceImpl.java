@@ -0,0 +1,126 @@
+package com.vueones.service.impl;
+
+import com.vueones.mapper.RecordRollupMapper;
+import com.vueones.service.IRecordRollupService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+
+@Service
+public class RecordRollupServiceImpl implements IRecordRollupService {
+
+    private static final Logger log = LoggerFactory.getLogger(RecordRollupServiceImpl.class);
+
+    private static final List<String> TYPES = Arrays.asList(
+            RecordRollupMapper.TYPE_STORAGE, RecordRollupMapper.TYPE_OUTBOUND, RecordRollupMapper.TYPE_USAGE);
+
+    /** 每条汇总语句携带的记录ID上限 */
+    private static final int BATCH_SIZE = 500;
+
+    @Autowired
+    private RecordRollupMapper recordRollupMapper;
+
+    /**
+     * 计入记录
+     * @param type 记录类型
+     * @param ids 记录ID
+     */
+    @Override
+    public void recordsAdded(String type, Collection<Integer> ids) {
+        apply(type, ids, 1);
+    }
+
+    /**
+     * 扣除记录
+     * @param type 记录类型
+     * @param ids 记录ID
+     */
+    @Override
+    public void recordsRemoving(String type, Collection<Integer> ids) {
+        apply(type, ids, -1);
+    }
+
+    /**
+     * 全量重建汇总，重建期间扫描整张记录表，应在低峰执行
+     * @param type 记录类型
+     */
+    @Override
+    @Transactional
+    public void rebuild(String type) {
+        recordRollupMapper.deleteDays(type);
+        recordRollupMapper.deleteMinutes(type);
+        int minutes = recordRollupMapper.rebuildMinutes(type);
+        int days = recordRollupMapper.rebuildDays(type);
+        log.info("重建记录汇总: type={}, minutes={}, days={}", type, minutes, days);
+    }
+
+    /**
+     * 汇总为空而记录表有数据时全量建立汇总
+     */
+    @Override
+    @Transactional
+    public void seedIfEmpty() {
+        for (String type : TYPES) {
+            if (recordRollupMapper.existsRollup(type) == null && recordRollupMapper.existsRecord(type) != null) {
+                rebuild(type);
+            }
+        }
+    }
+
+    @Override
+    public int countRecords(String type, Integer chemicalId, String chemicalName, LocalDate from, LocalDate to) {
+        Long count = recordRollupMapper.sumRecordCount(type, chemicalId, chemicalName, from, to);
+        return count == null ? 0 : count.intValue();
+    }
+
+    @Override
+    public double sumAmount(String type, Integer chemicalId, String chemicalName, LocalDate from, LocalDate to) {
+        Double amount = recordRollupMapper.sumAmount(type, chemicalId, chemicalName, from, to);
+        return amount == null ? 0D : amount;
+    }
+
+    @Override
+    public int countActiveDays(String type, Integer chemicalId, String chemicalName, LocalDate from, LocalDate to) {
+        Integer days = recordRollupMapper.countActiveDays(type, chemicalId, chemicalName, from, to);
+        return days == null ? 0 : days;
+    }
+
+    @Override
+    public int countActiveMinutes(String type, Integer chemicalId, String chemicalName, LocalDate date) {
+        Integer minutes = recordRollupMapper.countActiveMinutes(type, chemicalId, chemicalName, date);
+        return minutes == null ? 0 : minutes;
+    }
+
+    @Override
+    public int countActiveChemicals(String type, LocalDateTime since) {
+        Integer chemicals = recordRollupMapper.countActiveChemicals(type, since.truncatedTo(ChronoUnit.MINUTES));
+        return chemicals == null ? 0 : chemicals;
+    }
+
+    /**
+     * 分批累加：先分钟汇总，再以累加后的分钟汇总调整日汇总
+     */
+    private void apply(String type, Collection<Integer> ids, int sign) {
+        if (ids == null || ids.isEmpty()) {
+            return;
+        }
+        List<Integer> list = new ArrayList<>(ids);
+        list.removeIf(Objects::isNull);
+        for (int from = 0; from < list.size(); from += BATCH_SIZE) {
+            List<Integer> batch = list.subList(from, Math.min(list.size(), from + BATCH_SIZE));
+            recordRollupMapper.applyMinutes(type, batch, sign);
+            recordRollupMapper.applyDays(type, batch, sign);
+        }
+    }
+}
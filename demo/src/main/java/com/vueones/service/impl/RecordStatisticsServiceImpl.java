@@ -0,0 +1,69 @@
+package com.vueones.service.impl;
+
+import com.vueones.cache.CacheNames;
+import com.vueones.cache.QueryTags;
+import com.vueones.dto.RecordStatistics;
+import com.vueones.mapper.RecordRollupMapper;
+import com.vueones.service.IRecordStatisticsService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Date;
+
+@Service
+public class RecordStatisticsServiceImpl implements IRecordStatisticsService {
+
+    private static final Logger log = LoggerFactory.getLogger(RecordStatisticsServiceImpl.class);
+
+    @Autowired
+    private RecordRollupMapper recordRollupMapper;
+
+    @Autowired
+    private QueryTags queryTags;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    /**
+     * 获取统计
+     * 缓存key带上当日日期与本月的标签版本（标签分组为各记录服务的总量分组 类型_record_amount，
+     * 记录增删或时间、数量变化时递增）；计算不限时间的合计时依赖全部时间的标签
+     * @param type 记录类型
+     * @param chemicalId 化学品ID
+     * @param chemicalName 化学品名称
+     * @param withTotal 是否同时计算不限时间的数量合计
+     * @return 统计结果
+     */
+    @Override
+    public RecordStatistics getStatistics(String type, Integer chemicalId, String chemicalName, boolean withTotal) {
+        LocalDate today = LocalDate.now();
+        LocalDate monthStart = today.withDayOfMonth(1);
+        String key = queryTags.key(tagGroup(type), chemicalId,
+                withTotal ? null : toDate(monthStart), withTotal ? null : toDate(today),
+                new Object[]{type, chemicalId, chemicalName, withTotal, today});
+        return cacheManager.getCache(CacheNames.RECORD_STATISTICS).get(key, () -> {
+            log.info("从记录汇总查询统计, type: {}, chemicalId: {}, chemicalName: {}, withTotal: {}",
+                    type, chemicalId, chemicalName, withTotal);
+            return recordRollupMapper.selectStatistics(type, chemicalId, chemicalName,
+                    monthStart, today, today.plusDays(1), withTotal);
+        });
+    }
+
+    /**
+     * 记录类型对应的总量标签分组
+     * @param type 记录类型
+     * @return 标签分组
+     */
+    private static String tagGroup(String type) {
+        return type + "_record_amount";
+    }
+
+    private static Date toDate(LocalDate date) {
+        return Date.from(date.atStartOfDay(ZoneId.systemDefault()).toInstant());
+    }
+}
@@ -1,13 +1,22 @@
 package com.vueones.service.impl;
 
+import com.vueones.cache.BatchCache;
+import com.vueones.cache.CacheNames;
+import com.vueones.cache.ExistenceGuard;
+import com.vueones.cache.CanonicalKeyGenerator;
+import com.vueones.cache.QueryTags;
 import com.vueones.entity.StorageRecord;
+import com.vueones.ledger.LotAllocator;
+import com.vueones.ledger.MovementColumnStore;
+import com.vueones.mapper.RecordRollupMapper;
 import com.vueones.mapper.StorageRecordMapper;
 import com.vueones.service.IStorageRecordService;
 import com.vueones.mapper.ChemicalMapper;
 import com.vueones.entity.Chemical;
 import com.vueones.service.IInventoryService;
-import com.vueones.util.RedisUtil;
+import com.vueones.service.IRecordRollupService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
@@ -15,24 +24,31 @@ import org.springframework.transaction.annotation.Transactional;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.time.LocalDate;
+import java.util.Collections;
 import java.util.List;
 import java.util.Date;
 import java.util.ArrayList;
-import java.util.concurrent.TimeUnit;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 
 @Service
 public class StorageRecordServiceImpl implements IStorageRecordService {
     
     private static final Logger log = LoggerFactory.getLogger(StorageRecordServiceImpl.class);
-    
-    // 缓存相关常量
-    private static final String CACHE_KEY_STORAGE_RECORD = "storage_record:";
-    private static final String CACHE_KEY_STORAGE_RECORD_LIST = "storage_record_list:";
-    private static final String CACHE_KEY_STORAGE_RECORD_COUNT = "storage_record_count:";
-    private static final String CACHE_KEY_STORAGE_RECORD_SUM = "storage_record_sum:";
-    private static final long CACHE_EXPIRE_TIME = 30; // 缓存过期时间（分钟）
+
+    /** 列表与数量缓存的标签分组，记录增删或入库时间、供应商变化时按化学品与月份选择性失效 */
+    private static final String TAG_GROUP = "storage_record";
+    /** 总量缓存与入库统计缓存的标签分组，记录增删或入库时间、数量变化时失效 */
+    private static final String SUM_TAG_GROUP = "storage_record_amount";
+    /** 带标签版本的key：化学品ID与入库时间范围决定依赖的标签 */
+    private static final String TAGGED_KEY = "@queryTags.key('" + TAG_GROUP + "', #chemicalId, #startTime, #endTime, #root.args)";
+    private static final String SUM_TAGGED_KEY = "@queryTags.key('" + SUM_TAG_GROUP + "', #chemicalId, #startTime, #endTime, #root.args)";
     
     @Autowired
     private StorageRecordMapper storageRecordMapper;
@@ -42,83 +58,26 @@ public class StorageRecordServiceImpl implements IStorageRecordService {
     
     @Autowired
     private IInventoryService inventoryService;
-    
+
     @Autowired
-    private RedisUtil redisUtil;
-    
-    /**
-     * 清除所有StorageRecord相关的缓存
-     */
-    public void clearAllStorageRecordCaches() {
-        log.info("清除所有StorageRecord相关的缓存");
-        // 使用pattern匹配删除所有相关缓存
-        String[] patterns = {
-            CACHE_KEY_STORAGE_RECORD + "*",
-            CACHE_KEY_STORAGE_RECORD_LIST + "*",
-            CACHE_KEY_STORAGE_RECORD_COUNT + "*",
-            CACHE_KEY_STORAGE_RECORD_SUM + "*"
-        };
-        
-        for (String pattern : patterns) {
-            Set<String> keys = redisUtil.keys(pattern);
-            if (keys != null && !keys.isEmpty()) {
-                for (String key : keys) {
-                    redisUtil.del(key);
-                }
-                log.info("已清除pattern: {} 相关的 {} 个缓存", pattern, keys.size());
-            }
-        }
-    }
-    
-    /**
-     * 清除单个StorageRecord缓存
-     */
-    public void clearStorageRecordCache(Integer id) {
-        if (id != null) {
-            String cacheKey = CACHE_KEY_STORAGE_RECORD + id;
-            redisUtil.del(cacheKey);
-            log.info("已清除StorageRecord缓存: {}", cacheKey);
-        }
-    }
-    
-    /**
-     * 清除StorageRecord列表缓存
-     */
-    public void clearStorageRecordListCache() {
-        Set<String> keys = redisUtil.keys(CACHE_KEY_STORAGE_RECORD_LIST + "*");
-        if (keys != null && !keys.isEmpty()) {
-            for (String key : keys) {
-                redisUtil.del(key);
-            }
-            log.info("已清除StorageRecord列表缓存: {} 个", keys.size());
-        }
-    }
-    
-    /**
-     * 清除StorageRecord统计缓存
-     */
-    public void clearStorageRecordCountCache() {
-        Set<String> keys = redisUtil.keys(CACHE_KEY_STORAGE_RECORD_COUNT + "*");
-        if (keys != null && !keys.isEmpty()) {
-            for (String key : keys) {
-                redisUtil.del(key);
-            }
-            log.info("已清除StorageRecord统计缓存: {} 个", keys.size());
-        }
-    }
+    private QueryTags queryTags;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private ExistenceGuard existenceGuard;
+
+    @Autowired
+    private IRecordRollupService recordRollupService;
     
-    /**
-     * 清除StorageRecord汇总缓存
-     */
-    public void clearStorageRecordSumCache() {
-        Set<String> keys = redisUtil.keys(CACHE_KEY_STORAGE_RECORD_SUM + "*");
-        if (keys != null && !keys.isEmpty()) {
-            for (String key : keys) {
-                redisUtil.del(key);
-            }
-            log.info("已清除StorageRecord汇总缓存: {} 个", keys.size());
-        }
-    }
+    /** 库存批次分配，仅在 app.inventory.lot.enabled=true 时存在 */
+    @Autowired(required = false)
+    private LotAllocator lotAllocator;
+
+    /** 内存列式流水，仅在 app.inventory.movement-store.enabled=true 时存在 */
+    @Autowired(required = false)
+    private MovementColumnStore movementColumnStore;
     
     /**
      * 添加入库记录
@@ -127,7 +86,6 @@ public class StorageRecordServiceImpl implements IStorageRecordService {
      */
     @Override
     @Transactional
-    @CacheEvict(value = {"storageRecordList", "storageRecordCount", "storageRecordSum"}, allEntries = true)
     public int addStorageRecord(StorageRecord record) {
         try {
             log.info("Service层接收到添加入库记录请求");
@@ -184,6 +142,16 @@ public class StorageRecordServiceImpl implements IStorageRecordService {
             
             int result = storageRecordMapper.insert(record);
             log.info("插入入库记录结果: {}", result);
+            if (result > 0) {
+                existenceGuard.added(CacheNames.STORAGE_RECORD, record.getId());
+                recordRollupService.recordsAdded(RecordRollupMapper.TYPE_STORAGE, Collections.singletonList(record.getId()));
+                if (movementColumnStore != null) {
+                    movementColumnStore.recordsChanged(RecordRollupMapper.TYPE_STORAGE, Collections.singletonList(record.getId()));
+                }
+                Set<String> tags = new LinkedHashSet<>();
+                collectTags(tags, record.getChemicalId(), record.getStorageTime(), true, true);
+                queryTags.invalidateAfterCommit(tags);
+            }
             
             // 如果入库成功，更新库存并清除缓存
             if (result > 0) {
@@ -194,8 +162,10 @@ public class StorageRecordServiceImpl implements IStorageRecordService {
                 } else {
                     log.warn("入库成功但更新库存失败, 化学品ID: {}, 入库量: {}", record.getChemicalId(), record.getAmount());
                 }
-                // 清除所有相关缓存
-                clearAllStorageRecordCaches();
+                // 每次入库形成一个库存批次
+                if (lotAllocator != null) {
+                    lotAllocator.receive(record);
+                }
             }
             
             return result;
@@ -211,18 +181,41 @@ public class StorageRecordServiceImpl implements IStorageRecordService {
      */
     @Override
     @Transactional
-    @CacheEvict(value = {"storageRecord", "storageRecordList", "storageRecordCount", "storageRecordSum"}, allEntries = true)
+    @CacheEvict(cacheNames = CacheNames.STORAGE_RECORD, key = "#record.id")
     public int updateStorageRecord(StorageRecord record) {
-        // 清除单个记录的缓存
-        String cacheKey = CACHE_KEY_STORAGE_RECORD + record.getId();
-        redisUtil.del(cacheKey);
-        
-        int result = storageRecordMapper.update(record);
-        if (result > 0) {
-            // 清除所有相关缓存
-            clearAllStorageRecordCaches();
+        StorageRecord before = storageRecordMapper.selectById(record.getId());
+        if (before == null) {
+            return storageRecordMapper.update(record);
+        }
+        // 列表缓存只保存ID，只改备注、批号等字段时只需清除这条记录自身的缓存；
+        // 入库时间变化影响修改前后两个月份的查询，化学品不可修改
+        boolean timeChanged = record.getStorageTime() != null && (before.getStorageTime() == null
+                || record.getStorageTime().getTime() != before.getStorageTime().getTime());
+        boolean supplierChanged = record.getSupplier() != null && !record.getSupplier().equals(before.getSupplier());
+        boolean amountChanged = record.getAmount() != null && (before.getAmount() == null
+                || Double.compare(record.getAmount(), before.getAmount()) != 0);
+        // 入库时间或数量变化时先按修改前的内容从汇总中扣除，修改后再计入
+        List<Integer> rollupIds = timeChanged || amountChanged
+                ? Collections.singletonList(record.getId()) : Collections.emptyList();
+        recordRollupService.recordsRemoving(RecordRollupMapper.TYPE_STORAGE, rollupIds);
+        int rows = storageRecordMapper.update(record);
+        if (rows > 0) {
+            if (lotAllocator != null) {
+                lotAllocator.storageRecordChanged(before, record);
+            }
+            recordRollupService.recordsAdded(RecordRollupMapper.TYPE_STORAGE, rollupIds);
+            if (movementColumnStore != null) {
+                movementColumnStore.recordsChanged(RecordRollupMapper.TYPE_STORAGE, Collections.singletonList(record.getId()));
+            }
+            Set<String> tags = new LinkedHashSet<>();
+            collectTags(tags, before.getChemicalId(), before.getStorageTime(),
+                    timeChanged || supplierChanged, timeChanged || amountChanged);
+            if (timeChanged) {
+                collectTags(tags, before.getChemicalId(), record.getStorageTime(), true, true);
+            }
+            queryTags.invalidateAfterCommit(tags);
         }
-        return result;
+        return rows;
     }
     /**
      * 删除入库记录
@@ -231,18 +224,25 @@ public class StorageRecordServiceImpl implements IStorageRecordService {
      */
     @Override
     @Transactional
-    @CacheEvict(value = {"storageRecord", "storageRecordList", "storageRecordCount", "storageRecordSum"}, allEntries = true)
+    @CacheEvict(cacheNames = CacheNames.STORAGE_RECORD)
     public int deleteStorageRecord(Integer id) {
-        // 清除单个记录的缓存
-        String cacheKey = CACHE_KEY_STORAGE_RECORD + id;
-        redisUtil.del(cacheKey);
-        
-        int result = storageRecordMapper.deleteById(id);
-        if (result > 0) {
-            // 清除所有相关缓存
-            clearAllStorageRecordCaches();
+        StorageRecord before = storageRecordMapper.selectById(id);
+        if (before != null) {
+            recordRollupService.recordsRemoving(RecordRollupMapper.TYPE_STORAGE, Collections.singletonList(id));
+        }
+        int rows = storageRecordMapper.deleteById(id);
+        if (rows > 0 && lotAllocator != null) {
+            lotAllocator.storageRecordRemoved(id);
+        }
+        if (rows > 0 && movementColumnStore != null) {
+            movementColumnStore.recordsChanged(RecordRollupMapper.TYPE_STORAGE, Collections.singletonList(id));
+        }
+        if (rows > 0 && before != null) {
+            Set<String> tags = new LinkedHashSet<>();
+            collectTags(tags, before.getChemicalId(), before.getStorageTime(), true, true);
+            queryTags.invalidateAfterCommit(tags);
         }
-        return result;
+        return rows;
     }
     /**
      * 根据id查询入库记录
@@ -250,27 +250,12 @@ public class StorageRecordServiceImpl implements IStorageRecordService {
      * @return 入库记录
      */
     @Override
-    @Cacheable(value = "storageRecord", key = "#id", unless = "#result == null")
+    @Cacheable(cacheNames = CacheNames.STORAGE_RECORD, unless = "#result == null")
     public StorageRecord getStorageRecordById(Integer id) {
-        log.info("从数据库查询入库记录, id: {}", id);
-        
-        // 尝试从缓存获取
-        String cacheKey = CACHE_KEY_STORAGE_RECORD + id;
-        Object cachedRecord = redisUtil.get(cacheKey);
-        if (cachedRecord != null) {
-            log.info("从缓存获取入库记录, id: {}", id);
-            return (StorageRecord) cachedRecord;
-        }
-        
-        // 从数据库获取
-        StorageRecord record = storageRecordMapper.selectById(id);
-        
-        // 放入缓存
-        if (record != null) {
-            redisUtil.set(cacheKey, record, TimeUnit.MINUTES.toSeconds(CACHE_EXPIRE_TIME));
-        }
-        
-        return record;
+        return existenceGuard.load(CacheNames.STORAGE_RECORD, id, () -> {
+            log.info("从数据库查询入库记录, id: {}", id);
+            return storageRecordMapper.selectById(id);
+        });
     }
     /**
      * 根据化学品id、化学品名称、供应商、入库时间查询入库记录
@@ -281,40 +266,61 @@ public class StorageRecordServiceImpl implements IStorageRecordService {
      * @param endTime 结束时间
      * @param offset 偏移量
      * @param size 分页大小
+     * 列表缓存只保存有序的ID列表，记录本身从单条记录缓存批量读取（一次MGET），
+     * 未命中的记录以一条IN查询加载并批量写回，同一条记录在缓存中只存一份
      * @return 入库记录列表
      */
     @Override
-    @Cacheable(value = "storageRecordList", key = "#chemicalId + '_' + #chemicalName + '_' + #supplier + '_' + #startTime + '_' + #endTime + '_' + #offset + '_' + #size", unless = "#result == null || #result.isEmpty()")
     public List<StorageRecord> getStorageRecordList(Integer chemicalId, String chemicalName, String supplier, Date startTime, Date endTime, Integer offset, Integer size) {
-        log.info("从数据库查询入库记录列表, chemicalId: {}, chemicalName: {}, supplier: {}, startTime: {}, endTime: {}, offset: {}, size: {}", 
-                chemicalId, chemicalName, supplier, startTime, endTime, offset, size);
-        
-        // 构建缓存key
-        String cacheKey = CACHE_KEY_STORAGE_RECORD_LIST + 
-                (chemicalId != null ? chemicalId : "null") + "_" + 
-                (chemicalName != null ? chemicalName : "null") + "_" + 
-                (supplier != null ? supplier : "null") + "_" + 
-                (startTime != null ? startTime.getTime() : "null") + "_" + 
-                (endTime != null ? endTime.getTime() : "null") + "_" + 
-                offset + "_" + size;
-        
-        // 尝试从缓存获取
-        Object cachedList = redisUtil.get(cacheKey);
-        if (cachedList != null) {
-            log.info("从缓存获取入库记录列表");
-            return (List<StorageRecord>) cachedList;
+        String key = queryTags.key(TAG_GROUP, chemicalId, startTime, endTime,
+                new Object[]{chemicalId, chemicalName, supplier, startTime, endTime, offset, size});
+        List<Integer> ids = cacheManager.getCache(CacheNames.STORAGE_RECORD_LIST).get(key, () -> {
+            log.info("从数据库查询入库记录列表, chemicalId: {}, chemicalName: {}, supplier: {}, startTime: {}, endTime: {}, offset: {}, size: {}", 
+                    chemicalId, chemicalName, supplier, startTime, endTime, offset, size);
+            List<Integer> result = storageRecordMapper.selectIdList(chemicalId, chemicalName, startTime, endTime, supplier, offset, size);
+            return result != null ? result : new ArrayList<>();
+        });
+        return hydrate(ids);
+    }
+
+    /**
+     * 按ID列表取出入库记录，保持ID顺序；已被删除的记录跳过
+     */
+    private List<StorageRecord> hydrate(List<Integer> ids) {
+        List<StorageRecord> records = new ArrayList<>();
+        if (ids == null || ids.isEmpty()) {
+            return records;
         }
-        
-        // 从数据库获取
-        List<StorageRecord> records = storageRecordMapper.selectList(chemicalId, chemicalName, startTime, endTime, supplier, offset, size);
-        List<StorageRecord> result = records != null ? records : new ArrayList<>();
-        
-        // 放入缓存
-        if (!result.isEmpty()) {
-            redisUtil.set(cacheKey, result, TimeUnit.MINUTES.toSeconds(CACHE_EXPIRE_TIME));
+        BatchCache cache = BatchCache.of(cacheManager.getCache(CacheNames.STORAGE_RECORD));
+        Map<Object, Integer> keys = new LinkedHashMap<>();
+        for (Integer id : ids) {
+            keys.put(CanonicalKeyGenerator.canonical(id), id);
         }
-        
-        return result;
+        Map<Object, Object> cached = cache.getAll(keys.keySet());
+        List<Integer> missing = new ArrayList<>();
+        keys.forEach((key, id) -> {
+            if (!cached.containsKey(key)) {
+                missing.add(id);
+            }
+        });
+        Map<Integer, StorageRecord> loaded = new HashMap<>();
+        if (!missing.isEmpty()) {
+            log.info("从数据库批量查询入库记录, ids: {}", missing.size());
+            Map<Object, Object> backfill = new LinkedHashMap<>();
+            for (StorageRecord record : storageRecordMapper.selectByIds(missing)) {
+                loaded.put(record.getId(), record);
+                backfill.put(CanonicalKeyGenerator.canonical(record.getId()), record);
+            }
+            cache.putAll(backfill);
+        }
+        for (Integer id : ids) {
+            Object key = CanonicalKeyGenerator.canonical(id);
+            StorageRecord record = cached.containsKey(key) ? (StorageRecord) cached.get(key) : loaded.get(id);
+            if (record != null) {
+                records.add(record);
+            }
+        }
+        return records;
     }
     
     /**
@@ -327,34 +333,12 @@ public class StorageRecordServiceImpl implements IStorageRecordService {
      * @return 记录数量
      */
     @Override
-    @Cacheable(value = "storageRecordCount", key = "#chemicalId + '_' + #chemicalName + '_' + #supplier + '_' + #startTime + '_' + #endTime")
+    @Cacheable(cacheNames = CacheNames.STORAGE_RECORD_COUNT, key = TAGGED_KEY, sync = true)
     public int countStorageRecords(Integer chemicalId, String chemicalName, String supplier, Date startTime, Date endTime) {
         log.info("从数据库统计入库记录数量, chemicalId: {}, chemicalName: {}, supplier: {}, startTime: {}, endTime: {}", 
                 chemicalId, chemicalName, supplier, startTime, endTime);
-        
-        // 构建缓存key
-        String cacheKey = CACHE_KEY_STORAGE_RECORD_COUNT + 
-                (chemicalId != null ? chemicalId : "null") + "_" + 
-                (chemicalName != null ? chemicalName : "null") + "_" + 
-                (supplier != null ? supplier : "null") + "_" + 
-                (startTime != null ? startTime.getTime() : "null") + "_" + 
-                (endTime != null ? endTime.getTime() : "null");
-        
-        // 尝试从缓存获取
-        Object cachedCount = redisUtil.get(cacheKey);
-        if (cachedCount != null) {
-            log.info("从缓存获取入库记录数量");
-            return (int) cachedCount;
-        }
-        
-        // 从数据库获取
         Integer count = storageRecordMapper.countStorageRecords(chemicalId, chemicalName, supplier, startTime, endTime);
-        int result = count != null ? count : 0;
-        
-        // 放入缓存
-        redisUtil.set(cacheKey, result, TimeUnit.MINUTES.toSeconds(CACHE_EXPIRE_TIME));
-        
-        return result;
+        return count != null ? count : 0;
     }
     
     /**
@@ -366,34 +350,11 @@ public class StorageRecordServiceImpl implements IStorageRecordService {
      * @return 入库总量
      */
     @Override
-    @Cacheable(value = "storageRecordSum", key = "#chemicalId + '_' + #chemicalName + '_' + #startTime + '_' + #endTime")
+    @Cacheable(cacheNames = CacheNames.STORAGE_RECORD_SUM, key = SUM_TAGGED_KEY, sync = true)
     public Double sumStorageAmount(Integer chemicalId, String chemicalName, Date startTime, Date endTime) {
         log.info("从数据库计算入库总量, chemicalId: {}, chemicalName: {}, startTime: {}, endTime: {}", 
                 chemicalId, chemicalName, startTime, endTime);
-        
-        // 构建缓存key
-        String cacheKey = CACHE_KEY_STORAGE_RECORD_SUM + 
-                (chemicalId != null ? chemicalId : "null") + "_" + 
-                (chemicalName != null ? chemicalName : "null") + "_" + 
-                (startTime != null ? startTime.getTime() : "null") + "_" + 
-                (endTime != null ? endTime.getTime() : "null");
-        
-        // 尝试从缓存获取
-        Object cachedSum = redisUtil.get(cacheKey);
-        if (cachedSum != null) {
-            log.info("从缓存获取入库总量");
-            return (Double) cachedSum;
-        }
-        
-        // 从数据库获取
-        Double sum = storageRecordMapper.sumAmountByChemicalId(chemicalId, chemicalName, startTime, endTime);
-        
-        // 放入缓存
-        if (sum != null) {
-            redisUtil.set(cacheKey, sum, TimeUnit.MINUTES.toSeconds(CACHE_EXPIRE_TIME));
-        }
-        
-        return sum;
+        return storageRecordMapper.sumAmountByChemicalId(chemicalId, chemicalName, startTime, endTime);
     }
     
     /**
@@ -403,23 +364,34 @@ public class StorageRecordServiceImpl implements IStorageRecordService {
      */
     @Override
     @Transactional
-    @CacheEvict(value = {"storageRecordList", "storageRecordCount", "storageRecordSum"}, allEntries = true)
     public int batchAddStorageRecords(List<StorageRecord> records) {
         if (records == null || records.isEmpty()) {
             return 0;
         }
         // 设置创建时间
         Date now = new Date();
+        Set<String> tags = new LinkedHashSet<>();
         for (StorageRecord record : records) {
             if (record.getCreateTime() == null) {
                 record.setCreateTime(now);
             }
+            collectTags(tags, record.getChemicalId(), record.getStorageTime(), true, true);
         }
         
-        // 清除相关缓存
-        log.info("批量添加入库记录，清除相关缓存");
-        
-        return storageRecordMapper.batchInsert(records);
+        int rows = storageRecordMapper.batchInsert(records);
+        if (rows > 0) {
+            List<Integer> ids = records.stream().map(StorageRecord::getId).collect(Collectors.toList());
+            existenceGuard.added(CacheNames.STORAGE_RECORD, ids);
+            if (lotAllocator != null) {
+                lotAllocator.receiveAll(records);
+            }
+            recordRollupService.recordsAdded(RecordRollupMapper.TYPE_STORAGE, ids);
+            if (movementColumnStore != null) {
+                movementColumnStore.recordsChanged(RecordRollupMapper.TYPE_STORAGE, ids);
+            }
+            queryTags.invalidateAfterCommit(tags);
+        }
+        return rows;
     }
     
     /**
@@ -432,6 +404,10 @@ public class StorageRecordServiceImpl implements IStorageRecordService {
      */
     @Override
     public Double getTotalAmountByChemicalId(Integer chemicalId, String chemicalName, Date startTime, Date endTime) {
+        // 与合计语句一致只按化学品ID筛选
+        if (movementColumnStore != null) {
+            return movementColumnStore.sumAmount(RecordRollupMapper.TYPE_STORAGE, chemicalId, startTime, endTime);
+        }
         return storageRecordMapper.sumAmountByChemicalId(chemicalId, chemicalName, startTime, endTime);
     }
     
@@ -443,8 +419,9 @@ public class StorageRecordServiceImpl implements IStorageRecordService {
      */
     @Override
     public int getMonthlyStorageCount(Integer chemicalId, String chemicalName) {
-        // 直接调用mapper的getMonthlyStorageCount方法
-        return storageRecordMapper.getMonthlyStorageCount(chemicalId, chemicalName);
+        // 与原先的统计口径一致，为全部化学品本月入库记录数，从日汇总读取
+        LocalDate month = LocalDate.now().withDayOfMonth(1);
+        return recordRollupService.countRecords(RecordRollupMapper.TYPE_STORAGE, null, null, month, month.plusMonths(1));
     }
     /**
      * 获取月度入库次数
@@ -454,8 +431,9 @@ public class StorageRecordServiceImpl implements IStorageRecordService {
      */
     @Override
     public int getMonthlyStorageTimes(Integer chemicalId, String chemicalName) {
-        Integer result = storageRecordMapper.getMonthlyStorageTimes(chemicalId, chemicalName);
-        return result != null ? result : 0;
+        LocalDate month = LocalDate.now().withDayOfMonth(1);
+        return recordRollupService.countActiveDays(RecordRollupMapper.TYPE_STORAGE, chemicalId, chemicalName,
+                month, month.plusMonths(1));
     }
     
 
@@ -464,8 +442,9 @@ public class StorageRecordServiceImpl implements IStorageRecordService {
      * @return 当日入库数量
      */
     public int getDailyStorageCount(Integer chemicalId, String chemicalName) {
-        // 直接调用mapper的getDailyStorageCount方法
-        return storageRecordMapper.getDailyStorageCount(chemicalId, chemicalName);
+        // 与原先的统计口径一致，为全部化学品当日入库记录数，从日汇总读取
+        LocalDate today = LocalDate.now();
+        return recordRollupService.countRecords(RecordRollupMapper.TYPE_STORAGE, null, null, today, today.plusDays(1));
     }
 
     /**
@@ -476,8 +455,23 @@ public class StorageRecordServiceImpl implements IStorageRecordService {
      */
     @Override
     public int getDailyStorageTimes(Integer chemicalId, String chemicalName) {
-        Integer result = storageRecordMapper.getDailyStorageTimes(chemicalId, chemicalName);
-        return result != null ? result : 0;
+        return recordRollupService.countActiveMinutes(RecordRollupMapper.TYPE_STORAGE, chemicalId, chemicalName,
+                LocalDate.now());
     }
 
-}
\ No newline at end of file
+    /**
+     * 收集一条记录影响的查询标签
+     * @param chemicalId 化学品id
+     * @param storageTime 入库时间
+     * @param membership 是否影响列表与数量
+     * @param amount 是否影响总量
+     */
+    private void collectTags(Set<String> tags, Integer chemicalId, Date storageTime, boolean membership, boolean amount) {
+        if (membership) {
+            tags.addAll(queryTags.recordTags(TAG_GROUP, chemicalId, storageTime));
+        }
+        if (amount) {
+            tags.addAll(queryTags.recordTags(SUM_TAG_GROUP, chemicalId, storageTime));
+        }
+    }
+}
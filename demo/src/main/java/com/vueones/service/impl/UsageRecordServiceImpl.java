@@ -1,118 +1,60 @@
 package com.vueones.service.impl;
 
+import com.vueones.cache.CacheNames;
+import com.vueones.cache.ExistenceGuard;
+import com.vueones.entity.Chemical;
 import com.vueones.entity.UsageRecord;
+import com.vueones.ledger.MovementColumnStore;
+import com.vueones.mapper.RecordRollupMapper;
 import com.vueones.mapper.UsageRecordMapper;
+import com.vueones.service.IChemicalService;
 import com.vueones.service.IUsageRecordService;
 import com.vueones.service.IInventoryService;
-import com.vueones.util.RedisUtil;
+import com.vueones.service.IRecordRollupService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.Caching;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Collections;
 import java.util.List;
 import java.util.Date;
 import java.util.ArrayList;
-import java.util.concurrent.TimeUnit;
-import java.util.Set;
+import java.util.stream.Collectors;
 
 @Service
 public class UsageRecordServiceImpl implements IUsageRecordService {
     
     private static final Logger log = LoggerFactory.getLogger(UsageRecordServiceImpl.class);
-    
-    // 缓存相关常量
-    private static final String CACHE_KEY_USAGE_RECORD = "usage_record:";
-    private static final String CACHE_KEY_USAGE_RECORD_LIST = "usage_record_list:";
-    private static final String CACHE_KEY_USAGE_RECORD_COUNT = "usage_record_count:";
-    private static final String CACHE_KEY_USAGE_RECORD_SUM = "usage_record_sum:";
-    private static final long CACHE_EXPIRE_TIME = 30; // 缓存过期时间（分钟）
+
+    /** 按自然日、自然月统计的缓存key带上当日日期，跨日、跨月后不再命中前一天缓存的结果 */
+    private static final String STATISTICS_DAY_KEY = "#root.methodName + ':' + T(java.time.LocalDate).now()";
     
     @Autowired
     private UsageRecordMapper usageRecordMapper;
     
     @Autowired
     private IInventoryService inventoryService;
-    
+
     @Autowired
-    private RedisUtil redisUtil;
-    
-    /**
-     * 清除所有UsageRecord相关的缓存
-     * 在系统启动或需要刷新缓存时调用，避免ID重复问题
-     */
-    public void clearAllUsageRecordCaches() {
-        log.info("清除所有UsageRecord相关的缓存");
-        // 使用Spring Cache注解清除缓存
-        clearUsageRecordCache();
-        clearUsageRecordListCache();
-        clearUsageRecordCountCache();
-        clearUsageRecordSumCache();
-        
-        // 手动清除可能的遗留缓存
-        try {
-            // 获取并删除所有以CACHE_KEY_USAGE_RECORD开头的键
-            Set<String> usageRecordKeys = redisUtil.keys(CACHE_KEY_USAGE_RECORD + "*");
-            if (usageRecordKeys != null && !usageRecordKeys.isEmpty()) {
-                for (String key : usageRecordKeys) {
-                    redisUtil.del(key);
-                }
-                log.info("已清除{}个UsageRecord缓存", usageRecordKeys.size());
-            }
-            
-            // 获取并删除所有以CACHE_KEY_USAGE_RECORD_LIST开头的键
-            Set<String> usageRecordListKeys = redisUtil.keys(CACHE_KEY_USAGE_RECORD_LIST + "*");
-            if (usageRecordListKeys != null && !usageRecordListKeys.isEmpty()) {
-                for (String key : usageRecordListKeys) {
-                    redisUtil.del(key);
-                }
-                log.info("已清除{}个UsageRecordList缓存", usageRecordListKeys.size());
-            }
-            
-            // 获取并删除所有以CACHE_KEY_USAGE_RECORD_COUNT开头的键
-            Set<String> usageRecordCountKeys = redisUtil.keys(CACHE_KEY_USAGE_RECORD_COUNT + "*");
-            if (usageRecordCountKeys != null && !usageRecordCountKeys.isEmpty()) {
-                for (String key : usageRecordCountKeys) {
-                    redisUtil.del(key);
-                }
-                log.info("已清除{}个UsageRecordCount缓存", usageRecordCountKeys.size());
-            }
-            
-            // 获取并删除所有以CACHE_KEY_USAGE_RECORD_SUM开头的键
-            Set<String> usageRecordSumKeys = redisUtil.keys(CACHE_KEY_USAGE_RECORD_SUM + "*");
-            if (usageRecordSumKeys != null && !usageRecordSumKeys.isEmpty()) {
-                for (String key : usageRecordSumKeys) {
-                    redisUtil.del(key);
-                }
-                log.info("已清除{}个UsageRecordSum缓存", usageRecordSumKeys.size());
-            }
-        } catch (Exception e) {
-            log.error("清除UsageRecord缓存时发生错误", e);
-        }
-    }
-    
-    @CacheEvict(value = "usageRecord", allEntries = true)
-    public void clearUsageRecordCache() {
-        log.info("清除usageRecord缓存");
-    }
-    
-    @CacheEvict(value = "usageRecordList", allEntries = true)
-    public void clearUsageRecordListCache() {
-        log.info("清除usageRecordList缓存");
-    }
-    
-    @CacheEvict(value = "usageRecordCount", allEntries = true)
-    public void clearUsageRecordCountCache() {
-        log.info("清除usageRecordCount缓存");
-    }
-    
-    @CacheEvict(value = "usageRecordSum", allEntries = true)
-    public void clearUsageRecordSumCache() {
-        log.info("清除usageRecordSum缓存");
-    }
+    private ExistenceGuard existenceGuard;
+
+    @Autowired
+    private IRecordRollupService recordRollupService;
+
+    @Autowired
+    private IChemicalService chemicalService;
+
+    /** 内存列式流水，仅在 app.inventory.movement-store.enabled=true 时存在 */
+    @Autowired(required = false)
+    private MovementColumnStore movementColumnStore;
     
     /**
      * 添加使用记录
@@ -121,6 +63,7 @@ public class UsageRecordServiceImpl implements IUsageRecordService {
      */
     @Override
     @Transactional
+    @CacheEvict(cacheNames = {CacheNames.USAGE_RECORD_LIST, CacheNames.USAGE_RECORD_SUM, CacheNames.USAGE_STATISTICS}, allEntries = true)
     public int addUsageRecord(UsageRecord record) {
         if (record == null) {
             return 0;
@@ -131,7 +74,13 @@ public class UsageRecordServiceImpl implements IUsageRecordService {
             record.setCreateTime(new Date());
         }
         
-        return usageRecordMapper.insert(record);
+        int rows = usageRecordMapper.insert(record);
+        if (rows > 0) {
+            existenceGuard.added(CacheNames.USAGE_RECORD, record.getId());
+            recordRollupService.recordsAdded(RecordRollupMapper.TYPE_USAGE, Collections.singletonList(record.getId()));
+            movementsChanged(Collections.singletonList(record.getId()));
+        }
+        return rows;
     }
     /**
      * 更新使用记录
@@ -140,16 +89,23 @@ public class UsageRecordServiceImpl implements IUsageRecordService {
      */
     @Override
     @Transactional
-    @CacheEvict(value = {"usageRecord", "usageRecordList", "usageRecordCount", "usageRecordSum"}, allEntries = true)
+    @Caching(evict = {
+            @CacheEvict(cacheNames = CacheNames.USAGE_RECORD, key = "#record.id", condition = "#record != null"),
+            @CacheEvict(cacheNames = {CacheNames.USAGE_RECORD_LIST, CacheNames.USAGE_RECORD_SUM, CacheNames.USAGE_STATISTICS}, allEntries = true)
+    })
     public int updateUsageRecord(UsageRecord record) {
         if (record == null || record.getId() == null) {
             return 0;
         }
-        // 清除单个记录的缓存
-        String cacheKey = CACHE_KEY_USAGE_RECORD + record.getId();
-        redisUtil.del(cacheKey);
-        
-        return usageRecordMapper.update(record);
+        // 先按修改前的内容从汇总中扣除，修改后再计入
+        List<Integer> ids = Collections.singletonList(record.getId());
+        recordRollupService.recordsRemoving(RecordRollupMapper.TYPE_USAGE, ids);
+        int rows = usageRecordMapper.update(record);
+        recordRollupService.recordsAdded(RecordRollupMapper.TYPE_USAGE, ids);
+        if (rows > 0) {
+            movementsChanged(ids);
+        }
+        return rows;
     }
     /**
      * 删除使用记录
@@ -158,16 +114,20 @@ public class UsageRecordServiceImpl implements IUsageRecordService {
      */
     @Override
     @Transactional
-    @CacheEvict(value = {"usageRecord", "usageRecordList", "usageRecordCount", "usageRecordSum"}, allEntries = true)
+    @Caching(evict = {
+            @CacheEvict(cacheNames = CacheNames.USAGE_RECORD),
+            @CacheEvict(cacheNames = {CacheNames.USAGE_RECORD_LIST, CacheNames.USAGE_RECORD_SUM, CacheNames.USAGE_STATISTICS}, allEntries = true)
+    })
     public int deleteUsageRecord(Integer id) {
         if (id == null) {
             return 0;
         }
-        // 清除单个记录的缓存
-        String cacheKey = CACHE_KEY_USAGE_RECORD + id;
-        redisUtil.del(cacheKey);
-        
-        return usageRecordMapper.deleteById(id);
+        recordRollupService.recordsRemoving(RecordRollupMapper.TYPE_USAGE, Collections.singletonList(id));
+        int rows = usageRecordMapper.deleteById(id);
+        if (rows > 0) {
+            movementsChanged(Collections.singletonList(id));
+        }
+        return rows;
     }
     /**
      * 根据id查询使用记录
@@ -175,30 +135,15 @@ public class UsageRecordServiceImpl implements IUsageRecordService {
      * @return 使用记录
      */
     @Override
-    @Cacheable(value = "usageRecord", key = "#id", unless = "#result == null")
+    @Cacheable(cacheNames = CacheNames.USAGE_RECORD, unless = "#result == null")
     public UsageRecord getUsageRecordById(Integer id) {
         if (id == null) {
             return null;
         }
-        log.info("从数据库查询使用记录, id: {}", id);
-        
-        // 尝试从缓存获取
-        String cacheKey = CACHE_KEY_USAGE_RECORD + id;
-        Object cachedRecord = redisUtil.get(cacheKey);
-        if (cachedRecord != null) {
-            log.info("从缓存获取使用记录, id: {}", id);
-            return (UsageRecord) cachedRecord;
-        }
-        
-        // 从数据库获取
-        UsageRecord record = usageRecordMapper.selectById(id);
-        
-        // 放入缓存
-        if (record != null) {
-            redisUtil.set(cacheKey, record, TimeUnit.MINUTES.toSeconds(CACHE_EXPIRE_TIME));
-        }
-        
-        return record;
+        return existenceGuard.load(CacheNames.USAGE_RECORD, id, () -> {
+            log.info("从数据库查询使用记录, id: {}", id);
+            return usageRecordMapper.selectById(id);
+        });
     }
     /**
      * 根据化学品名称、用户名称、开始时间、结束时间查询使用记录
@@ -209,7 +154,7 @@ public class UsageRecordServiceImpl implements IUsageRecordService {
      * @return 使用记录列表
      */
     @Override
-    @Cacheable(value = "usageRecordList", key = "#chemicalName + '_' + #userName + '_' + #startTime + '_' + #endTime", unless = "#result == null || #result.isEmpty()")
+    @Cacheable(cacheNames = CacheNames.USAGE_RECORD_LIST, sync = true)
     public List<UsageRecord> getUsageRecordList(String chemicalName, String userName,
                                                Date startTime, Date endTime) {
         // 过滤掉空字符串，转换为 null
@@ -219,20 +164,6 @@ public class UsageRecordServiceImpl implements IUsageRecordService {
         log.info("Service层处理后的参数: chemicalName={}, userName={}, startTime={}, endTime={}", 
                 chemicalName, userName, startTime, endTime);
         
-        // 构建缓存key
-        String cacheKey = CACHE_KEY_USAGE_RECORD_LIST + 
-                (chemicalName != null ? chemicalName : "null") + "_" + 
-                (userName != null ? userName : "null") + "_" + 
-                (startTime != null ? startTime.getTime() : "null") + "_" + 
-                (endTime != null ? endTime.getTime() : "null");
-        
-        // 尝试从缓存获取
-        Object cachedList = redisUtil.get(cacheKey);
-        if (cachedList != null) {
-            log.info("从缓存获取使用记录列表");
-            return (List<UsageRecord>) cachedList;
-        }
-        
         // 允许部分参数为空，执行查询
         List<UsageRecord> result = usageRecordMapper.selectList(chemicalName, userName, startTime, endTime);
         log.info("查询结果条数: {}", result != null ? result.size() : 0);
@@ -253,11 +184,6 @@ public class UsageRecordServiceImpl implements IUsageRecordService {
 
         }
         
-        // 放入缓存
-        if (result != null && !result.isEmpty()) {
-            redisUtil.set(cacheKey, result, TimeUnit.MINUTES.toSeconds(CACHE_EXPIRE_TIME));
-        }
-        
         return result;
     }
     /**
@@ -280,31 +206,17 @@ public class UsageRecordServiceImpl implements IUsageRecordService {
      * @return 化学品总使用量
      */
     @Override
-    @Cacheable(value = "usageRecordSum", key = "#chemicalName + '_' + #startTime + '_' + #endTime")
+    @Cacheable(cacheNames = CacheNames.USAGE_RECORD_SUM, sync = true)
     public String getTotalUsageAmount(String chemicalName, Date startTime, Date endTime) {
+        if (movementColumnStore != null) {
+            MovementColumnStore.Totals totals = movementColumnStore.totals(RecordRollupMapper.TYPE_USAGE,
+                    chemicalName == null ? null : chemicalIdsByName(chemicalName), startTime, endTime);
+            return totals.getCount() == 0 ? "0" : Double.toString(totals.getAmount());
+        }
         log.info("从数据库计算使用总量, chemicalName: {}, startTime: {}, endTime: {}", 
                 chemicalName, startTime, endTime);
-        
-        // 构建缓存key
-        String cacheKey = CACHE_KEY_USAGE_RECORD_SUM + 
-                (chemicalName != null ? chemicalName : "null") + "_" + 
-                (startTime != null ? startTime.getTime() : "null") + "_" + 
-                (endTime != null ? endTime.getTime() : "null");
-        
-        // 尝试从缓存获取
-        Object cachedSum = redisUtil.get(cacheKey);
-        if (cachedSum != null) {
-            log.info("从缓存获取使用总量");
-            return cachedSum.toString();
-        }
-        
         Double total = usageRecordMapper.getTotalAmount(chemicalName, startTime, endTime);
-        String result = total == null ? "0" : total.toString();
-        
-        // 放入缓存
-        redisUtil.set(cacheKey, result, TimeUnit.MINUTES.toSeconds(CACHE_EXPIRE_TIME));
-        
-        return result;
+        return total == null ? "0" : total.toString();
     }
     /**
      * 批量添加使用记录
@@ -313,7 +225,7 @@ public class UsageRecordServiceImpl implements IUsageRecordService {
      */
     @Override
     @Transactional
-    @CacheEvict(value = {"usageRecordList", "usageRecordCount", "usageRecordSum"}, allEntries = true)
+    @CacheEvict(cacheNames = {CacheNames.USAGE_RECORD_LIST, CacheNames.USAGE_RECORD_SUM, CacheNames.USAGE_STATISTICS}, allEntries = true)
     public int batchAddUsageRecords(List<UsageRecord> records) {
         if (records == null || records.isEmpty()) {
             return 0;
@@ -327,10 +239,14 @@ public class UsageRecordServiceImpl implements IUsageRecordService {
             }
         }
         
-        // 清除相关缓存
-        log.info("批量添加使用记录，清除相关缓存");
-        
-        return usageRecordMapper.batchInsert(records);
+        int rows = usageRecordMapper.batchInsert(records);
+        if (rows > 0) {
+            List<Integer> ids = records.stream().map(UsageRecord::getId).collect(Collectors.toList());
+            existenceGuard.added(CacheNames.USAGE_RECORD, ids);
+            recordRollupService.recordsAdded(RecordRollupMapper.TYPE_USAGE, ids);
+            movementsChanged(ids);
+        }
+        return rows;
     }
     /**
      * 处理使用记录
@@ -343,6 +259,7 @@ public class UsageRecordServiceImpl implements IUsageRecordService {
      */
     @Override
     @Transactional
+    @CacheEvict(cacheNames = {CacheNames.USAGE_RECORD_LIST, CacheNames.USAGE_RECORD_SUM, CacheNames.USAGE_STATISTICS}, allEntries = true)
     public boolean processUsage(String chemicalName, String userName, Double amount, String purpose, String notes) {
         if (chemicalName == null || userName == null || amount == null) {
             return false;
@@ -371,7 +288,14 @@ public class UsageRecordServiceImpl implements IUsageRecordService {
         record.setCreateTime(new Date());
         record.setUsageTime(new Date());
         
-        return usageRecordMapper.insert(record) > 0;
+        if (usageRecordMapper.insert(record) > 0) {
+            existenceGuard.added(CacheNames.USAGE_RECORD, record.getId());
+            // 化学品ID由插入语句按名称解析，汇总按记录ID从表中读取
+            recordRollupService.recordsAdded(RecordRollupMapper.TYPE_USAGE, Collections.singletonList(record.getId()));
+            movementsChanged(Collections.singletonList(record.getId()));
+            return true;
+        }
+        return false;
     }
     
     /**
@@ -379,31 +303,43 @@ public class UsageRecordServiceImpl implements IUsageRecordService {
      * @return 今日使用记录数量
      */
     @Override
+    @Cacheable(cacheNames = CacheNames.USAGE_STATISTICS, key = STATISTICS_DAY_KEY, sync = true)
     public Integer getTodayUsageCount() {
-        return usageRecordMapper.countTodayUsage();
+        LocalDate today = LocalDate.now();
+        return recordRollupService.countRecords(RecordRollupMapper.TYPE_USAGE, null, null, today, today.plusDays(1));
     }
     /**
      * 获取本月使用记录数量
      * @return 本月使用记录数量
      */
     @Override
+    @Cacheable(cacheNames = CacheNames.USAGE_STATISTICS, key = STATISTICS_DAY_KEY, sync = true)
     public Integer getMonthUsageCount() {
-        return usageRecordMapper.countMonthUsage();
+        LocalDate month = LocalDate.now().withDayOfMonth(1);
+        return recordRollupService.countRecords(RecordRollupMapper.TYPE_USAGE, null, null, month, month.plusMonths(1));
     }
     /**
      * 获取活跃用户使用记录数量
      * @return 活跃用户使用记录数量
      */
     @Override
+    @Cacheable(cacheNames = CacheNames.USAGE_STATISTICS, key = "#root.methodName", sync = true)
     public Integer getActiveUsageCount() {
-        return usageRecordMapper.countActiveUsage();
+        // 近24小时内有使用记录的化学品数，从分钟汇总读取
+        return recordRollupService.countActiveChemicals(RecordRollupMapper.TYPE_USAGE, LocalDateTime.now().minusHours(24));
     }
     /**
      * 获取不同用户使用记录数量
      * @return 不同用户使用记录数量
      */
     @Override
+    @Cacheable(cacheNames = CacheNames.USAGE_STATISTICS, key = STATISTICS_DAY_KEY, sync = true)
     public Integer getDistinctUserCount() {
+        if (movementColumnStore != null) {
+            LocalDate month = LocalDate.now().withDayOfMonth(1);
+            return movementColumnStore.countDistinctUsers(RecordRollupMapper.TYPE_USAGE,
+                    toDate(month), toDate(month.plusMonths(1)));
+        }
         return usageRecordMapper.countDistinctUsers();
     }
     
@@ -425,7 +361,37 @@ public class UsageRecordServiceImpl implements IUsageRecordService {
 
     @Override
     public Double getTotalUsageAmount(Integer chemicalId, Date startTime, Date endTime) {
+        if (movementColumnStore != null) {
+            return movementColumnStore.sumAmount(RecordRollupMapper.TYPE_USAGE, chemicalId, startTime, endTime);
+        }
         // 同上，需要查询化学品名称，这里简单实现
         return 0.0;
     }
+
+    /**
+     * 记录变动后更新内存列式流水；使用记录的化学品ID可能由插入语句按名称解析，统一按记录ID重新读取
+     */
+    private void movementsChanged(List<Integer> ids) {
+        if (movementColumnStore != null) {
+            movementColumnStore.recordsChanged(RecordRollupMapper.TYPE_USAGE, ids);
+        }
+    }
+
+    /**
+     * 名称包含关键字的化学品ID，与合计语句的 LIKE '%name%' 一致（不区分大小写）
+     */
+    private List<Integer> chemicalIdsByName(String chemicalName) {
+        String keyword = chemicalName.toLowerCase();
+        List<Integer> ids = new ArrayList<>();
+        for (Chemical chemical : chemicalService.listChemical()) {
+            if (chemical.getName() != null && chemical.getName().toLowerCase().contains(keyword)) {
+                ids.add(chemical.getId());
+            }
+        }
+        return ids;
+    }
+
+    private static Date toDate(LocalDate date) {
+        return Date.from(date.atStartOfDay(ZoneId.systemDefault()).toInstant());
+    }
 }
\ No newline at end of file
@@ -1,5 +1,6 @@
 package com.vueones.service.impl;
 
+import com.vueones.cache.CacheNames;
 import com.vueones.entity.WarningRecord;
 import com.vueones.entity.Inventory;
 import com.vueones.entity.Chemical;
@@ -7,6 +8,8 @@ import com.vueones.mapper.WarningRecordMapper;
 import com.vueones.service.IWarningRecordService;
 import com.vueones.service.IInventoryService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -31,6 +34,7 @@ public class WarningRecordServiceImpl implements IWarningRecordService {
      */
     @Override
     @Transactional
+    @CacheEvict(cacheNames = CacheNames.WARNING_UNHANDLED_COUNT, allEntries = true)
     public int addWarningRecord(WarningRecord record) {
         if (record.getWarningTime() == null) {
             record.setWarningTime(new Date());
@@ -47,6 +51,7 @@ public class WarningRecordServiceImpl implements IWarningRecordService {
      */
     @Override
     @Transactional
+    @CacheEvict(cacheNames = CacheNames.WARNING_UNHANDLED_COUNT, allEntries = true)
     public int updateWarningRecord(WarningRecord record) {
         return warningRecordMapper.update(record);
     }
@@ -57,6 +62,7 @@ public class WarningRecordServiceImpl implements IWarningRecordService {
      */
     @Override
     @Transactional
+    @CacheEvict(cacheNames = CacheNames.WARNING_UNHANDLED_COUNT, allEntries = true)
     public int deleteWarningRecord(Integer id) {
         return warningRecordMapper.deleteById(id);
     }
@@ -131,6 +137,7 @@ public class WarningRecordServiceImpl implements IWarningRecordService {
      */
     @Override
     @Transactional
+    @CacheEvict(cacheNames = CacheNames.WARNING_UNHANDLED_COUNT, allEntries = true)
     public int updateWarningStatus(Integer id, String status, String handler, String handleResult) {
         return warningRecordMapper.updateStatus(id, status, handler, handleResult);
     }
@@ -139,6 +146,7 @@ public class WarningRecordServiceImpl implements IWarningRecordService {
      * @return 未处理预警数量
      */
     @Override
+    @Cacheable(cacheNames = CacheNames.WARNING_UNHANDLED_COUNT, sync = true)
     public int getUnhandledWarningCount() {
         return warningRecordMapper.countUnhandledWarnings();
     }
@@ -155,6 +163,7 @@ public class WarningRecordServiceImpl implements IWarningRecordService {
      */
     @Override
     @Transactional
+    @CacheEvict(cacheNames = CacheNames.WARNING_UNHANDLED_COUNT, allEntries = true)
     public void checkAndGenerateWarnings() {
         // 获取所有低于阈值的库存
         List<Inventory> belowThresholdInventories = inventoryService.getBelowThresholdInventory();
@@ -196,6 +205,7 @@ public class WarningRecordServiceImpl implements IWarningRecordService {
      */
     @Override
     @Transactional
+    @CacheEvict(cacheNames = CacheNames.WARNING_UNHANDLED_COUNT, allEntries = true)
     public boolean handleWarning(Integer id, String handler, String handleResult) {
         WarningRecord warning = getWarningRecordById(id);
         if (warning == null || !"未处理".equals(warning.getStatus())) {
@@ -221,6 +231,7 @@ public class WarningRecordServiceImpl implements IWarningRecordService {
      */
     @Override
     @Transactional
+    @CacheEvict(cacheNames = CacheNames.WARNING_UNHANDLED_COUNT, allEntries = true)
     public int batchHandleWarnings(List<Integer> ids, String status, String handler, String handleResult) {
         if (ids == null || ids.isEmpty()) {
             return 0;
@@ -0,0 +1,93 @@
+package com.vueones.util;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 固定分桶直方图
+ * 记录落在各上界内的样本数，线程安全，用于观察批大小、延迟等分布
+ */
+public class Histogram {
+
+    private final long[] bounds;
+    private final AtomicLongArray counts;
+    private final LongAdder total = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0L);
+
+    /**
+     * @param bounds 递增的桶上界（含），超出最后一个上界的样本计入溢出桶
+     */
+    public Histogram(long... bounds) {
+        this.bounds = bounds.clone();
+        this.counts = new AtomicLongArray(bounds.length + 1);
+    }
+
+    /**
+     * 记录一个样本
+     * @param value 样本值
+     */
+    public void record(long value) {
+        int index = 0;
+        while (index < bounds.length && value > bounds[index]) {
+            index++;
+        }
+        counts.incrementAndGet(index);
+        total.increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    /**
+     * 估算分位数（返回所在桶的上界，溢出桶返回最大值）
+     * @param quantile 分位，0到1之间
+     * @return 估算值
+     */
+    public long percentile(double quantile) {
+        long count = total.sum();
+        if (count == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(quantile * count);
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return i < bounds.length ? bounds[i] : max.get();
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * 导出当前分布
+     * @return count、sum、mean、max、p50/p95/p99及各桶计数
+     */
+    public Map<String, Object> snapshot() {
+        long count = total.sum();
+        long sumValue = sum.sum();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("count", count);
+        result.put("sum", sumValue);
+        result.put("mean", count == 0 ? 0D : (double) sumValue / count);
+        result.put("max", max.get());
+        result.put("p50", percentile(0.50));
+        result.put("p95", percentile(0.95));
+        result.put("p99", percentile(0.99));
+
+        List<Map<String, Object>> buckets = new ArrayList<>();
+        for (int i = 0; i < counts.length(); i++) {
+            Map<String, Object> bucket = new LinkedHashMap<>();
+            bucket.put("le", i < bounds.length ? String.valueOf(bounds[i]) : "+Inf");
+            bucket.put("count", counts.get(i));
+            buckets.add(bucket);
+        }
+        result.put("buckets", buckets);
+        return result;
+    }
+}
@@ -0,0 +1,75 @@
+package com.vueones.util;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * HyperLogLog基数估计
+ * 以固定内存（2^precision个寄存器）估计见过的不同元素个数，标准误差约 1.04/sqrt(2^precision)；
+ * 只增不减，线程安全
+ */
+public class HyperLogLog {
+
+    private final int precision;
+    private final AtomicIntegerArray registers;
+
+    /**
+     * @param precision 寄存器个数的对数，4到16之间；12时占用16KB、误差约1.6%
+     */
+    public HyperLogLog(int precision) {
+        this.precision = Math.min(16, Math.max(4, precision));
+        this.registers = new AtomicIntegerArray(1 << this.precision);
+    }
+
+    /**
+     * 记录一个元素
+     * @param bytes 元素的字节
+     */
+    public void add(byte[] bytes) {
+        long hash = hash(bytes);
+        int index = (int) (hash >>> (64 - precision));
+        // 剩余位中首个1的位置（从1开始），剩余位全0时取最大值
+        int rank = Math.min(Long.numberOfLeadingZeros(hash << precision) + 1, 64 - precision + 1);
+        int current = registers.get(index);
+        while (rank > current && !registers.compareAndSet(index, current, rank)) {
+            current = registers.get(index);
+        }
+    }
+
+    /**
+     * 估计不同元素个数
+     * @return 估计值
+     */
+    public long estimate() {
+        int m = registers.length();
+        double sum = 0;
+        int zeros = 0;
+        for (int i = 0; i < m; i++) {
+            int value = registers.get(i);
+            sum += 1.0 / (1L << value);
+            if (value == 0) {
+                zeros++;
+            }
+        }
+        double alpha = 0.7213 / (1 + 1.079 / m);
+        double estimate = alpha * m * m / sum;
+        if (estimate <= 2.5 * m && zeros > 0) {
+            // 小基数时用线性计数修正
+            estimate = m * Math.log((double) m / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    /**
+     * 64位FNV-1a后以splitmix64终结函数混合
+     */
+    private static long hash(byte[] bytes) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : bytes) {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        h = (h ^ (h >>> 30)) * 0xBF58476D1CE4E5B9L;
+        h = (h ^ (h >>> 27)) * 0x94D049BB133111EBL;
+        return h ^ (h >>> 31);
+    }
+}
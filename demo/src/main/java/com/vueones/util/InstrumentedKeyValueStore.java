@@ -0,0 +1,180 @@
+package com.vueones.util;
+
+import com.vueones.cache.CacheMetrics;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 带调用统计的键值存储
+ * 包装RedisUtil或LocalKeyValueStore，按操作名把调用次数、涉及key数、读取命中与耗时记入CacheMetrics；
+ * 缓存层注入的KeyValueStore即为此包装
+ */
+public class InstrumentedKeyValueStore implements KeyValueStore {
+
+    private final KeyValueStore delegate;
+    private final CacheMetrics metrics;
+
+    /**
+     * @param delegate 实际的键值存储
+     * @param metrics 统计
+     */
+    public InstrumentedKeyValueStore(KeyValueStore delegate, CacheMetrics metrics) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public boolean hasKey(String key) {
+        long start = System.nanoTime();
+        boolean exists = delegate.hasKey(key);
+        metrics.recordOperation("hasKey", 1, exists ? 1 : 0, System.nanoTime() - start);
+        return exists;
+    }
+
+    @Override
+    public void del(String... key) {
+        long start = System.nanoTime();
+        delegate.del(key);
+        metrics.recordOperation("del", key.length, -1, System.nanoTime() - start);
+    }
+
+    @Override
+    public boolean expire(String key, long time) {
+        long start = System.nanoTime();
+        boolean result = delegate.expire(key, time);
+        metrics.recordOperation("expire", 1, -1, System.nanoTime() - start);
+        return result;
+    }
+
+    @Override
+    public Object get(String key) {
+        long start = System.nanoTime();
+        Object value = delegate.get(key);
+        metrics.recordOperation("get", 1, value != null ? 1 : 0, System.nanoTime() - start);
+        return value;
+    }
+
+    @Override
+    public boolean set(String key, Object value) {
+        long start = System.nanoTime();
+        boolean result = delegate.set(key, value);
+        metrics.recordOperation("set", 1, -1, System.nanoTime() - start);
+        return result;
+    }
+
+    @Override
+    public boolean set(String key, Object value, long time) {
+        long start = System.nanoTime();
+        boolean result = delegate.set(key, value, time);
+        metrics.recordOperation("set", 1, -1, System.nanoTime() - start);
+        return result;
+    }
+
+    @Override
+    public long incr(String key, long delta) {
+        long start = System.nanoTime();
+        long result = delegate.incr(key, delta);
+        metrics.recordOperation("incr", 1, -1, System.nanoTime() - start);
+        return result;
+    }
+
+    @Override
+    public long decr(String key, long delta) {
+        long start = System.nanoTime();
+        long result = delegate.decr(key, delta);
+        metrics.recordOperation("decr", 1, -1, System.nanoTime() - start);
+        return result;
+    }
+
+    @Override
+    public List<Object> mget(List<String> keys) {
+        long start = System.nanoTime();
+        List<Object> values = delegate.mget(keys);
+        int found = (int) values.stream().filter(Objects::nonNull).count();
+        metrics.recordOperation("mget", keys.size(), found, System.nanoTime() - start);
+        return values;
+    }
+
+    @Override
+    public boolean mset(Map<String, Object> values, Map<String, Long> times) {
+        long start = System.nanoTime();
+        boolean result = delegate.mset(values, times);
+        metrics.recordOperation("mset", values.size(), -1, System.nanoTime() - start);
+        return result;
+    }
+
+    @Override
+    public boolean mset(Map<String, Object> values, long time) {
+        long start = System.nanoTime();
+        boolean result = delegate.mset(values, time);
+        metrics.recordOperation("mset", values.size(), -1, System.nanoTime() - start);
+        return result;
+    }
+
+    @Override
+    public long unlink(Collection<String> keys) {
+        long start = System.nanoTime();
+        long removed = delegate.unlink(keys);
+        metrics.recordOperation("unlink", keys.size(), -1, System.nanoTime() - start);
+        return removed;
+    }
+
+    @Override
+    public CompletableFuture<Long> unlinkByPattern(String pattern) {
+        long start = System.nanoTime();
+        return delegate.unlinkByPattern(pattern).whenComplete((removed, e) -> metrics.recordOperation(
+                "unlinkByPattern", removed == null ? 0 : (int) Math.min(Integer.MAX_VALUE, removed), -1,
+                System.nanoTime() - start));
+    }
+
+    @Override
+    public String versionedKey(String namespace, String suffix) {
+        long start = System.nanoTime();
+        String key = delegate.versionedKey(namespace, suffix);
+        metrics.recordOperation("namespaceVersion", 1, -1, System.nanoTime() - start);
+        return key;
+    }
+
+    @Override
+    public long namespaceVersion(String namespace) {
+        long start = System.nanoTime();
+        long version = delegate.namespaceVersion(namespace);
+        metrics.recordOperation("namespaceVersion", 1, -1, System.nanoTime() - start);
+        return version;
+    }
+
+    @Override
+    public List<Long> namespaceVersions(List<String> namespaces) {
+        long start = System.nanoTime();
+        List<Long> versions = delegate.namespaceVersions(namespaces);
+        metrics.recordOperation("namespaceVersion", namespaces.size(), -1, System.nanoTime() - start);
+        return versions;
+    }
+
+    @Override
+    public void bumpNamespace(String... namespaces) {
+        long start = System.nanoTime();
+        delegate.bumpNamespace(namespaces);
+        metrics.recordOperation("bumpNamespace", namespaces.length, -1, System.nanoTime() - start);
+    }
+
+    @Override
+    public boolean tryLease(String key, String owner, long millis) {
+        long start = System.nanoTime();
+        boolean acquired = delegate.tryLease(key, owner, millis);
+        // 租约的命中表示取得租约
+        metrics.recordOperation("tryLease", 1, acquired ? 1 : 0, System.nanoTime() - start);
+        return acquired;
+    }
+
+    @Override
+    public void releaseLease(String key, String owner) {
+        long start = System.nanoTime();
+        delegate.releaseLease(key, owner);
+        metrics.recordOperation("releaseLease", 1, -1, System.nanoTime() - start);
+    }
+}
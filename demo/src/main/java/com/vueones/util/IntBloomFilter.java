@@ -0,0 +1,95 @@
+package com.vueones.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * int键的布隆过滤器
+ * mightContain返回false时键一定不存在，返回true时可能存在（误判率约为构造时给定的值）；
+ * 只能添加不能删除，位数组以AtomicLongArray存储，添加与查询可并发进行
+ */
+public class IntBloomFilter {
+
+    private final AtomicLongArray bits;
+    private final long bitCount;
+    private final int hashCount;
+
+    /**
+     * @param expectedInsertions 预计元素个数，超出后误判率上升
+     * @param falsePositiveRate 期望误判率，如0.01
+     */
+    public IntBloomFilter(int expectedInsertions, double falsePositiveRate) {
+        long n = Math.max(1, expectedInsertions);
+        double p = Math.min(Math.max(falsePositiveRate, 1e-9), 0.5);
+        // m = -n·ln(p)/(ln2)^2，k = m/n·ln2
+        long m = Math.max(64, (long) Math.ceil(-n * Math.log(p) / (Math.log(2) * Math.log(2))));
+        this.bits = new AtomicLongArray((int) ((m + 63) >>> 6));
+        this.bitCount = (long) bits.length() << 6;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / n * Math.log(2)));
+    }
+
+    /**
+     * 添加键
+     * @param key 键
+     */
+    public void put(int key) {
+        long hash = mix(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= hashCount; i++) {
+            long bit = index(h1 + i * h2);
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long current = bits.get(word);
+            while ((current & mask) == 0 && !bits.compareAndSet(word, current, current | mask)) {
+                current = bits.get(word);
+            }
+        }
+    }
+
+    /**
+     * 键是否可能存在
+     * @param key 键
+     * @return false表示一定不存在
+     */
+    public boolean mightContain(int key) {
+        long hash = mix(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= hashCount; i++) {
+            long bit = index(h1 + i * h2);
+            if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 位数组大小（位）
+     */
+    public long bitSize() {
+        return bitCount;
+    }
+
+    /**
+     * 哈希函数个数
+     */
+    public int hashCount() {
+        return hashCount;
+    }
+
+    private long index(int combined) {
+        // 取非负后对位数取模
+        return (combined & Integer.MAX_VALUE) % bitCount;
+    }
+
+    /**
+     * 64位混合（splitmix64终结函数），高低32位作为两个独立哈希
+     */
+    private static long mix(int key) {
+        long z = key + 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
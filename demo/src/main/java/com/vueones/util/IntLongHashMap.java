@@ -0,0 +1,189 @@
+package com.vueones.util;
+
+import java.util.Arrays;
+
+/**
+ * int到long的开放寻址哈希表
+ * 以原始类型存储键值，避免Map&lt;Integer, Long&gt;的装箱开销；非线程安全，由调用方加锁
+ */
+public class IntLongHashMap {
+
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private int[] keys;
+    private long[] values;
+    private boolean[] used;
+    private int size;
+    private int threshold;
+
+    public IntLongHashMap() {
+        this(16);
+    }
+
+    public IntLongHashMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1;
+        allocate(capacity);
+    }
+
+    /**
+     * 遍历回调
+     */
+    @FunctionalInterface
+    public interface EntryVisitor {
+        void visit(int key, long value);
+    }
+
+    /**
+     * 获取值
+     * @param key 键
+     * @param defaultValue 键不存在时的默认值
+     * @return 值
+     */
+    public long get(int key, long defaultValue) {
+        int slot = find(key);
+        return slot < 0 ? defaultValue : values[slot];
+    }
+
+    /**
+     * 是否包含键
+     * @param key 键
+     * @return 是否包含
+     */
+    public boolean containsKey(int key) {
+        return find(key) >= 0;
+    }
+
+    /**
+     * 写入值
+     * @param key 键
+     * @param value 值
+     */
+    public void put(int key, long value) {
+        int slot = slotFor(key);
+        values[slot] = value;
+    }
+
+    /**
+     * 在原值上累加（键不存在时视为0）
+     * @param key 键
+     * @param delta 增量
+     * @return 累加后的值
+     */
+    public long addTo(int key, long delta) {
+        int slot = slotFor(key);
+        values[slot] += delta;
+        return values[slot];
+    }
+
+    /**
+     * 删除键，后续探测链上的键回移填补空位，不留删除标记
+     * @param key 键
+     * @return 键是否存在
+     */
+    public boolean remove(int key) {
+        int hole = find(key);
+        if (hole < 0) {
+            return false;
+        }
+        int mask = keys.length - 1;
+        int slot = (hole + 1) & mask;
+        while (used[slot]) {
+            int home = mix(keys[slot]) & mask;
+            // 只有起始槽位不在(hole, slot]区间内的键才能移到空位上
+            if (((slot - home) & mask) >= ((slot - hole) & mask)) {
+                keys[hole] = keys[slot];
+                values[hole] = values[slot];
+                hole = slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        used[hole] = false;
+        size--;
+        return true;
+    }
+
+    /**
+     * 遍历所有键值对
+     * @param visitor 回调
+     */
+    public void forEach(EntryVisitor visitor) {
+        for (int i = 0; i < keys.length; i++) {
+            if (used[i]) {
+                visitor.visit(keys[i], values[i]);
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        Arrays.fill(used, false);
+        size = 0;
+    }
+
+    private int find(int key) {
+        int mask = keys.length - 1;
+        int slot = mix(key) & mask;
+        while (used[slot]) {
+            if (keys[slot] == key) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * 定位键所在槽位，不存在时插入并将值初始化为0
+     */
+    private int slotFor(int key) {
+        int mask = keys.length - 1;
+        int slot = mix(key) & mask;
+        while (used[slot]) {
+            if (keys[slot] == key) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (size >= threshold) {
+            rehash(keys.length << 1);
+            return slotFor(key);
+        }
+        used[slot] = true;
+        keys[slot] = key;
+        values[slot] = 0L;
+        size++;
+        return slot;
+    }
+
+    private void rehash(int newCapacity) {
+        int[] oldKeys = keys;
+        long[] oldValues = values;
+        boolean[] oldUsed = used;
+        allocate(newCapacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldUsed[i]) {
+                put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new long[capacity];
+        used = new boolean[capacity];
+        size = 0;
+        threshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private static int mix(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,160 @@
+package com.vueones.util;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 缓存层使用的键值存储
+ * 由 app.cache.backend 选择实现：redis（默认）为RedisUtil，多个节点共享；local为进程内的LocalKeyValueStore，
+ * 单节点部署与性能测试时不需要Redis服务。命名空间版本、租约与批量读写在两种实现中语义一致
+ */
+public interface KeyValueStore {
+
+    /**
+     * 判断key是否存在
+     * @param key 键
+     * @return true 存在 false不存在
+     */
+    boolean hasKey(String key);
+
+    /**
+     * 删除缓存
+     * @param key 可以传一个值 或多个
+     */
+    void del(String... key);
+
+    /**
+     * 指定缓存失效时间
+     * @param key 键
+     * @param time 时间(秒)
+     * @return 是否成功
+     */
+    boolean expire(String key, long time);
+
+    /**
+     * 普通缓存获取
+     * @param key 键
+     * @return 值
+     */
+    Object get(String key);
+
+    /**
+     * 普通缓存放入
+     * @param key 键
+     * @param value 值
+     * @return true成功 false失败
+     */
+    boolean set(String key, Object value);
+
+    /**
+     * 普通缓存放入并设置时间
+     * @param key 键
+     * @param value 值
+     * @param time 时间(秒) time要大于0 如果time小于等于0 将设置无限期
+     * @return true成功 false 失败
+     */
+    boolean set(String key, Object value, long time);
+
+    /**
+     * 递增
+     * @param key 键
+     * @param delta 要增加几(大于0)
+     * @return 增加后的值
+     */
+    long incr(String key, long delta);
+
+    /**
+     * 递减
+     * @param key 键
+     * @param delta 要减少几(小于0)
+     * @return 减少后的值
+     */
+    long decr(String key, long delta);
+
+    /**
+     * 批量获取
+     * @param keys 键
+     * @return 与keys顺序一致的值，不存在的key对应null
+     */
+    List<Object> mget(List<String> keys);
+
+    /**
+     * 批量放入，每个key可以有自己的过期时间
+     * @param values 键 -> 值
+     * @param times 键 -> 时间(秒)，未指定或小于等于0的key设置无限期
+     * @return true成功 false失败
+     */
+    boolean mset(Map<String, Object> values, Map<String, Long> times);
+
+    /**
+     * 批量放入并设置相同的时间
+     * @param values 键 -> 值
+     * @param time 时间(秒) 小于等于0时设置无限期
+     * @return true成功 false失败
+     */
+    boolean mset(Map<String, Object> values, long time);
+
+    /**
+     * 批量删除
+     * @param keys 键
+     * @return 删除的key数量
+     */
+    long unlink(Collection<String> keys);
+
+    /**
+     * 在后台按模式删除key
+     * @param pattern 匹配模式（*、?通配）
+     * @return 删除的key数量
+     */
+    CompletableFuture<Long> unlinkByPattern(String pattern);
+
+    /**
+     * 生成带命名空间版本的key：namespace + "v" + 版本号 + ":" + suffix
+     * @param namespace 命名空间
+     * @param suffix 命名空间内的key
+     * @return 带版本的key
+     */
+    String versionedKey(String namespace, String suffix);
+
+    /**
+     * 获取命名空间当前版本
+     * @param namespace 命名空间
+     * @return 版本号，未递增过时为0
+     * @throws org.springframework.dao.DataAccessException 存储不可用时抛出，不得按版本0处理
+     */
+    long namespaceVersion(String namespace);
+
+    /**
+     * 批量获取命名空间当前版本
+     * @param namespaces 命名空间
+     * @return 与namespaces顺序一致的版本号，未递增过时为0
+     * @throws org.springframework.dao.DataAccessException 存储不可用时抛出
+     */
+    List<Long> namespaceVersions(List<String> namespaces);
+
+    /**
+     * 递增命名空间版本，使该命名空间下的全部key失效
+     * @param namespaces 命名空间 可以是多个
+     * @throws org.springframework.dao.DataAccessException 存储不可用时抛出
+     */
+    void bumpNamespace(String... namespaces);
+
+    /**
+     * 尝试获取租约，同一时间只有一个持有者，到期自动释放
+     * @param key 租约key
+     * @param owner 持有者标识
+     * @param millis 租约时长(毫秒)
+     * @return true获取成功 false已被其他持有者占用
+     * @throws org.springframework.dao.DataAccessException 存储不可用时抛出
+     */
+    boolean tryLease(String key, String owner, long millis);
+
+    /**
+     * 释放租约，只释放自己持有的租约
+     * @param key 租约key
+     * @param owner 持有者标识
+     */
+    void releaseLease(String key, String owner);
+}
@@ -0,0 +1,218 @@
+package com.vueones.util;
+
+import com.vueones.cache.LocalCacheStore;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * 进程内键值存储，app.cache.backend=local 时代替RedisUtil
+ * 普通值与缓存共用LocalCacheStore及其内存预算；命名空间版本与租约单独保存、不参与淘汰，
+ * 否则版本号被淘汰后回到0，旧版本的缓存条目会被重新读到
+ */
+public class LocalKeyValueStore implements KeyValueStore {
+
+    private final LocalCacheStore store;
+    private final RedisSerializer<Object> serializer;
+    private final ConcurrentMap<String, AtomicLong> namespaceVersions = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Lease> leases = new ConcurrentHashMap<>();
+
+    /**
+     * @param store 与缓存共用的存储
+     * @param serializer 值序列化器
+     */
+    public LocalKeyValueStore(LocalCacheStore store, RedisSerializer<Object> serializer) {
+        this.store = store;
+        this.serializer = serializer;
+    }
+
+    @Override
+    public boolean hasKey(String key) {
+        return store.get(key) != null;
+    }
+
+    @Override
+    public void del(String... key) {
+        for (String k : key) {
+            store.remove(k);
+        }
+    }
+
+    @Override
+    public boolean expire(String key, long time) {
+        if (time > 0) {
+            store.expire(key, TimeUnit.SECONDS.toNanos(time));
+        }
+        return true;
+    }
+
+    @Override
+    public Object get(String key) {
+        if (key == null) {
+            return null;
+        }
+        byte[] value = store.get(key);
+        return value == null ? null : serializer.deserialize(value);
+    }
+
+    @Override
+    public boolean set(String key, Object value) {
+        return set(key, value, 0L);
+    }
+
+    @Override
+    public boolean set(String key, Object value, long time) {
+        store.put(key, serializer.serialize(value), time > 0 ? TimeUnit.SECONDS.toNanos(time) : 0L);
+        return true;
+    }
+
+    @Override
+    public long incr(String key, long delta) {
+        if (delta < 0) {
+            throw new RuntimeException("递增因子必须大于0");
+        }
+        return increment(key, delta);
+    }
+
+    @Override
+    public long decr(String key, long delta) {
+        if (delta < 0) {
+            throw new RuntimeException("递减因子必须大于0");
+        }
+        return increment(key, -delta);
+    }
+
+    @Override
+    public List<Object> mget(List<String> keys) {
+        List<Object> values = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            values.add(get(key));
+        }
+        return values;
+    }
+
+    @Override
+    public boolean mset(Map<String, Object> values, Map<String, Long> times) {
+        values.forEach((key, value) -> {
+            Long time = times.get(key);
+            set(key, value, time == null ? 0L : time);
+        });
+        return true;
+    }
+
+    @Override
+    public boolean mset(Map<String, Object> values, long time) {
+        Map<String, Long> times = new HashMap<>();
+        values.keySet().forEach(key -> times.put(key, time));
+        return mset(values, times);
+    }
+
+    @Override
+    public long unlink(Collection<String> keys) {
+        long removed = 0;
+        for (String key : keys) {
+            if (store.remove(key)) {
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    @Override
+    public CompletableFuture<Long> unlinkByPattern(String pattern) {
+        Pattern regex = globToRegex(pattern);
+        return CompletableFuture.completedFuture(store.removeIf(key -> regex.matcher(key).matches()));
+    }
+
+    @Override
+    public String versionedKey(String namespace, String suffix) {
+        return namespace + "v" + namespaceVersion(namespace) + ":" + suffix;
+    }
+
+    @Override
+    public long namespaceVersion(String namespace) {
+        AtomicLong version = namespaceVersions.get(namespace);
+        return version == null ? 0L : version.get();
+    }
+
+    @Override
+    public List<Long> namespaceVersions(List<String> namespaces) {
+        List<Long> versions = new ArrayList<>(namespaces.size());
+        for (String namespace : namespaces) {
+            versions.add(namespaceVersion(namespace));
+        }
+        return versions;
+    }
+
+    @Override
+    public void bumpNamespace(String... namespaces) {
+        for (String namespace : namespaces) {
+            namespaceVersions.computeIfAbsent(namespace, key -> new AtomicLong()).incrementAndGet();
+        }
+    }
+
+    @Override
+    public boolean tryLease(String key, String owner, long millis) {
+        long now = System.nanoTime();
+        Lease lease = new Lease(owner, now + TimeUnit.MILLISECONDS.toNanos(millis));
+        Lease current = leases.compute(key, (k, existing) ->
+                existing == null || existing.expireAt - now <= 0 ? lease : existing);
+        return current == lease;
+    }
+
+    @Override
+    public void releaseLease(String key, String owner) {
+        leases.computeIfPresent(key, (k, existing) -> existing.owner.equals(owner) ? null : existing);
+    }
+
+    private synchronized long increment(String key, long delta) {
+        Object current = get(key);
+        long value = (current == null ? 0L : Long.parseLong(current.toString())) + delta;
+        store.put(key, serializer.serialize(value), 0L);
+        return value;
+    }
+
+    /**
+     * Redis的glob模式转为正则：* 任意串，? 单个字符，[...] 字符集原样保留
+     */
+    private static Pattern globToRegex(String glob) {
+        StringBuilder regex = new StringBuilder();
+        boolean inClass = false;
+        for (char c : glob.toCharArray()) {
+            if (inClass) {
+                regex.append(c);
+                inClass = c != ']';
+            } else if (c == '*') {
+                regex.append(".*");
+            } else if (c == '?') {
+                regex.append('.');
+            } else if (c == '[') {
+                regex.append(c);
+                inClass = true;
+            } else {
+                regex.append(Pattern.quote(String.valueOf(c)));
+            }
+        }
+        return Pattern.compile(regex.toString());
+    }
+
+    private static final class Lease {
+        final String owner;
+        final long expireAt;
+
+        Lease(String owner, long expireAt) {
+            this.owner = owner;
+            this.expireAt = expireAt;
+        }
+    }
+}
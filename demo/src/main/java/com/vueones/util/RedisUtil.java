@@ -1,31 +1,81 @@
 package com.vueones.util;
 
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisOperations;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.stereotype.Component;
 import org.springframework.util.CollectionUtils;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
 /**
  * Redis工具类
- * 封装RedisTemplate操作，简化Redis操作
+ * 封装RedisTemplate操作，简化Redis操作；app.cache.backend=redis（默认）时作为缓存层的键值存储
  */
 @Component
-public class RedisUtil {
+@ConditionalOnProperty(prefix = "app.cache", name = "backend", havingValue = "redis", matchIfMissing = true)
+public class RedisUtil implements KeyValueStore {
+
+    private static final Logger log = LoggerFactory.getLogger(RedisUtil.class);
+
+    /** 命名空间版本号的key前缀 */
+    private static final String NAMESPACE_VERSION_KEY = "ns_version:";
+    /** 租约的key前缀 */
+    private static final String LEASE_KEY = "lease:";
+    /** 比较持有者后删除租约 */
+    private static final RedisScript<Long> RELEASE_LEASE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end",
+            Long.class);
+    /** SCAN每次迭代的count，也是每条UNLINK携带的key数量上限 */
+    private static final int SCAN_BATCH_SIZE = 500;
+    /** 批量操作中每条MGET/UNLINK或每个管道携带的key数量上限 */
+    private static final int MULTI_KEY_BATCH_SIZE = 500;
 
     @Autowired
     private RedisTemplate<String, Object> redisTemplate;
 
+    /** 后台按模式删除key的单线程执行器，避免占用请求线程 */
+    private final ExecutorService unlinkExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "redis-unlink");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @PreDestroy
+    public void shutdown() {
+        unlinkExecutor.shutdown();
+    }
+
     /**
      * 根据pattern获取匹配的key
+     * KEYS会遍历整个键空间并阻塞Redis，只用于排查问题；批量失效请使用命名空间版本或unlinkByPattern
      * @param pattern 匹配模式
      * @return 匹配的key集合
      */
+    @Deprecated
     public Set<String> keys(String pattern) {
         try {
             return redisTemplate.keys(pattern);
@@ -41,6 +91,7 @@ public class RedisUtil {
      * @param time 时间(秒)
      * @return 是否成功
      */
+    @Override
     public boolean expire(String key, long time) {
         try {
             if (time > 0) {
@@ -67,6 +118,7 @@ public class RedisUtil {
      * @param key 键
      * @return true 存在 false不存在
      */
+    @Override
     public boolean hasKey(String key) {
         try {
             return redisTemplate.hasKey(key);
@@ -80,6 +132,7 @@ public class RedisUtil {
      * 删除缓存
      * @param key 可以传一个值 或多个
      */
+    @Override
     @SuppressWarnings("unchecked")
     public void del(String... key) {
         if (key != null && key.length > 0) {
@@ -91,6 +144,168 @@ public class RedisUtil {
         }
     }
 
+    // ============================命名空间版本=============================
+
+    /**
+     * 生成带命名空间版本的key：namespace + "v" + 版本号 + ":" + suffix
+     * 命名空间版本递增后旧版本的key不会再被读到，由过期时间自然淘汰
+     * @param namespace 命名空间（即原key前缀，如 storage_record_list:）
+     * @param suffix 命名空间内的key
+     * @return 带版本的key
+     */
+    @Override
+    public String versionedKey(String namespace, String suffix) {
+        return namespace + "v" + namespaceVersion(namespace) + ":" + suffix;
+    }
+
+    /**
+     * 获取命名空间当前版本
+     * 读取失败时抛出异常而不是按版本0处理：版本0下可能还留着递增前的旧条目
+     * @param namespace 命名空间
+     * @return 版本号，未递增过时为0
+     */
+    @Override
+    public long namespaceVersion(String namespace) {
+        try {
+            Object version = redisTemplate.opsForValue().get(NAMESPACE_VERSION_KEY + namespace);
+            return version == null ? 0L : Long.parseLong(version.toString());
+        } catch (RuntimeException e) {
+            log.warn("读取命名空间版本失败: namespace={}", namespace, e);
+            throw e;
+        }
+    }
+
+    /**
+     * 批量获取命名空间当前版本，一条MGET；读取失败时抛出异常，原因同namespaceVersion
+     * @param namespaces 命名空间
+     * @return 与namespaces顺序一致的版本号，未递增过时为0
+     */
+    @Override
+    public List<Long> namespaceVersions(List<String> namespaces) {
+        List<String> keys = new ArrayList<>(namespaces.size());
+        for (String namespace : namespaces) {
+            keys.add(NAMESPACE_VERSION_KEY + namespace);
+        }
+        List<Object> values;
+        try {
+            values = redisTemplate.opsForValue().multiGet(keys);
+        } catch (RuntimeException e) {
+            log.warn("批量读取命名空间版本失败: namespaces={}", namespaces, e);
+            throw e;
+        }
+        List<Long> versions = new ArrayList<>(namespaces.size());
+        for (int i = 0; i < keys.size(); i++) {
+            Object version = values == null ? null : values.get(i);
+            versions.add(version == null ? 0L : Long.parseLong(version.toString()));
+        }
+        return versions;
+    }
+
+    /**
+     * 递增命名空间版本，使该命名空间下的全部key失效
+     * 每个命名空间只执行一次INCR，耗时与命名空间内缓存的key数量无关；多个命名空间在一个管道中执行。
+     * 递增失败时抛出异常，由调用方感知旧条目仍可被读到
+     * @param namespaces 命名空间 可以是多个
+     */
+    @Override
+    public void bumpNamespace(String... namespaces) {
+        if (namespaces.length == 0) {
+            return;
+        }
+        try {
+            if (namespaces.length == 1) {
+                redisTemplate.opsForValue().increment(NAMESPACE_VERSION_KEY + namespaces[0]);
+                return;
+            }
+            redisTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                    RedisOperations<String, Object> template = (RedisOperations<String, Object>) operations;
+                    for (String namespace : namespaces) {
+                        template.opsForValue().increment(NAMESPACE_VERSION_KEY + namespace);
+                    }
+                    return null;
+                }
+            });
+        } catch (RuntimeException e) {
+            log.error("递增命名空间版本失败，旧缓存条目仍可被读到: namespaces={}", Arrays.toString(namespaces), e);
+            throw e;
+        }
+    }
+
+    /**
+     * 在后台按模式物理删除key
+     * 使用SCAN增量遍历，每批key以一条UNLINK删除（内存在Redis后台线程回收），不会长时间阻塞Redis
+     * @param pattern 匹配模式
+     * @return 删除的key数量
+     */
+    @Override
+    public CompletableFuture<Long> unlinkByPattern(String pattern) {
+        return CompletableFuture.supplyAsync(() -> {
+            ScanOptions options = ScanOptions.scanOptions().match(pattern).count(SCAN_BATCH_SIZE).build();
+            Long removed = redisTemplate.execute((RedisCallback<Long>) connection -> {
+                long count = 0;
+                List<byte[]> batch = new ArrayList<>(SCAN_BATCH_SIZE);
+                try (Cursor<byte[]> cursor = connection.keyCommands().scan(options)) {
+                    while (cursor.hasNext()) {
+                        batch.add(cursor.next());
+                        if (batch.size() >= SCAN_BATCH_SIZE) {
+                            count += unlinkBatch(connection, batch);
+                        }
+                    }
+                }
+                return count + unlinkBatch(connection, batch);
+            });
+            log.info("已按模式删除缓存: pattern={}, count={}", pattern, removed);
+            return removed == null ? 0L : removed;
+        }, unlinkExecutor);
+    }
+
+    private static long unlinkBatch(RedisConnection connection, List<byte[]> batch) {
+        if (batch.isEmpty()) {
+            return 0L;
+        }
+        Long removed = connection.keyCommands().unlink(batch.toArray(new byte[0][]));
+        batch.clear();
+        return removed == null ? 0L : removed;
+    }
+
+    // ============================租约=============================
+
+    /**
+     * 尝试获取租约（SET NX PX），同一时间只有一个持有者，到期自动释放
+     * Redis不可用时抛出异常，不能当作已获取：调用方自行决定不协调直接执行还是放弃
+     * @param key 租约key
+     * @param owner 持有者标识
+     * @param millis 租约时长(毫秒)
+     * @return true获取成功 false已被其他持有者占用
+     */
+    @Override
+    public boolean tryLease(String key, String owner, long millis) {
+        try {
+            Boolean acquired = redisTemplate.opsForValue().setIfAbsent(LEASE_KEY + key, owner, millis, TimeUnit.MILLISECONDS);
+            return !Boolean.FALSE.equals(acquired);
+        } catch (RuntimeException e) {
+            log.warn("获取租约失败: key={}", key, e);
+            throw e;
+        }
+    }
+
+    /**
+     * 释放租约，只删除自己持有的租约，避免误删超时后被他人重新获取的租约
+     * @param key 租约key
+     * @param owner 持有者标识
+     */
+    @Override
+    public void releaseLease(String key, String owner) {
+        try {
+            redisTemplate.execute(RELEASE_LEASE_SCRIPT, Collections.singletonList(LEASE_KEY + key), owner);
+        } catch (Exception e) {
+            log.warn("释放租约失败，等待其自动过期: key={}", key, e);
+        }
+    }
+
     // ============================String=============================
 
     /**
@@ -98,6 +313,7 @@ public class RedisUtil {
      * @param key 键
      * @return 值
      */
+    @Override
     public Object get(String key) {
         return key == null ? null : redisTemplate.opsForValue().get(key);
     }
@@ -108,6 +324,7 @@ public class RedisUtil {
      * @param value 值
      * @return true成功 false失败
      */
+    @Override
     public boolean set(String key, Object value) {
         try {
             redisTemplate.opsForValue().set(key, value);
@@ -125,6 +342,7 @@ public class RedisUtil {
      * @param time 时间(秒) time要大于0 如果time小于等于0 将设置无限期
      * @return true成功 false 失败
      */
+    @Override
     public boolean set(String key, Object value, long time) {
         try {
             if (time > 0) {
@@ -145,6 +363,7 @@ public class RedisUtil {
      * @param delta 要增加几(大于0)
      * @return 增加后的值
      */
+    @Override
     public long incr(String key, long delta) {
         if (delta < 0) {
             throw new RuntimeException("递增因子必须大于0");
@@ -158,6 +377,7 @@ public class RedisUtil {
      * @param delta 要减少几(小于0)
      * @return 减少后的值
      */
+    @Override
     public long decr(String key, long delta) {
         if (delta < 0) {
             throw new RuntimeException("递减因子必须大于0");
@@ -165,6 +385,102 @@ public class RedisUtil {
         return redisTemplate.opsForValue().increment(key, -delta);
     }
 
+    // ============================批量=============================
+
+    /**
+     * 批量获取，每批key一条MGET，N个key只需 N/500 次往返
+     * @param keys 键
+     * @return 与keys顺序一致的值，不存在的key对应null；Redis不可用时全部为null
+     */
+    @Override
+    public List<Object> mget(List<String> keys) {
+        List<Object> values = new ArrayList<>(keys.size());
+        try {
+            for (int from = 0; from < keys.size(); from += MULTI_KEY_BATCH_SIZE) {
+                List<String> batch = keys.subList(from, Math.min(keys.size(), from + MULTI_KEY_BATCH_SIZE));
+                List<Object> result = redisTemplate.opsForValue().multiGet(batch);
+                values.addAll(result != null ? result : Collections.nCopies(batch.size(), null));
+            }
+            return values;
+        } catch (Exception e) {
+            log.warn("批量获取缓存失败，按未命中处理: keys={}", keys.size(), e);
+            return new ArrayList<>(Collections.nCopies(keys.size(), null));
+        }
+    }
+
+    /**
+     * 批量放入，每个key可以有自己的过期时间，每批key在一个管道中执行
+     * @param values 键 -> 值
+     * @param times 键 -> 时间(秒)，未指定或小于等于0的key设置无限期
+     * @return true成功 false失败
+     */
+    @Override
+    public boolean mset(Map<String, Object> values, Map<String, Long> times) {
+        List<String> keys = new ArrayList<>(values.keySet());
+        try {
+            for (int from = 0; from < keys.size(); from += MULTI_KEY_BATCH_SIZE) {
+                List<String> batch = keys.subList(from, Math.min(keys.size(), from + MULTI_KEY_BATCH_SIZE));
+                redisTemplate.executePipelined(new SessionCallback<Object>() {
+                    @Override
+                    @SuppressWarnings("unchecked")
+                    public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                        // 管道中传入的就是redisTemplate本身，键值类型为<String, Object>
+                        RedisOperations<String, Object> template = (RedisOperations<String, Object>) operations;
+                        for (String key : batch) {
+                            Long time = times.get(key);
+                            if (time != null && time > 0) {
+                                template.opsForValue().set(key, values.get(key), time, TimeUnit.SECONDS);
+                            } else {
+                                template.opsForValue().set(key, values.get(key));
+                            }
+                        }
+                        return null;
+                    }
+                });
+            }
+            return true;
+        } catch (Exception e) {
+            log.warn("批量放入缓存失败: keys={}", keys.size(), e);
+            return false;
+        }
+    }
+
+    /**
+     * 批量放入并设置相同的时间
+     * @param values 键 -> 值
+     * @param time 时间(秒) 小于等于0时设置无限期
+     * @return true成功 false失败
+     */
+    @Override
+    public boolean mset(Map<String, Object> values, long time) {
+        Map<String, Long> times = new HashMap<>();
+        values.keySet().forEach(key -> times.put(key, time));
+        return mset(values, times);
+    }
+
+    /**
+     * 批量删除，每批key一条UNLINK（内存在Redis后台线程回收）
+     * @param keys 键
+     * @return 删除的key数量
+     */
+    @Override
+    public long unlink(Collection<String> keys) {
+        if (CollectionUtils.isEmpty(keys)) {
+            return 0L;
+        }
+        List<String> keyList = new ArrayList<>(keys);
+        long removed = 0;
+        try {
+            for (int from = 0; from < keyList.size(); from += MULTI_KEY_BATCH_SIZE) {
+                Long count = redisTemplate.unlink(keyList.subList(from, Math.min(keyList.size(), from + MULTI_KEY_BATCH_SIZE)));
+                removed += count == null ? 0L : count;
+            }
+        } catch (Exception e) {
+            log.warn("批量删除缓存失败: keys={}", keyList.size(), e);
+        }
+        return removed;
+    }
+
     // ================================Map=================================
 
     /**
@@ -60,8 +60,12 @@ CREATE TABLE IF NOT EXISTS `inventory` (
   `location` varchar(100) DEFAULT NULL COMMENT '存储位置',
   `last_check_time` datetime DEFAULT NULL COMMENT '最后检查时间',
   `create_time` datetime NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+  `update_time` datetime NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '更新时间',
+  `stock_status` varchar(20) DEFAULT NULL COMMENT '库存状态：low(不足)、warning(预警)、normal(正常)、high(超储)',
   PRIMARY KEY (`id`),
-  KEY `idx_chemical_id` (`chemical_id`)
+  KEY `idx_chemical_id` (`chemical_id`),
+  KEY `idx_stock_status` (`stock_status`, `update_time`),
+  KEY `idx_update_time` (`update_time`)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='库存表';
 
 -- 插入化学品测试数据（如果表为空）
@@ -123,6 +127,17 @@ SELECT * FROM (
 ) as tmp
 WHERE NOT EXISTS (SELECT 1 FROM `inventory` LIMIT 1);
 
+-- 回填库存状态（与InventoryMapper.xml中Stock_Status_Expr的分类一致）
+UPDATE `inventory` i
+JOIN `chemical` c ON c.`id` = i.`chemical_id`
+SET i.`stock_status` = CASE
+    WHEN i.`current_amount` < c.`warning_threshold` THEN 'low'
+    WHEN i.`current_amount` < c.`warning_threshold` * 1.2 THEN 'warning'
+    WHEN i.`current_amount` > c.`warning_threshold` * 5 THEN 'high'
+    ELSE 'normal'
+END
+WHERE i.`stock_status` IS NULL;
+
 -- 创建预警记录表
 CREATE TABLE IF NOT EXISTS `warning_record` (
   `id` int(11) NOT NULL AUTO_INCREMENT COMMENT '预警记录ID',
@@ -180,4 +195,151 @@ SELECT * FROM (
   SELECT 4 as chemical_id, 1 as user_id, 1.50 as amount, 'kg' as unit, '2025-03-09 11:30:00' as usage_time, '溶液配制' as usage_purpose, '配制标准溶液' as notes, '2025-03-09 11:30:00' as create_time UNION ALL
   SELECT 5 as chemical_id, 4 as user_id, 0.75 as amount, 'L' as unit, '2025-03-08 16:45:00' as usage_time, '实验分析' as usage_purpose, '用于色谱分析' as notes, '2025-03-08 16:45:00' as create_time
 ) as tmp
-WHERE NOT EXISTS (SELECT 1 FROM `usage_record` LIMIT 1); 
\ No newline at end of file
+WHERE NOT EXISTS (SELECT 1 FROM `usage_record` LIMIT 1); 
+-- 创建库存账本检查点表（内存账本模式下记录已刷入inventory的增量日志序号）
+CREATE TABLE IF NOT EXISTS `inventory_ledger_checkpoint` (
+  `id` int(11) NOT NULL COMMENT '检查点ID（固定为1）',
+  `last_seq` bigint(20) NOT NULL DEFAULT 0 COMMENT '已刷入数据库的最大增量日志序号',
+  `update_time` datetime NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '更新时间',
+  PRIMARY KEY (`id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='库存账本检查点表';
+
+-- 创建库存流水表（只追加，记录每一次入库、出库与人工调整）
+CREATE TABLE IF NOT EXISTS `inventory_movement` (
+  `id` bigint(20) NOT NULL AUTO_INCREMENT COMMENT '流水ID',
+  `inventory_id` int(11) DEFAULT NULL COMMENT '库存ID',
+  `chemical_id` int(11) NOT NULL COMMENT '化学品ID',
+  `movement_type` varchar(20) NOT NULL COMMENT '流水类型：IN(入库)、OUT(出库)、ADJUST(人工调整)',
+  `delta` decimal(10,2) NOT NULL COMMENT '数量变化（入库为正，出库为负）',
+  `balance_after` decimal(10,2) DEFAULT NULL COMMENT '变动后该库存记录的余额',
+  `movement_time` datetime NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '发生时间',
+  PRIMARY KEY (`id`),
+  KEY `idx_chemical_time` (`chemical_id`, `movement_time`),
+  KEY `idx_inventory_time` (`inventory_id`, `movement_time`),
+  KEY `idx_movement_time` (`movement_time`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='库存流水表';
+
+-- 创建库存日终快照表（每个化学品每天一条日终余额）
+CREATE TABLE IF NOT EXISTS `inventory_daily_snapshot` (
+  `chemical_id` int(11) NOT NULL COMMENT '化学品ID',
+  `snapshot_date` date NOT NULL COMMENT '快照日期',
+  `closing_balance` decimal(12,2) NOT NULL COMMENT '日终库存量',
+  `create_time` datetime NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+  PRIMARY KEY (`chemical_id`, `snapshot_date`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='库存日终快照表';
+
+-- 创建库存对账水位表（最近一次对账读到的最大记录ID；增量对账按合计表中每个化学品自己的水位汇总）
+CREATE TABLE IF NOT EXISTS `inventory_reconcile_watermark` (
+  `id` int(11) NOT NULL COMMENT '水位ID（固定为1）',
+  `storage_max_id` bigint(20) NOT NULL DEFAULT 0 COMMENT '已汇总的最大入库记录ID',
+  `outbound_max_id` bigint(20) NOT NULL DEFAULT 0 COMMENT '已汇总的最大出库记录ID',
+  `usage_max_id` bigint(20) NOT NULL DEFAULT 0 COMMENT '已汇总的最大使用记录ID',
+  `update_time` datetime NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '更新时间',
+  PRIMARY KEY (`id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='库存对账水位表';
+
+-- 创建库存对账合计表（每个化学品截至其水位的入库/出库/使用合计；水位与合计在同一快照中读取）
+CREATE TABLE IF NOT EXISTS `inventory_reconcile_total` (
+  `chemical_id` int(11) NOT NULL COMMENT '化学品ID',
+  `storage_total` decimal(16,2) NOT NULL DEFAULT 0.00 COMMENT '入库合计',
+  `outbound_total` decimal(16,2) NOT NULL DEFAULT 0.00 COMMENT '出库合计',
+  `usage_total` decimal(16,2) NOT NULL DEFAULT 0.00 COMMENT '使用合计',
+  `storage_max_id` bigint(20) NOT NULL DEFAULT 0 COMMENT '已汇总的最大入库记录ID',
+  `outbound_max_id` bigint(20) NOT NULL DEFAULT 0 COMMENT '已汇总的最大出库记录ID',
+  `usage_max_id` bigint(20) NOT NULL DEFAULT 0 COMMENT '已汇总的最大使用记录ID',
+  `update_time` datetime NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '更新时间',
+  PRIMARY KEY (`chemical_id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='库存对账合计表';
+
+-- 创建库存计数器表（维护库存记录总数等计数，避免列表分页时COUNT全表）
+CREATE TABLE IF NOT EXISTS `inventory_counter` (
+  `counter_name` varchar(50) NOT NULL COMMENT '计数器名称',
+  `counter_value` bigint(20) NOT NULL DEFAULT 0 COMMENT '计数值',
+  `update_time` datetime NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '更新时间',
+  PRIMARY KEY (`counter_name`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='库存计数器表';
+
+-- 初始化库存记录总数
+INSERT INTO `inventory_counter` (`counter_name`, `counter_value`)
+SELECT 'inventory_total', COUNT(*) FROM `inventory`
+ON DUPLICATE KEY UPDATE `counter_value` = VALUES(`counter_value`);
+
+-- 创建库存批次表（每次入库形成一个批次，出库按FIFO/FEFO从批次扣减）
+CREATE TABLE IF NOT EXISTS `inventory_lot` (
+  `id` bigint(20) NOT NULL AUTO_INCREMENT COMMENT '批次ID',
+  `chemical_id` int(11) NOT NULL COMMENT '化学品ID',
+  `storage_record_id` int(11) DEFAULT NULL COMMENT '来源入库记录ID，期初批次为空',
+  `batch_no` varchar(50) DEFAULT NULL COMMENT '批次号',
+  `initial_amount` decimal(10,2) NOT NULL COMMENT '入库数量',
+  `remaining_amount` decimal(10,2) NOT NULL COMMENT '剩余数量',
+  `receipt_time` datetime NOT NULL COMMENT '入库时间',
+  `expiry_date` date DEFAULT NULL COMMENT '有效期至',
+  `create_time` datetime NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+  `update_time` datetime NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '更新时间',
+  `closed` tinyint(1) NOT NULL DEFAULT 0 COMMENT '是否已关闭（来源入库记录已删除）',
+  `depleted` tinyint(1) GENERATED ALWAYS AS (`remaining_amount` <= 0) STORED COMMENT '是否已用完（生成列）',
+  `expiry_sort` date GENERATED ALWAYS AS (ifnull(`expiry_date`, '9999-12-31')) STORED COMMENT '近效期排序键，无有效期排最后（生成列）',
+  PRIMARY KEY (`id`),
+  KEY `idx_lot_fifo` (`chemical_id`, `depleted`, `receipt_time`, `id`),
+  KEY `idx_lot_fefo` (`chemical_id`, `depleted`, `expiry_sort`, `receipt_time`, `id`),
+  KEY `idx_lot_storage_record` (`storage_record_id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='库存批次表';
+
+-- 创建出库批次分配表（一次出库拆分到多个批次时每个批次一条）
+CREATE TABLE IF NOT EXISTS `outbound_lot_allocation` (
+  `id` bigint(20) NOT NULL AUTO_INCREMENT COMMENT '分配ID',
+  `outbound_record_id` int(11) NOT NULL COMMENT '出库记录ID',
+  `lot_id` bigint(20) NOT NULL COMMENT '批次ID',
+  `chemical_id` int(11) NOT NULL COMMENT '化学品ID',
+  `batch_no` varchar(50) DEFAULT NULL COMMENT '批次号',
+  `amount` decimal(10,2) NOT NULL COMMENT '分配数量',
+  `create_time` datetime NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+  PRIMARY KEY (`id`),
+  KEY `idx_allocation_outbound` (`outbound_record_id`),
+  KEY `idx_allocation_lot` (`lot_id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='出库批次分配表';
+
+-- 以现有库存建立期初批次（仅在批次表为空时）
+INSERT INTO `inventory_lot` (`chemical_id`, `batch_no`, `initial_amount`, `remaining_amount`, `receipt_time`)
+SELECT `chemical_id`, 'OPENING', SUM(`current_amount`), SUM(`current_amount`), MIN(`create_time`)
+FROM `inventory`
+WHERE NOT EXISTS (SELECT 1 FROM `inventory_lot` LIMIT 1)
+GROUP BY `chemical_id`
+HAVING SUM(`current_amount`) > 0;
+
+-- 创建记录分钟汇总表（入库/出库/使用记录按化学品、分钟汇总，随记录增删改增量维护）
+CREATE TABLE IF NOT EXISTS `record_minute_rollup` (
+  `record_type` varchar(20) NOT NULL COMMENT '记录类型：storage(入库)、outbound(出库)、usage(使用)',
+  `chemical_id` int(11) NOT NULL COMMENT '化学品ID',
+  `stat_minute` datetime NOT NULL COMMENT '统计分钟（秒为0）',
+  `record_count` int(11) NOT NULL DEFAULT 0 COMMENT '记录数',
+  `amount_sum` decimal(16,2) NOT NULL DEFAULT 0.00 COMMENT '数量合计',
+  PRIMARY KEY (`record_type`, `stat_minute`, `chemical_id`),
+  KEY `idx_minute_rollup_chemical` (`record_type`, `chemical_id`, `stat_minute`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='记录分钟汇总表';
+
+-- 创建记录日汇总表（入库/出库/使用记录按化学品、日期汇总，随记录增删改增量维护）
+CREATE TABLE IF NOT EXISTS `record_daily_rollup` (
+  `record_type` varchar(20) NOT NULL COMMENT '记录类型：storage(入库)、outbound(出库)、usage(使用)',
+  `chemical_id` int(11) NOT NULL COMMENT '化学品ID',
+  `stat_date` date NOT NULL COMMENT '统计日期',
+  `record_count` int(11) NOT NULL DEFAULT 0 COMMENT '记录数',
+  `minute_count` int(11) NOT NULL DEFAULT 0 COMMENT '有记录的分钟数',
+  `amount_sum` decimal(16,2) NOT NULL DEFAULT 0.00 COMMENT '数量合计',
+  PRIMARY KEY (`record_type`, `stat_date`, `chemical_id`),
+  KEY `idx_daily_rollup_chemical` (`record_type`, `chemical_id`, `stat_date`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='记录日汇总表';
+
+-- 以现有使用记录建立汇总（仅在尚无汇总时；入库、出库记录的汇总见upgrade_record_rollup.sql，应用启动时也会补建）
+INSERT INTO `record_minute_rollup` (`record_type`, `chemical_id`, `stat_minute`, `record_count`, `amount_sum`)
+SELECT 'usage', `chemical_id`, CAST(DATE_FORMAT(`usage_time`, '%Y-%m-%d %H:%i:00') AS DATETIME) AS `stat_minute`, COUNT(*), SUM(`amount`)
+FROM `usage_record`
+WHERE NOT EXISTS (SELECT 1 FROM `record_minute_rollup` WHERE `record_type` = 'usage' LIMIT 1)
+GROUP BY `chemical_id`, `stat_minute`;
+
+INSERT INTO `record_daily_rollup` (`record_type`, `chemical_id`, `stat_date`, `record_count`, `minute_count`, `amount_sum`)
+SELECT `record_type`, `chemical_id`, DATE(`stat_minute`), SUM(`record_count`), COUNT(*), SUM(`amount_sum`)
+FROM `record_minute_rollup`
+WHERE `record_type` = 'usage'
+  AND NOT EXISTS (SELECT 1 FROM `record_daily_rollup` WHERE `record_type` = 'usage' LIMIT 1)
+GROUP BY `record_type`, `chemical_id`, DATE(`stat_minute`);
@@ -0,0 +1,22 @@
+-- 已有数据库升级：库存列表游标分页与计数器
+-- 需在upgrade_stock_status.sql之后执行；新库直接执行init_tables.sql即可
+
+-- 游标按 (update_time, id) 定位，update_time不允许为空
+UPDATE `inventory` SET `update_time` = `create_time` WHERE `update_time` IS NULL;
+
+ALTER TABLE `inventory`
+  MODIFY COLUMN `update_time` datetime NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '更新时间',
+  ADD KEY `idx_update_time` (`update_time`);
+
+-- 创建库存计数器表（维护库存记录总数等计数，避免列表分页时COUNT全表）
+CREATE TABLE IF NOT EXISTS `inventory_counter` (
+  `counter_name` varchar(50) NOT NULL COMMENT '计数器名称',
+  `counter_value` bigint(20) NOT NULL DEFAULT 0 COMMENT '计数值',
+  `update_time` datetime NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '更新时间',
+  PRIMARY KEY (`counter_name`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='库存计数器表';
+
+-- 初始化库存记录总数
+INSERT INTO `inventory_counter` (`counter_name`, `counter_value`)
+SELECT 'inventory_total', COUNT(*) FROM `inventory`
+ON DUPLICATE KEY UPDATE `counter_value` = VALUES(`counter_value`);
@@ -0,0 +1,45 @@
+-- 已有数据库升级：库存批次与出库批次分配
+-- 新库直接执行init_tables.sql即可
+
+-- 创建库存批次表（每次入库形成一个批次，出库按FIFO/FEFO从批次扣减）
+CREATE TABLE IF NOT EXISTS `inventory_lot` (
+  `id` bigint(20) NOT NULL AUTO_INCREMENT COMMENT '批次ID',
+  `chemical_id` int(11) NOT NULL COMMENT '化学品ID',
+  `storage_record_id` int(11) DEFAULT NULL COMMENT '来源入库记录ID，期初批次为空',
+  `batch_no` varchar(50) DEFAULT NULL COMMENT '批次号',
+  `initial_amount` decimal(10,2) NOT NULL COMMENT '入库数量',
+  `remaining_amount` decimal(10,2) NOT NULL COMMENT '剩余数量',
+  `receipt_time` datetime NOT NULL COMMENT '入库时间',
+  `expiry_date` date DEFAULT NULL COMMENT '有效期至',
+  `create_time` datetime NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+  `update_time` datetime NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '更新时间',
+  `closed` tinyint(1) NOT NULL DEFAULT 0 COMMENT '是否已关闭（来源入库记录已删除）',
+  `depleted` tinyint(1) GENERATED ALWAYS AS (`remaining_amount` <= 0) STORED COMMENT '是否已用完（生成列）',
+  `expiry_sort` date GENERATED ALWAYS AS (ifnull(`expiry_date`, '9999-12-31')) STORED COMMENT '近效期排序键，无有效期排最后（生成列）',
+  PRIMARY KEY (`id`),
+  KEY `idx_lot_fifo` (`chemical_id`, `depleted`, `receipt_time`, `id`),
+  KEY `idx_lot_fefo` (`chemical_id`, `depleted`, `expiry_sort`, `receipt_time`, `id`),
+  KEY `idx_lot_storage_record` (`storage_record_id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='库存批次表';
+
+-- 创建出库批次分配表（一次出库拆分到多个批次时每个批次一条）
+CREATE TABLE IF NOT EXISTS `outbound_lot_allocation` (
+  `id` bigint(20) NOT NULL AUTO_INCREMENT COMMENT '分配ID',
+  `outbound_record_id` int(11) NOT NULL COMMENT '出库记录ID',
+  `lot_id` bigint(20) NOT NULL COMMENT '批次ID',
+  `chemical_id` int(11) NOT NULL COMMENT '化学品ID',
+  `batch_no` varchar(50) DEFAULT NULL COMMENT '批次号',
+  `amount` decimal(10,2) NOT NULL COMMENT '分配数量',
+  `create_time` datetime NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+  PRIMARY KEY (`id`),
+  KEY `idx_allocation_outbound` (`outbound_record_id`),
+  KEY `idx_allocation_lot` (`lot_id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='出库批次分配表';
+
+-- 以现有库存建立期初批次（仅在批次表为空时）
+INSERT INTO `inventory_lot` (`chemical_id`, `batch_no`, `initial_amount`, `remaining_amount`, `receipt_time`)
+SELECT `chemical_id`, 'OPENING', SUM(`current_amount`), SUM(`current_amount`), MIN(`create_time`)
+FROM `inventory`
+WHERE NOT EXISTS (SELECT 1 FROM `inventory_lot` LIMIT 1)
+GROUP BY `chemical_id`
+HAVING SUM(`current_amount`) > 0;
@@ -0,0 +1,10 @@
+-- 已有数据库升级：批次分配改为在数据库中按出库顺序加锁读取
+-- 已执行过upgrade_inventory_lot.sql的库执行本脚本；新库直接执行init_tables.sql即可
+-- 生成列depleted让索引只覆盖未用完的批次，出库分配不必扫描（和加锁）已用完的批次
+
+ALTER TABLE `inventory_lot`
+  ADD COLUMN `depleted` tinyint(1) GENERATED ALWAYS AS (`remaining_amount` <= 0) STORED COMMENT '是否已用完（生成列）' AFTER `update_time`,
+  ADD COLUMN `expiry_sort` date GENERATED ALWAYS AS (ifnull(`expiry_date`, '9999-12-31')) STORED COMMENT '近效期排序键，无有效期排最后（生成列）' AFTER `depleted`,
+  ADD KEY `idx_lot_fifo` (`chemical_id`, `depleted`, `receipt_time`, `id`),
+  ADD KEY `idx_lot_fefo` (`chemical_id`, `depleted`, `expiry_sort`, `receipt_time`, `id`),
+  DROP KEY `idx_lot_chemical`;
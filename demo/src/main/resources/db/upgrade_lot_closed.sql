@@ -0,0 +1,12 @@
+-- 已有数据库升级：批次关闭标记
+-- 已执行过upgrade_inventory_lot.sql的库执行本脚本；新库直接执行init_tables.sql即可
+-- 来源入库记录删除后批次被关闭，出库记录删除或修改时不再把数量归还到已关闭的批次
+
+ALTER TABLE `inventory_lot`
+  ADD COLUMN `closed` tinyint(1) NOT NULL DEFAULT 0 COMMENT '是否已关闭（来源入库记录已删除）' AFTER `update_time`;
+
+-- 已关闭的批次：有来源入库记录字段但入库记录已不存在
+UPDATE `inventory_lot` l
+SET l.`closed` = 1
+WHERE l.`storage_record_id` IS NOT NULL
+  AND NOT EXISTS (SELECT 1 FROM `storage_record` s WHERE s.`id` = l.`storage_record_id`);
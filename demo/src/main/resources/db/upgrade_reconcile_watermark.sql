@@ -0,0 +1,15 @@
+-- 已有数据库升级：库存对账改为按化学品记录水位
+-- 每个分区在自己的只读快照中读取最大记录ID与各项合计，水位随合计逐个化学品保存
+-- 新库直接执行init_tables.sql即可
+
+ALTER TABLE `inventory_reconcile_total`
+  ADD COLUMN `storage_max_id` bigint(20) NOT NULL DEFAULT 0 COMMENT '已汇总的最大入库记录ID' AFTER `usage_total`,
+  ADD COLUMN `outbound_max_id` bigint(20) NOT NULL DEFAULT 0 COMMENT '已汇总的最大出库记录ID' AFTER `storage_max_id`,
+  ADD COLUMN `usage_max_id` bigint(20) NOT NULL DEFAULT 0 COMMENT '已汇总的最大使用记录ID' AFTER `outbound_max_id`;
+
+-- 已有合计沿用原来的全局水位
+UPDATE `inventory_reconcile_total` t
+JOIN `inventory_reconcile_watermark` w ON w.`id` = 1
+SET t.`storage_max_id` = w.`storage_max_id`,
+    t.`outbound_max_id` = w.`outbound_max_id`,
+    t.`usage_max_id` = w.`usage_max_id`;
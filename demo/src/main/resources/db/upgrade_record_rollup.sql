@@ -0,0 +1,70 @@
+-- 已有数据库升级：入库、出库、使用记录的按分钟与按日汇总
+-- 新库直接执行init_tables.sql即可；未执行本脚本时应用启动会按记录表补建空的汇总
+
+-- 创建记录分钟汇总表（入库/出库/使用记录按化学品、分钟汇总，随记录增删改增量维护）
+CREATE TABLE IF NOT EXISTS `record_minute_rollup` (
+  `record_type` varchar(20) NOT NULL COMMENT '记录类型：storage(入库)、outbound(出库)、usage(使用)',
+  `chemical_id` int(11) NOT NULL COMMENT '化学品ID',
+  `stat_minute` datetime NOT NULL COMMENT '统计分钟（秒为0）',
+  `record_count` int(11) NOT NULL DEFAULT 0 COMMENT '记录数',
+  `amount_sum` decimal(16,2) NOT NULL DEFAULT 0.00 COMMENT '数量合计',
+  PRIMARY KEY (`record_type`, `stat_minute`, `chemical_id`),
+  KEY `idx_minute_rollup_chemical` (`record_type`, `chemical_id`, `stat_minute`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='记录分钟汇总表';
+
+-- 创建记录日汇总表（入库/出库/使用记录按化学品、日期汇总，随记录增删改增量维护）
+CREATE TABLE IF NOT EXISTS `record_daily_rollup` (
+  `record_type` varchar(20) NOT NULL COMMENT '记录类型：storage(入库)、outbound(出库)、usage(使用)',
+  `chemical_id` int(11) NOT NULL COMMENT '化学品ID',
+  `stat_date` date NOT NULL COMMENT '统计日期',
+  `record_count` int(11) NOT NULL DEFAULT 0 COMMENT '记录数',
+  `minute_count` int(11) NOT NULL DEFAULT 0 COMMENT '有记录的分钟数',
+  `amount_sum` decimal(16,2) NOT NULL DEFAULT 0.00 COMMENT '数量合计',
+  PRIMARY KEY (`record_type`, `stat_date`, `chemical_id`),
+  KEY `idx_daily_rollup_chemical` (`record_type`, `chemical_id`, `stat_date`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='记录日汇总表';
+
+-- 以现有入库记录建立汇总
+DELETE FROM `record_daily_rollup` WHERE `record_type` = 'storage';
+DELETE FROM `record_minute_rollup` WHERE `record_type` = 'storage';
+
+INSERT INTO `record_minute_rollup` (`record_type`, `chemical_id`, `stat_minute`, `record_count`, `amount_sum`)
+SELECT 'storage', `chemical_id`, CAST(DATE_FORMAT(`storage_time`, '%Y-%m-%d %H:%i:00') AS DATETIME) AS `stat_minute`, COUNT(*), SUM(`amount`)
+FROM `storage_record`
+GROUP BY `chemical_id`, `stat_minute`;
+
+INSERT INTO `record_daily_rollup` (`record_type`, `chemical_id`, `stat_date`, `record_count`, `minute_count`, `amount_sum`)
+SELECT `record_type`, `chemical_id`, DATE(`stat_minute`), SUM(`record_count`), COUNT(*), SUM(`amount_sum`)
+FROM `record_minute_rollup`
+WHERE `record_type` = 'storage'
+GROUP BY `record_type`, `chemical_id`, DATE(`stat_minute`);
+
+-- 以现有出库记录建立汇总
+DELETE FROM `record_daily_rollup` WHERE `record_type` = 'outbound';
+DELETE FROM `record_minute_rollup` WHERE `record_type` = 'outbound';
+
+INSERT INTO `record_minute_rollup` (`record_type`, `chemical_id`, `stat_minute`, `record_count`, `amount_sum`)
+SELECT 'outbound', `chemical_id`, CAST(DATE_FORMAT(`outbound_time`, '%Y-%m-%d %H:%i:00') AS DATETIME) AS `stat_minute`, COUNT(*), SUM(`amount`)
+FROM `outbound_record`
+GROUP BY `chemical_id`, `stat_minute`;
+
+INSERT INTO `record_daily_rollup` (`record_type`, `chemical_id`, `stat_date`, `record_count`, `minute_count`, `amount_sum`)
+SELECT `record_type`, `chemical_id`, DATE(`stat_minute`), SUM(`record_count`), COUNT(*), SUM(`amount_sum`)
+FROM `record_minute_rollup`
+WHERE `record_type` = 'outbound'
+GROUP BY `record_type`, `chemical_id`, DATE(`stat_minute`);
+
+-- 以现有使用记录建立汇总
+DELETE FROM `record_daily_rollup` WHERE `record_type` = 'usage';
+DELETE FROM `record_minute_rollup` WHERE `record_type` = 'usage';
+
+INSERT INTO `record_minute_rollup` (`record_type`, `chemical_id`, `stat_minute`, `record_count`, `amount_sum`)
+SELECT 'usage', `chemical_id`, CAST(DATE_FORMAT(`usage_time`, '%Y-%m-%d %H:%i:00') AS DATETIME) AS `stat_minute`, COUNT(*), SUM(`amount`)
+FROM `usage_record`
+GROUP BY `chemical_id`, `stat_minute`;
+
+INSERT INTO `record_daily_rollup` (`record_type`, `chemical_id`, `stat_date`, `record_count`, `minute_count`, `amount_sum`)
+SELECT `record_type`, `chemical_id`, DATE(`stat_minute`), SUM(`record_count`), COUNT(*), SUM(`amount_sum`)
+FROM `record_minute_rollup`
+WHERE `record_type` = 'usage'
+GROUP BY `record_type`, `chemical_id`, DATE(`stat_minute`);
@@ -0,0 +1,17 @@
+-- 已有数据库升级：为库存表增加持久化的库存状态列及索引
+-- 新库直接执行init_tables.sql即可，无需执行本脚本
+
+ALTER TABLE `inventory`
+  ADD COLUMN `stock_status` varchar(20) DEFAULT NULL COMMENT '库存状态：low(不足)、warning(预警)、normal(正常)、high(超储)',
+  ADD KEY `idx_stock_status` (`stock_status`, `update_time`);
+
+-- 回填库存状态
+UPDATE `inventory` i
+JOIN `chemical` c ON c.`id` = i.`chemical_id`
+SET i.`stock_status` = CASE
+    WHEN i.`current_amount` < c.`warning_threshold` THEN 'low'
+    WHEN i.`current_amount` < c.`warning_threshold` * 1.2 THEN 'warning'
+    WHEN i.`current_amount` > c.`warning_threshold` * 5 THEN 'high'
+    ELSE 'normal'
+END
+WHERE i.`stock_status` IS NULL;
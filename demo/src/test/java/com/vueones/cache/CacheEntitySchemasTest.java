@@ -0,0 +1,134 @@
+package com.vueones.cache;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.vueones.config.RedisConfig;
+import com.vueones.entity.Man;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+/**
+ * 实体编码结构测试：按反射列出实体的全部字段逐一赋值，经紧凑编码往返后每个字段都要保留，
+ * 实体新增字段而编码结构漏登记时在这里失败；@JsonIgnore的字段与JSON序列化一样不写入
+ */
+class CacheEntitySchemasTest {
+
+    private final RedisSerializer<Object> codec = new RedisConfig().redisValueSerializer(
+            new RedisConfig().redisObjectMapper(), "compact", 0);
+
+    @Test
+    void everySchemaCoversEveryFieldOfItsEntity() throws Exception {
+        for (EntitySchema<?> schema : CacheEntitySchemas.ALL) {
+            Class<?> type = schema.getType();
+            List<Field> fields = encodedFields(type);
+            assertThat(schema.fields())
+                    .as("%s的编码结构字段数", type.getSimpleName())
+                    .hasSize(fields.size());
+
+            Object source = populate(type, 1);
+            Object decoded = codec.deserialize(codec.serialize(source));
+
+            assertThat(decoded).isInstanceOf(type);
+            List<String> lost = new ArrayList<>();
+            for (Field field : fields) {
+                if (field.get(decoded) == null || isZeroPrimitive(field, decoded)) {
+                    lost.add(field.getName());
+                }
+            }
+            assertThat(lost).as("%s经编码往返后丢失的字段", type.getSimpleName()).isEmpty();
+            assertThat(decoded).usingRecursiveComparison().isEqualTo(source);
+        }
+    }
+
+    @Test
+    void typeIdsAreUniqueAndEntitiesAreRegisteredOnce() {
+        Set<Integer> typeIds = new HashSet<>();
+        Set<Class<?>> types = new HashSet<>();
+        for (EntitySchema<?> schema : CacheEntitySchemas.ALL) {
+            assertThat(typeIds.add(schema.getTypeId())).as("类型编号 %s", schema.getTypeId()).isTrue();
+            assertThat(types.add(schema.getType())).as("实体 %s", schema.getType().getSimpleName()).isTrue();
+        }
+    }
+
+    @Test
+    void jsonIgnoredFieldsAreNotEncoded() {
+        Man man = (Man) populate(Man.class, 1);
+        man.setPassword("secret");
+
+        Man decoded = (Man) codec.deserialize(codec.serialize(man));
+
+        assertThat(decoded.getPassword()).isNull();
+        assertThat(decoded.getName()).isEqualTo(man.getName());
+    }
+
+    /**
+     * 为实体的全部编码字段赋上互不相同的非空值，关联实体递归赋值一层
+     */
+    static Object populate(Class<?> type, int seed) {
+        try {
+            Object instance = type.getDeclaredConstructor().newInstance();
+            int index = 0;
+            for (Field field : encodedFields(type)) {
+                field.set(instance, sample(field.getType(), seed * 100 + index++, seed));
+            }
+            return instance;
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Object sample(Class<?> type, int seed, int depth) {
+        if (type == Integer.class || type == int.class) {
+            return 1000 + seed;
+        }
+        if (type == Long.class || type == long.class) {
+            return 10_000_000_000L + seed;
+        }
+        if (type == Double.class || type == double.class) {
+            return seed + 0.25;
+        }
+        if (type == String.class || type == Object.class) {
+            return "值" + seed;
+        }
+        if (type == Boolean.class || type == boolean.class) {
+            return Boolean.TRUE;
+        }
+        if (type == Date.class) {
+            return new Date(1_700_000_000_000L + seed * 1000L);
+        }
+        boolean registered = CacheEntitySchemas.ALL.stream().anyMatch(schema -> schema.getType() == type);
+        if (registered && depth < 3) {
+            return populate(type, depth + 1);
+        }
+        return fail("编码结构测试不支持的字段类型: " + type.getName());
+    }
+
+    private static List<Field> encodedFields(Class<?> type) {
+        List<Field> fields = new ArrayList<>();
+        for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+            for (Field field : c.getDeclaredFields()) {
+                if (Modifier.isStatic(field.getModifiers()) || field.isSynthetic()
+                        || field.isAnnotationPresent(JsonIgnore.class)) {
+                    continue;
+                }
+                field.setAccessible(true);
+                fields.add(field);
+            }
+        }
+        return fields;
+    }
+
+    private static boolean isZeroPrimitive(Field field, Object instance) throws IllegalAccessException {
+        return field.getType().isPrimitive() && ((Number) field.get(instance)).longValue() == 0L;
+    }
+}
@@ -0,0 +1,170 @@
+package com.vueones.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vueones.config.RedisConfig;
+import com.vueones.dto.ReconciliationDiff;
+import com.vueones.entity.Chemical;
+import com.vueones.entity.Inventory;
+import com.vueones.entity.Man;
+import com.vueones.entity.StorageRecord;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 紧凑编码测试：各类缓存值往返一致，旧的JSON缓存值仍可读取；
+ * 编码后的体积不超过JSON的1/3
+ */
+class CompactRedisSerializerTest {
+
+    private static final RedisConfig CONFIG = new RedisConfig();
+    private static final ObjectMapper MAPPER = CONFIG.redisObjectMapper();
+
+    private final RedisSerializer<Object> json = new Jackson2JsonRedisSerializer<>(MAPPER, Object.class);
+    private final RedisSerializer<Object> compact = CONFIG.redisValueSerializer(MAPPER, "compact", 512);
+
+    @Test
+    void roundTripsCachedValueShapes() {
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        statistics.put("count", 12);
+        statistics.put("total", 1234.5);
+        statistics.put("big", 9_000_000_000L);
+        statistics.put("since", new Date(1_700_000_000_000L));
+        statistics.put("missing", null);
+        statistics.put("flag", false);
+        statistics.put("byCategory", List.of(Map.of("category", "溶剂", "amount", 3.5)));
+
+        assertThat(roundTrip(statistics)).isEqualTo(statistics);
+        assertThat(roundTrip(storageRecords(50))).usingRecursiveComparison().isEqualTo(storageRecords(50));
+        assertThat(roundTrip(-42)).isEqualTo(-42);
+        assertThat(roundTrip("")).isEqualTo("");
+        assertThat(roundTrip(Boolean.TRUE)).isEqualTo(Boolean.TRUE);
+        assertThat(compact.serialize(null)).isEmpty();
+        assertThat(compact.deserialize(new byte[0])).isNull();
+    }
+
+    @Test
+    void largeValuesAreDeflatedAndStillReadable() {
+        List<StorageRecord> records = storageRecords(200);
+        RedisSerializer<Object> uncompressed = CONFIG.redisValueSerializer(MAPPER, "compact", 0);
+
+        byte[] deflated = compact.serialize(records);
+        byte[] plain = uncompressed.serialize(records);
+
+        assertThat(deflated.length).isLessThan(plain.length);
+        assertThat(compact.deserialize(deflated)).usingRecursiveComparison().isEqualTo(records);
+        // 未压缩写入的值同样可以读取
+        assertThat(compact.deserialize(plain)).usingRecursiveComparison().isEqualTo(records);
+    }
+
+    @Test
+    void unregisteredTypesAndLegacyJsonFallBackToJson() {
+        ReconciliationDiff diff = new ReconciliationDiff();
+        diff.setChemicalId(7);
+        diff.setExpected(10.0);
+        diff.setActual(8.0);
+        assertThat(roundTrip(diff)).usingRecursiveComparison().isEqualTo(diff);
+
+        // 切换编码前写入Redis的JSON值
+        Inventory inventory = inventory(1);
+        assertThat(compact.deserialize(json.serialize(inventory))).usingRecursiveComparison().isEqualTo(inventory);
+    }
+
+    @Test
+    void compactEncodingIsAtLeastThreeTimesSmallerThanJson() {
+        List<Object> entries = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            entries.add(chemical(i));
+            entries.add(inventory(i));
+            entries.add(storageRecord(i));
+        }
+        // 列表类缓存值（分页查询结果）
+        for (int i = 0; i < 20; i++) {
+            entries.add(storageRecords(20));
+        }
+
+        long jsonBytes = 0;
+        long compactBytes = 0;
+        for (Object entry : entries) {
+            jsonBytes += json.serialize(entry).length;
+            byte[] encoded = compact.serialize(entry);
+            compactBytes += encoded.length;
+            assertThat(compact.deserialize(encoded)).usingRecursiveComparison().isEqualTo(entry);
+        }
+        assertThat(compactBytes * 3).isLessThanOrEqualTo(jsonBytes);
+        // 单条实体中字段名与类型信息占比越高，节省越多；字段少、中文内容多的化学品也至少缩小一半
+        for (Object entry : Arrays.asList(chemical(1), inventory(1), storageRecord(1))) {
+            int compactLength = compact.serialize(entry).length;
+            int jsonLength = json.serialize(entry).length;
+            assertThat(compactLength * 2).as(entry.getClass().getSimpleName()).isLessThanOrEqualTo(jsonLength);
+        }
+    }
+
+    private Object roundTrip(Object value) {
+        return compact.deserialize(compact.serialize(value));
+    }
+
+    private static Chemical chemical(int i) {
+        Chemical chemical = new Chemical();
+        chemical.setId(i + 1);
+        chemical.setName("无水乙醇" + i);
+        chemical.setCategory("有机溶剂");
+        chemical.setDangerLevel("中");
+        chemical.setStorageCondition("阴凉通风");
+        chemical.setWarningThreshold(5.0);
+        chemical.setDescription("分析纯，500ml/瓶");
+        return chemical;
+    }
+
+    private static Inventory inventory(int i) {
+        Inventory inventory = new Inventory();
+        inventory.setId(i + 1);
+        inventory.setChemicalId(i + 1);
+        inventory.setLocation("A柜-" + (i % 10));
+        inventory.setCurrentAmount(12.5 + i);
+        inventory.setUnit("L");
+        inventory.setLastCheckTime(new Date(1_700_000_000_000L + i * 60_000L));
+        inventory.setCreateTime(new Date(1_690_000_000_000L + i * 60_000L));
+        inventory.setUpdateTime(new Date(1_700_000_100_000L + i * 60_000L));
+        inventory.setStockStatus("正常");
+        inventory.setChemical(chemical(i));
+        return inventory;
+    }
+
+    private static StorageRecord storageRecord(int i) {
+        StorageRecord record = new StorageRecord();
+        record.setId(i + 1);
+        record.setChemicalId(i % 50 + 1);
+        record.setChemicalName("无水乙醇" + i % 50);
+        record.setInventoryId(i % 50 + 1);
+        record.setAmount(2.5);
+        record.setUnit("L");
+        record.setBatchNo("B2024" + i);
+        record.setStorageTime(new Date(1_700_000_000_000L + i * 3_600_000L));
+        record.setOperatorId(3);
+        record.setSupplier("国药集团");
+        record.setCreateTime(new Date(1_700_000_000_000L + i * 3_600_000L));
+        Man operator = new Man();
+        operator.setId(3);
+        operator.setName("张三");
+        record.setOperator(operator);
+        return record;
+    }
+
+    private static List<StorageRecord> storageRecords(int size) {
+        List<StorageRecord> records = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            records.add(storageRecord(i));
+        }
+        return records;
+    }
+}
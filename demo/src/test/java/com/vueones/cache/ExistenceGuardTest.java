@@ -0,0 +1,112 @@
+package com.vueones.cache;
+
+import com.vueones.mapper.ChemicalMapper;
+import com.vueones.mapper.InventoryMapper;
+import com.vueones.mapper.StorageRecordMapper;
+import com.vueones.mapper.UsageRecordMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+/**
+ * 存在性防护的判定水位测试：重建查询时尚未提交的ID不会被判定为不存在，
+ * 判定水位首次取最大ID减去宽限ID数、之后取上一次重建的最大ID，重建期间的新增补入新过滤器
+ */
+class ExistenceGuardTest {
+
+    private static final int GRACE_IDS = 5;
+
+    private ChemicalMapper chemicalMapper;
+    private ExistenceGuard guard;
+
+    @BeforeEach
+    void setUp() {
+        chemicalMapper = Mockito.mock(ChemicalMapper.class);
+        InventoryMapper inventoryMapper = Mockito.mock(InventoryMapper.class);
+        StorageRecordMapper storageRecordMapper = Mockito.mock(StorageRecordMapper.class);
+        UsageRecordMapper usageRecordMapper = Mockito.mock(UsageRecordMapper.class);
+        when(inventoryMapper.selectAllIds()).thenReturn(List.of());
+        when(storageRecordMapper.selectAllIds()).thenReturn(List.of());
+        when(usageRecordMapper.selectAllIds()).thenReturn(List.of());
+
+        guard = new ExistenceGuard();
+        ReflectionTestUtils.setField(guard, "enabled", true);
+        ReflectionTestUtils.setField(guard, "falsePositiveRate", 0.0001);
+        ReflectionTestUtils.setField(guard, "graceIds", GRACE_IDS);
+        ReflectionTestUtils.setField(guard, "cacheManager", new ConcurrentMapCacheManager());
+        ReflectionTestUtils.setField(guard, "chemicalMapper", chemicalMapper);
+        ReflectionTestUtils.setField(guard, "inventoryMapper", inventoryMapper);
+        ReflectionTestUtils.setField(guard, "storageRecordMapper", storageRecordMapper);
+        ReflectionTestUtils.setField(guard, "usageRecordMapper", usageRecordMapper);
+    }
+
+    @Test
+    void idsAboveWatermarkAreNeverRuledAbsent() {
+        // 第48条在首次重建查询时尚未提交，第30条已删除
+        when(chemicalMapper.selectAllIds()).thenReturn(ids(1, 50, 30, 48));
+        guard.rebuild();
+
+        assertThat(statistics()).containsEntry("watermark", 50 - GRACE_IDS).containsEntry("maxId", 50);
+        assertThat(loads(48)).as("宽限范围内的ID照常查询数据库").isEqualTo(1);
+        assertThat(loads(30)).as("水位以下且不在过滤器中的ID直接判定不存在").isZero();
+
+        // 第二次重建时第58条尚未提交：判定水位取上一次重建的最大ID
+        when(chemicalMapper.selectAllIds()).thenReturn(ids(1, 60, 30, 58));
+        guard.rebuild();
+
+        assertThat(statistics()).containsEntry("watermark", 50).containsEntry("maxId", 60);
+        assertThat(loads(58)).isEqualTo(1);
+        assertThat(loads(48)).as("已补上的ID").isEqualTo(1);
+        assertThat(loads(30)).isZero();
+        assertThat(statistics().get("rejected")).isEqualTo(2L);
+    }
+
+    @Test
+    void idsAddedDuringRebuildAreReplayedIntoTheNewFilter() {
+        when(chemicalMapper.selectAllIds()).thenReturn(ids(1, 100));
+        guard.rebuild();
+
+        // 重建查询进行期间本节点新增了第7条，查询结果中没有它
+        when(chemicalMapper.selectAllIds()).thenAnswer(invocation -> {
+            guard.added(CacheNames.CHEMICAL, 7);
+            return ids(1, 100, 7);
+        });
+        guard.rebuild();
+
+        assertThat(statistics()).containsEntry("watermark", 100);
+        assertThat(loads(7)).isEqualTo(1);
+    }
+
+    private int loads(int id) {
+        AtomicInteger loads = new AtomicInteger();
+        guard.load(CacheNames.CHEMICAL, id, () -> {
+            loads.incrementAndGet();
+            return "化学品" + id;
+        });
+        return loads.get();
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> statistics() {
+        return (Map<String, Object>) guard.getStatistics().get(CacheNames.CHEMICAL);
+    }
+
+    private static List<Integer> ids(int from, int to, Integer... absent) {
+        List<Integer> skipped = List.of(absent);
+        return IntStream.rangeClosed(from, to).boxed()
+                .filter(id -> !skipped.contains(id))
+                .collect(Collectors.toCollection(ArrayList::new));
+    }
+}
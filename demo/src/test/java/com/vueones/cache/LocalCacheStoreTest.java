@@ -0,0 +1,87 @@
+package com.vueones.cache;
+
+import com.vueones.config.RedisConfig;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 进程内缓存存储测试：反复访问的热点条目不被一次性扫描冲掉（W-TinyLFU准入拒绝低频新条目），
+ * 占用不超过内存预算且容量淘汰按缓存名计入统计，过期与超出预算的值读不到
+ */
+class LocalCacheStoreTest {
+
+    private static final byte[] VALUE = new byte[100];
+    /** 约100个条目的预算 */
+    private static final long MAX_BYTES = 22_000;
+
+    @Test
+    void hotEntriesSurviveScanOfOneOffKeys() {
+        LocalCacheStore store = new LocalCacheStore(MAX_BYTES);
+        for (int i = 0; i < 50; i++) {
+            store.put("hot-" + i, VALUE, 0L);
+        }
+        for (int round = 0; round < 10; round++) {
+            for (int i = 0; i < 50; i++) {
+                assertThat(store.get("hot-" + i)).isNotNull();
+            }
+        }
+
+        for (int i = 0; i < 5000; i++) {
+            store.put("scan-" + i, VALUE, 0L);
+            store.get("scan-" + i);
+        }
+
+        for (int i = 0; i < 50; i++) {
+            assertThat(store.get("hot-" + i)).as("热点条目 hot-%s", i).isNotNull();
+        }
+        Map<String, Object> statistics = store.getStatistics();
+        assertThat((Long) statistics.get("rejections")).isPositive();
+        assertThat((Long) statistics.get("bytes")).isLessThanOrEqualTo(MAX_BYTES);
+    }
+
+    @Test
+    void staysWithinBudgetAndCountsCapacityEvictionsPerCache() {
+        RedisConfig config = new RedisConfig();
+        RedisSerializer<Object> serializer = config.redisValueSerializer(config.redisObjectMapper(), "compact", 512);
+        LocalCacheStore store = new LocalCacheStore(MAX_BYTES);
+        CacheMetrics metrics = new CacheMetrics();
+        AtomicLong evicted = new AtomicLong();
+        store.setEvictionListener(key -> {
+            evicted.incrementAndGet();
+            metrics.recordCapacityEviction(key);
+        });
+        LocalCache chemicals = new LocalCache(CacheNames.CHEMICAL, store, serializer, Duration.ZERO, 1 << 16, metrics);
+
+        for (int i = 0; i < 2000; i++) {
+            chemicals.put(i, "化学品" + i);
+            assertThat((Long) store.getStatistics().get("bytes")).isLessThanOrEqualTo(MAX_BYTES);
+        }
+
+        long evictions = (Long) store.getStatistics().get("evictions");
+        assertThat(evictions).isPositive().isEqualTo(evicted.get());
+        assertThat(metrics.getCaches().get(CacheNames.CHEMICAL).snapshot()).containsEntry("capacityEvictions", evictions);
+        assertThat((Integer) store.getStatistics().get("entries")).isEqualTo(2000 - (int) evictions);
+    }
+
+    @Test
+    void expiredAndOversizedValuesAreNotReturned() throws InterruptedException {
+        LocalCacheStore store = new LocalCacheStore(MAX_BYTES);
+        store.put("short", VALUE, TimeUnit.MILLISECONDS.toNanos(1));
+        store.put("big", VALUE, 0L);
+        Thread.sleep(5);
+
+        assertThat(store.get("short")).isNull();
+        assertThat(store.getStatistics()).containsEntry("expirations", 1L);
+
+        // 超出预算的新值不写入，同时移除旧值
+        store.put("big", new byte[(int) MAX_BYTES], 0L);
+        assertThat(store.get("big")).isNull();
+    }
+}
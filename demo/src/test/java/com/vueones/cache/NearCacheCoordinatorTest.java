@@ -0,0 +1,122 @@
+package com.vueones.cache;
+
+import com.vueones.entity.Chemical;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 两级缓存测试：两个节点共用进程内失效通道与同一个远端缓存，
+ * 一个节点的失效清除另一个节点的本地条目，失效前开始的回填被代数丢弃，读取得到的是副本
+ */
+class NearCacheCoordinatorTest {
+
+    private static final String NAME = CacheNames.CHEMICAL;
+
+    private HookedCache remote;
+    private Cache nodeA;
+    private Cache nodeB;
+    private NearCacheCoordinator coordinatorB;
+
+    @BeforeEach
+    void setUp() {
+        RedisSerializer<Object> serializer = new CompactRedisSerializer(
+                new GenericJackson2JsonRedisSerializer(), CacheEntitySchemas.ALL, 0);
+        InProcessCacheInvalidationBus bus = new InProcessCacheInvalidationBus();
+        NearCacheCoordinator coordinatorA = new NearCacheCoordinator(bus, Map.of(NAME, 100), 60, serializer);
+        coordinatorB = new NearCacheCoordinator(bus, Map.of(NAME, 100), 60, serializer);
+        remote = new HookedCache(NAME);
+        nodeA = coordinatorA.wrap(NAME, remote);
+        nodeB = coordinatorB.wrap(NAME, remote);
+    }
+
+    @Test
+    void evictionOnOneNodeClearsTheOtherNodesLocalEntry() {
+        nodeA.put(1, chemical(1, "乙醇"));
+        assertThat(nodeB.get(1, Chemical.class).getName()).isEqualTo("乙醇");
+        // 本地命中，不再读远端
+        remote.reads = 0;
+        assertThat(nodeB.get(1, Chemical.class).getName()).isEqualTo("乙醇");
+        assertThat(remote.reads).isZero();
+
+        nodeA.evict(1);
+        remote.put(1, chemical(1, "无水乙醇"));
+        assertThat(nodeB.get(1, Chemical.class).getName()).isEqualTo("无水乙醇");
+
+        // 批量失效广播清空
+        nodeA.put(2, chemical(2, "丙酮"));
+        nodeB.get(2);
+        ((BatchCache) nodeA).evictAll(List.of(1, 2));
+        remote.put(2, chemical(2, "丙酮-新"));
+        assertThat(nodeB.get(2, Chemical.class).getName()).isEqualTo("丙酮-新");
+        assertThat(nodeB.get(1)).isNull();
+    }
+
+    @Test
+    void backfillStartedBeforeEvictionIsDiscarded() {
+        remote.put(1, chemical(1, "旧值"));
+        // 节点B读到旧值之后、回填本地之前，节点A修改并失效了该条目
+        remote.afterRead = () -> {
+            remote.afterRead = null;
+            nodeA.evict(1);
+            remote.put(1, chemical(1, "新值"));
+        };
+
+        assertThat(nodeB.get(1, Chemical.class).getName()).isEqualTo("旧值");
+        assertThat(coordinatorB.getStatistics().get(NAME).get("size")).isEqualTo(0);
+        assertThat(nodeB.get(1, Chemical.class).getName()).isEqualTo("新值");
+        assertThat(nodeB.get(1, Chemical.class).getName()).isEqualTo("新值");
+    }
+
+    @Test
+    void readsReturnIndependentCopies() {
+        nodeA.put(1, chemical(1, "硫酸"));
+        Chemical first = nodeB.get(1, Chemical.class);
+        first.setName("被调用方修改");
+
+        Chemical second = nodeB.get(1, Chemical.class);
+        assertThat(second).isNotSameAs(first);
+        assertThat(second.getName()).isEqualTo("硫酸");
+        assertThat(nodeA.get(1, Chemical.class).getName()).isEqualTo("硫酸");
+    }
+
+    private static Chemical chemical(int id, String name) {
+        Chemical chemical = new Chemical();
+        chemical.setId(id);
+        chemical.setName(name);
+        chemical.setWarningThreshold(5.0);
+        return chemical;
+    }
+
+    /**
+     * 可在读取后插入动作、统计读取次数的远端缓存
+     */
+    private static final class HookedCache extends ConcurrentMapCache {
+
+        volatile Runnable afterRead;
+        volatile int reads;
+
+        HookedCache(String name) {
+            super(name, false);
+        }
+
+        @Override
+        public ValueWrapper get(Object key) {
+            reads++;
+            ValueWrapper wrapper = super.get(key);
+            Runnable action = afterRead;
+            if (action != null) {
+                action.run();
+            }
+            return wrapper;
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.vueones.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vueones.config.RedisConfig;
+import com.vueones.util.KeyValueStore;
+import com.vueones.util.LocalKeyValueStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.AdditionalAnswers;
+import org.mockito.Mockito;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * 标签与命名空间失效测试：一条记录写入后，能匹配到它的查询key全部变化，
+ * 其他化学品、其他月份的查询key不变；事务中的失效在提交后才生效；
+ * 命名空间版本递增后单条与批量读取都读不到旧条目，其他缓存不受影响；
+ * 版本号在本节点缓存期间只读取一次，本节点清空立即生效，其他节点的清空在缓存时间后生效
+ */
+class QueryTagsTest {
+
+    private static final String GROUP = "storage_record";
+    private static final RedisConfig CONFIG = new RedisConfig();
+    private static final ObjectMapper MAPPER = CONFIG.redisObjectMapper();
+
+    private final RedisSerializer<Object> serializer = CONFIG.redisValueSerializer(MAPPER, "compact", 512);
+    private LocalCacheStore store;
+    private LocalKeyValueStore keyValueStore;
+    private QueryTags queryTags;
+
+    @BeforeEach
+    void setUp() {
+        store = new LocalCacheStore(1 << 20);
+        keyValueStore = new LocalKeyValueStore(store, serializer);
+        queryTags = new QueryTags();
+        ReflectionTestUtils.setField(queryTags, "keyValueStore", keyValueStore);
+    }
+
+    @Test
+    void writeInvalidatesOnlyQueriesThatCanMatchTheRecord() {
+        Map<String, String> queries = Map.of(
+                "c1五月", key(1, date(2024, 5, 1), date(2024, 5, 31)),
+                "c1四至六月", key(1, date(2024, 4, 1), date(2024, 6, 30)),
+                "全部化学品五月", key(null, date(2024, 5, 1), date(2024, 5, 31)),
+                "c1不限时间", key(1, null, null),
+                "全部不限时间", key(null, null, null),
+                "c2五月", key(2, date(2024, 5, 1), date(2024, 5, 31)),
+                "c1六月", key(1, date(2024, 6, 1), date(2024, 6, 30)),
+                "全部化学品四月", key(null, date(2024, 4, 1), date(2024, 4, 30)));
+
+        // 化学品1在五月的一条记录
+        queryTags.invalidateAfterCommit(queryTags.recordTags(GROUP, 1, date(2024, 5, 20)));
+
+        assertThat(key(1, date(2024, 5, 1), date(2024, 5, 31))).isNotEqualTo(queries.get("c1五月"));
+        assertThat(key(1, date(2024, 4, 1), date(2024, 6, 30))).isNotEqualTo(queries.get("c1四至六月"));
+        assertThat(key(null, date(2024, 5, 1), date(2024, 5, 31))).isNotEqualTo(queries.get("全部化学品五月"));
+        assertThat(key(1, null, null)).isNotEqualTo(queries.get("c1不限时间"));
+        assertThat(key(null, null, null)).isNotEqualTo(queries.get("全部不限时间"));
+        assertThat(key(2, date(2024, 5, 1), date(2024, 5, 31))).isEqualTo(queries.get("c2五月"));
+        assertThat(key(1, date(2024, 6, 1), date(2024, 6, 30))).isEqualTo(queries.get("c1六月"));
+        assertThat(key(null, date(2024, 4, 1), date(2024, 4, 30))).isEqualTo(queries.get("全部化学品四月"));
+    }
+
+    @Test
+    void rangesSpanningTooManyMonthsDependOnTheUnboundedTag() {
+        String longRange = key(1, date(2020, 1, 1), date(2024, 12, 31));
+
+        // 时间范围外的记录也会使跨度过大的查询失效（多失效不漏失效）
+        queryTags.invalidateAfterCommit(queryTags.recordTags(GROUP, 1, date(2019, 1, 1)));
+
+        assertThat(key(1, date(2020, 1, 1), date(2024, 12, 31))).isNotEqualTo(longRange);
+    }
+
+    @Test
+    void invalidationInsideTransactionTakesEffectAfterCommit() {
+        String before = key(1, date(2024, 5, 1), date(2024, 5, 31));
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            queryTags.invalidateAfterCommit(queryTags.recordTags(GROUP, 1, date(2024, 5, 20)));
+            assertThat(key(1, date(2024, 5, 1), date(2024, 5, 31))).as("提交前其他读取仍命中旧key").isEqualTo(before);
+
+            List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+            synchronizations.forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        assertThat(key(1, date(2024, 5, 1), date(2024, 5, 31))).isNotEqualTo(before);
+    }
+
+    @Test
+    void clearingNamespaceHidesOldEntriesFromSingleAndBatchReads() {
+        CacheMetrics metrics = new CacheMetrics();
+        VersionedCache chemicals = new VersionedCache(
+                new LocalCache(CacheNames.CHEMICAL, store, serializer, Duration.ZERO, 1 << 16, metrics), keyValueStore, 0);
+        VersionedCache inventories = new VersionedCache(
+                new LocalCache(CacheNames.INVENTORY, store, serializer, Duration.ZERO, 1 << 16, metrics), keyValueStore, 0);
+        chemicals.putAll(Map.of(1, "乙醇", 2, "丙酮"));
+        inventories.put(1, "库存1");
+        assertThat(chemicals.getAll(List.of(1, 2))).containsOnlyKeys(1, 2);
+
+        chemicals.clear();
+
+        assertThat(chemicals.get(1)).isNull();
+        assertThat(chemicals.getAll(List.of(1, 2))).isEmpty();
+        assertThat(inventories.get(1).get()).isEqualTo("库存1");
+
+        // 清空后写入的新条目按新版本读到
+        chemicals.put(1, "乙醇（新）");
+        assertThat(chemicals.get(1).get()).isEqualTo("乙醇（新）");
+    }
+
+    @Test
+    void namespaceVersionIsReadOncePerTtlAndLocalClearIsSeenImmediately() throws InterruptedException {
+        KeyValueStore counting = Mockito.mock(KeyValueStore.class, AdditionalAnswers.delegatesTo(keyValueStore));
+        VersionedCache chemicals = new VersionedCache(new LocalCache(CacheNames.CHEMICAL, store, serializer,
+                Duration.ZERO, 1 << 16, new CacheMetrics()), counting, 200);
+        chemicals.put(1, "乙醇");
+        for (int i = 0; i < 10; i++) {
+            assertThat(chemicals.get(1).get()).isEqualTo("乙醇");
+            assertThat(chemicals.getAll(List.of(1))).containsOnlyKeys(1);
+        }
+        verify(counting, times(1)).namespaceVersion(CacheNames.CHEMICAL);
+
+        // 本节点清空后不等版本缓存过期
+        chemicals.clear();
+        assertThat(chemicals.get(1)).isNull();
+        chemicals.put(1, "乙醇（新）");
+        assertThat(chemicals.get(1).get()).isEqualTo("乙醇（新）");
+
+        // 其他节点递增版本：缓存时间内仍按旧版本读取，过期后读到新版本
+        keyValueStore.bumpNamespace(CacheNames.CHEMICAL);
+        assertThat(chemicals.get(1).get()).isEqualTo("乙醇（新）");
+        Thread.sleep(250);
+        assertThat(chemicals.get(1)).isNull();
+        verify(counting, times(3)).namespaceVersion(CacheNames.CHEMICAL);
+    }
+
+    private String key(Integer chemicalId, Date startTime, Date endTime) {
+        return queryTags.key(GROUP, chemicalId, startTime, endTime, new Object[]{chemicalId, startTime, endTime});
+    }
+
+    private static Date date(int year, int month, int day) {
+        return Date.from(LocalDateTime.of(year, month, day, 12, 0).atZone(ZoneId.systemDefault()).toInstant());
+    }
+}
@@ -0,0 +1,91 @@
+package com.vueones.cache;
+
+import com.vueones.util.KeyValueStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+import org.springframework.data.redis.RedisConnectionFailureException;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 单飞加载测试：未拿到租约时只等待wait-ms而不是整个租约时长，
+ * 加载者在等待期间写入缓存时直接使用其结果，租约不可用时不等待直接加载
+ */
+class SingleFlightCacheTest {
+
+    private static final long LEASE_MILLIS = 3000;
+    private static final long WAIT_MILLIS = 100;
+
+    private ConcurrentMapCache remote;
+    private SingleFlightCache cache;
+
+    @BeforeEach
+    void setUp() {
+        // 租约始终被其他节点持有
+        KeyValueStore keyValueStore = Mockito.mock(KeyValueStore.class);
+        when(keyValueStore.tryLease(anyString(), anyString(), anyLong())).thenReturn(false);
+        remote = new ConcurrentMapCache(CacheNames.CHEMICAL_LIST, false);
+        cache = new SingleFlightCache(remote, keyValueStore, 60_000, LEASE_MILLIS, WAIT_MILLIS, 0);
+    }
+
+    @Test
+    void stalledLeaseHolderDelaysLoadOnlyByWaitBound() {
+        AtomicInteger loads = new AtomicInteger();
+
+        long start = System.nanoTime();
+        String value = cache.get("page:1", () -> "自行加载" + loads.incrementAndGet());
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertThat(value).isEqualTo("自行加载1");
+        assertThat(elapsedMillis).isBetween(WAIT_MILLIS - 5, LEASE_MILLIS / 3);
+        assertThat(cache.getStatistics()).containsEntry("leaseWaits", 1L).containsEntry("leaseWaitTimeouts", 1L);
+        // 自行加载的结果已写入缓存
+        assertThat(cache.get("page:1", () -> "不应再加载")).isEqualTo("自行加载1");
+    }
+
+    @Test
+    void usesValueWrittenByLeaseHolderWhileWaiting() throws Exception {
+        CompletableFuture<Void> otherNode = CompletableFuture.runAsync(() -> {
+            try {
+                Thread.sleep(30);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            new SingleFlightCache(remote, Mockito.mock(KeyValueStore.class), 60_000, LEASE_MILLIS, WAIT_MILLIS, 0)
+                    .put("page:2", "其他节点加载");
+        });
+
+        String value = cache.get("page:2", () -> "不应自行加载");
+
+        otherNode.get(5, TimeUnit.SECONDS);
+        assertThat(value).isEqualTo("其他节点加载");
+        assertThat(cache.getStatistics()).containsEntry("loads", 0L).containsEntry("leaseWaitTimeouts", 0L);
+    }
+
+    @Test
+    void unavailableLeaseStoreLoadsWithoutWaiting() {
+        KeyValueStore unavailable = Mockito.mock(KeyValueStore.class);
+        when(unavailable.tryLease(anyString(), anyString(), anyLong()))
+                .thenThrow(new RedisConnectionFailureException("Redis不可用"));
+        SingleFlightCache degraded = new SingleFlightCache(remote, unavailable, 60_000, LEASE_MILLIS, WAIT_MILLIS, 0);
+
+        long start = System.nanoTime();
+        String value = degraded.get("page:3", () -> "直接加载");
+
+        assertThat(value).isEqualTo("直接加载");
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(WAIT_MILLIS);
+        assertThat(degraded.getStatistics()).containsEntry("loads", 1L).containsEntry("leaseWaits", 0L);
+        verify(unavailable, never()).releaseLease(anyString(), anyString());
+    }
+}
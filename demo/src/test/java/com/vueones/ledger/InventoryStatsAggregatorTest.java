@@ -0,0 +1,210 @@
+package com.vueones.ledger;
+
+import com.vueones.dto.StockMutationResult;
+import com.vueones.mapper.InventoryMapper;
+import com.vueones.mapper.InventoryMovementMapper;
+import com.vueones.service.impl.InventoryMovementServiceImpl;
+import com.vueones.service.impl.InventoryServiceImpl;
+import com.vueones.support.EmbeddedDatabaseExtension;
+import com.vueones.support.TestDatabase;
+import com.vueones.support.TestServices;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.AdditionalAnswers;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.doAnswer;
+
+/**
+ * 库存统计聚合器测试：afterCommit乱序到达的旧余额被版本丢弃，重新加载读到的旧余额不覆盖加载期间到达的新余额，
+ * 比对只在连续两次不一致时重新加载且不计入回调尚未到达的记录，
+ * 并发出入库（单条事务与合并提交两条路径）之后计数与数据库汇总一致
+ */
+@ExtendWith(EmbeddedDatabaseExtension.class)
+class InventoryStatsAggregatorTest {
+
+    private static final int THREADS = 16;
+
+    private static TestDatabase db;
+    private static InventoryMovementServiceImpl movementService;
+
+    @BeforeAll
+    static void setUp(TestDatabase testDatabase) {
+        db = testDatabase;
+        movementService = TestServices.movementService(db);
+    }
+
+    @Test
+    void staleBalanceArrivingLateIsIgnored() {
+        int chemicalId = db.createChemical("统计乱序", 5);
+        // 出入库不通知聚合器，由测试按指定顺序投递回调
+        InventoryServiceImpl inventoryService = newInventoryService(null, null);
+        inventoryService.applyStorageIn(chemicalId, 10.0);
+        Integer inventoryId = db.jdbc().queryForObject("select id from inventory where chemical_id = ?", Integer.class, chemicalId);
+        InventoryStatsAggregator aggregator = newAggregator();
+        double before = totalAmount(aggregator);
+
+        // 两笔出库已按顺序提交，回调却以相反顺序到达
+        StockMutationResult first = inventoryService.applyStorageOut(chemicalId, 2.0);
+        StockMutationResult second = inventoryService.applyStorageOut(chemicalId, 3.0);
+        long firstMovement = movementId(inventoryId, -2);
+        long secondMovement = movementId(inventoryId, -3);
+        assertThat(secondMovement).isGreaterThan(firstMovement);
+        aggregator.onStockChanged(inventoryId, chemicalId, second.getBalance(), secondMovement);
+        aggregator.onStockChanged(inventoryId, chemicalId, first.getBalance(), firstMovement);
+
+        assertThat(totalAmount(aggregator)).isEqualTo(before - 5.0);
+        aggregator.verify();
+        assertThat(aggregator.getDriftCorrections()).isZero();
+
+        // 重新加载后，加载前的流水再到达也不会覆盖
+        aggregator.reload();
+        aggregator.onStockChanged(inventoryId, chemicalId, first.getBalance(), firstMovement);
+        assertThat(totalAmount(aggregator)).isEqualTo(before - 5.0);
+    }
+
+    @Test
+    void reloadsNeverOverwriteBalancesThatArrivedWhileReading() {
+        int chemicalId = db.createChemical("统计重新加载", 5);
+        InventoryServiceImpl inventoryService = newInventoryService(null, null);
+        inventoryService.applyStorageIn(chemicalId, 20.0);
+        Integer inventoryId = db.jdbc().queryForObject("select id from inventory where chemical_id = ?", Integer.class, chemicalId);
+        InventoryMapper real = db.mapper(InventoryMapper.class);
+        InventoryMapper inventoryMapper = Mockito.mock(InventoryMapper.class, AdditionalAnswers.delegatesTo(real));
+        InventoryStatsAggregator aggregator = newAggregator();
+        ReflectionTestUtils.setField(aggregator, "inventoryMapper", inventoryMapper);
+
+        // 全部重新加载读出记录之后，一笔出库提交且回调先于换入到达
+        doAnswer(invocation -> {
+            Object stale = real.getInventoryList(null, null, null, null);
+            StockMutationResult out = inventoryService.applyStorageOut(chemicalId, 2.0);
+            aggregator.onStockChanged(inventoryId, chemicalId, out.getBalance(), movementId(inventoryId, -2));
+            return stale;
+        }).when(inventoryMapper).getInventoryList(any(), any(), any(), any());
+        aggregator.reload();
+        assertThat(totalAmount(aggregator)).isEqualTo(databaseTotal());
+
+        // 单条重新加载同理
+        doAnswer(invocation -> {
+            Object stale = real.getInventoryById(invocation.getArgument(0));
+            StockMutationResult out = inventoryService.applyStorageOut(chemicalId, 3.0);
+            aggregator.onStockChanged(inventoryId, chemicalId, out.getBalance(), movementId(inventoryId, -3));
+            return stale;
+        }).when(inventoryMapper).getInventoryById(anyInt());
+        aggregator.onRowChanged(inventoryId);
+        assertThat(totalAmount(aggregator)).isEqualTo(databaseTotal());
+    }
+
+    @Test
+    void verifyReloadsOnlyWhenMismatchPersistsAcrossTwoChecks() {
+        int chemicalId = db.createChemical("统计比对", 5);
+        InventoryServiceImpl inventoryService = newInventoryService(null, null);
+        inventoryService.applyStorageIn(chemicalId, 20.0);
+        Integer inventoryId = db.jdbc().queryForObject("select id from inventory where chemical_id = ?", Integer.class, chemicalId);
+        InventoryStatsAggregator aggregator = newAggregator();
+
+        // 已提交、回调尚未到达的出库在水位之后，不计入比对
+        inventoryService.applyStorageOut(chemicalId, 1.0);
+        aggregator.verify();
+        aggregator.verify();
+        assertThat(aggregator.getDriftCorrections()).isZero();
+
+        // 人工修改已提交、回调尚未到达：第一次不一致只记下，回调到达后恢复一致
+        db.jdbc().update("update inventory set current_amount = current_amount + 4 where id = ?", inventoryId);
+        aggregator.verify();
+        assertThat(aggregator.getDriftCorrections()).isZero();
+        aggregator.onRowChanged(inventoryId);
+        aggregator.verify();
+        assertThat(aggregator.getDriftCorrections()).isZero();
+
+        // 丢失的修改连续两次不一致，重新加载
+        db.jdbc().update("update inventory set current_amount = current_amount + 1 where id = ?", inventoryId);
+        aggregator.verify();
+        assertThat(aggregator.getDriftCorrections()).isZero();
+        aggregator.verify();
+        assertThat(aggregator.getDriftCorrections()).isEqualTo(1);
+        assertThat(totalAmount(aggregator)).isEqualTo(databaseTotal());
+    }
+
+    @Test
+    void concurrentMovementsKeepCountersInSyncWithDatabase() throws Exception {
+        int direct = db.createChemical("统计并发单条", 5);
+        int grouped = db.createChemical("统计并发合并", 5);
+        InventoryStatsAggregator aggregator = newAggregator();
+        StockGroupCommitter committer = TestServices.groupCommitter(db, movementService, aggregator);
+        committer.start();
+        try {
+            InventoryServiceImpl directService = newInventoryService(aggregator, null);
+            InventoryServiceImpl groupedService = newInventoryService(aggregator, committer);
+            directService.applyStorageIn(direct, 50.0);
+            groupedService.applyStorageIn(grouped, 50.0);
+
+            ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+            try {
+                List<Future<?>> futures = new ArrayList<>();
+                for (int i = 0; i < 600; i++) {
+                    int index = i;
+                    futures.add(executor.submit(() -> {
+                        InventoryServiceImpl service = index % 2 == 0 ? directService : groupedService;
+                        int chemicalId = index % 2 == 0 ? direct : grouped;
+                        return index % 3 == 0
+                                ? service.applyStorageIn(chemicalId, 1.5)
+                                : service.applyStorageOut(chemicalId, 1.0);
+                    }));
+                }
+                for (Future<?> future : futures) {
+                    future.get(60, TimeUnit.SECONDS);
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+        } finally {
+            committer.stop();
+        }
+
+        assertThat(totalAmount(aggregator)).isEqualTo(databaseTotal());
+        aggregator.verify();
+        assertThat(aggregator.getDriftCorrections()).isZero();
+    }
+
+    private static InventoryStatsAggregator newAggregator() {
+        InventoryStatsAggregator aggregator = new InventoryStatsAggregator();
+        ReflectionTestUtils.setField(aggregator, "inventoryMapper", db.mapper(InventoryMapper.class));
+        ReflectionTestUtils.setField(aggregator, "inventoryMovementMapper", db.mapper(InventoryMovementMapper.class));
+        aggregator.init();
+        return aggregator;
+    }
+
+    private static InventoryServiceImpl newInventoryService(InventoryStatsAggregator aggregator, StockGroupCommitter committer) {
+        InventoryServiceImpl inventoryService = TestServices.inventoryService(db, movementService);
+        ReflectionTestUtils.setField(inventoryService, "inventoryStatsAggregator", aggregator);
+        ReflectionTestUtils.setField(inventoryService, "stockGroupCommitter", committer);
+        ReflectionTestUtils.setField(inventoryService, "groupCommitTimeoutMs", 30000L);
+        return inventoryService;
+    }
+
+    private static long movementId(int inventoryId, double delta) {
+        return db.jdbc().queryForObject("select id from inventory_movement where inventory_id = ? and delta = ?",
+                Long.class, inventoryId, delta);
+    }
+
+    private static double databaseTotal() {
+        return db.jdbc().queryForObject("select sum(current_amount) from inventory", Double.class);
+    }
+
+    private static double totalAmount(InventoryStatsAggregator aggregator) {
+        return (Double) aggregator.snapshot(null).get("totalAmount");
+    }
+}
@@ -0,0 +1,351 @@
+package com.vueones.ledger;
+
+import com.vueones.entity.InventoryLot;
+import com.vueones.entity.LotAllocation;
+import com.vueones.entity.StorageRecord;
+import com.vueones.exception.InventoryException;
+import com.vueones.mapper.InventoryLotMapper;
+import com.vueones.support.EmbeddedDatabaseExtension;
+import com.vueones.support.TestDatabase;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 批次分配测试：FIFO/FEFO跨批次拆分，入库记录修改、删除与出库撤销同步批次，
+ * 批次不足时409并随事务回滚，并发出库不超分且不打乱出库顺序，已关闭或已过期的批次不接受归还；大量批次下单次分配读取的索引行数与批次总数无关
+ */
+@ExtendWith(EmbeddedDatabaseExtension.class)
+class LotAllocatorTest {
+
+    private static final long HOUR = 3600_000L;
+
+    private static TestDatabase db;
+    private static InventoryLotMapper lotMapper;
+    private static final AtomicInteger RECORD_SEQ = new AtomicInteger(1000);
+
+    @BeforeAll
+    static void setUp(TestDatabase testDatabase) {
+        db = testDatabase;
+        lotMapper = db.mapper(InventoryLotMapper.class);
+    }
+
+    @Test
+    void fifoSplitsOutboundAcrossLotsInReceiptOrder() {
+        int chemicalId = db.createChemical("批次先进先出", 5);
+        LotAllocator allocator = newAllocator(LotAllocator.STRATEGY_FIFO);
+        long base = System.currentTimeMillis() - 10 * HOUR;
+        InventoryLot oldest = allocator.receive(storageRecord(chemicalId, 5.0, "A", new Date(base), null));
+        InventoryLot middle = allocator.receive(storageRecord(chemicalId, 3.0, "B", new Date(base + HOUR), null));
+        InventoryLot newest = allocator.receive(storageRecord(chemicalId, 4.0, "C", new Date(base + 2 * HOUR), null));
+
+        List<LotAllocation> allocations = inTransaction(() -> allocator.allocate(1, chemicalId, 7.0));
+
+        assertThat(allocations).extracting(LotAllocation::getLotId).containsExactly(oldest.getId(), middle.getId());
+        assertThat(allocations).extracting(LotAllocation::getAmount).containsExactly(5.0, 2.0);
+        assertThat(remaining(oldest)).isEqualTo(0.0);
+        assertThat(remaining(middle)).isEqualTo(1.0);
+        assertThat(remaining(newest)).isEqualTo(4.0);
+        assertThat(lotMapper.selectAllocationsByOutboundId(1)).hasSize(2);
+    }
+
+    @Test
+    void fefoTakesEarliestExpiryFirstAndUndatedLotsLast() {
+        int chemicalId = db.createChemical("批次近效期先出", 5);
+        LotAllocator allocator = newAllocator(LotAllocator.STRATEGY_FEFO);
+        long base = System.currentTimeMillis() - 10 * HOUR;
+        InventoryLot undated = allocator.receive(storageRecord(chemicalId, 2.0, "N", new Date(base), null));
+        InventoryLot late = allocator.receive(storageRecord(chemicalId, 2.0, "L", new Date(base + HOUR), date(2030, 1, 1)));
+        InventoryLot early = allocator.receive(storageRecord(chemicalId, 2.0, "E", new Date(base + 2 * HOUR), date(2029, 6, 1)));
+
+        List<LotAllocation> allocations = inTransaction(() -> allocator.allocate(2, chemicalId, 5.0));
+
+        assertThat(allocations).extracting(LotAllocation::getLotId).containsExactly(early.getId(), late.getId(), undated.getId());
+        assertThat(allocations).extracting(LotAllocation::getAmount).containsExactly(2.0, 2.0, 1.0);
+        assertThat(remaining(undated)).isEqualTo(1.0);
+    }
+
+    @Test
+    void storageRecordEditsAndDeletesFollowTheLot() {
+        int chemicalId = db.createChemical("批次随入库修改", 5);
+        int otherChemical = db.createChemical("批次改化学品", 5);
+        LotAllocator allocator = newAllocator(LotAllocator.STRATEGY_FIFO);
+        StorageRecord consumedRecord = storageRecord(chemicalId, 10.0, "S1", new Date(), null);
+        InventoryLot consumed = allocator.receive(consumedRecord);
+        inTransaction(() -> allocator.allocate(3, chemicalId, 4.0));
+
+        // 入库数量不能少于已出库的4
+        assertThatThrownBy(() -> inTransaction(() -> {
+            allocator.storageRecordChanged(consumedRecord, amountChange(consumedRecord, 3.0));
+            return null;
+        })).isInstanceOfSatisfying(InventoryException.class, e -> assertThat(e.getStatus()).isEqualTo(409));
+        assertThatThrownBy(() -> inTransaction(() -> {
+            StorageRecord change = amountChange(consumedRecord, 10.0);
+            change.setChemicalId(otherChemical);
+            allocator.storageRecordChanged(consumedRecord, change);
+            return null;
+        })).isInstanceOfSatisfying(InventoryException.class, e -> assertThat(e.getStatus()).isEqualTo(409));
+
+        StorageRecord change = amountChange(consumedRecord, 6.0);
+        change.setBatchNo("S1-改");
+        inTransaction(() -> {
+            allocator.storageRecordChanged(consumedRecord, change);
+            return null;
+        });
+        InventoryLot edited = lot(consumed.getId());
+        assertThat(edited.getInitialAmount()).isEqualTo(6.0);
+        assertThat(edited.getRemainingAmount()).isEqualTo(2.0);
+        assertThat(edited.getBatchNo()).isEqualTo("S1-改");
+
+        // 未出库的批次可以改到其他化学品
+        StorageRecord untouchedRecord = storageRecord(chemicalId, 5.0, "S2", new Date(), null);
+        InventoryLot untouched = allocator.receive(untouchedRecord);
+        StorageRecord move = amountChange(untouchedRecord, 5.0);
+        move.setChemicalId(otherChemical);
+        inTransaction(() -> {
+            allocator.storageRecordChanged(untouchedRecord, move);
+            return null;
+        });
+        assertThat(lot(untouched.getId()).getChemicalId()).isEqualTo(otherChemical);
+
+        // 删除入库记录：部分出库的批次关闭并保留已出库数量，未出库的批次直接删除
+        inTransaction(() -> {
+            allocator.storageRecordRemoved(consumedRecord.getId());
+            allocator.storageRecordRemoved(untouchedRecord.getId());
+            return null;
+        });
+        InventoryLot closed = lot(consumed.getId());
+        assertThat(closed.getInitialAmount()).isEqualTo(4.0);
+        assertThat(closed.getRemainingAmount()).isEqualTo(0.0);
+        assertThat(lot(untouched.getId())).isNull();
+    }
+
+    @Test
+    void releaseReturnsAllocatedAmountsToTheirLots() {
+        int chemicalId = db.createChemical("批次撤销出库", 5);
+        LotAllocator allocator = newAllocator(LotAllocator.STRATEGY_FIFO);
+        long base = System.currentTimeMillis() - 10 * HOUR;
+        InventoryLot first = allocator.receive(storageRecord(chemicalId, 2.0, "R1", new Date(base), null));
+        InventoryLot second = allocator.receive(storageRecord(chemicalId, 2.0, "R2", new Date(base + HOUR), null));
+        inTransaction(() -> allocator.allocate(4, chemicalId, 3.0));
+
+        List<LotAllocation> released = inTransaction(() -> allocator.release(4));
+
+        assertThat(released).hasSize(2);
+        assertThat(remaining(first)).isEqualTo(2.0);
+        assertThat(remaining(second)).isEqualTo(2.0);
+        assertThat(lotMapper.selectAllocationsByOutboundId(4)).isEmpty();
+    }
+
+    @Test
+    void releaseNeverReopensClosedOrExpiredLots() {
+        int chemicalId = db.createChemical("批次归还校验", 5);
+        LotAllocator allocator = newAllocator(LotAllocator.STRATEGY_FIFO);
+        long base = System.currentTimeMillis() - 10 * HOUR;
+        StorageRecord closedRecord = storageRecord(chemicalId, 2.0, "C1", new Date(base), null);
+        InventoryLot closing = allocator.receive(closedRecord);
+        InventoryLot expired = allocator.receive(storageRecord(chemicalId, 2.0, "E1", new Date(base + HOUR),
+                java.sql.Date.valueOf(LocalDate.now().minusDays(1))));
+        inTransaction(() -> allocator.allocate(6, chemicalId, 2.0));
+        inTransaction(() -> allocator.allocate(7, chemicalId, 1.5));
+        inTransaction(() -> {
+            allocator.storageRecordRemoved(closedRecord.getId());
+            return null;
+        });
+
+        // 入库记录已删除的批次
+        assertThatThrownBy(() -> inTransaction(() -> allocator.release(6)))
+                .isInstanceOfSatisfying(InventoryException.class, e -> assertThat(e.getStatus()).isEqualTo(409));
+        assertThat(remaining(closing)).isEqualTo(0.0);
+        assertThat(lotMapper.selectAllocationsByOutboundId(6)).hasSize(1);
+
+        // 已过期的批次
+        assertThatThrownBy(() -> inTransaction(() -> allocator.release(7)))
+                .isInstanceOfSatisfying(InventoryException.class, e -> assertThat(e.getStatus()).isEqualTo(409));
+        assertThat(remaining(expired)).isEqualTo(0.5);
+        assertThat(lotMapper.selectAllocationsByOutboundId(7)).hasSize(1);
+    }
+
+    @Test
+    void shortfallIsConflictAndRollsBackPartialConsumption() {
+        int chemicalId = db.createChemical("批次不足", 5);
+        LotAllocator allocator = newAllocator(LotAllocator.STRATEGY_FIFO);
+        InventoryLot lot = allocator.receive(storageRecord(chemicalId, 3.0, "X", new Date(), null));
+
+        assertThatThrownBy(() -> inTransaction(() -> allocator.allocate(5, chemicalId, 3.5)))
+                .isInstanceOfSatisfying(InventoryException.class, e -> assertThat(e.getStatus()).isEqualTo(409));
+
+        assertThat(remaining(lot)).isEqualTo(3.0);
+        assertThat(lotMapper.selectAllocationsByOutboundId(5)).isEmpty();
+    }
+
+    @Test
+    void concurrentOutboundsNeverOverAllocate() throws Exception {
+        int chemicalId = db.createChemical("批次并发", 5);
+        LotAllocator allocator = newAllocator(LotAllocator.STRATEGY_FIFO);
+        long base = System.currentTimeMillis() - 100 * HOUR;
+        List<StorageRecord> records = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            records.add(storageRecord(chemicalId, 1.0, "P" + i, new Date(base + i * HOUR), null));
+        }
+        allocator.receiveAll(records);
+
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger conflicts = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 30; i++) {
+                int outboundId = 100 + i;
+                futures.add(executor.submit(() -> {
+                    try {
+                        inTransaction(() -> allocator.allocate(outboundId, chemicalId, 1.0));
+                        succeeded.incrementAndGet();
+                    } catch (InventoryException e) {
+                        conflicts.incrementAndGet();
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // 锁冲突的出库同样以409回滚，成功的出库与批次扣减、分配记录一一对应，不会超分
+        assertThat(succeeded.get() + conflicts.get()).isEqualTo(30);
+        assertThat(succeeded.get()).isBetween(1, 20);
+        assertThat(db.jdbc().queryForObject("select sum(remaining_amount) from inventory_lot where chemical_id = ?",
+                Double.class, chemicalId)).isEqualTo(20.0 - succeeded.get());
+        assertThat(db.jdbc().queryForObject("select count(*) from outbound_lot_allocation where chemical_id = ?",
+                Integer.class, chemicalId)).isEqualTo(succeeded.get());
+        assertThat(db.jdbc().queryForObject("select count(*) from inventory_lot where chemical_id = ? and remaining_amount < 0",
+                Integer.class, chemicalId)).isZero();
+        // 被锁住的批次等待而不是跳过：用掉的总是最早入库的批次
+        assertThat(db.jdbc().queryForList("select batch_no from inventory_lot where chemical_id = ? and remaining_amount = 0",
+                String.class, chemicalId)).containsExactlyInAnyOrderElementsOf(
+                        records.subList(0, succeeded.get()).stream().map(StorageRecord::getBatchNo).toList());
+    }
+
+    /**
+     * 大量批次下的单次分配：5000个未用完批次，另有20000个更早的已用完批次。
+     * 索引跳过已用完批次，每次分配读取的索引行数与批次总数无关
+     */
+    @Test
+    void allocationReadsOnlyOnePageOfLotsWithManyLots() {
+        int chemicalId = db.createChemical("批次基准", 5);
+        LotAllocator allocator = newAllocator(LotAllocator.STRATEGY_FIFO);
+        long base = System.currentTimeMillis() - 100_000 * HOUR;
+        List<Object[]> depleted = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            depleted.add(new Object[]{chemicalId, "D" + i, new Timestamp(base + i * 1000L)});
+        }
+        db.jdbc().batchUpdate("insert into inventory_lot (chemical_id, batch_no, initial_amount, remaining_amount, receipt_time) "
+                + "values (?, ?, 1, 0, ?)", depleted);
+        long openBase = base + 50_000 * HOUR;
+        for (int chunk = 0; chunk < 5; chunk++) {
+            List<StorageRecord> records = new ArrayList<>();
+            for (int i = 0; i < 1000; i++) {
+                int n = chunk * 1000 + i;
+                records.add(storageRecord(chemicalId, 1.0, "O" + n, new Date(openBase + n * 1000L), null));
+            }
+            allocator.receiveAll(records);
+        }
+
+        int rounds = 200;
+        long maxRowsRead = 0;
+        for (int i = 0; i < rounds; i++) {
+            int outboundId = 20_000 + i;
+            // 同一事务共用连接，会话计数只包含本次分配
+            long rowsRead = inTransaction(() -> {
+                long readsBefore = handlerReads();
+                List<LotAllocation> allocations = allocator.allocate(outboundId, chemicalId, 1.5);
+                long reads = handlerReads() - readsBefore;
+                assertThat(allocations).extracting(LotAllocation::getAmount).containsOnly(1.0, 0.5);
+                return reads;
+            });
+            maxRowsRead = Math.max(maxRowsRead, rowsRead);
+        }
+
+        assertThat(db.jdbc().queryForObject("select sum(remaining_amount) from inventory_lot where chemical_id = ?",
+                Double.class, chemicalId)).isEqualTo(5000 - rounds * 1.5);
+        // 每次只锁一页（8个）批次，已用完批次不被读取
+        assertThat(maxRowsRead).isLessThan(64L);
+    }
+
+    private static long handlerReads() {
+        return db.jdbc().queryForList("show session status where Variable_name in "
+                        + "('Handler_read_key', 'Handler_read_next', 'Handler_read_rnd_next', 'Handler_read_first')")
+                .stream().mapToLong(row -> Long.parseLong(String.valueOf(row.get("Value")))).sum();
+    }
+
+    private static LotAllocator newAllocator(String strategy) {
+        LotAllocator allocator = new LotAllocator();
+        ReflectionTestUtils.setField(allocator, "strategy", strategy);
+        ReflectionTestUtils.setField(allocator, "inventoryLotMapper", lotMapper);
+        allocator.init();
+        return allocator;
+    }
+
+    private static <T> T inTransaction(Supplier<T> action) {
+        return db.transactionTemplate().execute(status -> action.get());
+    }
+
+    private static StorageRecord storageRecord(int chemicalId, double amount, String batchNo, Date storageTime, Date expiryDate) {
+        StorageRecord record = new StorageRecord();
+        record.setId(RECORD_SEQ.incrementAndGet());
+        record.setChemicalId(chemicalId);
+        record.setAmount(amount);
+        record.setBatchNo(batchNo);
+        record.setStorageTime(storageTime);
+        record.setExpiryDate(expiryDate);
+        return record;
+    }
+
+    private static StorageRecord amountChange(StorageRecord before, double amount) {
+        StorageRecord change = new StorageRecord();
+        change.setId(before.getId());
+        change.setAmount(amount);
+        return change;
+    }
+
+    private static Date date(int year, int month, int day) {
+        return java.sql.Date.valueOf(LocalDate.of(year, month, day));
+    }
+
+    private static InventoryLot lot(Long id) {
+        List<InventoryLot> lots = db.jdbc().query(
+                "select id, chemical_id, batch_no, initial_amount, remaining_amount from inventory_lot where id = ?",
+                (rs, i) -> {
+                    InventoryLot lot = new InventoryLot();
+                    lot.setId(rs.getLong("id"));
+                    lot.setChemicalId(rs.getInt("chemical_id"));
+                    lot.setBatchNo(rs.getString("batch_no"));
+                    lot.setInitialAmount(rs.getDouble("initial_amount"));
+                    lot.setRemainingAmount(rs.getDouble("remaining_amount"));
+                    return lot;
+                }, id);
+        return lots.isEmpty() ? null : lots.get(0);
+    }
+
+    private static Double remaining(InventoryLot lot) {
+        return lot(lot.getId()).getRemainingAmount();
+    }
+}
@@ -0,0 +1,303 @@
+package com.vueones.ledger;
+
+import com.vueones.mapper.RecordMovementMapper;
+import com.vueones.mapper.RecordRollupMapper;
+import org.apache.ibatis.cursor.Cursor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+/**
+ * 内存列式流水测试：随机增删改（含补录的早期记录与触发压缩的大量删除）后，
+ * 树状数组与补录缓冲给出的任意时间范围条数、合计与人员数与逐条累加一致；
+ * 读取期间已有更新生效时旧的读取结果不覆盖新值；比对只在连续两次不一致时重新加载
+ */
+class MovementColumnStoreTest {
+
+    private static final String TYPE = RecordRollupMapper.TYPE_USAGE;
+    private static final long BASE_SECOND = 1_700_000_000L;
+
+    /** 模拟的记录表：ID -> 行 */
+    private final TreeMap<Integer, Map<String, Object>> table = new TreeMap<>();
+    private RecordMovementMapper mapper;
+    private MovementColumnStore store;
+    private final Random random = new Random(42);
+    private int nextId = 1;
+
+    @BeforeEach
+    void setUp() {
+        mapper = Mockito.mock(RecordMovementMapper.class);
+        when(mapper.scanMovements(anyString())).thenAnswer(invocation ->
+                new ListCursor(TYPE.equals(invocation.getArgument(0)) ? new ArrayList<>(table.values()) : List.of()));
+        when(mapper.selectMovementsByIds(anyString(), anyCollection())).thenAnswer(invocation -> {
+            List<Map<String, Object>> rows = new ArrayList<>();
+            for (Object id : (Collection<?>) invocation.getArgument(1)) {
+                if (table.containsKey(id)) {
+                    rows.add(table.get(id));
+                }
+            }
+            return rows;
+        });
+        when(mapper.selectTotals(anyString(), anyInt())).thenAnswer(invocation -> {
+            int maxId = invocation.getArgument(1);
+            long count = 0;
+            BigDecimal total = BigDecimal.ZERO;
+            if (TYPE.equals(invocation.getArgument(0))) {
+                for (Map<String, Object> row : table.headMap(maxId, true).values()) {
+                    count++;
+                    total = total.add((BigDecimal) row.get("amount"));
+                }
+            }
+            Map<String, Object> totals = new HashMap<>();
+            totals.put("cnt", count);
+            totals.put("total", total);
+            return totals;
+        });
+        store = new MovementColumnStore();
+        ReflectionTestUtils.setField(store, "recordMovementMapper", mapper);
+    }
+
+    @Test
+    void rangeTotalsMatchBruteForceAfterRandomChanges() {
+        for (int i = 0; i < 2000; i++) {
+            insert(random.nextInt(5) + 1, BASE_SECOND + random.nextInt(100_000));
+        }
+        store.reload();
+        assertRangesMatch();
+
+        for (int round = 0; round < 1500; round++) {
+            int action = random.nextInt(10);
+            if (action < 5) {
+                // 新增，约一半是时间早于已有记录的补录
+                int id = insert(random.nextInt(5) + 1, BASE_SECOND + random.nextInt(120_000));
+                store.recordsChanged(TYPE, List.of(id));
+            } else if (action < 8 && !table.isEmpty()) {
+                Integer id = randomId();
+                table.remove(id);
+                store.recordsChanged(TYPE, List.of(id));
+            } else if (!table.isEmpty()) {
+                // 修改数量、时间与化学品
+                Integer id = randomId();
+                table.put(id, row(id, random.nextInt(5) + 1, BASE_SECOND + random.nextInt(120_000)));
+                store.recordsChanged(TYPE, List.of(id));
+            }
+            if (round % 100 == 0) {
+                assertRangesMatch();
+            }
+        }
+        assertRangesMatch();
+
+        // 删除单个化学品的大部分记录，触发分区压缩
+        List<Integer> removed = new ArrayList<>();
+        table.values().removeIf(row -> {
+            boolean remove = (Integer) row.get("chemical_id") == 1 && random.nextInt(10) < 9;
+            if (remove) {
+                removed.add((Integer) row.get("id"));
+            }
+            return remove;
+        });
+        store.recordsChanged(TYPE, removed);
+        assertRangesMatch();
+    }
+
+    @Test
+    void backdatedInsertsAndRemovalsStayConsistentAcrossBufferMerges() {
+        for (int i = 0; i < 5000; i++) {
+            insert(1, BASE_SECOND + 100_000 + i);
+        }
+        store.reload();
+
+        // 全部早于已有记录，先进入补录缓冲，累积后归并；其间删除一部分仍在缓冲中的记录
+        for (int round = 0; round < 400; round++) {
+            int id = insert(1, BASE_SECOND + random.nextInt(100_000));
+            store.recordsChanged(TYPE, List.of(id));
+            if (round % 3 == 0) {
+                table.remove(id);
+                store.recordsChanged(TYPE, List.of(id));
+            }
+            if (round % 50 == 0) {
+                assertRangesMatch();
+                assertDistinctUsersMatch();
+            }
+        }
+        assertRangesMatch();
+        assertDistinctUsersMatch();
+    }
+
+    @Test
+    void staleReadNeverOverwritesAnUpdateAppliedWhileReading() {
+        for (int i = 0; i < 100; i++) {
+            insert(1, BASE_SECOND + i);
+        }
+        store.reload();
+
+        // 第一次按ID读取返回修改前的旧行，读取期间另一个提交的更新先生效
+        Map<String, Object> stale = table.get(7);
+        table.put(7, row(7, 2, BASE_SECOND + 7));
+        AtomicBoolean first = new AtomicBoolean(true);
+        when(mapper.selectMovementsByIds(anyString(), anyCollection())).thenAnswer(invocation -> {
+            if (first.getAndSet(false)) {
+                store.recordsChanged(TYPE, List.of(7));
+                return List.of(stale);
+            }
+            return List.of(table.get(7));
+        });
+        store.recordsChanged(TYPE, List.of(7));
+
+        assertRangesMatch();
+    }
+
+    @Test
+    void verifyReloadsOnlyWhenMismatchPersistsAcrossTwoChecks() {
+        for (int i = 0; i < 100; i++) {
+            insert(1, BASE_SECOND + i);
+        }
+        store.reload();
+        store.verify();
+        assertThat(store.getDriftCorrections()).isZero();
+
+        // 已提交但尚未通知内存的新记录ID高于水位，不计入比对
+        insert(1, BASE_SECOND + 500);
+        store.verify();
+        store.verify();
+        assertThat(store.getDriftCorrections()).isZero();
+
+        // 已提交、更新尚未到达的修改：第一次不一致只记下，更新到达后恢复一致
+        table.put(5, row(5, 1, BASE_SECOND + 5));
+        store.verify();
+        store.recordsChanged(TYPE, List.of(5));
+        store.verify();
+        assertThat(store.getDriftCorrections()).isZero();
+
+        // 丢失的修改连续两次不一致，重新加载
+        table.put(6, row(6, 2, BASE_SECOND + 6));
+        store.verify();
+        assertThat(store.getDriftCorrections()).isZero();
+        store.verify();
+        assertThat(store.getDriftCorrections()).isEqualTo(1);
+        assertRangesMatch();
+    }
+
+    /**
+     * 随机时间范围（含不限开始、结束）与化学品组合，比较条数与合计
+     */
+    private void assertRangesMatch() {
+        for (int i = 0; i < 200; i++) {
+            Long from = random.nextInt(8) == 0 ? null : BASE_SECOND - 10 + random.nextInt(130_000);
+            Long to = random.nextInt(8) == 0 ? null : (from == null ? BASE_SECOND : from) + random.nextInt(60_000);
+            Set<Integer> chemicalIds = random.nextBoolean() ? null
+                    : new LinkedHashSet<>(List.of(random.nextInt(6) + 1, random.nextInt(6) + 1 + 6 * random.nextInt(2)));
+
+            long expectedCount = 0;
+            long expectedUnits = 0;
+            for (Map<String, Object> row : table.values()) {
+                long second = ((Date) row.get("record_time")).getTime() / 1000L;
+                if ((from == null || second >= from) && (to == null || second <= to)
+                        && (chemicalIds == null || chemicalIds.contains((Integer) row.get("chemical_id")))) {
+                    expectedCount++;
+                    expectedUnits += ((BigDecimal) row.get("amount")).movePointRight(2).longValueExact();
+                }
+            }
+            MovementColumnStore.Totals totals = store.totals(TYPE, chemicalIds,
+                    from == null ? null : new Date(from * 1000L), to == null ? null : new Date(to * 1000L));
+            assertThat(totals.getCount()).as("范围[%s, %s] 化学品%s 条数", from, to, chemicalIds).isEqualTo(expectedCount);
+            assertThat(Math.round(totals.getAmount() * 100)).as("范围[%s, %s] 化学品%s 合计", from, to, chemicalIds)
+                    .isEqualTo(expectedUnits);
+        }
+    }
+
+    private void assertDistinctUsersMatch() {
+        for (int i = 0; i < 50; i++) {
+            long from = BASE_SECOND + random.nextInt(110_000);
+            long to = from + random.nextInt(20_000) + 1;
+            Set<Integer> expected = new HashSet<>();
+            for (Map<String, Object> row : table.values()) {
+                long second = ((Date) row.get("record_time")).getTime() / 1000L;
+                if (second >= from && second < to) {
+                    expected.add((Integer) row.get("user_id"));
+                }
+            }
+            assertThat(store.countDistinctUsers(TYPE, new Date(from * 1000L), new Date(to * 1000L)))
+                    .as("范围[%s, %s) 人员数", from, to).isEqualTo(expected.size());
+        }
+    }
+
+    private int insert(int chemicalId, long second) {
+        int id = nextId++;
+        table.put(id, row(id, chemicalId, second));
+        return id;
+    }
+
+    private Map<String, Object> row(int id, int chemicalId, long second) {
+        Map<String, Object> row = new HashMap<>();
+        row.put("id", id);
+        row.put("chemical_id", chemicalId);
+        row.put("user_id", random.nextInt(20) + 1);
+        row.put("record_time", new Date(second * 1000L));
+        row.put("amount", BigDecimal.valueOf(random.nextInt(100_000), 2));
+        return row;
+    }
+
+    private Integer randomId() {
+        List<Integer> ids = new ArrayList<>(table.keySet());
+        return ids.get(random.nextInt(ids.size()));
+    }
+
+    /**
+     * 以列表模拟流式游标
+     */
+    private static final class ListCursor implements Cursor<Map<String, Object>> {
+
+        private final List<Map<String, Object>> rows;
+
+        ListCursor(List<Map<String, Object>> rows) {
+            this.rows = rows;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public boolean isConsumed() {
+            return false;
+        }
+
+        @Override
+        public int getCurrentIndex() {
+            return -1;
+        }
+
+        @Override
+        public Iterator<Map<String, Object>> iterator() {
+            return rows.iterator();
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package com.vueones.ledger;
+
+import com.vueones.cache.ExistenceGuard;
+import com.vueones.dto.StockMutationResult;
+import com.vueones.entity.Inventory;
+import com.vueones.exception.InventoryException;
+import com.vueones.mapper.InventoryCounterMapper;
+import com.vueones.mapper.InventoryMapper;
+import com.vueones.service.IInventoryMovementService;
+import com.vueones.service.impl.InventoryServiceImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.dao.DeadlockLoserDataAccessException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 合并提交的失败处理：事务、缓存失效或任何异常都不会让请求永远挂起，提交线程始终存活；
+ * 死锁回滚的批次整批重新执行；排队超时的请求被取消后不再执行
+ */
+class StockGroupCommitterTest {
+
+    private static final int CHEMICAL_ID = 7;
+    private static final int INVENTORY_ID = 70;
+
+    private InventoryMapper inventoryMapper;
+    private Cache inventoryCache;
+    private StockGroupCommitter committer;
+
+    @BeforeEach
+    void setUp() {
+        inventoryMapper = Mockito.mock(InventoryMapper.class);
+        Inventory stock = new Inventory();
+        stock.setId(INVENTORY_ID);
+        stock.setChemicalId(CHEMICAL_ID);
+        stock.setCurrentAmount(100.0);
+        when(inventoryMapper.selectPrimaryStockForUpdate(CHEMICAL_ID)).thenReturn(stock);
+
+        inventoryCache = Mockito.mock(Cache.class);
+        CacheManager cacheManager = Mockito.mock(CacheManager.class);
+        when(cacheManager.getCache(any())).thenReturn(inventoryCache);
+
+        committer = new StockGroupCommitter();
+        ReflectionTestUtils.setField(committer, "windowMs", 1L);
+        ReflectionTestUtils.setField(committer, "maxBatch", 64);
+        ReflectionTestUtils.setField(committer, "inventoryMapper", inventoryMapper);
+        ReflectionTestUtils.setField(committer, "inventoryCounterMapper", Mockito.mock(InventoryCounterMapper.class));
+        ReflectionTestUtils.setField(committer, "inventoryMovementService", Mockito.mock(IInventoryMovementService.class));
+        ReflectionTestUtils.setField(committer, "transactionTemplate",
+                new TransactionTemplate(Mockito.mock(PlatformTransactionManager.class)));
+        ReflectionTestUtils.setField(committer, "cacheManager", cacheManager);
+        ReflectionTestUtils.setField(committer, "existenceGuard", Mockito.mock(ExistenceGuard.class));
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (ReflectionTestUtils.getField(committer, "worker") != null) {
+            committer.stop();
+        }
+    }
+
+    @Test
+    void transactionFailureFailsEveryFutureAndWorkerSurvives() throws Exception {
+        // 按当前设置的故障抛出，两个请求无论合并为一批还是分成两批都会失败
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        when(inventoryMapper.addAmountById(eq(INVENTORY_ID), anyDouble())).thenAnswer(invocation -> {
+            Throwable current = failure.get();
+            if (current != null) {
+                throw current;
+            }
+            return 1;
+        });
+        committer.start();
+
+        for (Throwable injected : List.of(new IllegalStateException("数据库不可用"), new Error("非运行时异常"))) {
+            failure.set(injected);
+            String expected = injected.getMessage();
+            List<CompletableFuture<StockMutationResult>> failed = List.of(
+                    committer.submitStorageIn(CHEMICAL_ID, 1.0),
+                    committer.submitStorageOut(CHEMICAL_ID, 2.0));
+            for (CompletableFuture<StockMutationResult> future : failed) {
+                assertThatThrownBy(() -> future.get(5, TimeUnit.SECONDS))
+                        .isInstanceOf(ExecutionException.class)
+                        .hasRootCauseMessage(expected);
+            }
+        }
+
+        failure.set(null);
+        StockMutationResult result = committer.submitStorageIn(CHEMICAL_ID, 3.0).get(5, TimeUnit.SECONDS);
+        assertThat(result.isSuccess()).isTrue();
+        assertThat(result.getBalance()).isEqualTo(103.0);
+    }
+
+    @Test
+    void deadlockedBatchIsRetriedWithFreshResults() throws Exception {
+        // 第一次UPDATE被选为死锁牺牲者，整个事务回滚；重新执行时余额已被其他事务改为50
+        AtomicInteger updates = new AtomicInteger();
+        when(inventoryMapper.addAmountById(eq(INVENTORY_ID), anyDouble())).thenAnswer(invocation -> {
+            if (updates.incrementAndGet() == 1) {
+                Inventory changed = new Inventory();
+                changed.setId(INVENTORY_ID);
+                changed.setChemicalId(CHEMICAL_ID);
+                changed.setCurrentAmount(50.0);
+                when(inventoryMapper.selectPrimaryStockForUpdate(CHEMICAL_ID)).thenReturn(changed);
+                throw new DeadlockLoserDataAccessException("Deadlock found when trying to get lock", null);
+            }
+            return 1;
+        });
+        committer.start();
+
+        StockMutationResult result = committer.submitStorageOut(CHEMICAL_ID, 40.0).get(5, TimeUnit.SECONDS);
+
+        assertThat(result.isSuccess()).isTrue();
+        assertThat(result.getBalance()).isEqualTo(10.0);
+        verify(inventoryMapper, times(2)).addAmountById(INVENTORY_ID, -40.0);
+    }
+
+    @Test
+    void deadlockOnEveryAttemptFailsTheBatch() throws Exception {
+        when(inventoryMapper.addAmountById(eq(INVENTORY_ID), anyDouble()))
+                .thenThrow(new DeadlockLoserDataAccessException("Deadlock found when trying to get lock", null));
+        committer.start();
+
+        assertThatThrownBy(() -> committer.submitStorageIn(CHEMICAL_ID, 1.0).get(5, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(DeadlockLoserDataAccessException.class);
+        verify(inventoryMapper, times(8)).addAmountById(INVENTORY_ID, 1.0);
+    }
+
+    @Test
+    void evictionFailureAfterCommitStillCompletesResults() throws Exception {
+        when(inventoryMapper.addAmountById(eq(INVENTORY_ID), anyDouble())).thenReturn(1);
+        doThrow(new IllegalStateException("Redis不可用")).when(inventoryCache).evict(any());
+        committer.start();
+
+        StockMutationResult result = committer.submitStorageOut(CHEMICAL_ID, 40.0).get(5, TimeUnit.SECONDS);
+        assertThat(result.isSuccess()).isTrue();
+        assertThat(result.getBalance()).isEqualTo(60.0);
+        assertThat(committer.submitStorageIn(CHEMICAL_ID, 1.0).get(5, TimeUnit.SECONDS).isSuccess()).isTrue();
+    }
+
+    @Test
+    void cancelledBeforeClaimIsNeverApplied() throws Exception {
+        // 提交线程尚未启动，请求停留在队列中
+        ReflectionTestUtils.setField(committer, "running", true);
+        CompletableFuture<StockMutationResult> queued = committer.submitStorageIn(CHEMICAL_ID, 5.0);
+        assertThat(queued.cancel(false)).isTrue();
+
+        when(inventoryMapper.addAmountById(eq(INVENTORY_ID), anyDouble())).thenReturn(1);
+        committer.start();
+        StockMutationResult next = committer.submitStorageIn(CHEMICAL_ID, 1.0).get(5, TimeUnit.SECONDS);
+
+        assertThat(next.getBalance()).isEqualTo(101.0);
+        verify(inventoryMapper, never()).addAmountById(INVENTORY_ID, 5.0);
+    }
+
+    @Test
+    void claimedRequestCannotBeCancelled() throws Exception {
+        CountDownLatch inTransaction = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(inventoryMapper.addAmountById(eq(INVENTORY_ID), anyDouble())).thenAnswer(invocation -> {
+            inTransaction.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return 1;
+        });
+        committer.start();
+
+        CompletableFuture<StockMutationResult> future = committer.submitStorageIn(CHEMICAL_ID, 2.0);
+        assertThat(inTransaction.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(future.cancel(false)).isFalse();
+        release.countDown();
+
+        assertThat(future.get(5, TimeUnit.SECONDS).getBalance()).isEqualTo(102.0);
+    }
+
+    @Test
+    void queuedRequestTimesOutWithBusinessException() {
+        ReflectionTestUtils.setField(committer, "running", true);
+        InventoryServiceImpl inventoryService = new InventoryServiceImpl();
+        ReflectionTestUtils.setField(inventoryService, "stockGroupCommitter", committer);
+        ReflectionTestUtils.setField(inventoryService, "groupCommitTimeoutMs", 50L);
+
+        assertThatThrownBy(() -> inventoryService.applyStorageOut(CHEMICAL_ID, 1.0))
+                .isInstanceOfSatisfying(InventoryException.class, e -> assertThat(e.getStatus()).isEqualTo(503));
+
+        committer.start();
+        verify(inventoryMapper, never()).addAmountById(anyInt(), anyDouble());
+    }
+}
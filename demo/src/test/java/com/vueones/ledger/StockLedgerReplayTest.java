@@ -0,0 +1,300 @@
+package com.vueones.ledger;
+
+import com.vueones.cache.ExistenceGuard;
+import com.vueones.dto.StockMutationResult;
+import com.vueones.entity.Inventory;
+import com.vueones.mapper.InventoryCounterMapper;
+import com.vueones.mapper.InventoryMapper;
+import com.vueones.mapper.StockLedgerMapper;
+import com.vueones.support.EmbeddedDatabaseExtension;
+import com.vueones.support.TestDatabase;
+import com.vueones.support.TestServices;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.AdditionalAnswers;
+import org.mockito.Mockito;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.doAnswer;
+
+/**
+ * 库存账本测试：未刷盘的增量在重启后从日志回放，半写的日志尾部被截断，
+ * afterCommit中的刷盘独立提交，并发出入库共用fsync时余额不丢失，日志落盘失败的操作不计入余额，
+ * 调用方事务中的入库提交前不可用、出库提交前先占用余额，
+ * 重新同步在分段锁外读取数据库且不丢失期间的增量
+ */
+@ExtendWith(EmbeddedDatabaseExtension.class)
+class StockLedgerReplayTest {
+
+    private static TestDatabase db;
+
+    @TempDir
+    Path logDir;
+
+    @BeforeAll
+    static void setUp(TestDatabase testDatabase) {
+        db = testDatabase;
+    }
+
+    @Test
+    void replaysUnflushedDeltasAfterCrash() throws IOException {
+        int chemicalId = db.createChemical("账本回放", 5);
+        db.jdbc().update("insert into storage_record (chemical_id, amount, unit, storage_time, operator_id) values (?, 1, 'kg', now(), 1)", chemicalId);
+
+        StockLedger ledger = startLedger();
+        ledger.storageIn(chemicalId, 10.0);
+        ledger.storageIn(chemicalId, 2.5);
+        assertThat(ledger.storageOut(chemicalId, 4.25).isSuccess()).isTrue();
+        assertThat(ledger.storageOut(chemicalId, 100.0).isSuccess()).isFalse();
+        crash(ledger);
+        assertThat(db.jdbc().queryForList("select id from inventory where chemical_id = ?", chemicalId)).isEmpty();
+
+        StockLedger restarted = startLedger();
+        try {
+            assertThat(balance(chemicalId)).isEqualTo(8.25);
+            assertThat(db.jdbc().queryForObject("select unit from inventory where chemical_id = ?", String.class, chemicalId))
+                    .isEqualTo("kg");
+            long lastSeq = ((StockDeltaLog) ReflectionTestUtils.getField(restarted, "deltaLog")).lastSeq();
+            assertThat(db.mapper(StockLedgerMapper.class).selectCheckpoint()).isEqualTo(lastSeq);
+        } finally {
+            restarted.shutdown();
+        }
+
+        // 已推进检查点后再次启动不会重复回放
+        StockLedger again = startLedger();
+        again.shutdown();
+        assertThat(balance(chemicalId)).isEqualTo(8.25);
+    }
+
+    @Test
+    void truncatesTornTailOnReplay() throws IOException {
+        int chemicalId = db.createChemical("账本半写", 5);
+        StockLedger ledger = startLedger();
+        ledger.storageIn(chemicalId, 3.0);
+        ledger.storageIn(chemicalId, 4.0);
+        crash(ledger);
+
+        // 两条记录都在最新的日志段中
+        Path segment;
+        try (Stream<Path> files = Files.list(logDir)) {
+            segment = files.sorted().reduce((first, second) -> second).orElseThrow();
+        }
+        assertThat(Files.size(segment)).isEqualTo(2L * StockDeltaLog.RECORD_SIZE);
+        Files.write(segment, new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10}, StandardOpenOption.APPEND);
+
+        List<Long> deltas = new ArrayList<>();
+        StockDeltaLog deltaLog = new StockDeltaLog(logDir, true);
+        deltaLog.replay(0L, (seq, chemical, delta) -> {
+            if (chemical == chemicalId) {
+                deltas.add(delta);
+            }
+        });
+        assertThat(deltas).containsExactly(300L, 400L);
+        assertThat(Files.size(segment)).isEqualTo(2L * StockDeltaLog.RECORD_SIZE);
+
+        StockLedger restarted = startLedger();
+        restarted.shutdown();
+        assertThat(balance(chemicalId)).isEqualTo(7.0);
+    }
+
+    @Test
+    void flushFromAfterCommitIsCommittedIndependently() throws IOException {
+        int chemicalId = db.createChemical("账本提交后刷盘", 5);
+        StockLedger ledger = startLedger();
+        try {
+            ledger.storageIn(chemicalId, 6.0);
+            db.transactionTemplate().executeWithoutResult(status -> {
+                db.jdbc().update("update chemical set description = '触发' where id = ?", chemicalId);
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCommit() {
+                        ledger.flush();
+                    }
+                });
+            });
+            assertThat(balance(chemicalId)).isEqualTo(6.0);
+        } finally {
+            ledger.shutdown();
+        }
+    }
+
+    @Test
+    void concurrentMovementsShareFsyncWithoutLosingDeltas() throws Exception {
+        int chemicalId = db.createChemical("账本并发", 5);
+        StockLedger ledger = startLedger();
+        int threads = 16;
+        int perThread = 50;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < perThread; i++) {
+                        StockMutationResult result = ledger.storageIn(chemicalId, 1.0);
+                        assertThat(result.isSuccess()).isTrue();
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        crash(ledger);
+
+        StockLedger restarted = startLedger();
+        restarted.shutdown();
+        assertThat(balance(chemicalId)).isEqualTo(threads * perThread);
+    }
+
+    @Test
+    void uncommittedMovementsAreInvisibleToOtherOutbounds() throws Exception {
+        int chemicalId = db.createChemical("账本事务内变动", 5);
+        StockLedger ledger = startLedger();
+        ExecutorService other = Executors.newSingleThreadExecutor();
+        try {
+            ledger.storageIn(chemicalId, 2.0);
+            ledger.flush();
+
+            // 未提交的入库不能被其他出库用掉，回滚后不计入余额
+            db.transactionTemplate().executeWithoutResult(status -> {
+                assertThat(ledger.storageIn(chemicalId, 5.0).getBalance()).isEqualTo(7.0);
+                assertThat(outbound(other, ledger, chemicalId, 5.0)).isFalse();
+                status.setRollbackOnly();
+            });
+            assertThat(ledger.storageOut(chemicalId, 3.0).isSuccess()).isFalse();
+
+            // 未提交的出库先占用余额，回滚后释放
+            db.transactionTemplate().executeWithoutResult(status -> {
+                assertThat(ledger.storageOut(chemicalId, 1.5).isSuccess()).isTrue();
+                assertThat(outbound(other, ledger, chemicalId, 1.0)).isFalse();
+                status.setRollbackOnly();
+            });
+
+            // 提交后生效
+            db.transactionTemplate().executeWithoutResult(status -> ledger.storageIn(chemicalId, 3.0));
+            assertThat(ledger.storageOut(chemicalId, 5.0).isSuccess()).isTrue();
+            assertThat(ledger.storageOut(chemicalId, 0.01).isSuccess()).isFalse();
+        } finally {
+            other.shutdownNow();
+            ledger.shutdown();
+        }
+        assertThat(balance(chemicalId)).isZero();
+    }
+
+    @Test
+    void resyncReadsOutsideStripeLocksAndKeepsConcurrentDeltas() throws Exception {
+        int chemicalId = db.createChemical("账本重新同步", 5);
+        StockLedger ledger = startLedger();
+        StockLedgerMapper realMapper = db.mapper(StockLedgerMapper.class);
+        StockLedgerMapper stockLedgerMapper = Mockito.mock(StockLedgerMapper.class, AdditionalAnswers.delegatesTo(realMapper));
+        ReflectionTestUtils.setField(ledger, "stockLedgerMapper", stockLedgerMapper);
+        ExecutorService other = Executors.newSingleThreadExecutor();
+        try {
+            ledger.storageIn(chemicalId, 4.0);
+            ledger.flush();
+            db.jdbc().update("update inventory set current_amount = 10 where chemical_id = ?", chemicalId);
+
+            // 重新加载读取数据库期间，另一个线程的入库不被分段锁挡住，也不会被读到的旧余额覆盖
+            doAnswer(invocation -> {
+                List<Inventory> stock = realMapper.selectPrimaryStock();
+                assertThat(other.submit(() -> ledger.storageIn(chemicalId, 1.0)).get(10, TimeUnit.SECONDS).isSuccess()).isTrue();
+                return stock;
+            }).when(stockLedgerMapper).selectPrimaryStock();
+            ledger.resync();
+
+            assertThat(ledger.storageOut(chemicalId, 11.0).isSuccess()).isTrue();
+            assertThat(ledger.storageOut(chemicalId, 0.01).isSuccess()).isFalse();
+        } finally {
+            other.shutdownNow();
+            ledger.shutdown();
+        }
+        assertThat(balance(chemicalId)).isZero();
+    }
+
+    @Test
+    void failedLogSyncLeavesBalanceUntouched() throws IOException {
+        int chemicalId = db.createChemical("账本落盘失败", 5);
+        StockLedger ledger = startLedger();
+        StockDeltaLog deltaLog = (StockDeltaLog) ReflectionTestUtils.getField(ledger, "deltaLog");
+        try {
+            ledger.storageIn(chemicalId, 5.0);
+            ledger.flush();
+            StockDeltaLog failing = new StockDeltaLog(logDir.resolve("failing"), true) {
+                @Override
+                public void sync(long seq) throws IOException {
+                    throw new IOException("磁盘已满");
+                }
+            };
+            failing.replay(0L, (seq, chemical, delta) -> { });
+            failing.open(deltaLog.lastSeq());
+            ReflectionTestUtils.setField(ledger, "deltaLog", failing);
+            assertThatThrownBy(() -> ledger.storageOut(chemicalId, 5.0)).isInstanceOf(IllegalStateException.class);
+            failing.close();
+
+            ReflectionTestUtils.setField(ledger, "deltaLog", deltaLog);
+            assertThat(ledger.storageOut(chemicalId, 5.0).isSuccess()).as("未确认的出库不占用余额").isTrue();
+        } finally {
+            ledger.shutdown();
+        }
+        assertThat(balance(chemicalId)).isZero();
+    }
+
+    private StockLedger startLedger() throws IOException {
+        StockLedger ledger = new StockLedger();
+        ReflectionTestUtils.setField(ledger, "stripeCount", 8);
+        ReflectionTestUtils.setField(ledger, "logDir", logDir.toString());
+        ReflectionTestUtils.setField(ledger, "fsync", true);
+        ReflectionTestUtils.setField(ledger, "stockLedgerMapper", db.mapper(StockLedgerMapper.class));
+        ReflectionTestUtils.setField(ledger, "inventoryMapper", db.mapper(InventoryMapper.class));
+        ReflectionTestUtils.setField(ledger, "inventoryCounterMapper", db.mapper(InventoryCounterMapper.class));
+        ReflectionTestUtils.setField(ledger, "existenceGuard", Mockito.mock(ExistenceGuard.class));
+        ReflectionTestUtils.setField(ledger, "transactionManager", db.transactionManager());
+        ReflectionTestUtils.setField(ledger, "cacheManager", new ConcurrentMapCacheManager());
+        ReflectionTestUtils.setField(ledger, "inventoryMovementService", TestServices.movementService(db));
+        ledger.init();
+        return ledger;
+    }
+
+    private static boolean outbound(ExecutorService other, StockLedger ledger, int chemicalId, double amount) {
+        try {
+            return other.submit(() -> ledger.storageOut(chemicalId, amount).isSuccess()).get(10, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 模拟进程崩溃：不刷盘，只释放日志文件句柄
+     */
+    private static void crash(StockLedger ledger) throws IOException {
+        ((StockDeltaLog) ReflectionTestUtils.getField(ledger, "deltaLog")).close();
+    }
+
+    private static Double balance(int chemicalId) {
+        List<Double> amounts = db.jdbc().queryForList(
+                "select current_amount from inventory where chemical_id = ?", Double.class, chemicalId);
+        assertThat(amounts).hasSize(1);
+        return amounts.get(0);
+    }
+}
@@ -0,0 +1,90 @@
+package com.vueones.mapper;
+
+import com.vueones.entity.Inventory;
+import com.vueones.support.EmbeddedDatabaseExtension;
+import com.vueones.support.TestDatabase;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 库存游标分页测试：大量更新时间相同的记录逐页读取不重不漏，
+ * 带游标的深页查询走 idx_update_time 的范围扫描且不需要额外排序
+ */
+@ExtendWith(EmbeddedDatabaseExtension.class)
+class InventoryMapperKeysetTest {
+
+    private static final int ROWS = 3000;
+    private static final int PAGE_SIZE = 50;
+    private static final long BASE_MILLIS = Timestamp.valueOf("2024-01-01 00:00:00").getTime();
+
+    private static TestDatabase db;
+    private static InventoryMapper inventoryMapper;
+
+    @BeforeAll
+    static void setUp(TestDatabase database) {
+        db = database;
+        inventoryMapper = db.mapper(InventoryMapper.class);
+        int chemicalId = db.createChemical("游标分页", 1);
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < ROWS; i++) {
+            // 每7条共用一个更新时间，翻页游标经常落在相同时间的中间
+            rows.add(new Object[]{chemicalId, new Timestamp(BASE_MILLIS + (i / 7) * 1000L)});
+        }
+        db.jdbc().batchUpdate("insert into inventory (chemical_id, current_amount, unit, location, update_time, stock_status) "
+                + "values (?, 10, 'kg', 'A1', ?, 'normal')", rows);
+        db.jdbc().execute("analyze table inventory");
+    }
+
+    @Test
+    void pagesCoverEveryRowOnceInUpdateTimeThenIdOrder() {
+        List<Integer> expected = db.jdbc().queryForList(
+                "select id from inventory order by update_time desc, id desc", Integer.class);
+
+        List<Integer> paged = new ArrayList<>();
+        Date cursorTime = null;
+        Integer cursorId = null;
+        List<Inventory> page;
+        do {
+            page = inventoryMapper.getInventoryPageAfter(null, null, null, null, cursorTime, cursorId, PAGE_SIZE);
+            for (Inventory inventory : page) {
+                paged.add(inventory.getId());
+            }
+            if (!page.isEmpty()) {
+                Inventory last = page.get(page.size() - 1);
+                cursorTime = last.getUpdateTime();
+                cursorId = last.getId();
+            }
+        } while (page.size() == PAGE_SIZE);
+
+        assertThat(paged).containsExactlyElementsOf(expected);
+    }
+
+    @Test
+    void deepPageUsesUpdateTimeIndexWithoutFilesort() {
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("chemicalId", null);
+        parameters.put("chemicalName", null);
+        parameters.put("location", null);
+        parameters.put("status", null);
+        parameters.put("cursorTime", new Timestamp(BASE_MILLIS + 100 * 1000L));
+        parameters.put("cursorId", 703);
+        parameters.put("size", PAGE_SIZE);
+
+        List<Map<String, Object>> plan = db.explain("com.vueones.mapper.InventoryMapper.getInventoryPageAfter", parameters);
+
+        Map<String, Object> inventory = plan.stream().filter(row -> "i".equals(row.get("table"))).findFirst().orElseThrow();
+        assertThat(inventory.get("key")).as("执行计划 %s", plan).isEqualTo("idx_update_time");
+        assertThat(inventory.get("type")).as("执行计划 %s", plan).isEqualTo("range");
+        assertThat(String.valueOf(inventory.get("Extra"))).as("执行计划 %s", plan).doesNotContain("filesort");
+    }
+}
@@ -0,0 +1,161 @@
+package com.vueones.service.impl;
+
+import com.vueones.dto.ReconciliationDiff;
+import com.vueones.dto.ReconciliationReport;
+import com.vueones.mapper.InventoryReconcileMapper;
+import com.vueones.support.EmbeddedDatabaseExtension;
+import com.vueones.support.TestDatabase;
+import com.vueones.support.TestServices;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.AdditionalAnswers;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+
+/**
+ * 库存对账测试：增量对账按每个化学品自己的水位累加合计，自动修正前在锁内复核，
+ * 分区读取之后已经被正常出入库抹平的差异不会再被调整
+ */
+@ExtendWith(EmbeddedDatabaseExtension.class)
+class InventoryReconcileServiceTest {
+
+    private static TestDatabase db;
+    private static InventoryReconcileServiceImpl reconcileService;
+    /** 修正加锁前要模拟的并发变动 */
+    private static volatile Runnable beforeLock;
+
+    @BeforeAll
+    static void setUp(TestDatabase testDatabase) {
+        db = testDatabase;
+        InventoryServiceImpl inventoryService = TestServices.inventoryService(db, TestServices.movementService(db));
+
+        InventoryReconcileMapper realMapper = db.mapper(InventoryReconcileMapper.class);
+        InventoryReconcileMapper reconcileMapper = Mockito.mock(InventoryReconcileMapper.class, AdditionalAnswers.delegatesTo(realMapper));
+        doAnswer(invocation -> {
+            Runnable action = beforeLock;
+            if (action != null) {
+                action.run();
+            }
+            return realMapper.lockInventory(invocation.getArgument(0));
+        }).when(reconcileMapper).lockInventory(any());
+        reconcileService = new InventoryReconcileServiceImpl();
+        ReflectionTestUtils.setField(reconcileService, "parallelism", 2);
+        ReflectionTestUtils.setField(reconcileService, "partitionSize", 2);
+        ReflectionTestUtils.setField(reconcileService, "includeUsage", false);
+        ReflectionTestUtils.setField(reconcileService, "inventoryReconcileMapper", reconcileMapper);
+        ReflectionTestUtils.setField(reconcileService, "inventoryService", inventoryService);
+        ReflectionTestUtils.setField(reconcileService, "transactionManager", db.transactionManager());
+        ReflectionTestUtils.setField(reconcileService, "transactionTemplate", db.transactionTemplate());
+        reconcileService.init();
+    }
+
+    @AfterAll
+    static void tearDown() {
+        if (reconcileService != null) {
+            reconcileService.shutdown();
+        }
+    }
+
+    @Test
+    void incrementalReconcileContinuesFromPerChemicalWatermark() {
+        int balanced = db.createChemical("对账一致", 5);
+        int drifted = db.createChemical("对账偏差", 5);
+        storageIn(balanced, 10);
+        outbound(balanced, 3);
+        setInventory(balanced, 7);
+        storageIn(drifted, 5);
+        setInventory(drifted, 2);
+
+        ReconciliationReport full = reconcileService.reconcile(false, false);
+        assertThat(diffOf(full, balanced)).isEmpty();
+        assertThat(diffOf(full, drifted)).get().extracting(ReconciliationDiff::getDifference).isEqualTo(3.0);
+        Map<String, Object> totals = totalsOf(balanced);
+        assertThat(((Number) totals.get("storage_max_id")).longValue()).isEqualTo(maxId("storage_record"));
+        assertThat(((Number) totals.get("outbound_max_id")).longValue()).isEqualTo(maxId("outbound_record"));
+        assertThat(((Number) totals.get("usage_max_id")).longValue()).isZero();
+
+        // 水位之后新增的入库记录只被汇总一次
+        storageIn(balanced, 4);
+        ReconciliationReport first = reconcileService.reconcile(true, false);
+        assertThat(diffOf(first, balanced)).get().satisfies(diff -> {
+            assertThat(diff.getStorageTotal()).isEqualTo(14.0);
+            assertThat(diff.getDifference()).isEqualTo(4.0);
+        });
+        ReconciliationReport second = reconcileService.reconcile(true, false);
+        assertThat(diffOf(second, balanced)).get().extracting(ReconciliationDiff::getStorageTotal).isEqualTo(14.0);
+        assertThat(((Number) totalsOf(balanced).get("storage_total")).doubleValue()).isEqualTo(14.0);
+    }
+
+    @Test
+    void autoCorrectRechecksUnderLockBeforeAdjusting() {
+        int healed = db.createChemical("复核已抹平", 5);
+        int broken = db.createChemical("复核仍偏差", 5);
+        storageIn(healed, 8);
+        setInventory(healed, 5);
+        storageIn(broken, 6);
+        setInventory(broken, 1);
+
+        // 分区读取之后、修正加锁之前，另一个事务把healed的库存改回了正确值
+        beforeLock = () -> setInventory(healed, 8);
+        try {
+            ReconciliationReport report = reconcileService.reconcile(false, true);
+
+            assertThat(diffOf(report, healed)).get().satisfies(diff -> {
+                assertThat(diff.isCorrected()).isFalse();
+                assertThat(diff.getDifference()).isEqualTo(0.0);
+            });
+            assertThat(diffOf(report, broken)).get().satisfies(diff -> {
+                assertThat(diff.isCorrected()).isTrue();
+                assertThat(diff.getDifference()).isEqualTo(5.0);
+            });
+            assertThat(inventoryOf(healed)).isEqualTo(8.0);
+            assertThat(inventoryOf(broken)).isEqualTo(6.0);
+            assertThat(db.jdbc().queryForObject("select count(*) from inventory_movement where chemical_id = ?",
+                    Integer.class, healed)).isZero();
+        } finally {
+            beforeLock = null;
+        }
+    }
+
+    private static void storageIn(int chemicalId, double amount) {
+        db.jdbc().update("insert into storage_record (chemical_id, amount, unit, storage_time, operator_id) values (?, ?, 'L', now(), 1)",
+                chemicalId, amount);
+    }
+
+    private static void outbound(int chemicalId, double amount) {
+        db.jdbc().update("insert into outbound_record (chemical_id, amount, unit, outbound_time, operator_id, recipient) values (?, ?, 'L', now(), 1, '实验室')",
+                chemicalId, amount);
+    }
+
+    private static void setInventory(int chemicalId, double amount) {
+        if (db.jdbc().update("update inventory set current_amount = ? where chemical_id = ?", amount, chemicalId) == 0) {
+            db.jdbc().update("insert into inventory (chemical_id, current_amount, unit, location) values (?, ?, 'L', '测试柜')",
+                    chemicalId, amount);
+        }
+    }
+
+    private static Double inventoryOf(int chemicalId) {
+        return db.jdbc().queryForObject("select current_amount from inventory where chemical_id = ?", Double.class, chemicalId);
+    }
+
+    private static Map<String, Object> totalsOf(int chemicalId) {
+        return db.jdbc().queryForMap("select * from inventory_reconcile_total where chemical_id = ?", chemicalId);
+    }
+
+    private static long maxId(String table) {
+        return db.jdbc().queryForObject("select max(id) from " + table, Long.class);
+    }
+
+    private static Optional<ReconciliationDiff> diffOf(ReconciliationReport report, int chemicalId) {
+        return report.getDiffs().stream().filter(diff -> diff.getChemicalId() == chemicalId).findFirst();
+    }
+}
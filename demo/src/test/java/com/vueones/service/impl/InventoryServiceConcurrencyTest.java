@@ -0,0 +1,170 @@
+package com.vueones.service.impl;
+
+import com.vueones.dto.StockMutationResult;
+import com.vueones.entity.Inventory;
+import com.vueones.mapper.InventoryCounterMapper;
+import com.vueones.support.EmbeddedDatabaseExtension;
+import com.vueones.support.TestDatabase;
+import com.vueones.support.TestServices;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 出入库并发测试：同一化学品上数百个并行的入库、出库在真实InnoDB行锁下不丢失更新、不超卖，
+ * 首次入库的并发新建只产生一条库存记录，手工新增的其他存放位置另起一条；每个被接受的变动都有一条流水
+ */
+@ExtendWith(EmbeddedDatabaseExtension.class)
+class InventoryServiceConcurrencyTest {
+
+    private static final int THREADS = 32;
+
+    private static TestDatabase db;
+    private static InventoryServiceImpl inventoryService;
+
+    @BeforeAll
+    static void setUp(TestDatabase testDatabase) {
+        db = testDatabase;
+        inventoryService = TestServices.inventoryService(db, TestServices.movementService(db));
+    }
+
+    @Test
+    void concurrentFirstReceiptsCreateOneRowWithoutLostUpdates() throws Exception {
+        int chemicalId = db.createChemical("并发首次入库", 5);
+        db.jdbc().update("insert into storage_record (chemical_id, amount, unit, storage_time, operator_id) values (?, 1, 'L', now(), 1)", chemicalId);
+        long totalBefore = counterValue();
+        int receipts = 400;
+
+        List<StockMutationResult> results = runConcurrently(receipts, i -> inventoryService.applyStorageIn(chemicalId, 1.0));
+
+        assertThat(results).allMatch(StockMutationResult::isSuccess);
+        List<Map<String, Object>> rows = db.jdbc().queryForList(
+                "select id, current_amount, unit from inventory where chemical_id = ?", chemicalId);
+        assertThat(rows).hasSize(1);
+        assertThat(((Number) rows.get(0).get("current_amount")).doubleValue()).isEqualTo(receipts);
+        assertThat(rows.get(0).get("unit")).isEqualTo("L");
+        assertThat(counterValue()).isEqualTo(totalBefore + 1);
+        assertMovementsMatchBalance(chemicalId, receipts);
+        assertThat(movementCount(chemicalId)).isEqualTo(receipts);
+    }
+
+    @Test
+    void concurrentMixedMovementsNeitherLoseUpdatesNorOversell() throws Exception {
+        int chemicalId = db.createChemical("并发出入库", 5);
+        inventoryService.applyStorageIn(chemicalId, 100.0);
+        int movements = 900;
+
+        // 每3个操作中1个入库2个出库，出库总量超过可用量，必然有被拒绝的出库
+        List<StockMutationResult> results = runConcurrently(movements, i -> i % 3 == 0
+                ? inventoryService.applyStorageIn(chemicalId, 1.0)
+                : inventoryService.applyStorageOut(chemicalId, 1.0));
+
+        long acceptedIn = 0;
+        long acceptedOut = 0;
+        for (int i = 0; i < results.size(); i++) {
+            if (results.get(i).isSuccess()) {
+                if (i % 3 == 0) {
+                    acceptedIn++;
+                } else {
+                    acceptedOut++;
+                }
+            }
+        }
+        double expected = 100 + acceptedIn - acceptedOut;
+        Double balance = db.jdbc().queryForObject(
+                "select current_amount from inventory where chemical_id = ?", Double.class, chemicalId);
+
+        assertThat(acceptedIn).isEqualTo(movements / 3);
+        assertThat(acceptedOut).isLessThan(movements * 2 / 3);
+        assertThat(balance).isEqualTo(expected).isGreaterThanOrEqualTo(0.0);
+        assertMovementsMatchBalance(chemicalId, expected);
+        assertThat(movementCount(chemicalId)).isEqualTo(1 + acceptedIn + acceptedOut);
+        assertThat(db.jdbc().queryForObject("select min(balance_after) from inventory_movement where chemical_id = ?",
+                Double.class, chemicalId)).isGreaterThanOrEqualTo(0.0);
+    }
+
+    @Test
+    void secondLocationAddsAnotherRowAndReceiptsGoToTheFirst() {
+        int chemicalId = db.createChemical("多位置库存", 5);
+        long totalBefore = counterValue();
+        Inventory first = location(chemicalId, "A柜", 3.0);
+        Inventory second = location(chemicalId, "B柜", 4.0);
+
+        assertThat(inventoryService.addInventory(first)).isEqualTo(1);
+        assertThat(inventoryService.addInventory(second)).isEqualTo(1);
+        StockMutationResult result = inventoryService.applyStorageIn(chemicalId, 2.0);
+
+        assertThat(result.getInventoryId()).isEqualTo(first.getId());
+        assertThat(result.getBalance()).isEqualTo(5.0);
+        assertThat(db.jdbc().queryForList("select current_amount from inventory where chemical_id = ? order by id",
+                Double.class, chemicalId)).containsExactly(5.0, 4.0);
+        assertThat(counterValue()).isEqualTo(totalBefore + 2);
+    }
+
+    private static Inventory location(int chemicalId, String location, double amount) {
+        Inventory inventory = new Inventory();
+        inventory.setChemicalId(chemicalId);
+        inventory.setCurrentAmount(amount);
+        inventory.setUnit("L");
+        inventory.setLocation(location);
+        return inventory;
+    }
+
+    private void assertMovementsMatchBalance(int chemicalId, double balance) {
+        Map<String, Object> sums = db.jdbc().queryForMap(
+                "select count(*) as cnt, sum(delta) as total from inventory_movement where chemical_id = ?", chemicalId);
+        assertThat(((Number) sums.get("total")).doubleValue()).isEqualTo(balance);
+    }
+
+    private long movementCount(int chemicalId) {
+        return db.jdbc().queryForObject("select count(*) from inventory_movement where chemical_id = ?", Long.class, chemicalId);
+    }
+
+    private long counterValue() {
+        Long value = db.mapper(InventoryCounterMapper.class).selectValue(InventoryCounterMapper.INVENTORY_TOTAL);
+        return value == null ? 0 : value;
+    }
+
+    private interface Movement {
+        StockMutationResult apply(int index);
+    }
+
+    /**
+     * 所有任务在同一时刻放行，尽量制造行锁竞争
+     */
+    private static List<StockMutationResult> runConcurrently(int count, Movement movement) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch ready = new CountDownLatch(1);
+        try {
+            List<Future<StockMutationResult>> futures = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                int index = i;
+                Callable<StockMutationResult> task = () -> {
+                    ready.await();
+                    return movement.apply(index);
+                };
+                futures.add(executor.submit(task));
+            }
+            ready.countDown();
+            List<StockMutationResult> results = new ArrayList<>(count);
+            for (Future<StockMutationResult> future : futures) {
+                results.add(future.get(60, TimeUnit.SECONDS));
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
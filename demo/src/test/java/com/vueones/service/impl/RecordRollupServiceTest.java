@@ -0,0 +1,149 @@
+package com.vueones.service.impl;
+
+import com.vueones.dto.RecordStatistics;
+import com.vueones.mapper.RecordRollupMapper;
+import com.vueones.support.EmbeddedDatabaseExtension;
+import com.vueones.support.TestDatabase;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 记录汇总测试：跨日（23:59:59与00:00:00）、跨分钟（:59与:00）的记录计入正确的日与分钟，
+ * 同一分钟内的多条记录只算一个有记录的分钟，删除、改时间后增量结果与全量重建一致，
+ * 合并统计查询的本月与当日数字与逐项查询一致
+ */
+@ExtendWith(EmbeddedDatabaseExtension.class)
+class RecordRollupServiceTest {
+
+    private static final String TYPE = RecordRollupMapper.TYPE_STORAGE;
+    private static final LocalDate MAY_31 = LocalDate.of(2024, 5, 31);
+    private static final LocalDate JUNE_1 = LocalDate.of(2024, 6, 1);
+
+    private static TestDatabase db;
+    private static RecordRollupMapper recordRollupMapper;
+    private static RecordRollupServiceImpl rollupService;
+
+    @BeforeAll
+    static void setUp(TestDatabase database) {
+        db = database;
+        recordRollupMapper = db.mapper(RecordRollupMapper.class);
+        rollupService = new RecordRollupServiceImpl();
+        ReflectionTestUtils.setField(rollupService, "recordRollupMapper", recordRollupMapper);
+    }
+
+    @Test
+    void recordsLandInTheRightDayAndMinuteAcrossBoundaries() {
+        int chemicalId = db.createChemical("汇总边界", 1);
+        int other = db.createChemical("汇总边界其他", 1);
+        int lastSecondOfMay = insert(chemicalId, "2024-05-31 23:59:59", 1.0);
+        int firstSecondOfJune = insert(chemicalId, "2024-06-01 00:00:00", 2.0);
+        int endOfMinute = insert(chemicalId, "2024-06-01 10:00:59", 3.0);
+        int startOfMinute = insert(chemicalId, "2024-06-01 10:01:00", 4.0);
+        int sameMinute = insert(chemicalId, "2024-06-01 10:01:30", 5.0);
+        int otherChemical = insert(other, "2024-06-01 10:01:45", 6.0);
+        rollupService.recordsAdded(TYPE, List.of(lastSecondOfMay, firstSecondOfJune, endOfMinute, startOfMinute, sameMinute, otherChemical));
+
+        assertThat(rollupService.countRecords(TYPE, chemicalId, null, MAY_31, JUNE_1)).isEqualTo(1);
+        assertThat(rollupService.countRecords(TYPE, chemicalId, null, JUNE_1, JUNE_1.plusDays(1))).isEqualTo(4);
+        assertThat(rollupService.countRecords(TYPE, chemicalId, null, JUNE_1, JUNE_1.plusMonths(1))).isEqualTo(4);
+        assertThat(rollupService.sumAmount(TYPE, chemicalId, null, MAY_31.withDayOfMonth(1), JUNE_1)).isEqualTo(1.0);
+        assertThat(rollupService.countActiveDays(TYPE, chemicalId, null, MAY_31, JUNE_1.plusDays(1))).isEqualTo(2);
+        // 00:00、10:00、10:01 三个分钟；按名称筛选走分钟汇总，结果与按ID读日汇总一致
+        assertThat(rollupService.countActiveMinutes(TYPE, chemicalId, null, JUNE_1)).isEqualTo(3);
+        assertThat(rollupService.countActiveMinutes(TYPE, null, "汇总边界其他", JUNE_1)).isEqualTo(1);
+        assertThat(rollupService.countActiveMinutes(TYPE, null, null, JUNE_1)).isEqualTo(3);
+        // 起始时间所在的整分钟计入
+        assertThat(rollupService.countActiveChemicals(TYPE, LocalDateTime.of(2024, 6, 1, 10, 1, 50))).isEqualTo(2);
+        assertThat(rollupService.countActiveChemicals(TYPE, LocalDateTime.of(2024, 6, 1, 10, 2))).isZero();
+
+        // 删除同一分钟的一条记录，该分钟仍有记录
+        rollupService.recordsRemoving(TYPE, List.of(startOfMinute));
+        db.jdbc().update("delete from storage_record where id = ?", startOfMinute);
+        assertThat(rollupService.countActiveMinutes(TYPE, chemicalId, null, JUNE_1)).isEqualTo(3);
+        rollupService.recordsRemoving(TYPE, List.of(sameMinute));
+        db.jdbc().update("delete from storage_record where id = ?", sameMinute);
+        assertThat(rollupService.countActiveMinutes(TYPE, chemicalId, null, JUNE_1)).isEqualTo(2);
+
+        // 五月最后一秒的记录改到六月第一分钟：五月不再有记录，六月的有记录分钟数不变
+        rollupService.recordsRemoving(TYPE, List.of(lastSecondOfMay));
+        db.jdbc().update("update storage_record set storage_time = ? where id = ?",
+                Timestamp.valueOf("2024-06-01 00:00:30"), lastSecondOfMay);
+        rollupService.recordsAdded(TYPE, List.of(lastSecondOfMay));
+        assertThat(rollupService.countRecords(TYPE, chemicalId, null, MAY_31, JUNE_1)).isZero();
+        assertThat(rollupService.countActiveDays(TYPE, chemicalId, null, MAY_31, JUNE_1.plusDays(1))).isEqualTo(1);
+        assertThat(rollupService.countActiveMinutes(TYPE, chemicalId, null, JUNE_1)).isEqualTo(2);
+
+        List<Map<String, Object>> incremental = rollups();
+        rollupService.rebuild(TYPE);
+        assertThat(rollups()).isEqualTo(incremental);
+    }
+
+    @Test
+    void combinedStatisticsMatchIndividualQueries() {
+        int chemicalId = db.createChemical("合并统计", 1);
+        List<Integer> ids = List.of(
+                insert(chemicalId, "2023-07-31 23:59:59", 1.5),
+                insert(chemicalId, "2023-08-01 00:00:00", 2.0),
+                insert(chemicalId, "2023-08-14 09:30:10", 3.0),
+                insert(chemicalId, "2023-08-15 00:00:00", 4.0),
+                insert(chemicalId, "2023-08-15 08:15:59", 5.0),
+                insert(chemicalId, "2023-08-15 08:16:00", 6.0),
+                insert(chemicalId, "2023-08-15 08:16:40", 7.0),
+                insert(chemicalId, "2023-08-16 00:00:00", 8.0));
+        rollupService.recordsAdded(TYPE, ids);
+        // 早于另一个测试的记录，不影响其“指定时间之后”的统计
+        LocalDate today = LocalDate.of(2023, 8, 15);
+        LocalDate monthStart = today.withDayOfMonth(1);
+
+        RecordStatistics statistics = recordRollupMapper.selectStatistics(TYPE, chemicalId, null, monthStart, today, today.plusDays(1), true);
+
+        assertThat(statistics.getMonthlyCount()).isEqualTo(rollupService.countRecords(TYPE, chemicalId, null, monthStart, today.plusDays(1))).isEqualTo(6);
+        assertThat(statistics.getMonthlyTotal()).isEqualTo(rollupService.sumAmount(TYPE, chemicalId, null, monthStart, today.plusDays(1))).isEqualTo(27.0);
+        assertThat(statistics.getMonthlyTimes()).isEqualTo(rollupService.countActiveDays(TYPE, chemicalId, null, monthStart, today.plusDays(1))).isEqualTo(3);
+        assertThat(statistics.getDailyCount()).isEqualTo(rollupService.countRecords(TYPE, chemicalId, null, today, today.plusDays(1))).isEqualTo(4);
+        assertThat(statistics.getDailyTotal()).isEqualTo(22.0);
+        assertThat(statistics.getDailyTimes()).isEqualTo(rollupService.countActiveMinutes(TYPE, chemicalId, null, today)).isEqualTo(3);
+        assertThat(statistics.getTotalAmount()).isEqualTo(rollupService.sumAmount(TYPE, chemicalId, null, null, null)).isEqualTo(36.5);
+    }
+
+    private static int insert(int chemicalId, String time, double amount) {
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        db.jdbc().update(conn -> {
+            PreparedStatement ps = conn.prepareStatement(
+                    "insert into storage_record (chemical_id, amount, unit, storage_time, operator_id) values (?, ?, 'kg', ?, 1)",
+                    Statement.RETURN_GENERATED_KEYS);
+            ps.setInt(1, chemicalId);
+            ps.setDouble(2, amount);
+            ps.setTimestamp(3, Timestamp.valueOf(time));
+            return ps;
+        }, keyHolder);
+        return keyHolder.getKey().intValue();
+    }
+
+    /**
+     * 有记录的汇总行（增量维护会留下记录数为0的行，全量重建不会）
+     */
+    private static List<Map<String, Object>> rollups() {
+        List<Map<String, Object>> rows = db.jdbc().queryForList(
+                "select chemical_id, stat_date as bucket, record_count, minute_count, amount_sum from record_daily_rollup "
+                        + "where record_type = ? and record_count > 0 order by chemical_id, stat_date", TYPE);
+        rows.addAll(db.jdbc().queryForList(
+                "select chemical_id, stat_minute as bucket, record_count, null as minute_count, amount_sum from record_minute_rollup "
+                        + "where record_type = ? and record_count > 0 order by chemical_id, stat_minute", TYPE));
+        return rows;
+    }
+}
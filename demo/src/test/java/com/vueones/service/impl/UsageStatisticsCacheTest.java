@@ -0,0 +1,145 @@
+package com.vueones.service.impl;
+
+import com.vueones.cache.CacheNames;
+import com.vueones.cache.ExistenceGuard;
+import com.vueones.mapper.ChemicalMapper;
+import com.vueones.mapper.InventoryMapper;
+import com.vueones.mapper.RecordRollupMapper;
+import com.vueones.mapper.StorageRecordMapper;
+import com.vueones.mapper.UsageRecordMapper;
+import com.vueones.service.IChemicalService;
+import com.vueones.service.IInventoryService;
+import com.vueones.service.IRecordRollupService;
+import com.vueones.service.IUsageRecordService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 使用统计缓存测试：今日、本月统计从记录汇总按自然日、自然月区间读取，
+ * 缓存key带当日日期，前一天（上个月）缓存的结果在跨日（跨月）后不再被读到
+ */
+class UsageStatisticsCacheTest {
+
+    private AnnotationConfigApplicationContext context;
+    private IRecordRollupService recordRollupService;
+    private IUsageRecordService usageRecordService;
+    private Cache statistics;
+
+    @BeforeEach
+    void setUp() {
+        context = new AnnotationConfigApplicationContext(Config.class);
+        recordRollupService = context.getBean(IRecordRollupService.class);
+        usageRecordService = context.getBean(IUsageRecordService.class);
+        statistics = context.getBean(CacheManager.class).getCache(CacheNames.USAGE_STATISTICS);
+    }
+
+    @AfterEach
+    void tearDown() {
+        context.close();
+    }
+
+    @Test
+    void todayCountIsReadFromRollupsForTheCurrentDayAndCachedPerDay() {
+        LocalDate today = LocalDate.now();
+        when(recordRollupService.countRecords(eq(RecordRollupMapper.TYPE_USAGE), isNull(), isNull(), any(), any()))
+                .thenReturn(3, 5);
+        // 前一天缓存的结果
+        statistics.put("getTodayUsageCount:" + today.minusDays(1), 99);
+
+        assertThat(usageRecordService.getTodayUsageCount()).isEqualTo(3);
+        assertThat(usageRecordService.getTodayUsageCount()).isEqualTo(3);
+
+        verify(recordRollupService, times(1)).countRecords(RecordRollupMapper.TYPE_USAGE, null, null, today, today.plusDays(1));
+        assertThat(statistics.get("getTodayUsageCount:" + today).get()).isEqualTo(3);
+    }
+
+    @Test
+    void monthCountIsReadFromRollupsForTheCurrentMonth() {
+        LocalDate today = LocalDate.now();
+        LocalDate month = today.withDayOfMonth(1);
+        when(recordRollupService.countRecords(eq(RecordRollupMapper.TYPE_USAGE), isNull(), isNull(), any(), any()))
+                .thenReturn(42);
+        // 上个月最后一天缓存的本月统计
+        statistics.put("getMonthUsageCount:" + month.minusDays(1), 7);
+
+        assertThat(usageRecordService.getMonthUsageCount()).isEqualTo(42);
+
+        verify(recordRollupService).countRecords(RecordRollupMapper.TYPE_USAGE, null, null, month, month.plusMonths(1));
+        assertThat(statistics.get("getMonthUsageCount:" + today).get()).isEqualTo(42);
+    }
+
+    @Configuration
+    @EnableCaching
+    static class Config {
+
+        @Bean
+        CacheManager cacheManager() {
+            return new ConcurrentMapCacheManager();
+        }
+
+        @Bean
+        IRecordRollupService recordRollupService() {
+            return Mockito.mock(IRecordRollupService.class);
+        }
+
+        @Bean
+        UsageRecordMapper usageRecordMapper() {
+            return Mockito.mock(UsageRecordMapper.class);
+        }
+
+        @Bean
+        IInventoryService inventoryService() {
+            return Mockito.mock(IInventoryService.class);
+        }
+
+        @Bean
+        IChemicalService chemicalService() {
+            return Mockito.mock(IChemicalService.class);
+        }
+
+        @Bean
+        ExistenceGuard existenceGuard() {
+            return Mockito.mock(ExistenceGuard.class);
+        }
+
+        // 模拟的ExistenceGuard仍会注入其依赖的映射器
+        @Bean
+        ChemicalMapper chemicalMapper() {
+            return Mockito.mock(ChemicalMapper.class);
+        }
+
+        @Bean
+        InventoryMapper inventoryMapper() {
+            return Mockito.mock(InventoryMapper.class);
+        }
+
+        @Bean
+        StorageRecordMapper storageRecordMapper() {
+            return Mockito.mock(StorageRecordMapper.class);
+        }
+
+        @Bean
+        UsageRecordServiceImpl usageRecordService() {
+            return new UsageRecordServiceImpl();
+        }
+    }
+}
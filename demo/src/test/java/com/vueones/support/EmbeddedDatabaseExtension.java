@@ -0,0 +1,92 @@
+package com.vueones.support;
+
+import ch.vorburger.mariadb4j.DB;
+import ch.vorburger.mariadb4j.DBConfigurationBuilder;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.junit.jupiter.api.extension.ParameterContext;
+import org.junit.jupiter.api.extension.ParameterResolver;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 嵌入式MariaDB测试扩展
+ * 整个测试运行共用一个数据库进程，每个测试类得到一个新建的库（init_tables.sql + 测试补充表），
+ * 通过@BeforeAll方法的TestDatabase参数注入；数据库进程无法启动时相关测试跳过而不是失败
+ */
+public class EmbeddedDatabaseExtension implements ParameterResolver {
+
+    private static final ExtensionContext.Namespace NAMESPACE = ExtensionContext.Namespace.create(EmbeddedDatabaseExtension.class);
+
+    private static final AtomicInteger SCHEMA_SEQ = new AtomicInteger();
+
+    @Override
+    public boolean supportsParameter(ParameterContext parameterContext, ExtensionContext extensionContext) {
+        return parameterContext.getParameter().getType() == TestDatabase.class;
+    }
+
+    @Override
+    public Object resolveParameter(ParameterContext parameterContext, ExtensionContext extensionContext) {
+        Server server = extensionContext.getRoot().getStore(NAMESPACE)
+                .getOrComputeIfAbsent(Server.class, key -> Server.start(), Server.class);
+        Assumptions.assumeTrue(server.db != null, () -> "嵌入式MariaDB无法启动: " + server.failure);
+        // 测试类级别的库随测试类结束关闭连接池
+        return extensionContext.getStore(NAMESPACE).getOrComputeIfAbsent(TestDatabase.class,
+                key -> TestDatabase.create(server.port, "vueone_test_" + SCHEMA_SEQ.incrementAndGet()), TestDatabase.class);
+    }
+
+    /**
+     * 数据库进程，所有测试结束后随根上下文关闭
+     */
+    static final class Server implements ExtensionContext.Store.CloseableResource {
+        private final DB db;
+        private final int port;
+        private final Throwable failure;
+
+        private Server(DB db, int port, Throwable failure) {
+            this.db = db;
+            this.port = port;
+            this.failure = failure;
+        }
+
+        static Server start() {
+            DB db = null;
+            try {
+                DBConfigurationBuilder config = DBConfigurationBuilder.newBuilder();
+                config.setPort(0);
+                config.addArg("--user=root");
+                config.addArg("--character-set-server=utf8mb4");
+                config.addArg("--max-connections=500");
+                // 测试库不需要每次提交都刷盘
+                config.addArg("--innodb-flush-log-at-trx-commit=2");
+                db = DB.newEmbeddedDB(config.build());
+                db.start();
+                // 确认能连上（客户端库缺失时DB.createDB不可用，建库一律走JDBC）
+                try (Connection conn = DriverManager.getConnection("jdbc:mysql://localhost:" + config.getPort() + "/?user=root&useSSL=false");
+                     Statement stmt = conn.createStatement()) {
+                    stmt.execute("select 1");
+                }
+                return new Server(db, config.getPort(), null);
+            } catch (Throwable e) {
+                if (db != null) {
+                    try {
+                        db.stop();
+                    } catch (Exception ignored) {
+                        // 启动失败时尽量清理
+                    }
+                }
+                return new Server(null, 0, e);
+            }
+        }
+
+        @Override
+        public void close() throws Exception {
+            if (db != null) {
+                db.stop();
+            }
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.vueones.support;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.mybatis.spring.SqlSessionFactoryBean;
+import org.mybatis.spring.SqlSessionTemplate;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 测试用的独立库：建表脚本、连接池、MyBatis映射与事务管理与应用配置一致
+ */
+public class TestDatabase implements ExtensionContext.Store.CloseableResource {
+
+    private final HikariDataSource dataSource;
+    private final SqlSessionTemplate sqlSessionTemplate;
+    private final DataSourceTransactionManager transactionManager;
+    private final JdbcTemplate jdbcTemplate;
+
+    private TestDatabase(HikariDataSource dataSource, SqlSessionTemplate sqlSessionTemplate) {
+        this.dataSource = dataSource;
+        this.sqlSessionTemplate = sqlSessionTemplate;
+        this.transactionManager = new DataSourceTransactionManager(dataSource);
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    static TestDatabase create(int port, String schema) {
+        String baseUrl = "jdbc:mysql://localhost:" + port + "/";
+        String params = "?user=root&useSSL=false&serverTimezone=UTC&characterEncoding=utf8";
+        try (Connection conn = DriverManager.getConnection(baseUrl + params);
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("create database `" + schema + "` default character set utf8mb4");
+        } catch (Exception e) {
+            throw new IllegalStateException("创建测试库失败: " + schema, e);
+        }
+
+        HikariConfig config = new HikariConfig();
+        config.setJdbcUrl(baseUrl + schema + params);
+        config.setMaximumPoolSize(64);
+        config.setPoolName(schema);
+        HikariDataSource dataSource = new HikariDataSource(config);
+        try {
+            ResourceDatabasePopulator populator = new ResourceDatabasePopulator(
+                    new ClassPathResource("db/init_tables.sql"),
+                    new ClassPathResource("db/test_record_tables.sql"));
+            populator.setSqlScriptEncoding("UTF-8");
+            populator.execute(dataSource);
+
+            SqlSessionFactoryBean factoryBean = new SqlSessionFactoryBean();
+            factoryBean.setDataSource(dataSource);
+            factoryBean.setMapperLocations(new PathMatchingResourcePatternResolver().getResources("classpath:mybatis/*.xml"));
+            factoryBean.setTypeAliasesPackage("com.vueones.entity");
+            org.apache.ibatis.session.Configuration configuration = new org.apache.ibatis.session.Configuration();
+            configuration.setMapUnderscoreToCamelCase(true);
+            factoryBean.setConfiguration(configuration);
+            SqlSessionFactory sqlSessionFactory = factoryBean.getObject();
+            return new TestDatabase(dataSource, new SqlSessionTemplate(sqlSessionFactory));
+        } catch (Exception e) {
+            dataSource.close();
+            throw new IllegalStateException("初始化测试库失败: " + schema, e);
+        }
+    }
+
+    public DataSource dataSource() {
+        return dataSource;
+    }
+
+    public JdbcTemplate jdbc() {
+        return jdbcTemplate;
+    }
+
+    /**
+     * 获取映射器，与Spring事务绑定（在TransactionTemplate中调用时共用同一连接）
+     */
+    public <T> T mapper(Class<T> type) {
+        return sqlSessionTemplate.getMapper(type);
+    }
+
+    /**
+     * 以映射语句实际生成的SQL执行EXPLAIN，检查执行计划
+     * @param statement 映射语句ID，如 com.vueones.mapper.InventoryMapper.getInventoryPageAfter
+     * @param parameters 语句参数（按@Param名称）
+     * @return EXPLAIN结果，每行一个Map
+     */
+    public List<Map<String, Object>> explain(String statement, Map<String, Object> parameters) {
+        org.apache.ibatis.session.Configuration configuration = sqlSessionTemplate.getConfiguration();
+        BoundSql boundSql = configuration.getMappedStatement(statement).getBoundSql(parameters);
+        MetaObject metaObject = configuration.newMetaObject(parameters);
+        List<Object> args = new ArrayList<>();
+        for (ParameterMapping mapping : boundSql.getParameterMappings()) {
+            String property = mapping.getProperty();
+            args.add(boundSql.hasAdditionalParameter(property)
+                    ? boundSql.getAdditionalParameter(property) : metaObject.getValue(property));
+        }
+        return jdbcTemplate.queryForList("explain " + boundSql.getSql(), args.toArray());
+    }
+
+    public PlatformTransactionManager transactionManager() {
+        return transactionManager;
+    }
+
+    public TransactionTemplate transactionTemplate() {
+        return new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * 新建一个没有库存记录的化学品
+     * @param name 名称（唯一）
+     * @param warningThreshold 预警阈值
+     * @return 化学品ID
+     */
+    public int createChemical(String name, double warningThreshold) {
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.update(conn -> {
+            PreparedStatement ps = conn.prepareStatement(
+                    "insert into chemical (name, category, danger_level, storage_condition, warning_threshold) values (?, '测试', '低危', '常温', ?)",
+                    Statement.RETURN_GENERATED_KEYS);
+            ps.setString(1, name);
+            ps.setDouble(2, warningThreshold);
+            return ps;
+        }, keyHolder);
+        return keyHolder.getKey().intValue();
+    }
+
+    @Override
+    public void close() {
+        dataSource.close();
+    }
+}
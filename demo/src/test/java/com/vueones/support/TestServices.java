@@ -0,0 +1,76 @@
+package com.vueones.support;
+
+import com.vueones.cache.ExistenceGuard;
+import com.vueones.ledger.InventoryStatsAggregator;
+import com.vueones.ledger.StockGroupCommitter;
+import com.vueones.mapper.InventoryCounterMapper;
+import com.vueones.mapper.InventoryLotMapper;
+import com.vueones.mapper.InventoryMapper;
+import com.vueones.mapper.InventoryMovementMapper;
+import com.vueones.service.IInventoryMovementService;
+import com.vueones.service.impl.InventoryMovementServiceImpl;
+import com.vueones.service.impl.InventoryServiceImpl;
+import org.mockito.Mockito;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * 按应用中的依赖关系装配连接测试库的出入库服务：映射器来自测试库，缓存用内存实现，存在性判断不拦截
+ */
+public final class TestServices {
+
+    private TestServices() {
+    }
+
+    /**
+     * 库存流水服务
+     * @param db 测试库
+     * @return 流水服务
+     */
+    public static InventoryMovementServiceImpl movementService(TestDatabase db) {
+        InventoryMovementServiceImpl movementService = new InventoryMovementServiceImpl();
+        ReflectionTestUtils.setField(movementService, "inventoryMovementMapper", db.mapper(InventoryMovementMapper.class));
+        ReflectionTestUtils.setField(movementService, "inventoryMapper", db.mapper(InventoryMapper.class));
+        return movementService;
+    }
+
+    /**
+     * 库存服务，不开启统计聚合与合并提交
+     * @param db 测试库
+     * @param movementService 流水服务
+     * @return 库存服务
+     */
+    public static InventoryServiceImpl inventoryService(TestDatabase db, IInventoryMovementService movementService) {
+        InventoryServiceImpl inventoryService = new InventoryServiceImpl();
+        ReflectionTestUtils.setField(inventoryService, "inventoryMapper", db.mapper(InventoryMapper.class));
+        ReflectionTestUtils.setField(inventoryService, "inventoryCounterMapper", db.mapper(InventoryCounterMapper.class));
+        ReflectionTestUtils.setField(inventoryService, "inventoryLotMapper", db.mapper(InventoryLotMapper.class));
+        ReflectionTestUtils.setField(inventoryService, "cacheManager", new ConcurrentMapCacheManager());
+        ReflectionTestUtils.setField(inventoryService, "existenceGuard", Mockito.mock(ExistenceGuard.class));
+        ReflectionTestUtils.setField(inventoryService, "transactionTemplate", db.transactionTemplate());
+        ReflectionTestUtils.setField(inventoryService, "inventoryMovementService", movementService);
+        return inventoryService;
+    }
+
+    /**
+     * 出入库合并提交，尚未启动提交线程
+     * @param db 测试库
+     * @param movementService 流水服务
+     * @param aggregator 统计聚合器，可为null
+     * @return 合并提交
+     */
+    public static StockGroupCommitter groupCommitter(TestDatabase db, IInventoryMovementService movementService,
+            InventoryStatsAggregator aggregator) {
+        StockGroupCommitter committer = new StockGroupCommitter();
+        ReflectionTestUtils.setField(committer, "windowMs", 2L);
+        ReflectionTestUtils.setField(committer, "maxBatch", 64);
+        ReflectionTestUtils.setField(committer, "inventoryMapper", db.mapper(InventoryMapper.class));
+        ReflectionTestUtils.setField(committer, "inventoryCounterMapper", db.mapper(InventoryCounterMapper.class));
+        ReflectionTestUtils.setField(committer, "inventoryMovementService", movementService);
+        ReflectionTestUtils.setField(committer, "transactionTemplate", db.transactionTemplate());
+        ReflectionTestUtils.setField(committer, "cacheManager", new ConcurrentMapCacheManager());
+        ReflectionTestUtils.setField(committer, "existenceGuard", Mockito.mock(ExistenceGuard.class));
+        ReflectionTestUtils.setField(committer, "inventoryStatsAggregator", aggregator);
+        return committer;
+    }
+}
@@ -0,0 +1,34 @@
+-- 测试库补充：入库、出库记录表（线上库由vueone.sql建立，init_tables.sql中没有）
+
+CREATE TABLE IF NOT EXISTS `storage_record` (
+  `id` int(11) NOT NULL AUTO_INCREMENT COMMENT '入库记录ID',
+  `chemical_id` int(11) NOT NULL COMMENT '化学品ID',
+  `amount` decimal(10,2) NOT NULL COMMENT '入库数量',
+  `unit` varchar(20) NOT NULL COMMENT '单位',
+  `batch_no` varchar(50) DEFAULT NULL COMMENT '批次号',
+  `storage_time` datetime NOT NULL COMMENT '入库时间',
+  `operator_id` int(11) NOT NULL COMMENT '操作员ID',
+  `supplier` varchar(100) DEFAULT NULL COMMENT '供货商',
+  `notes` varchar(500) DEFAULT NULL COMMENT '备注',
+  `create_time` datetime NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+  PRIMARY KEY (`id`),
+  KEY `idx_storage_chem` (`chemical_id`),
+  KEY `idx_storage_operator` (`operator_id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='入库记录表';
+
+CREATE TABLE IF NOT EXISTS `outbound_record` (
+  `id` int(11) NOT NULL AUTO_INCREMENT COMMENT '出库记录ID',
+  `chemical_id` int(11) NOT NULL COMMENT '化学品ID',
+  `amount` decimal(10,2) NOT NULL COMMENT '出库数量',
+  `unit` varchar(20) NOT NULL COMMENT '单位',
+  `batch_no` varchar(50) DEFAULT NULL COMMENT '批次号',
+  `outbound_time` datetime NOT NULL COMMENT '出库时间',
+  `operator_id` int(11) NOT NULL COMMENT '操作员ID',
+  `recipient` varchar(100) NOT NULL COMMENT '领用人/部门',
+  `purpose` varchar(200) DEFAULT NULL COMMENT '用途',
+  `notes` varchar(500) DEFAULT NULL COMMENT '备注',
+  `create_time` datetime NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+  PRIMARY KEY (`id`),
+  KEY `idx_outbound_chem` (`chemical_id`),
+  KEY `idx_outbound_operator` (`operator_id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='出库记录表';
@@ -50,9 +50,12 @@ CREATE TABLE `inventory` (
   `location` varchar(100) DEFAULT NULL COMMENT '存储位置',
   `last_check_time` datetime DEFAULT NULL COMMENT '最后检查时间',
   `create_time` datetime NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
-  `update_time` datetime DEFAULT NULL,
+  `update_time` datetime NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '更新时间',
+  `stock_status` varchar(20) DEFAULT NULL COMMENT '库存状态：low(不足)、warning(预警)、normal(正常)、high(超储)',
   PRIMARY KEY (`id`),
   KEY `idx_chemical_id` (`chemical_id`),
+  KEY `idx_stock_status` (`stock_status`,`update_time`),
+  KEY `idx_update_time` (`update_time`),
   CONSTRAINT `inventory_ibfk_chem` FOREIGN KEY (`chemical_id`) REFERENCES `chemical` (`id`)
 ) ENGINE=InnoDB AUTO_INCREMENT=6 DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci COMMENT='库存表';
 
@@ -60,6 +63,16 @@ CREATE TABLE `inventory` (
 
 insert  into `inventory`(`id`,`chemical_id`,`current_amount`,`unit`,`location`,`last_check_time`,`create_time`,`update_time`) values (1,1,'4.50','L','A区-01架','2025-12-03 18:20:39','2025-12-03 18:20:39','2025-12-03 18:20:39'),(2,2,'9.20','L','A区-02架','2025-12-03 18:20:39','2025-12-03 18:20:39','2025-12-03 18:20:39'),(3,3,'15.30','L','B区-01架','2025-12-03 18:20:39','2025-12-03 18:20:39','2025-12-03 18:20:39'),(4,4,'7.80','kg','B区-02架','2025-12-03 18:20:39','2025-12-03 18:20:39','2025-12-03 18:20:39'),(5,5,'6.50','L','C区-01架','2025-12-03 18:20:39','2025-12-03 18:20:39','2025-12-03 18:20:39');
 
+UPDATE `inventory` i
+JOIN `chemical` c ON c.`id` = i.`chemical_id`
+SET i.`stock_status` = CASE
+    WHEN i.`current_amount` < c.`warning_threshold` THEN 'low'
+    WHEN i.`current_amount` < c.`warning_threshold` * 1.2 THEN 'warning'
+    WHEN i.`current_amount` > c.`warning_threshold` * 5 THEN 'high'
+    ELSE 'normal'
+END
+WHERE i.`stock_status` IS NULL;
+
 /*Table structure for table `man` */
 
 DROP TABLE IF EXISTS `man`;